@@ -0,0 +1,154 @@
+package com.sap.hadoop.ds.list;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+ * A per JVM cache of the inflated blocks of block compressed spill files, bounded by the total bytes
+ * of the blocks it holds. Blocks are evicted in least recently used order.
+ * <p>
+ * Blocks are keyed by the id of the list they belong to, not the list itself, so the cache doesn't
+ * keep lists reachable; a list invalidates its blocks when it is closed.
+ */
+public class BlockCache
+{
+	private static final BlockCache INSTANCE = new BlockCache(16 * CompressedByteBasedList.BLOCK_SIZE);
+
+	public static BlockCache get()
+	{
+		return INSTANCE;
+	}
+
+	private static final AtomicLong nextListId = new AtomicLong();
+
+	/*
+	 * a new id for a list whose blocks are cached.
+	 */
+	public static long newListId()
+	{
+		return nextListId.incrementAndGet();
+	}
+
+	static class Key
+	{
+		final long listId;
+		final int idx;
+
+		Key(long listId, int idx)
+		{
+			this.listId = listId;
+			this.idx = idx;
+		}
+
+		@Override
+		public int hashCode()
+		{
+			return (int) (listId ^ (listId >>> 32)) * 31 + idx;
+		}
+
+		@Override
+		public boolean equals(Object o)
+		{
+			if ( !(o instanceof Key) )
+			{
+				return false;
+			}
+			Key k = (Key) o;
+			return listId == k.listId && idx == k.idx;
+		}
+	}
+
+	long capacity;
+	long used;
+	LinkedHashMap<Key, byte[]> blocks;
+	long hits;
+	long misses;
+
+	BlockCache(long capacity)
+	{
+		this.capacity = capacity;
+		blocks = new LinkedHashMap<Key, byte[]>(16, 0.75f, true);
+	}
+
+	public synchronized void setCapacity(long capacity)
+	{
+		this.capacity = capacity;
+		evict();
+	}
+
+	public synchronized long getCapacity()
+	{
+		return capacity;
+	}
+
+	public synchronized long getHits()
+	{
+		return hits;
+	}
+
+	public synchronized long getMisses()
+	{
+		return misses;
+	}
+
+	/*
+	 * the bytes of the blocks held.
+	 */
+	public synchronized long getUsed()
+	{
+		return used;
+	}
+
+	/*
+	 * the given block of the given list, or null if it isn't cached.
+	 */
+	public synchronized byte[] get(long listId, int idx)
+	{
+		byte[] b = blocks.get(new Key(listId, idx));
+		if ( b == null )
+		{
+			misses++;
+		}
+		else
+		{
+			hits++;
+		}
+		return b;
+	}
+
+	public synchronized void put(long listId, int idx, byte[] block)
+	{
+		byte[] old = blocks.put(new Key(listId, idx), block);
+		used += block.length - (old == null ? 0 : old.length);
+		evict();
+	}
+
+	/*
+	 * drop the blocks of the given list.
+	 */
+	public synchronized void invalidate(long listId)
+	{
+		Iterator<Map.Entry<Key, byte[]>> it = blocks.entrySet().iterator();
+		while( it.hasNext() )
+		{
+			Map.Entry<Key, byte[]> e = it.next();
+			if ( e.getKey().listId == listId )
+			{
+				used -= e.getValue().length;
+				it.remove();
+			}
+		}
+	}
+
+	private void evict()
+	{
+		Iterator<Map.Entry<Key, byte[]>> it = blocks.entrySet().iterator();
+		while( used > capacity && it.hasNext() )
+		{
+			used -= it.next().getValue().length;
+			it.remove();
+		}
+	}
+}
@@ -2,6 +2,7 @@ package com.sap.hadoop.ds.list;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ConcurrentModificationException;
 import java.util.Iterator;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
@@ -34,21 +35,36 @@ public class ByteBasedList
 	
 	/*
 	 * contains actual bytes of Writables.
-	 * not resizable
+	 * the bytes are held in slabs that are allocated as the list grows, from a SlabPool; slab sizes
+	 * double from SlabPool.MIN_SLAB_SIZE up to SlabPool.MAX_SLAB_SIZE. The total size of the slabs is at
+	 * most capacity.
+	 * slab k holds the bytes from position slabStarts[k] on; the offset of a Writable is its position.
+	 * a Writable never spans slabs, the end of a slab that cannot hold the next Writable is left unused.
 	 */
-	byte[] bytes;
+	byte[][] slabs;
+	int[] slabStarts;
+	int numSlabs;
+	int capacity;
+	long allocatedBytes;
 	int bytesUsed;
 	
 	int currentSize;
 	ReentrantReadWriteLock lock;
 	volatile long lastModified;
 	
+	/*
+	 * once a list is sealed it cannot be appended to; reads don't take the lock.
+	 */
+	volatile boolean sealed;
+	
 	
 	public ByteBasedList(int startOffset, int capacity)
 	{
 		this.startOffset = startOffset;
-		bytes = new byte[capacity];
-		offsetsArray = new int[INCREMENT_SIZE];
+		this.capacity = capacity;
+		slabs = new byte[INITIAL_SLABS][];
+		slabStarts = new int[INITIAL_SLABS];
+		offsetsArray = new int[INITIAL_OFFSETS_SIZE];
 		bytesUsed = 0;
 		currentSize = 0;
 		lock = new ReentrantReadWriteLock();
@@ -75,28 +91,146 @@ public class ByteBasedList
 	
 	private void ensureCapacity(int wlen) throws ListFullException
 	{
-		if ( bytesUsed + wlen > bytes.length)
+		if ( numSlabs == 0 || bytesUsed - slabStarts[numSlabs - 1] + wlen > slabs[numSlabs - 1].length )
 		{
-			throw new ListFullException();
+			addSlab(wlen);
 		}
 		
 		if ( (2 * currentSize + 1) > offsetsArray.length )
 		{
-			int[] na = new int[offsetsArray.length + INCREMENT_SIZE];
+			int[] na = new int[offsetsArray.length + Math.min(offsetsArray.length, INCREMENT_SIZE)];
 			System.arraycopy(offsetsArray, 0, na, 0, offsetsArray.length);
 			offsetsArray = na;
 		}
 	}
 	
-	private int index(int i) throws BaseException
+	private void addSlab(int wlen) throws ListFullException
+	{
+		int end = numSlabs == 0 ? 0 : slabStarts[numSlabs - 1] + slabs[numSlabs - 1].length;
+		int remaining = capacity - end;
+		if ( wlen > remaining )
+		{
+			throw new ListFullException();
+		}
+		int sz = numSlabs >= SlabPool.MAX_SLAB_SHIFT - SlabPool.MIN_SLAB_SHIFT ?
+				SlabPool.MAX_SLAB_SIZE : SlabPool.MIN_SLAB_SIZE << numSlabs;
+		sz = Math.min(Math.max(sz, wlen), remaining);
+		
+		if ( numSlabs == slabs.length )
+		{
+			byte[][] ns = new byte[2 * numSlabs][];
+			System.arraycopy(slabs, 0, ns, 0, numSlabs);
+			slabs = ns;
+			int[] na = new int[2 * numSlabs];
+			System.arraycopy(slabStarts, 0, na, 0, numSlabs);
+			slabStarts = na;
+		}
+		slabs[numSlabs] = SlabPool.get().allocate(sz);
+		slabStarts[numSlabs] = end;
+		numSlabs++;
+		allocatedBytes += sz;
+		bytesUsed = end;
+	}
+	
+	/*
+	 * the slab holding the byte at position pos.
+	 */
+	int slab(int pos)
+	{
+		int start = 0;
+		int end = numSlabs - 1;
+		while(start < end)
+		{
+			int mid = (start + end + 1) >>> 1;
+			if ( slabStarts[mid] <= pos )
+			{
+				start = mid;
+			}
+			else
+			{
+				end = mid - 1;
+			}
+		}
+		return start;
+	}
+	
+	/*
+	 * the bytes in positions [from, to), as views of the slabs.
+	 */
+	ByteBuffer[] byteBuffers(int from, int to)
+	{
+		if ( from >= to )
+		{
+			return new ByteBuffer[0];
+		}
+		int first = slab(from);
+		int last = slab(to - 1);
+		ByteBuffer[] bufs = new ByteBuffer[last - first + 1];
+		for(int k=first; k <= last; k++)
+		{
+			int s = Math.max(from, slabStarts[k]) - slabStarts[k];
+			int e = Math.min(to, slabStarts[k] + slabs[k].length) - slabStarts[k];
+			bufs[k - first] = ByteBuffer.wrap(slabs[k], s, e - s);
+		}
+		return bufs;
+	}
+	
+	/*
+	 * the bytes of slabs held by this list.
+	 */
+	public long getAllocatedBytes()
+	{
+		return allocatedBytes;
+	}
+	
+	/*
+	 * remove all Writables and return the slabs to the SlabPool; the list can be
+	 * appended to again.
+	 */
+	public void clear() throws BaseException
+	{
+		LockUtils.lock(lock.writeLock());
+		try
+		{
+			SlabPool pool = SlabPool.get();
+			for(int k=0; k < numSlabs; k++)
+			{
+				pool.release(slabs[k]);
+				slabs[k] = null;
+			}
+			numSlabs = 0;
+			allocatedBytes = 0;
+			bytesUsed = 0;
+			currentSize = 0;
+			sealed = false;
+			lastModified = System.nanoTime();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+	
+	/*
+	 * release what the list holds outside of its own fields: slabs, memory budget, files or mappings.
+	 * The list cannot be used after this.
+	 */
+	public void close() throws BaseException
+	{
+		clear();
+	}
+	
+	/*
+	 * the position of the entry for index i in offsetsArray; the only bounds check on the lock free read path.
+	 */
+	int index(int i) throws BaseException
 	{
 		int j = i - startOffset;
-		j = j << 1;
-		if ( j >  2 * currentSize )
+		if ( j < 0 || j >= currentSize )
 		{
 			throw new BaseException(sprintf("index invalid %d", i));
 		}
-		return j;
+		return j << 1;
 	}
 	
 	private void write(Writable w) throws BaseException, IOException
@@ -107,7 +241,8 @@ public class ByteBasedList
 		w.write(dos);
 		ensureCapacity(bos.len());
 		int i = currentSize * 2;
-		System.arraycopy(bos.bytearray(), 0, bytes, bytesUsed, bos.len());
+		int k = numSlabs - 1;
+		System.arraycopy(bos.bytearray(), 0, slabs[k], bytesUsed - slabStarts[k], bos.len());
 		offsetsArray[i] = bytesUsed;
 		offsetsArray[i+1] = bos.len();
 		currentSize += 1;
@@ -118,6 +253,10 @@ public class ByteBasedList
 	
 	public int size() throws BaseException
 	{
+		if ( sealed )
+		{
+			return currentSize;
+		}
 		LockUtils.lock(lock.readLock());
 		try
 		{
@@ -129,32 +268,80 @@ public class ByteBasedList
 		}
 	}
 	
-	public void get(int i, Writable wObj) throws BaseException
+	/*
+	 * read the Writable at index i without taking the lock; callers must hold the read lock or
+	 * the list must be sealed.
+	 */
+	protected void read(int i, Writable wObj) throws BaseException
 	{
-		LockUtils.lock(lock.readLock());
 		try
 		{
 			i = index(i);
 			DataIStream dis = Streams.dis.get();
 			ByteArrayIS bis = dis.getUnderlyingStream();
-			bis.setBuffer(bytes, offsetsArray[i], offsetsArray[i+1]);
+			int k = slab(offsetsArray[i]);
+			bis.setBuffer(slabs[k], offsetsArray[i] - slabStarts[k], offsetsArray[i+1]);
 			wObj.readFields(dis);
 		}
 		catch(IOException ie)
 		{
 			throw new BaseException(ie);
 		}
+	}
+	
+	public void get(int i, Writable wObj) throws BaseException
+	{
+		if ( sealed )
+		{
+			read(i, wObj);
+			return;
+		}
+		LockUtils.lock(lock.readLock());
+		try
+		{
+			read(i, wObj);
+		}
 		finally
 		{
 			lock.readLock().unlock();
 		}
 	}
 	
+	/*
+	 * end the append phase of the list. Appending to a sealed list fails, reading from it is lock free.
+	 */
+	public void seal() throws BaseException
+	{
+		LockUtils.lock(lock.writeLock());
+		try
+		{
+			sealed = true;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+	
+	public boolean isSealed()
+	{
+		return sealed;
+	}
+	
+	protected void checkNotSealed()
+	{
+		if ( sealed )
+		{
+			throw new UnsupportedOperationException("Cannot append to a sealed List");
+		}
+	}
+	
 	public void append(Writable obj) throws BaseException
 	{
 		LockUtils.lock(lock.writeLock());
 		try
 		{
+			checkNotSealed();
 			write(obj);
 		}
 		catch(IOException ie)
@@ -203,6 +390,14 @@ public class ByteBasedList
 		return new OIterator(deserializer, wObj); 
 	}
 	
+	/*
+	 * a cursor over the Writables in [start, end).
+	 */
+	public Cursor cursor(int start, int end, Writable wObj) throws BaseException
+	{
+		return new Cursor(start, end, wObj);
+	}
+	
 	public void dump(StringBuilder bldr, Writable wObj) throws IOException, BaseException
 	{
 		bldr.append("[");
@@ -268,6 +463,55 @@ public class ByteBasedList
 		}
 	}
 	
+	/*
+	 * reads Writables in index order into the same Writable. On a sealed list a row is read without
+	 * any locking; on a list that is still being appended to every row takes the read lock, as get does.
+	 */
+	public class Cursor
+	{
+		Writable wObj;
+		int i;
+		int end;
+		
+		protected Cursor(int start, int end, Writable wObj)
+		{
+			this.wObj = wObj;
+			this.i = start;
+			this.end = end;
+		}
+		
+		public boolean hasNext()
+		{
+			return i < end;
+		}
+		
+		/*
+		 * the index of the Writable the next call to next returns.
+		 */
+		public int getIndex()
+		{
+			return i;
+		}
+		
+		public void seek(int i)
+		{
+			this.i = i;
+		}
+		
+		public Writable next() throws BaseException
+		{
+			if ( sealed )
+			{
+				read(i++, wObj);
+			}
+			else
+			{
+				get(i++, wObj);
+			}
+			return wObj;
+		}
+	}
+	
 	class OIterator implements Iterator<Object>
 	{
 		Deserializer deserializer;
@@ -332,6 +576,8 @@ public class ByteBasedList
 	}
 	
 	private static final int INCREMENT_SIZE = (int) Math.pow(2, 16); 
+	private static final int INITIAL_OFFSETS_SIZE = 64;
+	private static final int INITIAL_SLABS = 4;
 	
 	public static final int SMALL_SIZE =  (int) Math.pow(2, 6 +10);                // 64KB
 	public static final int MEDIUM_SIZE = (int) Math.pow(2, (10 + 10 + 3));            // 8 MB
@@ -0,0 +1,347 @@
+package com.sap.hadoop.ds.list;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+import org.apache.hadoop.io.IOUtils;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CodecPool;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.CompressionInputStream;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.Decompressor;
+
+import com.sap.hadoop.ds.BaseException;
+import com.sap.hadoop.ds.streams.Streams;
+import com.sap.hadoop.ds.streams.Streams.ByteArrayIS;
+import com.sap.hadoop.ds.streams.Streams.DataIStream;
+import static com.sap.hadoop.Utils.*;
+
+/*
+ * A read only ByteBasedList served from a block compressed spill file.
+ * <p>
+ * The file is laid out as:
+ * - the blocks: consecutive Writables, about BLOCK_SIZE bytes of them, each compressed on its own.
+ * - the (offset,size) entries of all Writables, offsets relative to the uncompressed bytes of the list.
+ * - for each block: firstIndex:fileOffset:compressedLength:rawOffset:rawLength
+ * - a trailer: startOffset:bytesUsed:currentSize:lastModified:numBlocks:footerOffset
+ * <p>
+ * Opening the list reads the entries and the block index; a get inflates only the block that
+ * holds the Writable. Inflated blocks are kept in the {@link BlockCache}; the list also holds on
+ * to the block it last read from, so runs of gets from one block don't go to the cache.
+ * <p>
+ * The file stays open while the list is used: blocks are read with positional reads on one
+ * FileChannel, which concurrent readers can share. close releases it.
+ */
+class CompressedByteBasedList extends ByteBasedList
+{
+	static final int BLOCK_SIZE = ByteBasedList.SMALL_SIZE;
+
+	private static int trailerSize() { return (Integer.SIZE * 4 + Long.SIZE * 2) / Byte.SIZE;}
+	private static int blockEntrySize() { return (Integer.SIZE * 4 + Long.SIZE) / Byte.SIZE;}
+
+	protected static void store(ByteBasedList l, File f, CompressionCodec codec) throws IOException
+	{
+		FileOutputStream fos = new FileOutputStream(f);
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(fos));
+		Compressor compressor = CodecPool.getCompressor(codec);
+		try
+		{
+			ByteArrayOutputStream bos = new ByteArrayOutputStream();
+			ByteArrayOutputStream indexBytes = new ByteArrayOutputStream();
+			DataOutputStream index = new DataOutputStream(indexBytes);
+			long fileOffset = 0;
+			int numBlocks = 0;
+			int first = 0;
+			while(first < l.currentSize)
+			{
+				int rawOffset = l.offsetsArray[first << 1];
+				int last = first;
+				int rawEnd = rawOffset;
+				while(last < l.currentSize && (last == first || rawEnd - rawOffset < BLOCK_SIZE))
+				{
+					rawEnd = l.offsetsArray[last << 1] + l.offsetsArray[(last << 1) + 1];
+					last++;
+				}
+
+				bos.reset();
+				if ( compressor != null )
+				{
+					compressor.reset();
+				}
+				CompressionOutputStream cos = codec.createOutputStream(bos, compressor);
+				for(ByteBuffer b : l.byteBuffers(rawOffset, rawEnd))
+				{
+					cos.write(b.array(), b.arrayOffset() + b.position(), b.remaining());
+				}
+				cos.finish();
+				bos.writeTo(out);
+
+				index.writeInt(l.startOffset + first);
+				index.writeLong(fileOffset);
+				index.writeInt(bos.size());
+				index.writeInt(rawOffset);
+				index.writeInt(rawEnd - rawOffset);
+				fileOffset += bos.size();
+				numBlocks++;
+				first = last;
+			}
+
+			long footerOffset = fileOffset;
+			for(int i=0; i < 2 * l.currentSize; i++)
+			{
+				out.writeInt(l.offsetsArray[i]);
+			}
+			indexBytes.writeTo(out);
+
+			out.writeInt(l.startOffset);
+			out.writeInt(l.bytesUsed);
+			out.writeInt(l.currentSize);
+			out.writeLong(l.lastModified);
+			out.writeInt(numBlocks);
+			out.writeLong(footerOffset);
+		}
+		finally
+		{
+			CodecPool.returnCompressor(compressor);
+			out.close();
+		}
+	}
+
+	protected static ByteBasedList open(File f, CompressionCodec codec) throws IOException
+	{
+		FileChannel fc = new FileInputStream(f).getChannel();
+		boolean opened = false;
+		try
+		{
+			ByteBuffer trailer = readFully(fc, fc.size() - trailerSize(), trailerSize());
+			CompressedByteBasedList l = new CompressedByteBasedList(f, codec, fc);
+			l.startOffset = trailer.getInt();
+			l.bytesUsed = trailer.getInt();
+			l.currentSize = trailer.getInt();
+			l.lastModified = trailer.getLong();
+			int numBlocks = trailer.getInt();
+			long footerOffset = trailer.getLong();
+
+			ByteBuffer footer = readFully(fc, footerOffset,
+					(Integer.SIZE/Byte.SIZE) * 2 * l.currentSize + blockEntrySize() * numBlocks);
+			l.offsetsArray = new int[2 * l.currentSize];
+			footer.asIntBuffer().get(l.offsetsArray);
+			footer.position((Integer.SIZE/Byte.SIZE) * 2 * l.currentSize);
+
+			l.blockFirstIndex = new int[numBlocks];
+			l.blockFileOffset = new long[numBlocks];
+			l.blockLength = new int[numBlocks];
+			l.blockRawOffset = new int[numBlocks];
+			l.blockRawLength = new int[numBlocks];
+			for(int i=0; i < numBlocks; i++)
+			{
+				l.blockFirstIndex[i] = footer.getInt();
+				l.blockFileOffset[i] = footer.getLong();
+				l.blockLength[i] = footer.getInt();
+				l.blockRawOffset[i] = footer.getInt();
+				l.blockRawLength[i] = footer.getInt();
+			}
+			opened = true;
+			return l;
+		}
+		finally
+		{
+			if ( !opened )
+			{
+				fc.close();
+			}
+		}
+	}
+
+	static ByteBuffer readFully(FileChannel fc, long position, int len) throws IOException
+	{
+		ByteBuffer buf = ByteBuffer.allocate(len);
+		while(buf.hasRemaining())
+		{
+			if ( fc.read(buf, position + buf.position()) < 0 )
+			{
+				throw new IOException("unexpected end of spill file");
+			}
+		}
+		buf.flip();
+		return buf;
+	}
+
+	/*
+	 * an inflated block; replaced, never modified, so readers don't need a lock.
+	 */
+	static class Block
+	{
+		final int idx;
+		final byte[] bytes;
+
+		Block(int idx, byte[] bytes)
+		{
+			this.idx = idx;
+			this.bytes = bytes;
+		}
+	}
+
+	File file;
+	CompressionCodec codec;
+	/*
+	 * identifies the blocks of this list in the BlockCache.
+	 */
+	final long id = BlockCache.newListId();
+	int[] blockFirstIndex;
+	long[] blockFileOffset;
+	int[] blockLength;
+	int[] blockRawOffset;
+	int[] blockRawLength;
+	volatile Block lastBlock;
+	
+	/*
+	 * the open file; null once the list is closed.
+	 */
+	volatile FileChannel channel;
+
+	private CompressedByteBasedList(File file, CompressionCodec codec, FileChannel channel)
+	{
+		super(file);
+		sealed = true;
+		this.file = file;
+		this.codec = codec;
+		this.channel = channel;
+	}
+	
+	/*
+	 * the channel to read blocks from. A reader interrupted during a read closes the channel for all
+	 * readers; it is opened again on the next read.
+	 */
+	private FileChannel getChannel() throws IOException
+	{
+		FileChannel fc = channel;
+		if ( fc != null && fc.isOpen() )
+		{
+			return fc;
+		}
+		synchronized(this)
+		{
+			if ( channel == null )
+			{
+				throw new IOException(sprintf("spill file %s is closed", file));
+			}
+			if ( !channel.isOpen() )
+			{
+				channel = new RandomAccessFile(file, "r").getChannel();
+			}
+			return channel;
+		}
+	}
+
+	private int findBlock(int i)
+	{
+		int start = 0;
+		int end = blockFirstIndex.length - 1;
+		while(start < end)
+		{
+			int mid = (start + end + 1) >>> 1;
+			if ( blockFirstIndex[mid] <= i )
+			{
+				start = mid;
+			}
+			else
+			{
+				end = mid - 1;
+			}
+		}
+		return start;
+	}
+
+	private byte[] inflate(int b) throws IOException
+	{
+		byte[] raw = new byte[blockRawLength[b]];
+		ByteBuffer comp = readFully(getChannel(), blockFileOffset[b], blockLength[b]);
+		Decompressor decompressor = CodecPool.getDecompressor(codec);
+		try
+		{
+			CompressionInputStream cis = codec.createInputStream(
+					new ByteArrayInputStream(comp.array(), 0, comp.limit()), decompressor);
+			IOUtils.readFully(cis, raw, 0, raw.length);
+		}
+		finally
+		{
+			CodecPool.returnDecompressor(decompressor);
+		}
+		return raw;
+	}
+
+	protected void read(int i, Writable wObj) throws BaseException
+	{
+		int j = i - startOffset;
+		if ( j < 0 || j >= currentSize )
+		{
+			throw new BaseException(sprintf("index invalid %d", i));
+		}
+		j = j << 1;
+		try
+		{
+			int b = findBlock(i);
+			Block blk = lastBlock;
+			if ( blk == null || blk.idx != b )
+			{
+				BlockCache cache = BlockCache.get();
+				byte[] bytes = cache.get(id, b);
+				if ( bytes == null )
+				{
+					bytes = inflate(b);
+					cache.put(id, b, bytes);
+				}
+				blk = new Block(b, bytes);
+				lastBlock = blk;
+			}
+			DataIStream dis = Streams.dis.get();
+			ByteArrayIS bis = dis.getUnderlyingStream();
+			bis.setBuffer(blk.bytes, offsetsArray[j] - blockRawOffset[b], offsetsArray[j+1]);
+			wObj.readFields(dis);
+		}
+		catch(IOException ie)
+		{
+			throw new BaseException(ie);
+		}
+	}
+
+	public void append(Writable obj) throws BaseException
+	{
+		throw new UnsupportedOperationException("Cannot append to a Persisted List");
+	}
+	
+	/*
+	 * close the file and drop the list's blocks from the BlockCache; the list cannot be read after this.
+	 */
+	@Override
+	public synchronized void close() throws BaseException
+	{
+		FileChannel fc = channel;
+		channel = null;
+		lastBlock = null;
+		BlockCache.get().invalidate(id);
+		if ( fc != null )
+		{
+			try
+			{
+				fc.close();
+			}
+			catch(IOException ie)
+			{
+				throw new BaseException(ie);
+			}
+		}
+	}
+}
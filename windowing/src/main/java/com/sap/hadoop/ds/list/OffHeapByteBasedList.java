@@ -0,0 +1,277 @@
+package com.sap.hadoop.ds.list;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+
+import org.apache.hadoop.io.Writable;
+
+import com.sap.hadoop.ds.BaseException;
+import com.sap.hadoop.ds.LockUtils;
+import com.sap.hadoop.ds.streams.ByteBufferInputStream;
+import com.sap.hadoop.ds.streams.Streams;
+import com.sap.hadoop.ds.streams.Streams.ByteArrayOS;
+import com.sap.hadoop.ds.streams.Streams.DataBBIStream;
+import com.sap.hadoop.ds.streams.Streams.DataOStream;
+import static com.sap.hadoop.Utils.*;
+
+/*
+ * A ByteBasedList whose bytes are not held on the java heap. Writables are written into chunks
+ * that are memory-mapped regions of a temporary file; only the (offset,size) entries are on the heap.
+ * <p>
+ * - the list never fills up: when the current chunk cannot hold a Writable a new chunk is mapped
+ *   at the end of the file. A Writable never spans chunks; one larger than the chunk size gets a
+ *   chunk of its own.
+ * - there is no explicit spilling: pages of chunks that are not being read are written back to the
+ *   file by the OS and dropped from memory, without copying them through the heap as
+ *   {@link PartitionedByteBasedList} does.
+ * - the file is deleted as soon as it is created, so its space is released when the list is closed
+ *   or garbage collected; on platforms that do not allow this it is deleted on exit.
+ * - close unmaps the chunks right away, rather than when they are garbage collected; the list
+ *   must not be read while or after it is closed.
+ * <p>
+ * To use it set com.sap.hadoop.windowing.partition.class to this class; the partition memory size
+ * is used as the chunk size.
+ */
+public class OffHeapByteBasedList extends ByteBasedList
+{
+	int chunkSize;
+
+	RandomAccessFile file;
+	FileChannel channel;
+	long fileLength;
+
+	/*
+	 * chunk i holds the Writables from index chunkOffsets[i] up to chunkOffsets[i+1].
+	 */
+	ArrayList<MappedByteBuffer> chunks;
+	ArrayList<Integer> chunkOffsets;
+	MappedByteBuffer currentChunk;
+	int chunkUsed;
+
+	public OffHeapByteBasedList(int chunkSize)
+	{
+		super(0, 0);
+		this.chunkSize = chunkSize;
+		chunks = new ArrayList<MappedByteBuffer>();
+		chunkOffsets = new ArrayList<Integer>();
+	}
+
+	public OffHeapByteBasedList()
+	{
+		this(ByteBasedList.LARGE_SIZE);
+	}
+
+	private void openFile() throws IOException
+	{
+		File f = File.createTempFile("wdw", ".mmap");
+		file = new RandomAccessFile(f, "rw");
+		channel = file.getChannel();
+		fileLength = 0;
+		if ( !f.delete() )
+		{
+			f.deleteOnExit();
+		}
+	}
+
+	private void addChunk(int wlen) throws IOException
+	{
+		if ( channel == null )
+		{
+			openFile();
+		}
+		int sz = Math.max(chunkSize, wlen);
+		currentChunk = channel.map(FileChannel.MapMode.READ_WRITE, fileLength, sz);
+		fileLength += sz;
+		chunkUsed = 0;
+		chunks.add(currentChunk);
+		chunkOffsets.add(currentSize);
+	}
+
+	private void ensureCapacity(int wlen) throws IOException
+	{
+		if ( currentChunk == null || chunkUsed + wlen > currentChunk.capacity() )
+		{
+			addChunk(wlen);
+		}
+
+		if ( (2 * currentSize + 1) > offsetsArray.length )
+		{
+			int[] na = new int[offsetsArray.length * 2];
+			System.arraycopy(offsetsArray, 0, na, 0, offsetsArray.length);
+			offsetsArray = na;
+		}
+	}
+
+	/*
+	 * the chunk holding the Writable at index i: the last chunk whose first index is <= i.
+	 */
+	private ByteBuffer getChunk(int i)
+	{
+		int start = 0;
+		int end = chunkOffsets.size() - 1;
+		while(start < end)
+		{
+			int mid = (start + end + 1) >>> 1;
+			if ( chunkOffsets.get(mid) <= i )
+			{
+				start = mid;
+			}
+			else
+			{
+				end = mid - 1;
+			}
+		}
+		return chunks.get(start);
+	}
+
+	private void write(Writable w) throws BaseException, IOException
+	{
+		DataOStream dos = Streams.dos.get();
+		ByteArrayOS bos = dos.getUnderlyingStream();
+		bos.reset();
+		w.write(dos);
+		ensureCapacity(bos.len());
+		int i = currentSize * 2;
+		ByteBuffer buf = currentChunk.duplicate();
+		buf.position(chunkUsed);
+		buf.put(bos.bytearray(), 0, bos.len());
+		offsetsArray[i] = chunkUsed;
+		offsetsArray[i+1] = bos.len();
+		currentSize += 1;
+		chunkUsed += bos.len();
+		lastModified = System.nanoTime();
+	}
+
+	protected void read(int i, Writable wObj) throws BaseException
+	{
+		try
+		{
+			if ( i < 0 || i >= currentSize )
+			{
+				throw new BaseException(sprintf("index invalid %d", i));
+			}
+			int j = i << 1;
+			DataBBIStream dis = Streams.bbdis.get();
+			ByteBufferInputStream bis = dis.getUnderlyingStream();
+			bis.intialize(getChunk(i), offsetsArray[j], offsetsArray[j+1]);
+			wObj.readFields(dis);
+		}
+		catch(IOException ie)
+		{
+			throw new BaseException(ie);
+		}
+	}
+
+	public void append(Writable obj) throws BaseException
+	{
+		LockUtils.lock(lock.writeLock());
+		try
+		{
+			checkNotSealed();
+			write(obj);
+		}
+		catch(IOException ie)
+		{
+			throw new BaseException(ie);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * release the mapping of the given chunk now. The JDK has no API for this; where the buffer's
+	 * cleaner cannot be reached the mapping is released when the buffer is garbage collected.
+	 */
+	static void unmap(MappedByteBuffer buf)
+	{
+		try
+		{
+			Method cleanerMethod = buf.getClass().getMethod("cleaner");
+			cleanerMethod.setAccessible(true);
+			Object cleaner = cleanerMethod.invoke(buf);
+			if ( cleaner != null )
+			{
+				Method cleanMethod = cleaner.getClass().getMethod("clean");
+				cleanMethod.setAccessible(true);
+				cleanMethod.invoke(cleaner);
+			}
+		}
+		catch(Exception e)
+		{
+		}
+	}
+
+	/*
+	 * remove all Writables; the first chunk stays mapped and is written over, later chunks are
+	 * unmapped and mapped again over the same region of the file as the list grows.
+	 */
+	public void clear() throws BaseException
+	{
+		LockUtils.lock(lock.writeLock());
+		try
+		{
+			if ( chunks.size() > 0 )
+			{
+				currentChunk = chunks.get(0);
+				fileLength = currentChunk.capacity();
+				for(int k=1; k < chunks.size(); k++)
+				{
+					unmap(chunks.get(k));
+				}
+				chunks.subList(1, chunks.size()).clear();
+				chunkOffsets.subList(1, chunkOffsets.size()).clear();
+			}
+			chunkUsed = 0;
+			currentSize = 0;
+			sealed = false;
+			lastModified = System.nanoTime();
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+
+	/*
+	 * unmap the chunks and close the file; the list cannot be used after this.
+	 */
+	@Override
+	public void close() throws BaseException
+	{
+		LockUtils.lock(lock.writeLock());
+		try
+		{
+			for(MappedByteBuffer chunk : chunks)
+			{
+				unmap(chunk);
+			}
+			chunks.clear();
+			chunkOffsets.clear();
+			currentChunk = null;
+			currentSize = 0;
+			lastModified = System.nanoTime();
+			if ( file != null )
+			{
+				file.close();
+			}
+			file = null;
+			channel = null;
+		}
+		catch(IOException ie)
+		{
+			throw new BaseException(ie);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+}
@@ -0,0 +1,268 @@
+package com.sap.hadoop.ds.list;
+
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.sap.hadoop.ds.BaseException;
+
+/*
+ * Accounts for the heap bytes held by the splits of all {@link PartitionedByteBasedList}s in the JVM,
+ * against a single budget.
+ * <p>
+ * - a list registers each split it holds in memory: the split it is appending to, and the in memory
+ *   copies of splits it has written to disk.
+ * - a split can be evicted once it is no longer appended to. Evicting the copy of a spilled split just
+ *   drops it, later reads are served from the spill file; evicting the last split of a sealed list
+ *   first writes it to disk.
+ * - when a registration takes the total over the budget, evictable splits are evicted in least
+ *   recently used order until the total is within the budget again, or nothing more can be evicted.
+ * - the victims are picked, and marked, under the manager's lock; they are evicted without it, so
+ *   a split being written to disk doesn't hold up the registrations of other lists.
+ * <p>
+ * Owners are only weakly referenced, the bytes of lists that are garbage collected are released on the
+ * next registration.
+ */
+public class PartitionMemoryManager
+{
+	private static final PartitionMemoryManager INSTANCE = new PartitionMemoryManager(Runtime.getRuntime().maxMemory() / 2);
+
+	public static PartitionMemoryManager get()
+	{
+		return INSTANCE;
+	}
+
+	/*
+	 * the holder of a registered split.
+	 */
+	public static interface Owner
+	{
+		/*
+		 * release the memory of the given split, or queue its release; return false if it can't be done
+		 * now. Called without the manager's lock held; the split is no longer accounted for once this
+		 * returns true.
+		 */
+		boolean evict(Entry e) throws BaseException;
+	}
+
+	public static class Entry
+	{
+		final WeakReference<Owner> owner;
+		long bytes;
+		volatile boolean evictable;
+		volatile long lastAccess;
+		/*
+		 * picked as a victim, and being evicted.
+		 */
+		boolean evicting;
+
+		Entry(Owner owner, long bytes, boolean evictable)
+		{
+			this.owner = new WeakReference<Owner>(owner);
+			this.bytes = bytes;
+			this.evictable = evictable;
+		}
+	}
+
+	long budget;
+	long used;
+	/*
+	 * the bytes of the splits being evicted.
+	 */
+	long evicting;
+	AtomicLong clock;
+	ArrayList<Entry> entries;
+
+	PartitionMemoryManager(long budget)
+	{
+		this.budget = budget;
+		clock = new AtomicLong();
+		entries = new ArrayList<Entry>();
+	}
+
+	public synchronized long getBudget()
+	{
+		return budget;
+	}
+
+	public void setBudget(long budget) throws BaseException
+	{
+		synchronized(this)
+		{
+			this.budget = budget;
+		}
+		ensureBudget(null);
+	}
+
+	/*
+	 * the bytes of all registered splits.
+	 */
+	public synchronized long getUsed()
+	{
+		return used;
+	}
+
+	/*
+	 * account for a split of the given size; may evict other splits to stay within the budget.
+	 */
+	public Entry register(Owner owner, long bytes, boolean evictable) throws BaseException
+	{
+		Entry e = new Entry(owner, bytes, evictable);
+		e.lastAccess = clock.incrementAndGet();
+		synchronized(this)
+		{
+			entries.add(e);
+			used += bytes;
+		}
+		ensureBudget(e);
+		return e;
+	}
+
+	/*
+	 * the split can now be evicted.
+	 */
+	public void setEvictable(Entry e) throws BaseException
+	{
+		if ( e != null )
+		{
+			e.evictable = true;
+			ensureBudget(null);
+		}
+	}
+
+	/*
+	 * the split has grown to the given size.
+	 */
+	public void resize(Entry e, long bytes) throws BaseException
+	{
+		if ( e == null )
+		{
+			return;
+		}
+		synchronized(this)
+		{
+			if ( !entries.contains(e) )
+			{
+				return;
+			}
+			used += bytes - e.bytes;
+			if ( e.evicting )
+			{
+				evicting += bytes - e.bytes;
+			}
+			e.bytes = bytes;
+		}
+		ensureBudget(e);
+	}
+
+	/*
+	 * the split has shrunk to the given size; as that can't go over the budget, nothing is evicted.
+	 */
+	synchronized void shrink(Entry e, long bytes)
+	{
+		if ( e != null && entries.contains(e) && bytes <= e.bytes )
+		{
+			used += bytes - e.bytes;
+			if ( e.evicting )
+			{
+				evicting += bytes - e.bytes;
+			}
+			e.bytes = bytes;
+		}
+	}
+
+	public synchronized void release(Entry e)
+	{
+		if ( e != null && entries.remove(e) )
+		{
+			used -= e.bytes;
+		}
+	}
+
+	/*
+	 * record a read of the split; doesn't lock.
+	 */
+	public void touch(Entry e)
+	{
+		if ( e != null )
+		{
+			e.lastAccess = clock.incrementAndGet();
+		}
+	}
+
+	private void purge()
+	{
+		Iterator<Entry> it = entries.iterator();
+		while(it.hasNext())
+		{
+			Entry e = it.next();
+			if ( e.owner.get() == null )
+			{
+				it.remove();
+				used -= e.bytes;
+			}
+		}
+	}
+
+	/*
+	 * the least recently used split that can be evicted, if the bytes not already being evicted are
+	 * over the budget; it is marked as being evicted.
+	 */
+	private synchronized Entry pickVictim(Entry keep, ArrayList<Entry> skipped)
+	{
+		if ( used - evicting <= budget )
+		{
+			return null;
+		}
+		purge();
+		Entry victim = null;
+		for(Entry e : entries)
+		{
+			if ( e != keep && e.evictable && !e.evicting && !skipped.contains(e) &&
+					(victim == null || e.lastAccess < victim.lastAccess) )
+			{
+				victim = e;
+			}
+		}
+		if ( victim != null )
+		{
+			victim.evicting = true;
+			evicting += victim.bytes;
+		}
+		return victim;
+	}
+
+	private synchronized void evicted(Entry e, boolean released)
+	{
+		e.evicting = false;
+		evicting -= e.bytes;
+		if ( released )
+		{
+			release(e);
+		}
+	}
+
+	private void ensureBudget(Entry keep) throws BaseException
+	{
+		ArrayList<Entry> skipped = new ArrayList<Entry>();
+		Entry victim;
+		while( (victim = pickVictim(keep, skipped)) != null )
+		{
+			Owner o = victim.owner.get();
+			boolean released = false;
+			try
+			{
+				released = o == null || o.evict(victim);
+			}
+			finally
+			{
+				evicted(victim, released);
+			}
+			if ( !released )
+			{
+				skipped.add(victim);
+			}
+		}
+	}
+}
@@ -4,32 +4,104 @@ import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.ConcurrentModificationException;
+import java.util.HashSet;
 import java.util.Iterator;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import org.apache.hadoop.hive.serde2.Deserializer;
 import org.apache.hadoop.hive.serde2.Serializer;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CompressionCodec;
 
 import com.sap.hadoop.Utils;
 import com.sap.hadoop.ds.BaseException;
 import com.sap.hadoop.ds.LockUtils;
 
-public class PartitionedByteBasedList extends ByteBasedList
+public class PartitionedByteBasedList extends ByteBasedList implements PartitionMemoryManager.Owner
 {
-	ArrayList<ByteBasedList> partitions;
+	/*
+	 * reads of a sealed list don't take the lock, but the spill thread still replaces splits by their
+	 * PersistentByteBasedList; the copy on write list publishes the replacement to the readers. The
+	 * offsets only change before the list is sealed.
+	 */
+	CopyOnWriteArrayList<ByteBasedList> partitions;
 	ArrayList<Integer> partitionOffsets;
+	
+	/*
+	 * holds the spill files; created on the first spill.
+	 */
 	File dir;
 	int batchSize;
 	
+	/*
+	 * the memory of the split being appended to.
+	 */
+	PartitionMemoryManager.Entry activeEntry;
+	
+	/*
+	 * if set, splits are written to disk block compressed with this codec.
+	 */
+	static volatile CompressionCodec spillCodec;
+	
+	public static void setSpillCodec(CompressionCodec codec)
+	{
+		spillCodec = codec;
+	}
+	
+	public static CompressionCodec getSpillCodec()
+	{
+		return spillCodec;
+	}
+	
+	/*
+	 * writes full splits to disk in the background, in the order they fill up.
+	 */
+	static ExecutorService spillExecutor;
+	
+	static synchronized ExecutorService getSpillExecutor()
+	{
+		if ( spillExecutor == null )
+		{
+			spillExecutor = Executors.newSingleThreadExecutor(new ThreadFactory()
+			{
+				public Thread newThread(Runnable r)
+				{
+					Thread t = new Thread(r, "windowing-partition-spill");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		return spillExecutor;
+	}
+	
+	/*
+	 * the failure of the last background spill; reported by the next append.
+	 */
+	volatile IOException spillError;
+	
+	/*
+	 * the last spill of this list; the spills of a list complete in order.
+	 */
+	volatile Future<?> lastSpill;
+	
 	public PartitionedByteBasedList(int batchSize) throws BaseException
 	{
+		/*
+		 * the rows are held in the splits, this list has no bytes of its own.
+		 */
+		super(0, 0);
 		this.batchSize = batchSize;
 		currentSize = 0;
-		dir = Utils.createTempDir();
-		Runtime.getRuntime().addShutdownHook(new ShutdownHook(dir));
 		
-		partitions = new ArrayList<ByteBasedList>();
+		partitions = new CopyOnWriteArrayList<ByteBasedList>();
 		partitionOffsets = new ArrayList<Integer>();
 		addPartition();
 	}
@@ -39,19 +111,65 @@ public class PartitionedByteBasedList extends ByteBasedList
 		this(ByteBasedList.LARGE_SIZE);
 	}
 	
+	/*
+	 * the spill directories of all lists that haven't been cleared; deleted by a single shutdown hook.
+	 */
+	static final Set<File> spillDirs = new HashSet<File>();
+	static boolean shutdownHookAdded;
+	
+	static void addSpillDir(File dir)
+	{
+		synchronized(spillDirs)
+		{
+			if ( !shutdownHookAdded )
+			{
+				Runtime.getRuntime().addShutdownHook(new ShutdownHook());
+				shutdownHookAdded = true;
+			}
+			spillDirs.add(dir);
+		}
+	}
+	
+	static void removeSpillDir(File dir) throws IOException
+	{
+		synchronized(spillDirs)
+		{
+			spillDirs.remove(dir);
+		}
+		Utils.deleteRecursively(dir);
+	}
+	
+	private File getDir()
+	{
+		if ( dir == null )
+		{
+			dir = Utils.createTempDir();
+			addSpillDir(dir);
+		}
+		return dir;
+	}
+	
 	private void addPartition() throws BaseException
 	{
 		try
 		{
+			if ( spillError != null )
+			{
+				throw spillError;
+			}
 			if ( partitions.size() > 0 )
 			{
+				/*
+				 * the full split is served from memory until it has been written.
+				 */
 				int idx = partitions.size() - 1;
 				ByteBasedList bl = partitions.get(idx);
-				File f = File.createTempFile("wdw", null, dir);
-				PersistentByteBasedList.store(bl, f);
-				partitions.set(idx, new PersistentByteBasedList(f, bl));
-				
+				bl.seal();
+				File f = File.createTempFile("wdw", null, getDir());
+				lastSpill = getSpillExecutor().submit(new SpillTask(idx, bl, f, spillCodec, activeEntry, true));
+				activeEntry = null;
 			}
+			activeEntry = PartitionMemoryManager.get().register(this, 0, false);
 			ByteBasedList bl = new ByteBasedList(currentSize, batchSize);
 			partitions.add(bl);
 			partitionOffsets.add(currentSize);
@@ -62,38 +180,120 @@ public class PartitionedByteBasedList extends ByteBasedList
 		}
 	}
 	
-	private ByteBasedList getPartition(int i) throws BaseException
+	/*
+	 * the split being appended to allocates its bytes as it grows; keep its accounting up to date.
+	 */
+	private void trackActiveSplit(ByteBasedList bl) throws BaseException
 	{
-		LockUtils.lock(lock.readLock());
+		if ( activeEntry != null && bl.getAllocatedBytes() != activeEntry.bytes )
+		{
+			PartitionMemoryManager.get().resize(activeEntry, bl.getAllocatedBytes());
+		}
+	}
+	
+	/*
+	 * wait until all full splits have been written to disk.
+	 */
+	public void waitForSpills() throws BaseException
+	{
+		Throwable t = awaitSpill(lastSpill);
+		if ( t != null )
+		{
+			throw new BaseException(t);
+		}
+		if ( spillError != null )
+		{
+			throw new BaseException(spillError);
+		}
+	}
+	
+	/*
+	 * wait for the given spill; return the exception it failed with, or null.
+	 */
+	private static Throwable awaitSpill(Future<?> f) throws BaseException
+	{
+		if ( f == null )
+		{
+			return null;
+		}
 		try
 		{
-			int numSplits = partitions.size();
-			if ( numSplits == 0) return partitions.get(0);
-			int start = 0;
-			int end = numSplits - 1;
-			
-			while(start < end)
+			f.get();
+			return null;
+		}
+		catch(InterruptedException ie)
+		{
+			Thread.currentThread().interrupt();
+			throw new BaseException("Operation interrupted", ie);
+		}
+		catch(ExecutionException ee)
+		{
+			return ee.getCause();
+		}
+	}
+	
+	/*
+	 * writes a full split to disk, then replaces it with its PersistentByteBasedList; which keeps the
+	 * split as its in memory copy, unless the split is being evicted. If the write fails the split
+	 * stays in memory.
+	 */
+	class SpillTask implements Runnable
+	{
+		final int idx;
+		final ByteBasedList bl;
+		final File f;
+		final CompressionCodec codec;
+		final PartitionMemoryManager.Entry entry;
+		final boolean keepInMemory;
+		
+		SpillTask(int idx, ByteBasedList bl, File f, CompressionCodec codec, PartitionMemoryManager.Entry entry,
+				boolean keepInMemory)
+		{
+			this.idx = idx;
+			this.bl = bl;
+			this.f = f;
+			this.codec = codec;
+			this.entry = entry;
+			this.keepInMemory = keepInMemory;
+		}
+		
+		public void run()
+		{
+			try
 			{
-				int mid = (start + end + 1) >>> 1;
-				int val = partitionOffsets.get(mid);
-				if ( val == i )
+				PersistentByteBasedList.store(bl, f, codec);
+				LockUtils.lock(lock.writeLock());
+				try
 				{
-					return partitions.get(mid);
+					PartitionMemoryManager.get().release(entry);
+					partitions.set(idx, new PersistentByteBasedList(f, keepInMemory ? bl : null, codec));
 				}
-				else if ( val < i )
+				finally
 				{
-					if ( end == mid)
-					{
-						return partitions.get(end);
-					}
-					start = mid;
-				}
-				else
-				{
-					end = mid - 1;
+					lock.writeLock().unlock();
 				}
 			}
-			return partitions.get(start);
+			catch(IOException ie)
+			{
+				spillError = ie;
+			}
+			catch(BaseException be)
+			{
+				spillError = new IOException(be);
+			}
+		}
+	}
+	
+	private ByteBasedList getPartition(int i) throws BaseException
+	{
+		if ( sealed )
+		{
+			return findPartition(i);
+		}
+		LockUtils.lock(lock.readLock());
+		try
+		{
+			return findPartition(i);
 		}
 		finally
 		{
@@ -101,18 +301,201 @@ public class PartitionedByteBasedList extends ByteBasedList
 		}
 	}
 	
+	private ByteBasedList findPartition(int i)
+	{
+		int p = findPartitionIndex(i);
+		if ( p == partitions.size() - 1 )
+		{
+			PartitionMemoryManager.get().touch(activeEntry);
+		}
+		return partitions.get(p);
+	}
+	
+	private int findPartitionIndex(int i)
+	{
+		int numSplits = partitions.size();
+		if ( numSplits == 0) return 0;
+		int start = 0;
+		int end = numSplits - 1;
+		
+		while(start < end)
+		{
+			int mid = (start + end + 1) >>> 1;
+			int val = partitionOffsets.get(mid);
+			if ( val == i )
+			{
+				return mid;
+			}
+			else if ( val < i )
+			{
+				if ( end == mid)
+				{
+					return end;
+				}
+				start = mid;
+			}
+			else
+			{
+				end = mid - 1;
+			}
+		}
+		return start;
+	}
+	
 	public void get(int i, Writable wObj) throws BaseException
 	{
 		ByteBasedList bl = getPartition(i);
 		bl.get(i, wObj);
 	}
 	
+	protected void read(int i, Writable wObj) throws BaseException
+	{
+		findPartition(i).read(i, wObj);
+	}
+	
+	/*
+	 * also seals the partition being appended to.
+	 */
+	public void seal() throws BaseException
+	{
+		LockUtils.lock(lock.writeLock());
+		try
+		{
+			partitions.get(partitions.size() -1).seal();
+			sealed = true;
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+		PartitionMemoryManager.get().setEvictable(activeEntry);
+	}
+	
+	/*
+	 * remove all rows so the list can be reused for the next partition: the first split keeps its
+	 * slabs, the in memory copies of spilled splits return theirs to the SlabPool, and the spill
+	 * files are deleted. A failed spill is reported once the list is cleared.
+	 */
+	public void clear() throws BaseException
+	{
+		/*
+		 * an eviction can queue another spill until the lock is held.
+		 */
+		Throwable failure = null;
+		while( true )
+		{
+			Future<?> f = lastSpill;
+			Throwable t = awaitSpill(f);
+			if ( t != null )
+			{
+				failure = t;
+			}
+			LockUtils.lock(lock.writeLock());
+			if ( lastSpill == f )
+			{
+				break;
+			}
+			lock.writeLock().unlock();
+		}
+		if ( failure == null )
+		{
+			failure = spillError;
+		}
+		
+		try
+		{
+			PartitionMemoryManager mm = PartitionMemoryManager.get();
+			mm.release(activeEntry);
+			activeEntry = null;
+			ByteBasedList first = partitions.get(0);
+			for(ByteBasedList bl : partitions)
+			{
+				if ( bl instanceof PersistentByteBasedList )
+				{
+					((PersistentByteBasedList) bl).release();
+				}
+			}
+			partitions.clear();
+			partitionOffsets.clear();
+			lastSpill = null;
+			spillError = null;
+			if ( dir != null )
+			{
+				removeSpillDir(dir);
+				dir = null;
+			}
+			currentSize = 0;
+			sealed = false;
+			lastModified = System.nanoTime();
+			
+			if ( first instanceof PersistentByteBasedList )
+			{
+				first = new ByteBasedList(0, batchSize);
+			}
+			else
+			{
+				first.clear();
+			}
+			activeEntry = mm.register(this, first.getAllocatedBytes(), false);
+			partitions.add(first);
+			partitionOffsets.add(0);
+		}
+		catch(IOException ie)
+		{
+			throw new BaseException(ie);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+		if ( failure != null )
+		{
+			throw new BaseException(failure);
+		}
+	}
+	
+	/*
+	 * called by the PartitionMemoryManager once the list is sealed: queue the last split to be written
+	 * to disk by the spill thread, it is served from memory until then. Doesn't wait for the lock, the
+	 * manager moves on to another split if it is held.
+	 */
+	public boolean evict(PartitionMemoryManager.Entry e) throws BaseException
+	{
+		if ( !lock.writeLock().tryLock() )
+		{
+			return false;
+		}
+		try
+		{
+			if ( e != activeEntry )
+			{
+				return false;
+			}
+			int idx = partitions.size() - 1;
+			File f = File.createTempFile("wdw", null, getDir());
+			lastSpill = getSpillExecutor().submit(new SpillTask(idx, partitions.get(idx), f, spillCodec, null, false));
+			activeEntry = null;
+			return true;
+		}
+		catch(IOException ie)
+		{
+			throw new BaseException(ie);
+		}
+		finally
+		{
+			lock.writeLock().unlock();
+		}
+	}
+	
 	public void append(Writable obj) throws BaseException
 	{
 		LockUtils.lock(lock.writeLock());
 		try
 		{
-			partitions.get(partitions.size() -1).append(obj);
+			checkNotSealed();
+			ByteBasedList bl = partitions.get(partitions.size() -1);
+			bl.append(obj);
+			trackActiveSplit(bl);
 			currentSize += 1;
 			lastModified = System.nanoTime();
 		}
@@ -139,7 +522,10 @@ public class PartitionedByteBasedList extends ByteBasedList
 		LockUtils.lock(lock.writeLock());
 		try
 		{
-			partitions.get(partitions.size() -1).append(obj, OI, serializer);
+			checkNotSealed();
+			ByteBasedList bl = partitions.get(partitions.size() -1);
+			bl.append(obj, OI, serializer);
+			trackActiveSplit(bl);
 			currentSize += 1;
 			lastModified = System.nanoTime();
 		}
@@ -159,6 +545,44 @@ public class PartitionedByteBasedList extends ByteBasedList
 		return new WIterator(wObj); 
 	}
 	
+	public Cursor cursor(int start, int end, Writable wObj) throws BaseException
+	{
+		return new PCursor(start, end, wObj);
+	}
+	
+	/*
+	 * on a sealed list, reads from the current split until the row index crosses into the next one,
+	 * instead of searching for the split of every row.
+	 */
+	class PCursor extends Cursor
+	{
+		ByteBasedList split;
+		int splitStart;
+		int splitEnd;
+		
+		PCursor(int start, int end, Writable wObj)
+		{
+			super(start, end, wObj);
+		}
+		
+		public Writable next() throws BaseException
+		{
+			if ( !sealed )
+			{
+				return super.next();
+			}
+			if ( split == null || i < splitStart || i >= splitEnd )
+			{
+				int p = findPartitionIndex(i);
+				split = partitions.get(p);
+				splitStart = partitionOffsets.get(p);
+				splitEnd = p + 1 < partitions.size() ? partitionOffsets.get(p + 1) : currentSize;
+			}
+			split.read(i++, wObj);
+			return wObj;
+		}
+	}
+	
 	class WIterator implements Iterator<Writable>
 	{
 		Writable wObj;
@@ -212,21 +636,20 @@ public class PartitionedByteBasedList extends ByteBasedList
 	
 	static class ShutdownHook extends Thread
 	{
-		File dir;
-		
-		public ShutdownHook(File dir)
-		{
-			this.dir = dir;
-		}
-		
 		public void run()
 		{
-			try
-			{
-				Utils.deleteRecursively(dir);
-			}
-			catch(IOException ie)
+			synchronized(spillDirs)
 			{
+				for(File dir : spillDirs)
+				{
+					try
+					{
+						Utils.deleteRecursively(dir);
+					}
+					catch(IOException ie)
+					{
+					}
+				}
 			}
 		}
 		
@@ -4,9 +4,9 @@ import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
-import java.lang.ref.SoftReference;
 import java.nio.ByteBuffer;
 import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
 import java.nio.channels.FileChannel;
 import java.util.Iterator;
 
@@ -14,11 +14,16 @@ import org.apache.hadoop.hive.serde2.Deserializer;
 import org.apache.hadoop.hive.serde2.Serializer;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CompressionCodec;
 
 import com.sap.hadoop.ds.BaseException;
 import com.sap.hadoop.ds.LockUtils;
+import com.sap.hadoop.ds.streams.ByteBufferInputStream;
+import com.sap.hadoop.ds.streams.Streams;
+import com.sap.hadoop.ds.streams.Streams.DataBBIStream;
+import static com.sap.hadoop.Utils.*;
 
-class PersistentByteBasedList extends ByteBasedList
+class PersistentByteBasedList extends ByteBasedList implements PartitionMemoryManager.Owner
 {
 	private static int headerSize() { return (Integer.SIZE + Integer.SIZE + Integer.SIZE + Long.SIZE) / Byte.SIZE;}
 	protected static void store(ByteBasedList l, File f) throws IOException
@@ -42,9 +47,12 @@ class PersistentByteBasedList extends ByteBasedList
 		IntBuffer iB = offsetB.asIntBuffer();
 		iB.put(l.offsetsArray, 0, l.currentSize * 2);
 		
-		ByteBuffer bytesB = ByteBuffer.wrap(l.bytes, 0, l.bytesUsed);
+		ByteBuffer[] bytesB = l.byteBuffers(0, l.bytesUsed);
 		
-		ByteBuffer[] bufs = new ByteBuffer[] { buf, offsetB, bytesB};
+		ByteBuffer[] bufs = new ByteBuffer[2 + bytesB.length];
+		bufs[0] = buf;
+		bufs[1] = offsetB;
+		System.arraycopy(bytesB, 0, bufs, 2, bytesB.length);
 		FileOutputStream fos = new FileOutputStream(f);
 		try
 		{
@@ -57,81 +65,199 @@ class PersistentByteBasedList extends ByteBasedList
 		}
 	}
 	
-	protected static void load(ByteBasedList l, File f) throws IOException
+	/*
+	 * serve the list from the file without reading it onto the heap: the offsets and bytes are views
+	 * of a read-only mapping of the file, so a get only touches the pages that hold its Writable.
+	 */
+	protected static ByteBasedList map(File f) throws IOException
 	{
 		int hdr = headerSize();
 		FileInputStream fis = new FileInputStream(f);
 		try
 		{
 			FileChannel fc = fis.getChannel();
-			ByteBuffer buf0 = ByteBuffer.allocate(hdr);
-			while (buf0.hasRemaining())
-				fc.read(buf0);
-			buf0.flip();
-			l.startOffset = buf0.getInt();
-			l.bytesUsed = buf0.getInt();
-			l.currentSize = buf0.getInt();
-			l.lastModified = buf0.getLong();
-			
+			MappedByteBuffer buf = fc.map(FileChannel.MapMode.READ_ONLY, 0, fc.size());
+			return new MappedByteBasedList(f, buf, hdr);
+		}
+		finally
+		{
+			fis.close();
+		}
+	}
+	
+	static class MappedByteBasedList extends ByteBasedList
+	{
+		IntBuffer offsets;
+		ByteBuffer bytesB;
+		
+		MappedByteBasedList(File f, MappedByteBuffer buf, int hdr)
+		{
+			super(f);
+			sealed = true;
 			/*
-			 * note: could save this space by using Memory-Mapped I/O and directly writing to the MM buffer. 
+			 * header is startOffset:bytesUsed:currentSize:lastModified, as written by store
 			 */
-			ByteBuffer offsetB = ByteBuffer.allocate((Integer.SIZE/Byte.SIZE) * 2 * l.currentSize);
-			ByteBuffer bytesB = ByteBuffer.allocate(l.bytesUsed);
-			ByteBuffer[] bufs = new ByteBuffer[] { offsetB, bytesB };
-			while (fc.read(bufs) > 0);
+			startOffset = buf.getInt(0);
+			bytesUsed = buf.getInt(4);
+			currentSize = buf.getInt(8);
+			lastModified = buf.getLong(12);
+			
+			int offsetsLen = (Integer.SIZE/Byte.SIZE) * 2 * currentSize;
+			ByteBuffer b = buf.duplicate();
+			b.position(hdr);
+			b.limit(hdr + offsetsLen);
+			offsets = b.slice().asIntBuffer();
 			
-			l.offsetsArray = new int[l.currentSize * 2];
-			offsetB.flip();
-			IntBuffer iB = offsetB.asIntBuffer();
-			iB.get(l.offsetsArray);
-			l.bytes = bytesB.array();
+			b = buf.duplicate();
+			b.position(hdr + offsetsLen);
+			b.limit(hdr + offsetsLen + bytesUsed);
+			bytesB = b.slice();
 		}
-		finally
+		
+		protected void read(int i, Writable wObj) throws BaseException
 		{
-			fis.close();
+			int j = i - startOffset;
+			if ( j < 0 || j >= currentSize )
+			{
+				throw new BaseException(sprintf("index invalid %d", i));
+			}
+			j = j << 1;
+			try
+			{
+				DataBBIStream dis = Streams.bbdis.get();
+				ByteBufferInputStream bis = dis.getUnderlyingStream();
+				bis.intialize(bytesB, offsets.get(j), offsets.get(j+1));
+				wObj.readFields(dis);
+			}
+			catch(IOException ie)
+			{
+				throw new BaseException(ie);
+			}
+		}
+		
+		public void append(Writable obj) throws BaseException
+		{
+			throw new UnsupportedOperationException("Cannot append to a Persisted List");		
 		}
 	}
 	
-	File file;
-	SoftReference<ByteBasedList> memList;
+	final File file;
 	
-	protected PersistentByteBasedList(File file, ByteBasedList l)
+	/*
+	 * the list that was stored; held until the PartitionMemoryManager evicts it.
+	 */
+	volatile ByteBasedList memList;
+	PartitionMemoryManager.Entry memEntry;
+	
+	/*
+	 * the list read from the file: a mapping of it, or the block reader if it is compressed.
+	 */
+	volatile ByteBasedList fileList;
+	
+	/*
+	 * the codec the file was stored with; null if it isn't compressed.
+	 */
+	final CompressionCodec codec;
+	
+	protected PersistentByteBasedList(File file, ByteBasedList l, CompressionCodec codec) throws BaseException
 	{
 		super(file);
+		sealed = true;
 		this.file = file;
-		memList = new SoftReference<ByteBasedList>(l);
+		this.codec = codec;
+		memList = l;
+		if ( l != null )
+		{
+			memEntry = PartitionMemoryManager.get().register(this, l.getAllocatedBytes(), true);
+		}
 	}
 	
-	protected PersistentByteBasedList(File file)
+	protected PersistentByteBasedList(File file, ByteBasedList l) throws BaseException
 	{
-		this(file, null);
+		this(file, l, null);
 	}
 	
+	protected PersistentByteBasedList(File file) throws BaseException
+	{
+		this(file, null, null);
+	}
+	
+	/*
+	 * store the list, block compressed if a codec is given.
+	 */
+	protected static void store(ByteBasedList l, File f, CompressionCodec codec) throws IOException
+	{
+		if ( codec == null )
+		{
+			store(l, f);
+		}
+		else
+		{
+			CompressedByteBasedList.store(l, f, codec);
+		}
+	}
+	
+	public boolean evict(PartitionMemoryManager.Entry e)
+	{
+		memList = null;
+		return true;
+	}
+	
+	/*
+	 * called when the owning list is cleared: stop accounting for the in memory list and return its
+	 * slabs to the SlabPool, and close the file. The file is not deleted.
+	 */
+	void release() throws BaseException
+	{
+		PartitionMemoryManager.get().release(memEntry);
+		memEntry = null;
+		ByteBasedList list = memList;
+		memList = null;
+		ByteBasedList fList = fileList;
+		fileList = null;
+		if ( list != null )
+		{
+			list.clear();
+		}
+		if ( fList != null )
+		{
+			fList.close();
+		}
+	}
+	
+	/*
+	 * the in memory list if it hasn't been evicted, else the list read from the file. Only opening the
+	 * file takes the lock.
+	 */
 	private ByteBasedList getList() throws BaseException
 	{ 
-		LockUtils.lock(lock.readLock());
+		ByteBasedList list = memList;
+		if (list != null)
+		{
+			PartitionMemoryManager.get().touch(memEntry);
+			return list;
+		}
+		list = fileList;
+		if (list != null)
+		{
+			return list;
+		}
+		LockUtils.lock(lock.writeLock());
 		try
 		{
-			ByteBasedList list = memList.get();
-			if (list == null)
+			if (fileList == null)
 			{
-				try
-				{
-					list = new ByteBasedList(file);
-					load(list, file);
-					memList = new SoftReference<ByteBasedList>(list);
-				}
-				catch(Exception ie)
-				{
-					throw new RuntimeException(ie);
-				}
+				fileList = codec == null ? map(file) : CompressedByteBasedList.open(file, codec);
 			}
-			return list;
+			return fileList;
+		}
+		catch(IOException ie)
+		{
+			throw new BaseException(ie);
 		}
 		finally
 		{
-			lock.readLock().unlock();
+			lock.writeLock().unlock();
 		}
 	}
 	
@@ -145,6 +271,11 @@ class PersistentByteBasedList extends ByteBasedList
 		getList().get(i, wObj);
 	}
 	
+	protected void read(int i, Writable wObj) throws BaseException
+	{
+		getList().read(i, wObj);
+	}
+	
 	public void append(Writable obj) throws BaseException
 	{
 		throw new UnsupportedOperationException("Cannot append to a Persisted List");		
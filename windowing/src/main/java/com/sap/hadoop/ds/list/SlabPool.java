@@ -0,0 +1,127 @@
+package com.sap.hadoop.ds.list;
+
+import java.util.ArrayList;
+
+import com.sap.hadoop.ds.BaseException;
+
+/*
+ * A per JVM pool of the byte arrays ByteBasedLists hold their bytes in. Slabs are sized in powers
+ * of 2 from MIN_SLAB_SIZE to MAX_SLAB_SIZE; slabs of other sizes are not pooled. The pool holds at
+ * most MAX_POOLED_BYTES.
+ * <p>
+ * The pool is shared, so slabs released on one thread, e.g. by the spill thread, are reused by the
+ * others. The pooled bytes are accounted for by the {@link PartitionMemoryManager} as an evictable
+ * entry; evicting it empties the pool.
+ */
+public class SlabPool implements PartitionMemoryManager.Owner
+{
+	static final int MIN_SLAB_SHIFT = 12;
+	static final int MAX_SLAB_SHIFT = 20;
+	public static final int MIN_SLAB_SIZE = 1 << MIN_SLAB_SHIFT;     // 4KB
+	public static final int MAX_SLAB_SIZE = 1 << MAX_SLAB_SHIFT;     // 1MB
+	public static final long MAX_POOLED_BYTES = ByteBasedList.LARGE_SIZE;
+
+	private static final SlabPool INSTANCE = new SlabPool();
+
+	public static SlabPool get()
+	{
+		return INSTANCE;
+	}
+
+	/*
+	 * free slabs of size 1 << (MIN_SLAB_SHIFT + i) at position i.
+	 */
+	ArrayList<ArrayList<byte[]>> free;
+	long pooledBytes;
+	
+	/*
+	 * the accounting of the pooled bytes; null while the pool is empty.
+	 */
+	PartitionMemoryManager.Entry entry;
+
+	SlabPool()
+	{
+		free = new ArrayList<ArrayList<byte[]>>();
+		for(int i=MIN_SLAB_SHIFT; i <= MAX_SLAB_SHIFT; i++)
+		{
+			free.add(new ArrayList<byte[]>());
+		}
+	}
+
+	/*
+	 * the size class of a slab; -1 if slabs of this size are not pooled.
+	 */
+	private static int sizeClass(int size)
+	{
+		if ( size < MIN_SLAB_SIZE || size > MAX_SLAB_SIZE || Integer.bitCount(size) != 1 )
+		{
+			return -1;
+		}
+		return Integer.numberOfTrailingZeros(size) - MIN_SLAB_SHIFT;
+	}
+
+	/*
+	 * a slab of the given size; its contents are undefined.
+	 */
+	public synchronized byte[] allocate(int size)
+	{
+		int c = sizeClass(size);
+		if ( c >= 0 )
+		{
+			ArrayList<byte[]> l = free.get(c);
+			if ( l.size() > 0 )
+			{
+				pooledBytes -= size;
+				PartitionMemoryManager.get().shrink(entry, pooledBytes);
+				return l.remove(l.size() - 1);
+			}
+		}
+		return new byte[size];
+	}
+
+	/*
+	 * pool the slab, if there is room for it; may evict splits to keep the pooled bytes within the budget.
+	 */
+	public synchronized void release(byte[] slab) throws BaseException
+	{
+		int c = sizeClass(slab.length);
+		if ( c >= 0 && pooledBytes + slab.length <= MAX_POOLED_BYTES )
+		{
+			free.get(c).add(slab);
+			pooledBytes += slab.length;
+			PartitionMemoryManager mm = PartitionMemoryManager.get();
+			if ( entry == null )
+			{
+				entry = mm.register(this, pooledBytes, true);
+			}
+			else
+			{
+				mm.touch(entry);
+				mm.resize(entry, pooledBytes);
+			}
+		}
+	}
+
+	/*
+	 * called by the PartitionMemoryManager: drop the pooled slabs.
+	 */
+	public synchronized boolean evict(PartitionMemoryManager.Entry e)
+	{
+		if ( e != entry )
+		{
+			return false;
+		}
+		for(ArrayList<byte[]> l : free)
+		{
+			l.clear();
+		}
+		pooledBytes = 0;
+		entry = null;
+		return true;
+	}
+
+	public synchronized long getPooledBytes()
+	{
+		return pooledBytes;
+	}
+}
@@ -23,6 +23,22 @@ public class Streams
 		}
 	};
 	
+	public static ThreadLocal<ByteBufferInputStream> bbis = new ThreadLocal<ByteBufferInputStream>()
+	{
+		protected ByteBufferInputStream initialValue()
+		{
+			return new ByteBufferInputStream();
+		}
+	};
+	
+	public static ThreadLocal<DataBBIStream> bbdis = new ThreadLocal<DataBBIStream>()
+	{
+		protected DataBBIStream initialValue()
+		{
+			return new DataBBIStream(bbis.get());
+		}
+	};
+	
 	public static ThreadLocal<ByteArrayOS> bos = new ThreadLocal<ByteArrayOS>()
 	{
 		protected ByteArrayOS initialValue()
@@ -50,6 +66,16 @@ public class Streams
 		public ByteArrayIS getUnderlyingStream() { return (ByteArrayIS) in; }
 	}
 	
+	public static class DataBBIStream extends DataInputStream
+	{
+		public DataBBIStream(ByteBufferInputStream in)
+		{
+			super(in);
+		}
+
+		public ByteBufferInputStream getUnderlyingStream() { return (ByteBufferInputStream) in; }
+	}
+	
 	public static class DataOStream extends DataOutputStream
 	{
 		public DataOStream(ByteArrayOS out)
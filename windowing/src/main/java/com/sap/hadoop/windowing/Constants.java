@@ -21,9 +21,51 @@ public class Constants
 	
 	public static final String WINDOW_PARTITION_MEM_SIZE = "com.sap.hadoop.windowing.partition.memory.size";
 	
+	/*
+	 * the bytes all Partitions in a task may hold in memory; beyond this splits of Partitions are
+	 * spilled or evicted in least recently used order. Defaults to half the max heap.
+	 */
+	public static final String WINDOW_PARTITION_MEMORY_BUDGET = "com.sap.hadoop.windowing.partition.memory.budget";
+	
+	/*
+	 * the class of a hadoop CompressionCodec to compress the spill files of Partitions with; by default
+	 * they are not compressed.
+	 */
+	public static final String WINDOW_PARTITION_SPILL_CODEC = "com.sap.hadoop.windowing.partition.spill.codec";
+	
+	/*
+	 * the bytes of inflated blocks of compressed spill files that are cached; defaults to 1MB.
+	 */
+	public static final String WINDOW_PARTITION_SPILL_BLOCKCACHE_SIZE = "com.sap.hadoop.windowing.partition.spill.blockcache.size";
+	
 	public static final String WINDOW_PARTITION_CLASS = "com.sap.hadoop.windowing.partition.class";
 	public static final String DEFAULT_WINDOW_PARTITION_CLASS = "com.sap.hadoop.ds.list.PartitionedByteBasedList";
 	
+	/*
+	 * if true the output Partitions of table functions hold their rows column by column, on the heap;
+	 * see ColumnarPartition. Defaults to false.
+	 */
+	public static final String WINDOW_PARTITION_COLUMNAR = "com.sap.hadoop.windowing.partition.columnar";
+	
+	/*
+	 * if true, reduce-side Partitions are not materialized when all window functions have ROWS frames
+	 * bounded on both sides and can be evaluated by adding and removing rows; see StreamingWindowEvaluator.
+	 * Defaults to false.
+	 */
+	public static final String WINDOW_STREAMING = "com.sap.hadoop.windowing.streaming";
+	
+	/*
+	 * if true, and all window functions of a query are aggregations over the whole Partition, they are
+	 * partially aggregated on the map-side; see MapSideAggregation. Defaults to false.
+	 */
+	public static final String WINDOW_MAP_AGGREGATION = "com.sap.hadoop.windowing.map.aggregation";
+	
+	/*
+	 * the most Partitions a map task aggregates at a time; beyond this it shuffles its aggregations and starts over.
+	 */
+	public static final String WINDOW_MAP_AGGREGATION_MAX_PARTITIONS = "com.sap.hadoop.windowing.map.aggregation.max.partitions";
+	public static final int DEFAULT_WINDOW_MAP_AGGREGATION_MAX_PARTITIONS = 100000;
+	
 	/*
 	 * the difference between script & expression is that script is only parsed during translation,
 	 * and the parsed script is provided to the function, whereas expression is evaluated and the
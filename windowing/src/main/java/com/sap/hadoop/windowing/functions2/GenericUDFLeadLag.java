@@ -11,7 +11,10 @@ import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.Object
 import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
 
+import com.sap.hadoop.windowing.WindowingException;
 import com.sap.hadoop.windowing.query2.SerializationUtils;
+import com.sap.hadoop.windowing.runtime2.ArgColumns;
+import com.sap.hadoop.windowing.runtime2.Partition;
 import com.sap.hadoop.windowing.runtime2.PartitionIterator;
 
 public abstract class GenericUDFLeadLag extends GenericUDF
@@ -22,9 +25,20 @@ public abstract class GenericUDFLeadLag extends GenericUDF
 	
 	private PrimitiveObjectInspector amtOI;
 	
+	/*
+	 * the value of the expression for each row of the Partition the iterator is over; evaluated on
+	 * the first call for a Partition, so that each call just reads the value at the target row.
+	 */
+	transient ArgColumns exprColumn;
+	transient Partition exprPartition;
+	transient int exprGeneration;
+	
 	static{
 		SerializationUtils.makeTransient(GenericUDFLeadLag.class, "exprEvaluator");
 		SerializationUtils.makeTransient(GenericUDFLeadLag.class, "pItr");
+		SerializationUtils.makeTransient(GenericUDFLeadLag.class, "exprColumn");
+		SerializationUtils.makeTransient(GenericUDFLeadLag.class, "exprPartition");
+		SerializationUtils.makeTransient(GenericUDFLeadLag.class, "exprGeneration");
 	}
 	
 	@Override
@@ -46,21 +60,45 @@ public abstract class GenericUDFLeadLag extends GenericUDF
 		}
 		
 		int idx = pItr.getIndex() - 1;
+		Partition p = pItr.getPartition();
+		if ( exprColumn == null || exprPartition != p || exprGeneration != p.getGeneration() )
+		{
+			evaluateColumn(p, idx);
+		}
+		
+		long i = getTargetIndex(idx, intAmt);
+		i = i >= pItr.getEnd() ? pItr.getEnd() - 1 : i;
+		i = i < pItr.getStart() ? pItr.getStart() : i;
+		return exprColumn.get(0, (int) i);
+	}
+	
+	void evaluateColumn(Partition p, int idx) throws HiveException
+	{
+		if ( exprColumn == null )
+		{
+			exprColumn = new ArgColumns();
+			exprColumn.add(null, exprEvaluator, firstArgOI);
+		}
 		try
 		{
-			Object row = getRow(intAmt);
-			Object ret = exprEvaluator.evaluate(row);
-			ret = ObjectInspectorUtils.copyToStandardObject(ret, firstArgOI, ObjectInspectorCopyOption.WRITABLE);
-			return ret;
+			exprColumn.evaluate(p.iterator());
+			exprPartition = p;
+			exprGeneration = p.getGeneration();
+		}
+		catch(WindowingException we)
+		{
+			throw new HiveException(we);
 		}
 		finally
 		{
 			Object currRow = pItr.resetToIndex(idx);
 			// reevaluate expression on current Row, to trigger the Lazy object
 			// caches to be reset to the current row.
-			exprEvaluator.evaluate(currRow);
+			if ( currRow != null )
+			{
+				exprEvaluator.evaluate(currRow);
+			}
 		}
-		
 	}
 
 	@Override
@@ -122,7 +160,10 @@ public abstract class GenericUDFLeadLag extends GenericUDF
 
 	protected abstract String _getFnName();
 	
-	protected abstract Object getRow(int amt);
+	/*
+	 * the index of the row amt rows away from row idx.
+	 */
+	protected abstract long getTargetIndex(int idx, int amt);
 	
 	public static class GenericUDFLead extends GenericUDFLeadLag
 	{
@@ -134,9 +175,9 @@ public abstract class GenericUDFLeadLag extends GenericUDF
 		}
 
 		@Override
-		protected Object getRow(int amt)
+		protected long getTargetIndex(int idx, int amt)
 		{
-			return pItr.lead(amt - 1);
+			return (long) idx + amt;
 		}
 		
 	}
@@ -150,9 +191,9 @@ public abstract class GenericUDFLeadLag extends GenericUDF
 		}
 
 		@Override
-		protected Object getRow(int amt)
+		protected long getTargetIndex(int idx, int amt)
 		{
-			return pItr.lag(amt + 1);
+			return (long) idx - amt;
 		}
 		
 	}
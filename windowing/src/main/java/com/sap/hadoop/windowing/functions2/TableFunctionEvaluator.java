@@ -9,6 +9,8 @@ import com.sap.hadoop.windowing.WindowingException;
 import com.sap.hadoop.windowing.query2.SerializationUtils;
 import com.sap.hadoop.windowing.query2.definition.QueryDef;
 import com.sap.hadoop.windowing.query2.definition.TableFuncDef;
+import com.sap.hadoop.windowing.runtime2.ColumnarPartition;
+import com.sap.hadoop.windowing.runtime2.ColumnarStructObjectInspector;
 import com.sap.hadoop.windowing.runtime2.Partition;
 import com.sap.hadoop.windowing.runtime2.PartitionIterator;
 import com.sap.hadoop.windowing.runtime2.RuntimeUtils;
@@ -42,6 +44,11 @@ public abstract class TableFunctionEvaluator
 	String partitionClass;
 	int partitionMemSize;
 	boolean transformsRawInput;
+	
+	/*
+	 * the output Partition of execute; reset and refilled for each input Partition.
+	 */
+	transient Partition outputPartition;
 
 	static{
 		SerializationUtils.makeTransient(TableFunctionEvaluator.class, "OI");
@@ -120,23 +127,59 @@ public abstract class TableFunctionEvaluator
 	public Partition execute(Partition iPart)
 			throws WindowingException
 	{
+		iPart.seal();
 		PartitionIterator<Object> pItr = iPart.iterator();
 		RuntimeUtils.connectLeadLagFunctionsToPartition(qDef, pItr);
-		Partition outP = new Partition(getPartitionClass(),
-				getPartitionMemSize(), tDef.getSerde(), OI);
+		Partition outP = outputPartition;
+		if ( outP == null )
+		{
+			if ( tDef.getOI() instanceof ColumnarStructObjectInspector )
+			{
+				outP = new ColumnarPartition(tDef.getSerde(), OI, (ColumnarStructObjectInspector) tDef.getOI());
+			}
+			else
+			{
+				outP = new Partition(getPartitionClass(),
+						getPartitionMemSize(), tDef.getSerde(), OI);
+			}
+			outputPartition = outP;
+		}
+		else
+		{
+			outP.reset();
+		}
 		execute(pItr, outP);
+		outP.seal();
 		return outP;
 	}
 
 	protected abstract void execute(PartitionIterator<Object> pItr, Partition oPart) throws WindowingException;
 
+	/*
+	 * release the output Partition kept across calls to execute.
+	 */
+	public void close() throws WindowingException
+	{
+		if ( outputPartition != null )
+		{
+			outputPartition.close();
+			outputPartition = null;
+		}
+	}
+
 	public Partition transformRawInput(Partition iPart) throws WindowingException
 	{
 		if ( !isTransformsRawInput())
 		{
 			throw new WindowingException(sprintf("Internal Error: mapExecute called on function (%s)that has no Map Phase", tDef.getName()));
 		}
-		return _transformRawInput(iPart);
+		iPart.seal();
+		Partition outP = _transformRawInput(iPart);
+		if ( outP != null )
+		{
+			outP.seal();
+		}
+		return outP;
 	}
 
 	protected Partition _transformRawInput(Partition iPart) throws WindowingException
@@ -0,0 +1,368 @@
+package com.sap.hadoop.windowing.functions2.table;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.serde2.SerDe;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.io.DataInputBuffer;
+import org.apache.hadoop.io.DataOutputBuffer;
+import org.apache.hadoop.io.Writable;
+
+import com.sap.hadoop.windowing.Constants;
+import com.sap.hadoop.windowing.WindowingException;
+import com.sap.hadoop.windowing.functions2.FunctionRegistry;
+import com.sap.hadoop.windowing.functions2.window.RemovableAggregator;
+import com.sap.hadoop.windowing.query2.definition.QueryDef;
+import com.sap.hadoop.windowing.query2.definition.QueryInputDef;
+import com.sap.hadoop.windowing.query2.definition.TableFuncDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.BoundaryDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.CurrentRowDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.RangeBoundaryDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFunctionDef;
+import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.BoundarySpec;
+import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.Direction;
+import com.sap.hadoop.windowing.runtime2.ColumnarStructObjectInspector;
+import com.sap.hadoop.windowing.runtime2.Executor.SelectListExecutor;
+
+/*
+ * Evaluates a query whose only table function is the WindowingTableFunction, and all of whose window functions
+ * have a ROWS frame bounded on both sides and a RemovableAggregator, without materializing the Partition.
+ * <p>
+ * Rows are appended as they arrive; the args of each function are evaluated once, when the row is appended.
+ * The args of the last N+M+2 rows are held in a ring buffer, where N is the largest PRECEDING and M the largest
+ * FOLLOWING amount of any boundary; and the last M+1 rows in serialized form. An output row is computed and
+ * handed to the select list as soon as the row M positions after it has arrived, by sliding each function's
+ * RemovableAggregator over the args: adding the rows that enter its frame, removing those that leave it. The
+ * last M rows of a Partition are output when the Partition is finished.
+ * <p>
+ * Only used if turned on with Constants.WINDOW_STREAMING. Not used if the query has any Lead/Lag invocations,
+ * since they can reach arbitrarily far into the Partition.
+ */
+public class StreamingWindowEvaluator
+{
+	WindowingTableFunction wTFn;
+	SelectListExecutor selExec;
+
+	SerDe inSerDe;
+	StructObjectInspector rowOI;
+	StructObjectInspector inputOI;
+	SerDe outSerDe;
+	StructObjectInspector outOI;
+
+	int preceding;
+	int following;
+
+	/*
+	 * the serialized form of row r is in rows[r % rowCapacity]
+	 */
+	ArrayList<DataOutputBuffer> rows;
+	int rowCapacity;
+	Writable wRow;
+	DataInputBuffer dIn;
+
+	/*
+	 * the args of function k at row r are in args[r % argCapacity][k]; a row's args are held until the
+	 * row has left the frame of every function.
+	 */
+	Object[][][] args;
+	int argCapacity;
+
+	/*
+	 * the rows [wStart[k], wEnd[k]) are aggregated in function k's RemovableAggregator.
+	 */
+	RemovableAggregator[] aggregators;
+	int[] wStart;
+	int[] wEnd;
+
+	int numRows;
+	int nextOutRow;
+
+	StreamingWindowEvaluator(WindowingTableFunction wTFn, TableFuncDef tDef, StructObjectInspector rowOI,
+			int preceding, int following, SelectListExecutor selExec) throws WindowingException
+	{
+		this.wTFn = wTFn;
+		this.selExec = selExec;
+		this.rowOI = rowOI;
+		this.preceding = preceding;
+		this.following = following;
+		inSerDe = tDef.getInput().getSerde();
+		outSerDe = tDef.getSerde();
+		outOI = wTFn.getOutputOI();
+		try
+		{
+			inputOI = (StructObjectInspector) inSerDe.getObjectInspector();
+			wRow = inSerDe.getSerializedClass().newInstance();
+		}
+		catch(Throwable t)
+		{
+			throw new WindowingException(t);
+		}
+
+		rowCapacity = following + 1;
+		rows = new ArrayList<DataOutputBuffer>();
+		dIn = new DataInputBuffer();
+
+		int numFns = wTFn.wFnDefs.size();
+		argCapacity = preceding + following + 2;
+		args = new Object[argCapacity][numFns][];
+		for(int r=0; r < argCapacity; r++)
+		{
+			for(int k=0; k < numFns; k++)
+			{
+				args[r][k] = new Object[WindowingTableFunction.numArgs(wTFn.wFnDefs.get(k))];
+			}
+		}
+		aggregators = new RemovableAggregator[numFns];
+		for(int k=0; k < numFns; k++)
+		{
+			aggregators[k] = wTFn.wFnDefs.get(k).getRemovableAggregator();
+			aggregators[k].reset();
+		}
+		wStart = new int[numFns];
+		wEnd = new int[numFns];
+	}
+
+	/*
+	 * return a StreamingWindowEvaluator for the given query; or null if streaming is not turned on or the
+	 * query cannot be streamed.
+	 * @param rowOI the OI of the rows that will be appended
+	 */
+	public static StreamingWindowEvaluator create(QueryDef qDef, StructObjectInspector rowOI,
+			SelectListExecutor selExec) throws WindowingException
+	{
+		if ( !qDef.getTranslationInfo().getHiveCfg().getBoolean(Constants.WINDOW_STREAMING, false) )
+		{
+			return null;
+		}
+
+		QueryInputDef iDef = qDef.getInput();
+		if ( !(iDef instanceof TableFuncDef) || ((TableFuncDef) iDef).getInput() instanceof TableFuncDef )
+		{
+			return null;
+		}
+		TableFuncDef tDef = (TableFuncDef) iDef;
+		if ( !(tDef.getFunction() instanceof WindowingTableFunction) )
+		{
+			return null;
+		}
+
+		/*
+		 * the select list is evaluated on rows read back with the output SerDe.
+		 */
+		if ( tDef.getOI() instanceof ColumnarStructObjectInspector )
+		{
+			return null;
+		}
+
+		List<ExprNodeGenericFuncDesc> llFnDescs = qDef.getTranslationInfo().getLLInfo().getLeadLagExprs();
+		if ( llFnDescs != null && llFnDescs.size() > 0 )
+		{
+			return null;
+		}
+
+		WindowingTableFunction wTFn = (WindowingTableFunction) tDef.getFunction();
+		long preceding = 0;
+		long following = 0;
+		for(WindowFunctionDef wFnDef : wTFn.wFnDefs)
+		{
+			if ( wFnDef.getWindow() == null || wFnDef.getWindow().getWindow() == null ||
+					wFnDef.getRemovableAggregator() == null ||
+					FunctionRegistry.getWindowFunctionInfo(wFnDef.getSpec().getName()).isPivotResult() )
+			{
+				return null;
+			}
+			WindowFrameDef frame = wFnDef.getWindow().getWindow();
+			for(BoundaryDef bDef : new BoundaryDef[] {frame.getStart(), frame.getEnd()})
+			{
+				int amt = boundedAmount(bDef);
+				if ( amt < 0 )
+				{
+					return null;
+				}
+				if ( bDef.getDirection() == Direction.PRECEDING )
+				{
+					preceding = Math.max(preceding, amt);
+				}
+				else if ( bDef.getDirection() == Direction.FOLLOWING )
+				{
+					following = Math.max(following, amt);
+				}
+			}
+		}
+		if ( preceding + following + 2 > Integer.MAX_VALUE )
+		{
+			return null;
+		}
+		return new StreamingWindowEvaluator(wTFn, tDef, rowOI, (int) preceding, (int) following, selExec);
+	}
+
+	/*
+	 * the rows a ROWS or CURRENT ROW boundary is away from the current row; -1 if it isn't bounded.
+	 */
+	static int boundedAmount(BoundaryDef bDef)
+	{
+		if ( bDef instanceof CurrentRowDef )
+		{
+			return 0;
+		}
+		if ( bDef instanceof RangeBoundaryDef )
+		{
+			int amt = ((RangeBoundaryDef) bDef).getAmt();
+			return amt == BoundarySpec.UNBOUNDED_AMOUNT ? -1 : amt;
+		}
+		return -1;
+	}
+
+	public void append(Object row) throws WindowingException
+	{
+		int slot = numRows % rowCapacity;
+		if ( slot == rows.size() )
+		{
+			rows.add(new DataOutputBuffer());
+		}
+		DataOutputBuffer dOut = rows.get(slot);
+		try
+		{
+			dOut.reset();
+			inSerDe.serialize(row, rowOI).write(dOut);
+
+			/*
+			 * the args are evaluated on the row as read back by the input SerDe, which is what the arg
+			 * evaluators are initialized for.
+			 */
+			Object iRow = getAt(numRows);
+			Object[][] rArgs = args[numRows % argCapacity];
+			for(int k=0; k < rArgs.length; k++)
+			{
+				WindowingTableFunction.evaluateArgs(wTFn.wFnDefs.get(k), iRow, rArgs[k]);
+			}
+		}
+		catch(WindowingException we)
+		{
+			throw we;
+		}
+		catch(Exception e)
+		{
+			throw new WindowingException(e);
+		}
+		numRows++;
+
+		while( nextOutRow + following < numRows )
+		{
+			outputRow(nextOutRow++, Integer.MAX_VALUE);
+		}
+	}
+
+	/*
+	 * output the remaining rows of the current Partition, and start a new one.
+	 */
+	public void finishPartition() throws WindowingException
+	{
+		while( nextOutRow < numRows )
+		{
+			outputRow(nextOutRow++, numRows);
+		}
+		numRows = 0;
+		nextOutRow = 0;
+		for(int k=0; k < aggregators.length; k++)
+		{
+			aggregators[k].reset();
+			wStart[k] = 0;
+			wEnd[k] = 0;
+		}
+	}
+
+	Object getAt(int r) throws WindowingException
+	{
+		DataOutputBuffer dOut = rows.get(r % rowCapacity);
+		try
+		{
+			dIn.reset(dOut.getData(), dOut.getLength());
+			wRow.readFields(dIn);
+			return inSerDe.deserialize(wRow);
+		}
+		catch(Exception e)
+		{
+			throw new WindowingException(e);
+		}
+	}
+
+	/*
+	 * same as WindowingTableFunction.getIndex; while the Partition is not complete its size is not known,
+	 * but rows are only output once all rows of their frames have arrived.
+	 */
+	static int getIndex(BoundaryDef bDef, int currRow, int size, boolean end)
+	{
+		if ( bDef instanceof CurrentRowDef )
+		{
+			return currRow + (end ? 1 : 0);
+		}
+		int amt = ((RangeBoundaryDef) bDef).getAmt();
+		amt = bDef.getDirection() == Direction.PRECEDING ? -amt : amt;
+		long idx = (long) currRow + amt;
+		idx = idx < 0 ? 0 : (idx > size ? size : idx);
+		return (int) idx + (end && idx < size ? 1 : 0);
+	}
+
+	/*
+	 * slide function k's aggregator to the frame [start, end); the frames of successive rows don't move
+	 * backwards.
+	 */
+	void slide(int k, int start, int end)
+	{
+		end = end < start ? start : end;
+		if ( start >= wEnd[k] )
+		{
+			aggregators[k].reset();
+			wStart[k] = start;
+			wEnd[k] = start;
+		}
+		while( wEnd[k] < end )
+		{
+			aggregators[k].add(args[wEnd[k]++ % argCapacity][k]);
+		}
+		while( wStart[k] < start )
+		{
+			aggregators[k].remove(args[wStart[k]++ % argCapacity][k]);
+		}
+	}
+
+	@SuppressWarnings({ "rawtypes", "unchecked" })
+	void outputRow(int r, int size) throws WindowingException
+	{
+		ArrayList<WindowFunctionDef> wFnDefs = wTFn.wFnDefs;
+		ArrayList oRow = new ArrayList();
+		try
+		{
+			Object[] vals = new Object[wFnDefs.size()];
+			for(int k=0; k < wFnDefs.size(); k++)
+			{
+				WindowFrameDef frame = wFnDefs.get(k).getWindow().getWindow();
+				int start = getIndex(frame.getStart(), r, size, false);
+				int end = getIndex(frame.getEnd(), r, size, true);
+				slide(k, start, end);
+				vals[k] = aggregators[k].evaluate();
+			}
+
+			Object iRow = getAt(r);
+			for(StructField f : inputOI.getAllStructFieldRefs())
+			{
+				oRow.add(inputOI.getStructFieldData(iRow, f));
+			}
+			for(Object v : vals)
+			{
+				oRow.add(v);
+			}
+			selExec.processRow(outSerDe.deserialize(outSerDe.serialize(oRow, outOI)));
+		}
+		catch(SerDeException se)
+		{
+			throw new WindowingException(se);
+		}
+	}
+}
@@ -1,12 +1,13 @@
 package com.sap.hadoop.windowing.functions2.table;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
 
 import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
-import org.apache.hadoop.hive.serde2.SerDeException;
 import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
@@ -21,10 +22,13 @@ import com.sap.hadoop.windowing.functions2.FunctionRegistry;
 import com.sap.hadoop.windowing.functions2.TableFunctionEvaluator;
 import com.sap.hadoop.windowing.functions2.TableFunctionResolver;
 import com.sap.hadoop.windowing.functions2.FunctionRegistry.WindowFunctionInfo;
+import com.sap.hadoop.windowing.functions2.window.RemovableAggregator;
+import com.sap.hadoop.windowing.functions2.window.SegmentTreeAggregator;
 import com.sap.hadoop.windowing.query2.definition.ArgDef;
 import com.sap.hadoop.windowing.query2.definition.QueryDef;
 import com.sap.hadoop.windowing.query2.definition.SelectDef;
 import com.sap.hadoop.windowing.query2.definition.TableFuncDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef;
 import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.CurrentRowDef;
 import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.RangeBoundaryDef;
 import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.ValueBoundaryDef;
@@ -34,6 +38,9 @@ import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.BoundarySpe
 import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.Direction;
 import com.sap.hadoop.windowing.query2.specification.WindowFunctionSpec;
 import com.sap.hadoop.windowing.query2.translate.WindowFunctionTranslation;
+import com.sap.hadoop.windowing.query2.translate.QueryTranslationInfo.LeadLagInfo;
+import com.sap.hadoop.windowing.query2.translate.TranslateUtils;
+import com.sap.hadoop.windowing.runtime2.ArgColumns;
 import com.sap.hadoop.windowing.runtime2.Partition;
 import com.sap.hadoop.windowing.runtime2.PartitionIterator;
 import com.sap.hadoop.windowing.runtime2.RuntimeUtils;
@@ -42,52 +49,52 @@ import com.sap.hadoop.windowing.runtime2.ValueBoundaryScanner;
 public class WindowingTableFunction extends TableFunctionEvaluator
 {
 	ArrayList<WindowFunctionDef> wFnDefs;
+	ArrayList<WindowFunctionGroup> wFnGroups;
+	
+	/*
+	 * whether the args of any function have Lead/Lag invocations; and the most rows the ROWS frame of
+	 * such a function spans. Only these read the input rows again, out of order.
+	 */
+	boolean hasLeadLagArgs;
+	int leadLagFrameWidth;
+	
+	/*
+	 * the args of the functions, evaluated once per Partition; and for each function the columns of its
+	 * args. Windowed functions with Lead/Lag invocations in their args have no columns.
+	 */
+	ArgColumns argColumns;
+	HashMap<WindowFunctionDef, int[]> argColumnIdxs;
 	
 	@SuppressWarnings({ "unchecked", "rawtypes" })
 	@Override
 	public void execute(PartitionIterator<Object> pItr, Partition outP) throws WindowingException
 	{
-		ArrayList<List<?>> oColumns = new ArrayList<List<?>>();
+		List<?>[] oColumns = new List<?>[wFnDefs.size()];
 		Partition iPart = pItr.getPartition();
-		StructObjectInspector inputOI;
-		try {
-			inputOI = (StructObjectInspector) iPart.getSerDe().getObjectInspector();
-		} catch (SerDeException se) {
-			throw new WindowingException(se);
-		}
+		StructObjectInspector inputOI = iPart.getRowOI();
+		
+		/*
+		 * args are otherwise evaluated once, in one pass over the rows; frames are aggregated from
+		 * the arg columns.
+		 */
+		int distance = !hasLeadLagArgs ? 0 :
+			Math.max(leadLagFrameWidth, getQueryDef().getTranslationInfo().getLLInfo().getMaxAmt());
+		iPart.setRowCacheSize(distance > 0 ? distance + 1 : 0);
 		
 		try
 		{
-			for(WindowFunctionDef wFn : wFnDefs)
+			pItr.reset();
+			argColumns.evaluate(pItr);
+			
+			for(WindowFunctionGroup wFnGroup : wFnGroups)
 			{
-				boolean processWindow = wFn.getWindow() != null;
-				pItr.reset();
-				if ( !processWindow )
+				if ( !wFnGroup.processWindow )
 				{
-					GenericUDAFEvaluator fEval = wFn.getEvaluator();
-					Object[] args = new Object[wFn.getArgs().size()];
-					AggregationBuffer aggBuffer = fEval.getNewAggregationBuffer();
-					while(pItr.hasNext())
-					{
-						Object row = pItr.next();
-						int i =0;
-						for(ArgDef arg : wFn.getArgs())
-						{
-							args[i++] = arg.getExprEvaluator().evaluate(row);
-						}
-						fEval.aggregate(aggBuffer, args);
-					}
-					Object out = fEval.evaluate(aggBuffer);
-					WindowFunctionInfo wFnInfo = FunctionRegistry.getWindowFunctionInfo(wFn.getSpec().getName());
-					if ( !wFnInfo.isPivotResult())
-					{
-						out = new SameList(iPart.size(), out);
-					}
-					oColumns.add((List<?>)out);
+					executeGroup(wFnGroup, iPart, oColumns);
 				}
 				else
 				{
-					oColumns.add(executeFnwithWindow(getQueryDef(), wFn, iPart));
+					executeGroupWithWindow(getQueryDef(), wFnGroup, iPart, oColumns);
 				}
 			}
 			
@@ -101,9 +108,9 @@ public class WindowingTableFunction extends TableFunctionEvaluator
 					oRow.add(inputOI.getStructFieldData(iRow, f));
 				}
 				
-				for(int j=0; j < oColumns.size(); j++)
+				for(int j=0; j < oColumns.length; j++)
 				{
-					oRow.add(oColumns.get(j).get(i));
+					oRow.add(oColumns[j].get(i));
 				}
 				outP.append(oRow);
 			}
@@ -115,6 +122,58 @@ public class WindowingTableFunction extends TableFunctionEvaluator
 		
 	}
 	
+	/*
+	 * The WindowFunctions in a query that have the same Window frame, or no Window. A group is
+	 * evaluated in a single pass over the Partition.
+	 */
+	static class WindowFunctionGroup
+	{
+		boolean processWindow;
+		ArrayList<WindowFunctionDef> wFnDefs = new ArrayList<WindowFunctionDef>();
+		/*
+		 * the position of each function in the select list.
+		 */
+		ArrayList<Integer> positions = new ArrayList<Integer>();
+		
+		WindowFunctionGroup(boolean processWindow)
+		{
+			this.processWindow = processWindow;
+		}
+		
+		WindowFrameDef getFrame()
+		{
+			return processWindow ? wFnDefs.get(0).getWindow().getWindow() : null;
+		}
+	}
+	
+	static ArrayList<WindowFunctionGroup> groupByWindowFrame(ArrayList<WindowFunctionDef> wFnDefs)
+	{
+		ArrayList<WindowFunctionGroup> groups = new ArrayList<WindowFunctionGroup>();
+		for(int i=0; i < wFnDefs.size(); i++)
+		{
+			WindowFunctionDef wFnDef = wFnDefs.get(i);
+			boolean processWindow = wFnDef.getWindow() != null;
+			WindowFrameDef frame = processWindow ? wFnDef.getWindow().getWindow() : null;
+			WindowFunctionGroup group = null;
+			for(WindowFunctionGroup g : groups)
+			{
+				if ( g.processWindow == processWindow && TranslateUtils.isSameFrame(g.getFrame(), frame) )
+				{
+					group = g;
+					break;
+				}
+			}
+			if ( group == null )
+			{
+				group = new WindowFunctionGroup(processWindow);
+				groups.add(group);
+			}
+			group.wFnDefs.add(wFnDef);
+			group.positions.add(i);
+		}
+		return groups;
+	}
+	
 	public static class WindowingTableFunctionResolver extends TableFunctionResolver
 	{
 
@@ -156,6 +215,18 @@ public class WindowingTableFunction extends TableFunctionEvaluator
 			select.setWindowFuncs(wFnDefs);
 			WindowingTableFunction wTFn = (WindowingTableFunction) getEvaluator();
 			wTFn.wFnDefs = wFnDefs;
+			wTFn.wFnGroups = groupByWindowFrame(wFnDefs);
+			wTFn.hasLeadLagArgs = false;
+			wTFn.leadLagFrameWidth = 0;
+			for(WindowFunctionDef wFnDef : wFnDefs)
+			{
+				if ( argsHaveLeadLag(qDef, wFnDef) )
+				{
+					wTFn.hasLeadLagArgs = true;
+					wTFn.leadLagFrameWidth = Math.max(wTFn.leadLagFrameWidth, frameWidth(wFnDef));
+				}
+			}
+			wTFn.setupArgColumns(qDef);
 			
 			StructObjectInspector OI = ObjectInspectorFactory.getStandardStructObjectInspector(aliases, fieldOIs);
 			setOutputOI(OI);
@@ -169,34 +240,376 @@ public class WindowingTableFunction extends TableFunctionEvaluator
 		
 	}
 	
-	static ArrayList<Object> executeFnwithWindow(QueryDef qDef, WindowFunctionDef wFnDef, Partition iPart) 
+	/*
+	 * a column for each distinct arg expression.
+	 */
+	void setupArgColumns(QueryDef qDef)
+	{
+		argColumns = new ArgColumns();
+		argColumnIdxs = new HashMap<WindowFunctionDef, int[]>();
+		for(WindowFunctionDef wFnDef : wFnDefs)
+		{
+			if ( wFnDef.getWindow() != null && argsHaveLeadLag(qDef, wFnDef) )
+			{
+				continue;
+			}
+			int[] idxs = new int[numArgs(wFnDef)];
+			for(int j=0; j < idxs.length; j++)
+			{
+				ArgDef arg = wFnDef.getArgs().get(j);
+				idxs[j] = argColumns.add(arg.getExprNode(), arg.getExprEvaluator(), arg.getOI());
+			}
+			argColumnIdxs.put(wFnDef, idxs);
+		}
+	}
+	
+	/*
+	 * aggregate each function over the whole Partition.
+	 */
+	void executeGroup(WindowFunctionGroup wFnGroup, Partition iPart, List<?>[] oColumns) 
 		throws HiveException, WindowingException
 	{
-		ArrayList<Object> vals = new ArrayList<Object>();
+		int numFns = wFnGroup.wFnDefs.size();
+		AggregationBuffer[] aggBuffers = new AggregationBuffer[numFns];
+		Object[][] args = new Object[numFns][];
+		int[][] idxs = new int[numFns][];
+		for(int k=0; k < numFns; k++)
+		{
+			WindowFunctionDef wFn = wFnGroup.wFnDefs.get(k);
+			aggBuffers[k] = wFn.getEvaluator().getNewAggregationBuffer();
+			args[k] = new Object[numArgs(wFn)];
+			idxs[k] = argColumnIdxs.get(wFn);
+		}
 		
-		GenericUDAFEvaluator fEval = wFnDef.getEvaluator();
-		Object[] args = new Object[wFnDef.getArgs().size()];
 		for(int i=0; i < iPart.size(); i++)
 		{
-			AggregationBuffer aggBuffer = fEval.getNewAggregationBuffer();
-			Range rng = getRange(wFnDef, i, iPart); 
-			PartitionIterator<Object> rItr = rng.iterator();
-			RuntimeUtils.connectLeadLagFunctionsToPartition(qDef, rItr);
-			while(rItr.hasNext())
+			for(int k=0; k < numFns; k++)
 			{
-				Object row = rItr.next();
-				int j = 0;
-				for(ArgDef arg : wFnDef.getArgs())
+				WindowFunctionDef wFn = wFnGroup.wFnDefs.get(k);
+				if ( wFn.getColumnAggregator() == null )
 				{
-					args[j++] = arg.getExprEvaluator().evaluate(row);
+					wFn.getEvaluator().aggregate(aggBuffers[k], columnArgs(idxs[k], i, args[k]));
 				}
-				fEval.aggregate(aggBuffer, args);
 			}
-			Object out = fEval.evaluate(aggBuffer);
-			out = ObjectInspectorUtils.copyToStandardObject(out, wFnDef.getOI(), ObjectInspectorCopyOption.WRITABLE);
-			vals.add(out);
 		}
-		return vals;
+		
+		for(int k=0; k < numFns; k++)
+		{
+			WindowFunctionDef wFn = wFnGroup.wFnDefs.get(k);
+			Object out;
+			if ( wFn.getColumnAggregator() != null )
+			{
+				out = wFn.getColumnAggregator().evaluate(argColumns, idxs[k], 
+						new int[] {0}, new int[] {iPart.size()}).get(0);
+			}
+			else
+			{
+				out = wFn.getEvaluator().evaluate(aggBuffers[k]);
+			}
+			WindowFunctionInfo wFnInfo = FunctionRegistry.getWindowFunctionInfo(wFn.getSpec().getName());
+			if ( !wFnInfo.isPivotResult())
+			{
+				out = new SameList<Object>(iPart.size(), out);
+			}
+			oColumns[wFnGroup.positions.get(k)] = (List<?>)out;
+		}
+	}
+	
+	/*
+	 * evaluate the functions of the group in one pass; the Range for each row is computed once.
+	 * - functions with a ColumnAggregator are evaluated for all Ranges at once, directly on their
+	 * arg columns.
+	 * - functions with a RemovableAggregator slide it over the Partition: rows entering the window
+	 * are added, rows leaving it are removed. If a window doesn't overlap the previous one or moves
+	 * backwards the aggregations are started over.
+	 * - functions with a SegmentTreeAggregator build a tree over the Partition, and then merge the
+	 * partial aggregations covering each Range.
+	 * - all other functions, and functions with Lead/Lag invocations in their args, aggregate
+	 * each Range.
+	 * Args are read from the arg columns; except for functions with Lead/Lag invocations in their
+	 * args, which are evaluated on the rows of each Range.
+	 */
+	void executeGroupWithWindow(QueryDef qDef, WindowFunctionGroup wFnGroup, Partition iPart, List<?>[] oColumns) 
+		throws HiveException, WindowingException
+	{
+		WindowFunctionDef frameFn = wFnGroup.wFnDefs.get(0);
+		resetValueBoundaries(frameFn, iPart);
+		
+		int sz = iPart.size();
+		ArrayList<WindowFunctionDef> columnFns = new ArrayList<WindowFunctionDef>();
+		ArrayList<WindowFunctionDef> removableFns = new ArrayList<WindowFunctionDef>();
+		ArrayList<WindowFunctionDef> segmentTreeFns = new ArrayList<WindowFunctionDef>();
+		ArrayList<WindowFunctionDef> rangeFns = new ArrayList<WindowFunctionDef>();
+		HashMap<WindowFunctionDef, Object[]> args = new HashMap<WindowFunctionDef, Object[]>();
+		HashMap<WindowFunctionDef, List<Object>> vals = new HashMap<WindowFunctionDef, List<Object>>();
+		for(WindowFunctionDef wFnDef : wFnGroup.wFnDefs)
+		{
+			boolean hasLeadLag = argsHaveLeadLag(qDef, wFnDef);
+			if ( !hasLeadLag && wFnDef.getColumnAggregator() != null )
+			{
+				columnFns.add(wFnDef);
+			}
+			else if ( !hasLeadLag && wFnDef.getRemovableAggregator() != null )
+			{
+				removableFns.add(wFnDef);
+			}
+			else if ( !hasLeadLag && wFnDef.getSegmentTreeAggregator() != null )
+			{
+				segmentTreeFns.add(wFnDef);
+			}
+			else
+			{
+				rangeFns.add(wFnDef);
+			}
+			args.put(wFnDef, new Object[numArgs(wFnDef)]);
+			vals.put(wFnDef, new ArrayList<Object>(sz));
+		}
+		
+		int[] starts = new int[sz];
+		int[] ends = new int[sz];
+		for(int i=0; i < sz; i++)
+		{
+			Range rng = getRange(frameFn, i, iPart);
+			starts[i] = rng.start;
+			ends[i] = rng.end;
+		}
+		
+		for(WindowFunctionDef wFnDef : columnFns)
+		{
+			vals.put(wFnDef, wFnDef.getColumnAggregator().evaluate(argColumns, argColumnIdxs.get(wFnDef), starts, ends));
+		}
+		
+		try
+		{
+			if ( segmentTreeFns.size() > 0 )
+			{
+				for(WindowFunctionDef wFnDef : segmentTreeFns)
+				{
+					wFnDef.getSegmentTreeAggregator().reset(sz);
+				}
+				for(int i=0; i < sz; i++)
+				{
+					for(WindowFunctionDef wFnDef : segmentTreeFns)
+					{
+						wFnDef.getSegmentTreeAggregator().addRow(i, columnArgs(argColumnIdxs.get(wFnDef), i, args.get(wFnDef)));
+					}
+				}
+				for(WindowFunctionDef wFnDef : segmentTreeFns)
+				{
+					wFnDef.getSegmentTreeAggregator().buildTree();
+				}
+			}
+			
+			for(WindowFunctionDef wFnDef : removableFns)
+			{
+				wFnDef.getRemovableAggregator().reset();
+			}
+			int wStart = 0;
+			int wEnd = 0;
+			AggregationBuffer[] aggBuffers = new AggregationBuffer[rangeFns.size()];
+			int[][] rangeIdxs = new int[rangeFns.size()][];
+			boolean hasLeadLagFns = false;
+			for(int k=0; k < rangeIdxs.length; k++)
+			{
+				rangeIdxs[k] = argColumnIdxs.get(rangeFns.get(k));
+				hasLeadLagFns = hasLeadLagFns || rangeIdxs[k] == null;
+			}
+			
+			for(int i=0; i < sz; i++)
+			{
+				Range rng = new Range(starts[i], ends[i], iPart);
+				
+				if ( removableFns.size() > 0 )
+				{
+					if ( rng.start < wStart || rng.end < wEnd || rng.start >= wEnd )
+					{
+						for(WindowFunctionDef wFnDef : removableFns)
+						{
+							wFnDef.getRemovableAggregator().reset();
+						}
+						wStart = rng.start;
+						wEnd = rng.start;
+					}
+					while(wEnd < rng.end)
+					{
+						for(WindowFunctionDef wFnDef : removableFns)
+						{
+							wFnDef.getRemovableAggregator().add(columnArgs(argColumnIdxs.get(wFnDef), wEnd, args.get(wFnDef)));
+						}
+						wEnd++;
+					}
+					while(wStart < rng.start)
+					{
+						for(WindowFunctionDef wFnDef : removableFns)
+						{
+							wFnDef.getRemovableAggregator().remove(columnArgs(argColumnIdxs.get(wFnDef), wStart, args.get(wFnDef)));
+						}
+						wStart++;
+					}
+					for(WindowFunctionDef wFnDef : removableFns)
+					{
+						vals.get(wFnDef).add(wFnDef.getRemovableAggregator().evaluate());
+					}
+				}
+				
+				for(WindowFunctionDef wFnDef : segmentTreeFns)
+				{
+					vals.get(wFnDef).add(wFnDef.getSegmentTreeAggregator().evaluate(rng.start, rng.end));
+				}
+				
+				if ( rangeFns.size() > 0 )
+				{
+					for(int k=0; k < aggBuffers.length; k++)
+					{
+						aggBuffers[k] = rangeFns.get(k).getEvaluator().getNewAggregationBuffer();
+					}
+					for(int j=rng.start; j < rng.end; j++)
+					{
+						for(int k=0; k < aggBuffers.length; k++)
+						{
+							if ( rangeIdxs[k] != null )
+							{
+								WindowFunctionDef wFnDef = rangeFns.get(k);
+								wFnDef.getEvaluator().aggregate(aggBuffers[k], columnArgs(rangeIdxs[k], j, args.get(wFnDef)));
+							}
+						}
+					}
+					if ( hasLeadLagFns )
+					{
+						PartitionIterator<Object> rItr = rng.iterator();
+						RuntimeUtils.connectLeadLagFunctionsToPartition(qDef, rItr);
+						while(rItr.hasNext())
+						{
+							Object row = rItr.next();
+							for(int k=0; k < aggBuffers.length; k++)
+							{
+								if ( rangeIdxs[k] == null )
+								{
+									WindowFunctionDef wFnDef = rangeFns.get(k);
+									wFnDef.getEvaluator().aggregate(aggBuffers[k], evaluateArgs(wFnDef, row, args.get(wFnDef)));
+								}
+							}
+						}
+					}
+					for(int k=0; k < aggBuffers.length; k++)
+					{
+						WindowFunctionDef wFnDef = rangeFns.get(k);
+						Object out = wFnDef.getEvaluator().evaluate(aggBuffers[k]);
+						out = ObjectInspectorUtils.copyToStandardObject(out, wFnDef.getOI(), ObjectInspectorCopyOption.WRITABLE);
+						vals.get(wFnDef).add(out);
+					}
+				}
+			}
+		}
+		finally
+		{
+			for(WindowFunctionDef wFnDef : segmentTreeFns)
+			{
+				wFnDef.getSegmentTreeAggregator().close();
+			}
+		}
+		
+		for(int k=0; k < wFnGroup.wFnDefs.size(); k++)
+		{
+			oColumns[wFnGroup.positions.get(k)] = vals.get(wFnGroup.wFnDefs.get(k));
+		}
+	}
+	
+	/*
+	 * the number of rows in the frame of the function, if it is a ROWS frame bounded on both sides; else 0.
+	 */
+	static int frameWidth(WindowFunctionDef wFnDef)
+	{
+		if ( wFnDef.getWindow() == null || wFnDef.getWindow().getWindow() == null )
+		{
+			return 0;
+		}
+		WindowFrameDef wFrmDef = wFnDef.getWindow().getWindow();
+		Integer start = rowOffset(wFrmDef.getStart());
+		Integer end = rowOffset(wFrmDef.getEnd());
+		if ( start == null || end == null || end < start )
+		{
+			return 0;
+		}
+		return end - start + 1;
+	}
+	
+	/*
+	 * the position of a ROWS boundary relative to the current row; null if it is unbounded or value based.
+	 */
+	static Integer rowOffset(BoundaryDef bDef)
+	{
+		if ( bDef instanceof CurrentRowDef )
+		{
+			return 0;
+		}
+		if ( bDef instanceof RangeBoundaryDef )
+		{
+			RangeBoundaryDef rbDef = (RangeBoundaryDef) bDef;
+			if ( rbDef.getAmt() == BoundarySpec.UNBOUNDED_AMOUNT )
+			{
+				return null;
+			}
+			return rbDef.getDirection() == Direction.PRECEDING ? -rbDef.getAmt() : rbDef.getAmt();
+		}
+		return null;
+	}
+	
+	static int numArgs(WindowFunctionDef wFnDef)
+	{
+		return wFnDef.getArgs() == null ? 0 : wFnDef.getArgs().size();
+	}
+	
+	/*
+	 * evaluate the args of the function on the row; as standard writable values, which is what the
+	 * function evaluators are initialized for.
+	 */
+	static Object[] evaluateArgs(WindowFunctionDef wFnDef, Object row, Object[] args) throws HiveException
+	{
+		int j = 0;
+		if ( wFnDef.getArgs() != null )
+		{
+			for(ArgDef arg : wFnDef.getArgs())
+			{
+				args[j++] = ObjectInspectorUtils.copyToStandardObject(arg.getExprEvaluator().evaluate(row),
+						arg.getOI(), ObjectInspectorCopyOption.WRITABLE);
+			}
+		}
+		return args;
+	}
+	
+	/*
+	 * read the args of a function at row i from its arg columns.
+	 */
+	Object[] columnArgs(int[] idxs, int i, Object[] args)
+	{
+		for(int j=0; j < idxs.length; j++)
+		{
+			args[j] = argColumns.get(idxs[j], i);
+		}
+		return args;
+	}
+	
+	/*
+	 * Lead/Lag invocations in arguments are evaluated relative to the window of the current row;
+	 * so they can only be handled by re-aggregating each window.
+	 */
+	static boolean argsHaveLeadLag(QueryDef qDef, WindowFunctionDef wFnDef)
+	{
+		if ( wFnDef.getArgs() == null )
+		{
+			return false;
+		}
+		LeadLagInfo llInfo = qDef.getTranslationInfo().getLLInfo();
+		for(ArgDef arg : wFnDef.getArgs())
+		{
+			List<ExprNodeGenericFuncDesc> llFns = llInfo.getLLFuncExprsInTopExpr(arg.getExprNode());
+			if ( llFns != null && llFns.size() > 0 )
+			{
+				return true;
+			}
+		}
+		return false;
 	}
 	
 	static Range getRange(WindowFunctionDef wFnDef, int currRow, Partition p) throws WindowingException
@@ -233,8 +646,30 @@ public class WindowingTableFunction extends TableFunctionEvaluator
 		}
 		else
 		{
-			ValueBoundaryScanner vbs = ValueBoundaryScanner.getScanner((ValueBoundaryDef)bDef);
-			return vbs.computeBoundaryRange(currRow, p);
+			ValueBoundaryScanner vbs = ((ValueBoundaryDef)bDef).getScanner();
+			return vbs.computeBoundaryRange(currRow, end);
+		}
+	}
+	
+	/*
+	 * evaluate the expressions of the value based boundaries of the window on the Partition.
+	 */
+	static void resetValueBoundaries(WindowFunctionDef wFnDef, Partition p) throws WindowingException
+	{
+		WindowFrameDef wFrmDef = wFnDef.getWindow().getWindow();
+		if ( wFrmDef == null )
+		{
+			return;
+		}
+		BoundaryDef startB = wFrmDef.getStart();
+		BoundaryDef endB = wFrmDef.getEnd();
+		if ( startB instanceof ValueBoundaryDef )
+		{
+			((ValueBoundaryDef)startB).getScanner().reset(p);
+		}
+		if ( endB instanceof ValueBoundaryDef )
+		{
+			((ValueBoundaryDef)endB).getScanner().reset(p);
 		}
 	}
 	
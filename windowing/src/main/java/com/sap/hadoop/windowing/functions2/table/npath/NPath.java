@@ -13,7 +13,7 @@ import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 import com.sap.hadoop.windowing.WindowingException;
 import com.sap.hadoop.windowing.functions2.TableFunctionEvaluator;
 import com.sap.hadoop.windowing.functions2.TableFunctionResolver;
-import com.sap.hadoop.windowing.functions2.table.npath.SymbolFunction.SymbolFunctionResult;
+import com.sap.hadoop.windowing.functions2.table.npath.NPathUtils.PathException;
 import com.sap.hadoop.windowing.query2.definition.ArgDef;
 import com.sap.hadoop.windowing.query2.definition.QueryDef;
 import com.sap.hadoop.windowing.query2.definition.TableFuncDef;
@@ -44,7 +44,7 @@ public class NPath extends TableFunctionEvaluator
 	private transient String patternStr;
 	private transient SymbolsInfo symInfo;
 	private transient String resultExprStr;
-	private transient SymbolFunction syFn;
+	private transient SymbolAutomaton syAutomaton;
 	private transient  ArrayList<ExprNodeEvaluator> resultExprEvals;
 
 	
@@ -52,28 +52,35 @@ public class NPath extends TableFunctionEvaluator
 	@Override
 	public void execute(PartitionIterator<Object> pItr, Partition outP) throws WindowingException
 	{
-		while (pItr.hasNext())
+		int start = pItr.getIndex();
+		int[] nextRows = syAutomaton.match(pItr);
+		for(int i=0; i < nextRows.length; i++)
 		{
-			Object iRow = pItr.next();
-			
-			SymbolFunctionResult syFnRes = SymbolFunction.match(syFn, iRow, pItr);
-			if (syFnRes.matches )
+			if ( nextRows[i] != -1 )
 			{
-				int sz = syFnRes.nextRow - (pItr.getIndex() - 1);
+				Object iRow = pItr.resetToIndex(start + i);
+				int sz = nextRows[i] - (start + i);
 				Object selectListInput = NPathUtils.getSelectListInput(iRow, tDef.getInput().getOI(), pItr, sz);
 				ArrayList<Object> oRow = new ArrayList<Object>();
-				for(ExprNodeEvaluator resExprEval : resultExprEvals)
+				/*
+				 * the rows of the path are read when the expressions or the append first access them.
+				 */
+				try
 				{
-					try
+					for(ExprNodeEvaluator resExprEval : resultExprEvals)
 					{
 						oRow.add(resExprEval.evaluate(selectListInput));
 					}
-					catch(HiveException he)
-					{
-						throw new WindowingException(he);
-					}
+					outP.append(oRow);
+				}
+				catch(HiveException he)
+				{
+					throw new WindowingException(he);
+				}
+				catch(PathException pe)
+				{
+					throw pe.getCause();
 				}
-				outP.append(oRow);
 			}
 		}
 	}
@@ -187,13 +194,13 @@ public class NPath extends TableFunctionEvaluator
 			evaluator.resultExprStr = ((ConstantObjectInspector)resultExprArgOI).getWritableConstantValue().toString();
 			
 			/*
-			 * setup SymbolFunction chain.
+			 * setup the SymbolAutomaton.
 			 */
 			SymbolParser syP = new SymbolParser(evaluator.patternStr, 
 					evaluator.symInfo.symbolExprsNames, 
 					evaluator.symInfo.symbolExprsEvaluators, evaluator.symInfo.symbolExprsOIs);
 			syP.parse();
-			evaluator.syFn = syP.getSymbolFunction();
+			evaluator.syAutomaton = syP.getSymbolAutomaton();
 			
 			/*
 			 * setup OI for input to resultExpr select list
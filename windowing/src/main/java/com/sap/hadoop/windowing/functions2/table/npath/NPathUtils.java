@@ -1,15 +1,19 @@
 package com.sap.hadoop.windowing.functions2.table.npath;
 
+import java.util.AbstractList;
 import java.util.ArrayList;
 import java.util.List;
 
+import org.apache.hadoop.hive.serde.Constants;
+import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
-import org.apache.hadoop.hive.serde2.objectinspector.StandardListObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 
+import com.sap.hadoop.windowing.WindowingException;
+import com.sap.hadoop.windowing.runtime2.Partition;
 import com.sap.hadoop.windowing.runtime2.PartitionIterator;
 
 public class NPathUtils
@@ -23,7 +27,7 @@ public class NPathUtils
 		List<? extends StructField> fields = inputOI.getAllStructFieldRefs();
 		ArrayList<ObjectInspector> selectListFieldOIs = new ArrayList<ObjectInspector>();
 		ArrayList<String> selectListFieldNames = new ArrayList<String>();
-		StandardListObjectInspector pathAttrOI = ObjectInspectorFactory.getStandardListObjectInspector(
+		PathObjectInspector pathAttrOI = new PathObjectInspector(
 				ObjectInspectorUtils.getStandardObjectInspector(inputOI));
 		for(StructField f : fields)
 		{
@@ -44,20 +48,140 @@ public class NPathUtils
 		return oRow;
 	}
 	
-	public static ArrayList<Object> getPath(Object currRow, ObjectInspector rowOI, PartitionIterator<Object> pItr, int sz)
+	/*
+	 * the path of sz rows starting at the iterator's current row; it always contains the current row.
+	 */
+	public static List<Object> getPath(Object currRow, ObjectInspector rowOI, PartitionIterator<Object> pItr, int sz)
 	{
 		int idx = pItr.getIndex() - 1;
-		ArrayList<Object> path = new ArrayList<Object>();
-		path.add(ObjectInspectorUtils.copyToStandardObject(currRow, rowOI));
-		int pSz = 1;
+		sz = Math.max(1, Math.min(sz, pItr.getEnd() - idx));
+		return new Path(pItr.getPartition(), idx, sz, rowOI);
+	}
+	
+	/*
+	 * a view of a range of rows of a Partition. A row is only read, and copied to a standard object,
+	 * when the element is first accessed; so an expression like size(tpath) or tpath[0].col doesn't
+	 * copy the rest of the path.
+	 */
+	public static class Path extends AbstractList<Object>
+	{
+		Partition p;
+		int start;
+		int sz;
+		ObjectInspector rowOI;
+		Object[] rows;
+		
+		public Path(Partition p, int start, int sz, ObjectInspector rowOI)
+		{
+			this.p = p;
+			this.start = start;
+			this.sz = sz;
+			this.rowOI = rowOI;
+		}
+		
+		@Override
+		public Object get(int i)
+		{
+			if ( i < 0 || i >= sz )
+			{
+				throw new IndexOutOfBoundsException(Integer.toString(i));
+			}
+			if ( rows == null )
+			{
+				rows = new Object[sz];
+			}
+			if ( rows[i] == null )
+			{
+				try
+				{
+					rows[i] = ObjectInspectorUtils.copyToStandardObject(p.getAt(start + i), rowOI);
+				}
+				catch(WindowingException we)
+				{
+					throw new PathException(we);
+				}
+			}
+			return rows[i];
+		}
+		
+		@Override
+		public int size()
+		{
+			return sz;
+		}
+	}
+	
+	/*
+	 * thrown by a {@link Path} when it cannot read a row; the List interface doesn't allow the
+	 * WindowingException through, so it is carried as the cause.
+	 */
+	public static class PathException extends RuntimeException
+	{
+		private static final long serialVersionUID = 1L;
+		
+		public PathException(WindowingException cause)
+		{
+			super(cause);
+		}
+		
+		@Override
+		public WindowingException getCause()
+		{
+			return (WindowingException) super.getCause();
+		}
+	}
+	
+	/*
+	 * the OI of a {@link Path}; its elements have the standard OI of the Partition's rows.
+	 */
+	public static class PathObjectInspector implements ListObjectInspector
+	{
+		ObjectInspector elementOI;
+		
+		public PathObjectInspector(ObjectInspector elementOI)
+		{
+			this.elementOI = elementOI;
+		}
+		
+		@Override
+		public String getTypeName()
+		{
+			return Constants.LIST_TYPE_NAME + "<" + elementOI.getTypeName() + ">";
+		}
+		
+		@Override
+		public Category getCategory()
+		{
+			return Category.LIST;
+		}
+		
+		@Override
+		public ObjectInspector getListElementObjectInspector()
+		{
+			return elementOI;
+		}
+		
+		@Override
+		public Object getListElement(Object data, int index)
+		{
+			if ( data == null )
+			{
+				return null;
+			}
+			List<?> l = (List<?>) data;
+			return index >= 0 && index < l.size() ? l.get(index) : null;
+		}
+		
+		@Override
+		public int getListLength(Object data)
+		{
+			return data == null ? -1 : ((List<?>) data).size();
+		}
 		
-		while(pSz < sz && pItr.hasNext())
+		@Override
+		public List<?> getList(Object data)
 		{
-			currRow = pItr.next();
-			path.add(ObjectInspectorUtils.copyToStandardObject(currRow, rowOI));
-			pSz++;
+			return (List<?>) data;
 		}
-		pItr.resetToIndex(idx);
-		return path;
 	}
 }
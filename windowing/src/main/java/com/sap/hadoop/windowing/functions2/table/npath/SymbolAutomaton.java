@@ -0,0 +1,280 @@
+package com.sap.hadoop.windowing.functions2.table.npath;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+
+import com.sap.hadoop.windowing.WindowingException;
+import com.sap.hadoop.windowing.functions2.table.npath.SymbolFunction.Plus;
+import com.sap.hadoop.windowing.functions2.table.npath.SymbolFunction.Star;
+import com.sap.hadoop.windowing.functions2.table.npath.SymbolFunction.Symbol;
+import com.sap.hadoop.windowing.runtime2.PartitionIterator;
+
+/*
+ * Matches a Symbol pattern from every row of a Partition in one forward pass.
+ * <p>
+ * A pattern is a chain of components: a Symbol, a Star or a Plus. Star and Plus consume all the
+ * rows that match their Symbol and never give any back; so a match attempt is deterministic, its
+ * state at a row is just the component it is at. The automaton has a state for entering each
+ * component and one for each Plus that has matched its first row. Attempts that reach the same
+ * state at the same row end the same way from then on; they are merged into one group, so each
+ * row is processed at most once per state, however many attempts pass over it.
+ * <p>
+ * The Symbols are evaluated before matching: each distinct Symbol once per row, into a bit set with
+ * a bit per row and Symbol. The automaton only tests these bits.
+ * <p>
+ * A Star or Plus that runs to the last row leaves the last row to the next component as well; this is
+ * how the pattern was matched before the automaton, and is kept.
+ */
+public class SymbolAutomaton
+{
+	static final int SYMBOL = 0;
+	static final int STAR = 1;
+	static final int PLUS = 2;
+
+	int numComponents;
+	int[] kinds;
+	/*
+	 * the index of each component's Symbol in symbols.
+	 */
+	int[] componentSymbols;
+	Symbol[] symbols;
+
+	/*
+	 * bit i * symbols.length + s is set if Symbol s matches the row at offset i from the iterator's start.
+	 */
+	BitSet symbolBits = new BitSet();
+
+	/*
+	 * the group at each state, for the current and the next row; -1 if there is none.
+	 */
+	int[] current;
+	int[] next;
+
+	/*
+	 * start rows are identified by their offset from the iterator's start. Merged groups are kept as
+	 * a union-find forest, the root of a group holds its result.
+	 */
+	int[] parent;
+	int[] results;
+
+	public SymbolAutomaton(ArrayList<SymbolFunction> components)
+	{
+		numComponents = components.size();
+		kinds = new int[numComponents];
+		componentSymbols = new int[numComponents];
+		ArrayList<Symbol> distinctSymbols = new ArrayList<Symbol>();
+		for(int k=0; k < numComponents; k++)
+		{
+			SymbolFunction sFn = components.get(k);
+			if ( sFn instanceof Star )
+			{
+				kinds[k] = STAR;
+				sFn = ((Star) sFn).symbolFn;
+			}
+			else if ( sFn instanceof Plus )
+			{
+				kinds[k] = PLUS;
+				sFn = ((Plus) sFn).symbolFn;
+			}
+			int s = distinctSymbols.indexOf(sFn);
+			if ( s == -1 )
+			{
+				s = distinctSymbols.size();
+				distinctSymbols.add((Symbol) sFn);
+			}
+			componentSymbols[k] = s;
+		}
+		symbols = distinctSymbols.toArray(new Symbol[distinctSymbols.size()]);
+		current = new int[2 * numComponents];
+		next = new int[2 * numComponents];
+	}
+
+	/*
+	 * match the pattern from each row of the iterator; the iterator is consumed.
+	 * @return for each row, by offset from the iterator's start: the index of the row beyond the rows
+	 * that match the pattern; or -1 if the pattern doesn't match from the row.
+	 */
+	public int[] match(PartitionIterator<Object> pItr) throws WindowingException
+	{
+		int start = pItr.getIndex();
+		int sz = pItr.getEnd() - start;
+		if ( parent == null || parent.length < sz )
+		{
+			parent = new int[sz];
+			results = new int[sz];
+		}
+		evaluateSymbols(pItr, sz);
+		Arrays.fill(current, -1);
+		Arrays.fill(next, -1);
+
+		for(int i=0; i < sz; i++)
+		{
+			boolean isLast = i == sz - 1;
+			int j = start + i;
+
+			parent[i] = i;
+			results[i] = -1;
+			add(current, 0, i);
+
+			/*
+			 * a state only moves to a later component at the same row; so processing the states in
+			 * component order handles all the moves within the row.
+			 */
+			for(int k=0; k < numComponents; k++)
+			{
+				step(k, k, i, j, isLast);
+				step(k, numComponents + k, i, j, isLast);
+			}
+
+			int[] t = current;
+			current = next;
+			next = t;
+			Arrays.fill(next, -1);
+		}
+
+		/*
+		 * attempts beyond the last row match if all their remaining components are optional.
+		 */
+		for(int k=0; k < numComponents; k++)
+		{
+			int g = current[k];
+			if ( g != -1 )
+			{
+				results[g] = remainingOptional(k) ? start + sz : -1;
+			}
+		}
+
+		int[] r = new int[sz];
+		for(int i=0; i < sz; i++)
+		{
+			r[i] = results[find(i)];
+		}
+		return r;
+	}
+
+	void evaluateSymbols(PartitionIterator<Object> pItr, int sz) throws WindowingException
+	{
+		symbolBits.clear();
+		for(int i=0; i < sz; i++)
+		{
+			Object row = pItr.next();
+			for(int s=0; s < symbols.length; s++)
+			{
+				if ( symbols[s].matches(row) )
+				{
+					symbolBits.set(i * symbols.length + s);
+				}
+			}
+		}
+	}
+
+	/*
+	 * process the group at a state at the row at offset i, index j.
+	 */
+	void step(int k, int state, int i, int j, boolean isLast)
+	{
+		int g = current[state];
+		if ( g == -1 )
+		{
+			return;
+		}
+		current[state] = -1;
+
+		boolean matches = symbolBits.get(i * symbols.length + componentSymbols[k]);
+		if ( state == k && kinds[k] != STAR )
+		{
+			/*
+			 * a Symbol, or the first row of a Plus, must match.
+			 */
+			if ( !matches )
+			{
+				results[g] = -1;
+			}
+			else if ( kinds[k] == SYMBOL )
+			{
+				enter(next, k + 1, g, j + 1);
+			}
+			else if ( isLast )
+			{
+				enter(current, k + 1, g, j);
+			}
+			else
+			{
+				add(next, numComponents + k, g);
+			}
+			return;
+		}
+
+		/*
+		 * a Star, or a Plus after its first row: stay while rows match.
+		 */
+		if ( matches && !isLast )
+		{
+			add(next, state, g);
+		}
+		else
+		{
+			enter(current, k + 1, g, j);
+		}
+	}
+
+	/*
+	 * move group g to component k at row j; past the last component, the pattern matches up to row j.
+	 */
+	void enter(int[] states, int k, int g, int j)
+	{
+		if ( k == numComponents )
+		{
+			results[g] = j;
+		}
+		else
+		{
+			add(states, k, g);
+		}
+	}
+
+	/*
+	 * move group g to a state; merging it into the group already there.
+	 */
+	void add(int[] states, int state, int g)
+	{
+		int h = states[state];
+		if ( h == -1 )
+		{
+			states[state] = g;
+		}
+		else
+		{
+			parent[g] = h;
+		}
+	}
+
+	boolean remainingOptional(int k)
+	{
+		for(; k < numComponents; k++)
+		{
+			if ( kinds[k] != STAR )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	int find(int i)
+	{
+		int r = i;
+		while(parent[r] != r)
+		{
+			r = parent[r];
+		}
+		while(parent[i] != r)
+		{
+			int p = parent[i];
+			parent[i] = r;
+			i = p;
+		}
+		return r;
+	}
+}
@@ -10,7 +10,6 @@ import com.sap.hadoop.windowing.WindowingException;
 import com.sap.hadoop.windowing.functions2.table.npath.SymbolFunction.Symbol;
 import com.sap.hadoop.windowing.functions2.table.npath.SymbolFunction.Star;
 import com.sap.hadoop.windowing.functions2.table.npath.SymbolFunction.Plus;
-import com.sap.hadoop.windowing.functions2.table.npath.SymbolFunction.Chain;
 
 import static com.sap.hadoop.Utils.sprintf;
 
@@ -20,7 +19,7 @@ public class SymbolParser
 	String[] symbols;
 	HashMap<String, Object[]> symbolExprEvalMap;
 	ArrayList<SymbolFunction> symbolFunctions;
-	Chain symbolFnChain;
+	SymbolAutomaton symbolAutomaton;
 	
 	
 	public SymbolParser(String patternStr, ArrayList<String> symbolNames,
@@ -39,15 +38,16 @@ public class SymbolParser
 		}
 	}
 	
-	public SymbolFunction getSymbolFunction()
+	public SymbolAutomaton getSymbolAutomaton()
 	{
-		return symbolFnChain;
+		return symbolAutomaton;
 	}
 	
 	public void parse() throws WindowingException
 	{
 		symbols = patternStr.split("\\.");
 		symbolFunctions = new ArrayList<SymbolFunction>();
+		HashMap<String, Symbol> symbolsByName = new HashMap<String, Symbol>();
 		
 		for(String symbol : symbols)
 		{
@@ -61,9 +61,18 @@ public class SymbolParser
 				throw new WindowingException(sprintf("Unknown Symbol %s", symbol));
 			}
 			
-			ExprNodeEvaluator symbolExprEval = (ExprNodeEvaluator) symbolDetails[0];
-			ObjectInspector symbolExprOI = (ObjectInspector) symbolDetails[1];
-			SymbolFunction sFn = new Symbol(symbolExprEval, symbolExprOI);
+			/*
+			 * a Symbol used in several places in the pattern is shared, so it is evaluated once per row.
+			 */
+			Symbol sym = symbolsByName.get(symbol.toLowerCase());
+			if ( sym == null )
+			{
+				ExprNodeEvaluator symbolExprEval = (ExprNodeEvaluator) symbolDetails[0];
+				ObjectInspector symbolExprOI = (ObjectInspector) symbolDetails[1];
+				sym = new Symbol(symbolExprEval, symbolExprOI);
+				symbolsByName.put(symbol.toLowerCase(), sym);
+			}
+			SymbolFunction sFn = sym;
 			
 			if ( isStar )
 			{
@@ -75,6 +84,6 @@ public class SymbolParser
 			}
 			symbolFunctions.add(sFn);
 		}
-		symbolFnChain = new Chain(symbolFunctions);
+		symbolAutomaton = new SymbolAutomaton(symbolFunctions);
 	}
 }
@@ -0,0 +1,29 @@
+package com.sap.hadoop.windowing.functions2.window;
+
+import java.util.List;
+
+import com.sap.hadoop.windowing.query2.definition.WindowFunctionDef;
+import com.sap.hadoop.windowing.runtime2.ArgColumns;
+
+/*
+ * Evaluates a function for all the rows of a Partition at once, given the arg columns of the
+ * Partition and the frame of each row. Used in place of the Hive GenericUDAFEvaluator for the builtin
+ * functions whose result over a frame can be computed from the columns directly.
+ */
+public abstract class ColumnAggregator
+{
+	/*
+	 * the result for each frame [starts[i], ends[i]) of the Partition.
+	 * @param argIdxs the columns of the args of the function.
+	 */
+	public abstract List<Object> evaluate(ArgColumns cols, int[] argIdxs, int[] starts, int[] ends);
+
+	/*
+	 * return a ColumnAggregator for the given function; or null if it has none.
+	 */
+	public static ColumnAggregator get(WindowFunctionDef wFnDef)
+	{
+		ColumnAggregator a = PrimitiveAggregator.get(wFnDef);
+		return a != null ? a : FirstLastValueAggregator.get(wFnDef);
+	}
+}
@@ -0,0 +1,163 @@
+package com.sap.hadoop.windowing.functions2.window;
+
+import java.util.AbstractList;
+import java.util.BitSet;
+import java.util.List;
+
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.io.BooleanWritable;
+
+import com.sap.hadoop.windowing.query2.definition.WindowFunctionDef;
+import com.sap.hadoop.windowing.query2.specification.WindowFunctionSpec;
+import com.sap.hadoop.windowing.runtime2.ArgColumns;
+
+/*
+ * first_value and last_value by index: the result for a frame is the value at its first (or last) row,
+ * so it is found without reading the other rows of the frame. For the skip nulls variant the index of
+ * the next (or previous) non null row of each row is computed once per Partition.
+ * <p>
+ * As with the Hive function, whether nulls are skipped is decided by the second arg at the first row
+ * of the frame. The results are read through a List that returns a copy of the value of the row.
+ */
+public class FirstLastValueAggregator extends ColumnAggregator
+{
+	final boolean first;
+	final ObjectInspector OI;
+
+	FirstLastValueAggregator(boolean first, ObjectInspector OI)
+	{
+		this.first = first;
+		this.OI = OI;
+	}
+
+	/*
+	 * return a FirstLastValueAggregator for the given function; or null if it is not first_value or
+	 * last_value.
+	 */
+	public static FirstLastValueAggregator get(WindowFunctionDef wFnDef)
+	{
+		WindowFunctionSpec wSpec = wFnDef.getSpec();
+		String name = wSpec.getName().toLowerCase();
+		if ( wSpec.isDistinct() || wFnDef.getOI() == null || wFnDef.getArgs() == null )
+		{
+			return null;
+		}
+		if ( name.equals("first_value") )
+		{
+			return new FirstLastValueAggregator(true, wFnDef.getOI());
+		}
+		if ( name.equals("last_value") )
+		{
+			return new FirstLastValueAggregator(false, wFnDef.getOI());
+		}
+		return null;
+	}
+
+	@Override
+	public List<Object> evaluate(final ArgColumns cols, int[] argIdxs, int[] starts, int[] ends)
+	{
+		final int col = argIdxs[0];
+		BitSet nulls = cols.getNulls(col);
+		final int[] idxs = new int[starts.length];
+		int[] nonNull = null;
+
+		for(int i=0; i < starts.length; i++)
+		{
+			int start = starts[i];
+			int end = ends[i];
+			if ( start >= end )
+			{
+				idxs[i] = -1;
+				continue;
+			}
+			if ( !skipNulls(cols, argIdxs, start) )
+			{
+				idxs[i] = first ? start : end - 1;
+				continue;
+			}
+			if ( nonNull == null )
+			{
+				nonNull = first ? nextNonNull(nulls, maxEnd(ends)) : prevNonNull(nulls, maxEnd(ends));
+			}
+			int idx = first ? nonNull[start] : nonNull[end - 1];
+			idxs[i] = idx >= start && idx < end ? idx : -1;
+		}
+
+		return new AbstractList<Object>()
+		{
+			@Override
+			public Object get(int i)
+			{
+				if ( idxs[i] < 0 )
+				{
+					return null;
+				}
+				return ObjectInspectorUtils.copyToStandardObject(cols.get(col, idxs[i]), OI, ObjectInspectorCopyOption.WRITABLE);
+			}
+
+			@Override
+			public int size()
+			{
+				return idxs.length;
+			}
+		};
+	}
+
+	static boolean skipNulls(ArgColumns cols, int[] argIdxs, int row)
+	{
+		if ( argIdxs.length < 2 )
+		{
+			return false;
+		}
+		Object o = cols.get(argIdxs[1], row);
+		return o != null && ((BooleanWritable) o).get();
+	}
+
+	static int maxEnd(int[] ends)
+	{
+		int sz = 0;
+		for(int e : ends)
+		{
+			sz = Math.max(sz, e);
+		}
+		return sz;
+	}
+
+	/*
+	 * for each row the first row at or after it that is not null; or size.
+	 */
+	static int[] nextNonNull(BitSet nulls, int size)
+	{
+		int[] next = new int[size];
+		int n = size;
+		for(int i=size - 1; i >= 0; i--)
+		{
+			if ( !nulls.get(i) )
+			{
+				n = i;
+			}
+			next[i] = n;
+		}
+		return next;
+	}
+
+	/*
+	 * for each row the last row at or before it that is not null; or -1.
+	 */
+	static int[] prevNonNull(BitSet nulls, int size)
+	{
+		int[] prev = new int[size];
+		int p = -1;
+		for(int i=0; i < size; i++)
+		{
+			if ( !nulls.get(i) )
+			{
+				p = i;
+			}
+			prev[i] = p;
+		}
+		return prev;
+	}
+}
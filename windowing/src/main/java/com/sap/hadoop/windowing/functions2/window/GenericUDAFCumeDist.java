@@ -1,16 +1,12 @@
 package com.sap.hadoop.windowing.functions2.window;
 
-import java.util.ArrayList;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
 import org.apache.hadoop.hive.ql.metadata.HiveException;
-import org.apache.hadoop.hive.serde2.io.DoubleWritable;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
-import org.apache.hadoop.io.IntWritable;
 
 import com.sap.hadoop.windowing.functions2.annotation.WindowFuncDef;
 
@@ -49,17 +45,16 @@ public class GenericUDAFCumeDist extends GenericUDAFRank
 		@Override
 		public Object terminate(AggregationBuffer agg) throws HiveException
 		{
-			ArrayList<IntWritable> ranks =  ((RankBuffer) agg).rowNums;
-			double sz = ranks.size();
-			ArrayList<DoubleWritable> pranks = new ArrayList<DoubleWritable>(ranks.size());
+			final int[] ranks =  ((RankBuffer) agg).ranks;
+			final int numRows = ((RankBuffer) agg).currentRowNum;
 			
-			for(IntWritable i : ranks)
+			return new ResultLists.DoubleList(numRows)
 			{
-				double pr = ((double)i.get())/sz;
-				pranks.add(new DoubleWritable(pr));
-			}
-			
-			return pranks;
+				double getDouble(int i)
+				{
+					return ((double)ranks[i])/numRows;
+				}
+			};
 		}
 	}
 }
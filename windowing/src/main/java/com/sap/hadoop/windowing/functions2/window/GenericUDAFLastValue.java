@@ -115,7 +115,7 @@ public class GenericUDAFLastValue extends AbstractGenericUDAFResolver
 				}
 			}
 			
-			if ( !lb.skipNulls || lb.val != null )
+			if ( !lb.skipNulls || parameters[0] != null )
 			{
 				lb.val = parameters[0];
 			}
@@ -1,7 +1,5 @@
 package com.sap.hadoop.windowing.functions2.window;
 
-import java.util.ArrayList;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
@@ -19,7 +17,6 @@ import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectIn
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
-import org.apache.hadoop.io.IntWritable;
 
 import com.sap.hadoop.windowing.functions2.annotation.WindowFuncDef;
 
@@ -130,33 +127,30 @@ public class GenericUDAFNTile  extends AbstractGenericUDAFResolver
 		public Object terminate(AggregationBuffer agg) throws HiveException
 		{
 			NTileBuffer rb = (NTileBuffer) agg;
-			ArrayList<IntWritable> res = new ArrayList<IntWritable>(rb.numRows);
+			if ( rb.numRows == 0 )
+			{
+				return new ResultLists.ArrayIntList(new int[0], 0);
+			}
 			
 			/*
 			 * if there is a remainder from numRows/numBuckets; then distribute increase the size of the first 'rem' buckets by 1.
+			 * The bucket of a row is computed as it is read.
 			 */
+			final int bucketsz = rb.numRows / rb.numBuckets;
+			final int rem = rb.numRows % rb.numBuckets;
+			final int remRows = rem * (bucketsz + 1);
 			
-			int bucketsz = rb.numRows / rb.numBuckets;
-			int rem = rb.numRows % rb.numBuckets;
-			int start = 0;
-			int bucket = 1;
-			while ( start < rb.numRows)
+			return new ResultLists.IntList(rb.numRows)
 			{
-				int end = start + bucketsz;
-				if (rem > 0)
+				int getInt(int i)
 				{
-					end++; rem--;
+					if ( i < remRows )
+					{
+						return i / (bucketsz + 1) + 1;
+					}
+					return rem + (i - remRows) / bucketsz + 1;
 				}
-				end = Math.min(rb.numRows, end);
-				for(int i = start; i < end; i++)
-				{
-					res.add(new IntWritable(bucket));
-				}
-				start = end;
-				bucket++;
-			}
-			
-			return res;
+			};
 		}
 
 	}
@@ -1,7 +1,5 @@
 package com.sap.hadoop.windowing.functions2.window;
 
-import java.util.ArrayList;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
@@ -11,17 +9,17 @@ import org.apache.hadoop.hive.ql.parse.SemanticException;
 import org.apache.hadoop.hive.ql.udf.generic.AbstractGenericUDAFResolver;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
+import org.apache.hadoop.hive.serde2.ByteStream;
+import org.apache.hadoop.hive.serde2.lazybinary.LazyBinarySerDe;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
-import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
-import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.WritableComparator;
 
 import com.sap.hadoop.windowing.functions2.annotation.WindowFuncDef;
-import com.sap.hadoop.windowing.runtime2.RuntimeUtils;
 
 @WindowFuncDef
 (	
@@ -60,40 +58,86 @@ public class GenericUDAFRank extends AbstractGenericUDAFResolver
 		return new GenericUDAFRankEvaluator();
 	}
 
+	/*
+	 * the rank of each row is held in an int array. The args of the current and the previous row are
+	 * held serialized; a row ties with the previous one if their bytes are equal.
+	 */
 	static class RankBuffer implements AggregationBuffer
 	{
-		ArrayList<IntWritable> rowNums;
+		int[] ranks;
 		int currentRowNum;
-		Object[] currVal;
 		int currentRank;
-		int numParams;
+		ByteStream.Output currKey = new ByteStream.Output();
+		ByteStream.Output prevKey = new ByteStream.Output();
 		
-		RankBuffer(int numParams)
+		RankBuffer()
 		{
-			this.numParams = numParams;
 			init();
 		}
 
 		void init()
 		{
-			rowNums = new ArrayList<IntWritable>();
+			ranks = new int[16];
 			currentRowNum = 0;
 			currentRank = 0;
-			currVal = new Object[numParams];
 		}
 
 		void incrRowNum() { currentRowNum++; }
 
 		void addRank()
 		{
-			rowNums.add(new IntWritable(currentRank));
+			if ( currentRowNum > ranks.length )
+			{
+				int[] na = new int[ranks.length * 2];
+				System.arraycopy(ranks, 0, na, 0, ranks.length);
+				ranks = na;
+			}
+			ranks[currentRowNum - 1] = currentRank;
+		}
+		
+		/*
+		 * serialize the args into currKey; each arg is preceded by a null marker, so that different
+		 * args never serialize to the same bytes.
+		 */
+		void serialize(Object[] parameters, ObjectInspector[] inputOI)
+		{
+			currKey.reset();
+			for(int i=0; i < parameters.length; i++)
+			{
+				if ( parameters[i] == null )
+				{
+					currKey.write(0);
+				}
+				else
+				{
+					currKey.write(1);
+					LazyBinarySerDe.serialize(currKey, parameters[i], inputOI[i], false, true);
+				}
+			}
+		}
+		
+		boolean tiesWithPrevious()
+		{
+			return WritableComparator.compareBytes(currKey.getData(), 0, currKey.getCount(), 
+					prevKey.getData(), 0, prevKey.getCount()) == 0;
+		}
+		
+		void swapKeys()
+		{
+			ByteStream.Output t = prevKey;
+			prevKey = currKey;
+			currKey = t;
+		}
+		
+		ResultLists.IntList getRanks()
+		{
+			return new ResultLists.ArrayIntList(ranks, currentRowNum);
 		}
 	}
 	
 	public static class GenericUDAFRankEvaluator extends GenericUDAFEvaluator
 	{
 		ObjectInspector[] inputOI;
-		ObjectInspector[] outputOI;
 		
 		@Override
 		public ObjectInspector init(Mode m, ObjectInspector[] parameters) throws HiveException
@@ -105,18 +149,13 @@ public class GenericUDAFRank extends AbstractGenericUDAFResolver
 						"Only COMPLETE mode supported for Rank function");
 			}
 			inputOI = parameters;
-			outputOI = new ObjectInspector[inputOI.length];
-			for(int i=0; i < inputOI.length; i++)
-			{
-				outputOI[i] = ObjectInspectorUtils.getStandardObjectInspector(inputOI[i], ObjectInspectorCopyOption.JAVA);
-			}
 			return ObjectInspectorFactory.getStandardListObjectInspector(PrimitiveObjectInspectorFactory.writableIntObjectInspector);
 		}
 
 		@Override
 		public AggregationBuffer getNewAggregationBuffer() throws HiveException
 		{
-			return new RankBuffer(inputOI.length);
+			return new RankBuffer();
 		}
 
 		@Override
@@ -129,13 +168,13 @@ public class GenericUDAFRank extends AbstractGenericUDAFResolver
 		public void iterate(AggregationBuffer agg, Object[] parameters) throws HiveException
 		{
 			RankBuffer rb = (RankBuffer) agg;
-			 int c = RuntimeUtils.compare(rb.currVal, outputOI, parameters, inputOI);
-			 rb.incrRowNum();
-			if ( rb.currentRowNum == 1 || c != 0 )
+			rb.incrRowNum();
+			rb.serialize(parameters, inputOI);
+			if ( rb.currentRowNum == 1 || !rb.tiesWithPrevious() )
 			{
 				nextRank(rb);
-				rb.currVal = RuntimeUtils.copyToStandardObject(parameters, inputOI, ObjectInspectorCopyOption.JAVA);
 			}
+			rb.swapKeys();
 			rb.addRank();
 		}
 		
@@ -162,7 +201,7 @@ public class GenericUDAFRank extends AbstractGenericUDAFResolver
 		@Override
 		public Object terminate(AggregationBuffer agg) throws HiveException
 		{
-			return ((RankBuffer) agg).rowNums;
+			return ((RankBuffer) agg).getRanks();
 		}
 
 	}
@@ -1,7 +1,5 @@
 package com.sap.hadoop.windowing.functions2.window;
 
-import java.util.ArrayList;
-
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
 import org.apache.hadoop.hive.ql.exec.Description;
@@ -15,7 +13,6 @@ import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
 import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
-import org.apache.hadoop.io.IntWritable;
 
 import com.sap.hadoop.windowing.functions2.annotation.WindowFuncDef;
 
@@ -44,25 +41,26 @@ public class GenericUDAFRowNumber extends AbstractGenericUDAFResolver
 		return new GenericUDAFRowNumberEvaluator();
 	}
 
+	/*
+	 * only the rows are counted; the row numbers are computed as they are read.
+	 */
 	static class RowNumberBuffer implements AggregationBuffer
 	{
-		ArrayList<IntWritable> rowNums;
-		int nextRow;
+		int numRows;
 
 		void init()
 		{
-			rowNums = new ArrayList<IntWritable>();
+			numRows = 0;
 		}
 
 		RowNumberBuffer()
 		{
 			init();
-			nextRow = 1;
 		}
 
 		void incr()
 		{
-			rowNums.add(new IntWritable(nextRow++));
+			numRows++;
 		}
 	}
 
@@ -120,7 +118,13 @@ public class GenericUDAFRowNumber extends AbstractGenericUDAFResolver
 		@Override
 		public Object terminate(AggregationBuffer agg) throws HiveException
 		{
-			return ((RowNumberBuffer) agg).rowNums;
+			return new ResultLists.IntList(((RowNumberBuffer) agg).numRows)
+			{
+				int getInt(int i)
+				{
+					return i + 1;
+				}
+			};
 		}
 
 	}
@@ -0,0 +1,487 @@
+package com.sap.hadoop.windowing.functions2.window;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.hadoop.hive.serde2.io.ByteWritable;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.io.ShortWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Writable;
+
+import com.sap.hadoop.windowing.query2.definition.WindowFunctionDef;
+import com.sap.hadoop.windowing.query2.specification.WindowFunctionSpec;
+import com.sap.hadoop.windowing.query2.translate.WindowFunctionTranslation;
+import com.sap.hadoop.windowing.runtime2.ArgColumns;
+
+/*
+ * Evaluates sum, count, avg, min and max for all the rows of a Partition at once, directly on the
+ * primitive arrays of the arg columns. Used in place of the Hive GenericUDAFEvaluator, and of the
+ * RemovableAggregator and SegmentTreeAggregator, when the arg is a byte, short, int, long, float or
+ * double (count takes args of any type): there is no OI dispatch, no boxed args and no result object
+ * per row.
+ * <p>
+ * The frames are slid over the Partition: count, sum of byte, short, int and long args, and avg of
+ * byte, short and int args add the rows entering the frame and subtract the rows leaving it, in a
+ * long; min and max keep a deque of the rows of the frame that can still be the result. If a frame doesn't overlap the previous one or moves
+ * backwards the aggregation is started over.
+ * <p>
+ * A sum of doubles depends on the order of the additions, and subtracting a value doesn't undo adding
+ * it; so sum and avg of float and double args (and avg of long args, which Hive also sums as doubles)
+ * are not slid. Like the Hive functions they add up the rows of each frame from its start; only a frame
+ * with the same start as the previous one continues the previous sum. The results are the same as
+ * Hive's, bit for bit.
+ * <p>
+ * The results are read through a List that returns a reused writable, of the type of the result of
+ * the Hive function it replaces.
+ */
+public class PrimitiveAggregator extends ColumnAggregator
+{
+	static enum Kind
+	{
+		SUM,
+		COUNT,
+		AVG,
+		MIN,
+		MAX
+	};
+
+	static HashMap<String, Kind> PRIMITIVE_FUNCS = new HashMap<String, Kind>();
+	static
+	{
+		PRIMITIVE_FUNCS.put("sum", Kind.SUM);
+		PRIMITIVE_FUNCS.put("count", Kind.COUNT);
+		PRIMITIVE_FUNCS.put("avg", Kind.AVG);
+		PRIMITIVE_FUNCS.put("min", Kind.MIN);
+		PRIMITIVE_FUNCS.put("max", Kind.MAX);
+	}
+
+	final Kind kind;
+	/*
+	 * the arg is a float or double; or for avg, a long.
+	 */
+	final boolean isDouble;
+	final PrimitiveCategory resultCategory;
+
+	PrimitiveAggregator(Kind kind, boolean isDouble, PrimitiveCategory resultCategory)
+	{
+		this.kind = kind;
+		this.isDouble = isDouble;
+		this.resultCategory = resultCategory;
+	}
+
+	/*
+	 * return a PrimitiveAggregator for the given function; or null if the function (or the type of its
+	 * arguments, or of its result) is not handled.
+	 */
+	public static PrimitiveAggregator get(WindowFunctionDef wFnDef)
+	{
+		WindowFunctionSpec wSpec = wFnDef.getSpec();
+		Kind k = PRIMITIVE_FUNCS.get(wSpec.getName().toLowerCase());
+		ObjectInspector OI = wFnDef.getOI();
+		if ( k == null || wSpec.isDistinct() || OI == null || OI.getCategory() != ObjectInspector.Category.PRIMITIVE )
+		{
+			return null;
+		}
+		PrimitiveCategory resultCategory = ((PrimitiveObjectInspector) OI).getPrimitiveCategory();
+
+		ArrayList<ObjectInspector> argOIs = WindowFunctionTranslation.getWritableObjectInspector(wFnDef.getArgs());
+		if ( k == Kind.COUNT )
+		{
+			return resultCategory == PrimitiveCategory.LONG ? new PrimitiveAggregator(k, false, resultCategory) : null;
+		}
+
+		if ( argOIs.size() != 1 || argOIs.get(0).getCategory() != ObjectInspector.Category.PRIMITIVE )
+		{
+			return null;
+		}
+		PrimitiveCategory argCategory = ((PrimitiveObjectInspector) argOIs.get(0)).getPrimitiveCategory();
+		boolean isDouble;
+		switch(argCategory)
+		{
+		case BYTE:
+		case SHORT:
+		case INT:
+		case LONG:
+			isDouble = false;
+			break;
+		case FLOAT:
+		case DOUBLE:
+			isDouble = true;
+			break;
+		default:
+			return null;
+		}
+		if ( k == Kind.AVG && argCategory == PrimitiveCategory.LONG )
+		{
+			isDouble = true;
+		}
+
+		PrimitiveCategory expected;
+		switch(k)
+		{
+		case SUM:
+			expected = isDouble ? PrimitiveCategory.DOUBLE : PrimitiveCategory.LONG;
+			break;
+		case AVG:
+			expected = PrimitiveCategory.DOUBLE;
+			break;
+		default:
+			expected = argCategory;
+		}
+		return resultCategory == expected ? new PrimitiveAggregator(k, isDouble, resultCategory) : null;
+	}
+
+	@Override
+	public List<Object> evaluate(ArgColumns cols, int[] argIdxs, int[] starts, int[] ends)
+	{
+		Results r = new Results(starts.length, resultCategory);
+		switch(kind)
+		{
+		case COUNT:
+			count(cols, argIdxs, starts, ends, r);
+			break;
+		case MIN:
+		case MAX:
+			if ( isDouble )
+			{
+				minMax(cols.getDoubles(argIdxs[0]), cols.getNulls(argIdxs[0]), starts, ends, r);
+			}
+			else
+			{
+				minMax(cols.getLongs(argIdxs[0]), cols.getNulls(argIdxs[0]), starts, ends, r);
+			}
+			break;
+		default:
+			if ( isDouble )
+			{
+				sum(cols.getDoubles(argIdxs[0]), cols.getNulls(argIdxs[0]), starts, ends, r);
+			}
+			else
+			{
+				sum(cols.getLongs(argIdxs[0]), cols.getNulls(argIdxs[0]), starts, ends, r);
+			}
+		}
+		return r;
+	}
+
+	/*
+	 * like Hive's count: count(*) counts all rows, count(expr,...) only rows where all exprs are not null.
+	 */
+	static void count(ArgColumns cols, int[] argIdxs, int[] starts, int[] ends, Results r)
+	{
+		BitSet nulls = new BitSet();
+		for(int idx : argIdxs)
+		{
+			nulls.or(cols.getNulls(idx));
+		}
+
+		int wStart = 0;
+		int wEnd = 0;
+		long count = 0;
+		for(int i=0; i < starts.length; i++)
+		{
+			int start = starts[i];
+			int end = ends[i];
+			if ( start < wStart || end < wEnd || start >= wEnd )
+			{
+				count = 0;
+				wStart = start;
+				wEnd = start;
+			}
+			while(wEnd < end)
+			{
+				if ( !nulls.get(wEnd++) ) count++;
+			}
+			while(wStart < start)
+			{
+				if ( !nulls.get(wStart++) ) count--;
+			}
+			r.longs[i] = count;
+		}
+	}
+
+	void sum(long[] values, BitSet nulls, int[] starts, int[] ends, Results r)
+	{
+		int wStart = 0;
+		int wEnd = 0;
+		long sum = 0;
+		long count = 0;
+		for(int i=0; i < starts.length; i++)
+		{
+			int start = starts[i];
+			int end = ends[i];
+			if ( start < wStart || end < wEnd || start >= wEnd )
+			{
+				sum = 0;
+				count = 0;
+				wStart = start;
+				wEnd = start;
+			}
+			for(; wEnd < end; wEnd++)
+			{
+				if ( !nulls.get(wEnd) )
+				{
+					sum += values[wEnd];
+					count++;
+				}
+			}
+			for(; wStart < start; wStart++)
+			{
+				if ( !nulls.get(wStart) )
+				{
+					sum -= values[wStart];
+					count--;
+				}
+			}
+			if ( count == 0 )
+			{
+				r.nulls.set(i);
+			}
+			else if ( kind == Kind.AVG )
+			{
+				r.doubles[i] = (double) sum / count;
+			}
+			else
+			{
+				r.longs[i] = sum;
+			}
+		}
+	}
+
+	/*
+	 * the rows of a frame are added in order from its start, as the Hive functions do; only a frame
+	 * that starts where the previous one did, and ends no earlier, continues from it.
+	 */
+	void sum(double[] values, BitSet nulls, int[] starts, int[] ends, Results r)
+	{
+		int wStart = 0;
+		int wEnd = 0;
+		double sum = 0;
+		long count = 0;
+		for(int i=0; i < starts.length; i++)
+		{
+			int start = starts[i];
+			int end = ends[i];
+			if ( start != wStart || end < wEnd )
+			{
+				sum = 0;
+				count = 0;
+				wStart = start;
+				wEnd = start;
+			}
+			for(; wEnd < end; wEnd++)
+			{
+				if ( !nulls.get(wEnd) )
+				{
+					sum += values[wEnd];
+					count++;
+				}
+			}
+			if ( count == 0 )
+			{
+				r.nulls.set(i);
+			}
+			else
+			{
+				r.doubles[i] = kind == Kind.AVG ? sum / count : sum;
+			}
+		}
+	}
+
+	/*
+	 * the deque holds the rows of the frame, in row order, whose value is greater (for max) than the
+	 * values of all the rows after them; its head is the result.
+	 */
+	void minMax(long[] values, BitSet nulls, int[] starts, int[] ends, Results r)
+	{
+		boolean max = kind == Kind.MAX;
+		int[] deque = new int[dequeSize(ends)];
+		int head = 0;
+		int tail = 0;
+		int wStart = 0;
+		int wEnd = 0;
+		for(int i=0; i < starts.length; i++)
+		{
+			int start = starts[i];
+			int end = ends[i];
+			if ( start < wStart || end < wEnd || start >= wEnd )
+			{
+				head = 0;
+				tail = 0;
+				wEnd = start;
+			}
+			wStart = start;
+			for(; wEnd < end; wEnd++)
+			{
+				if ( !nulls.get(wEnd) )
+				{
+					long v = values[wEnd];
+					while(tail > head && (max ? values[deque[tail - 1]] <= v : values[deque[tail - 1]] >= v))
+					{
+						tail--;
+					}
+					deque[tail++] = wEnd;
+				}
+			}
+			while(head < tail && deque[head] < wStart)
+			{
+				head++;
+			}
+			if ( head == tail )
+			{
+				r.nulls.set(i);
+			}
+			else
+			{
+				r.longs[i] = values[deque[head]];
+			}
+		}
+	}
+
+	void minMax(double[] values, BitSet nulls, int[] starts, int[] ends, Results r)
+	{
+		boolean max = kind == Kind.MAX;
+		int[] deque = new int[dequeSize(ends)];
+		int head = 0;
+		int tail = 0;
+		int wStart = 0;
+		int wEnd = 0;
+		for(int i=0; i < starts.length; i++)
+		{
+			int start = starts[i];
+			int end = ends[i];
+			if ( start < wStart || end < wEnd || start >= wEnd )
+			{
+				head = 0;
+				tail = 0;
+				wEnd = start;
+			}
+			wStart = start;
+			for(; wEnd < end; wEnd++)
+			{
+				if ( !nulls.get(wEnd) )
+				{
+					double v = values[wEnd];
+					while(tail > head && (max ? Double.compare(values[deque[tail - 1]], v) <= 0 :
+						Double.compare(values[deque[tail - 1]], v) >= 0))
+					{
+						tail--;
+					}
+					deque[tail++] = wEnd;
+				}
+			}
+			while(head < tail && deque[head] < wStart)
+			{
+				head++;
+			}
+			if ( head == tail )
+			{
+				r.nulls.set(i);
+			}
+			else
+			{
+				r.doubles[i] = values[deque[head]];
+			}
+		}
+	}
+
+	/*
+	 * between restarts each row enters the deque at most once.
+	 */
+	static int dequeSize(int[] ends)
+	{
+		int sz = 0;
+		for(int e : ends)
+		{
+			sz = Math.max(sz, e);
+		}
+		return sz;
+	}
+
+	static class Results extends AbstractList<Object>
+	{
+		final int size;
+		final PrimitiveCategory category;
+		long[] longs;
+		double[] doubles;
+		BitSet nulls = new BitSet();
+		Writable w;
+
+		Results(int size, PrimitiveCategory category)
+		{
+			this.size = size;
+			this.category = category;
+			switch(category)
+			{
+			case BYTE:
+				w = new ByteWritable();
+				longs = new long[size];
+				break;
+			case SHORT:
+				w = new ShortWritable();
+				longs = new long[size];
+				break;
+			case INT:
+				w = new IntWritable();
+				longs = new long[size];
+				break;
+			case LONG:
+				w = new LongWritable();
+				longs = new long[size];
+				break;
+			case FLOAT:
+				w = new FloatWritable();
+				doubles = new double[size];
+				break;
+			default:
+				w = new DoubleWritable();
+				doubles = new double[size];
+			}
+		}
+
+		@Override
+		public Object get(int i)
+		{
+			if ( nulls.get(i) )
+			{
+				return null;
+			}
+			switch(category)
+			{
+			case BYTE:
+				((ByteWritable) w).set((byte) longs[i]);
+				break;
+			case SHORT:
+				((ShortWritable) w).set((short) longs[i]);
+				break;
+			case INT:
+				((IntWritable) w).set((int) longs[i]);
+				break;
+			case LONG:
+				((LongWritable) w).set(longs[i]);
+				break;
+			case FLOAT:
+				((FloatWritable) w).set((float) doubles[i]);
+				break;
+			default:
+				((DoubleWritable) w).set(doubles[i]);
+			}
+			return w;
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+}
@@ -0,0 +1,377 @@
+package com.sap.hadoop.windowing.functions2.window;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hadoop.io.LongWritable;
+
+import com.sap.hadoop.windowing.query2.definition.WindowFunctionDef;
+import com.sap.hadoop.windowing.query2.specification.WindowFunctionSpec;
+import com.sap.hadoop.windowing.query2.translate.WindowFunctionTranslation;
+
+/*
+ * An aggregation over a moving window whose rows can be retracted again.
+ * Used in place of the Hive GenericUDAFEvaluator for the invertible builtin aggregates
+ * (sum, count, avg and the variance/stddev family): as the frame slides, rows entering the frame
+ * are added and rows leaving it are removed, instead of re-aggregating the whole frame for every row.
+ * <p>
+ * sum and avg are only removable when their sum is exact: sum of byte, short, int and long args, avg
+ * of byte, short and int args. Hive sums the other args as doubles, and subtracting a double doesn't
+ * undo adding it; the sliding results would drift from Hive's.
+ * <p>
+ * The result of evaluate has the same type as the result of the Hive function it replaces.
+ */
+public abstract class RemovableAggregator
+{
+	protected PrimitiveObjectInspector[] inputOI;
+
+	protected RemovableAggregator(PrimitiveObjectInspector[] inputOI)
+	{
+		this.inputOI = inputOI;
+	}
+
+	public abstract void reset();
+
+	public abstract void add(Object[] args);
+
+	public abstract void remove(Object[] args);
+
+	public abstract Object evaluate();
+
+	static enum Kind
+	{
+		SUM,
+		COUNT,
+		AVG,
+		VAR_POP,
+		VAR_SAMP,
+		STDDEV_POP,
+		STDDEV_SAMP
+	};
+
+	static HashMap<String, Kind> REMOVABLE_FUNCS = new HashMap<String, Kind>();
+	static
+	{
+		REMOVABLE_FUNCS.put("sum", Kind.SUM);
+		REMOVABLE_FUNCS.put("count", Kind.COUNT);
+		REMOVABLE_FUNCS.put("avg", Kind.AVG);
+		REMOVABLE_FUNCS.put("variance", Kind.VAR_POP);
+		REMOVABLE_FUNCS.put("var_pop", Kind.VAR_POP);
+		REMOVABLE_FUNCS.put("var_samp", Kind.VAR_SAMP);
+		REMOVABLE_FUNCS.put("std", Kind.STDDEV_POP);
+		REMOVABLE_FUNCS.put("stddev", Kind.STDDEV_POP);
+		REMOVABLE_FUNCS.put("stddev_pop", Kind.STDDEV_POP);
+		REMOVABLE_FUNCS.put("stddev_samp", Kind.STDDEV_SAMP);
+	}
+
+	/*
+	 * return a RemovableAggregator for the given function; or null if the function
+	 * (or the type of its arguments) cannot be evaluated by retracting rows.
+	 */
+	public static RemovableAggregator get(WindowFunctionDef wFnDef)
+	{
+		WindowFunctionSpec wSpec = wFnDef.getSpec();
+		Kind k = REMOVABLE_FUNCS.get(wSpec.getName().toLowerCase());
+		if ( k == null || wSpec.isDistinct() )
+		{
+			return null;
+		}
+
+		ArrayList<ObjectInspector> args = WindowFunctionTranslation.getWritableObjectInspector(wFnDef.getArgs());
+		int numArgs = args.size();
+		PrimitiveObjectInspector[] argOIs = new PrimitiveObjectInspector[numArgs];
+		for(int i=0; i < numArgs; i++)
+		{
+			ObjectInspector aOI = args.get(i);
+			if ( aOI.getCategory() != ObjectInspector.Category.PRIMITIVE )
+			{
+				if ( k == Kind.COUNT )
+				{
+					argOIs = null;
+					break;
+				}
+				return null;
+			}
+			argOIs[i] = (PrimitiveObjectInspector) aOI;
+		}
+
+		if ( k == Kind.COUNT )
+		{
+			return isLongResult(wFnDef) ? new CountAggregator(argOIs, numArgs) : null;
+		}
+
+		if ( numArgs != 1 || !isNumeric(argOIs[0]) )
+		{
+			return null;
+		}
+
+		switch(k)
+		{
+		case SUM:
+			return isLongResult(wFnDef) ? new LongSumAggregator(argOIs) : null;
+		case AVG:
+			return isDoubleResult(wFnDef) && isExactInDouble(argOIs[0]) ? new AvgAggregator(argOIs) : null;
+		default:
+			return isDoubleResult(wFnDef) ? new VarianceAggregator(argOIs, k) : null;
+		}
+	}
+
+	static boolean isNumeric(PrimitiveObjectInspector pOI)
+	{
+		switch(pOI.getPrimitiveCategory())
+		{
+		case BYTE:
+		case SHORT:
+		case INT:
+		case LONG:
+		case FLOAT:
+		case DOUBLE:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	/*
+	 * Hive's double sums of the arg's values are exact, unless a frame adds up to more than 2^53.
+	 */
+	static boolean isExactInDouble(PrimitiveObjectInspector pOI)
+	{
+		switch(pOI.getPrimitiveCategory())
+		{
+		case BYTE:
+		case SHORT:
+		case INT:
+			return true;
+		default:
+			return false;
+		}
+	}
+
+	static boolean isLongResult(WindowFunctionDef wFnDef)
+	{
+		return isResultOfType(wFnDef, PrimitiveCategory.LONG);
+	}
+
+	static boolean isDoubleResult(WindowFunctionDef wFnDef)
+	{
+		return isResultOfType(wFnDef, PrimitiveCategory.DOUBLE);
+	}
+
+	static boolean isResultOfType(WindowFunctionDef wFnDef, PrimitiveCategory pc)
+	{
+		ObjectInspector OI = wFnDef.getOI();
+		return OI != null && OI.getCategory() == ObjectInspector.Category.PRIMITIVE &&
+				((PrimitiveObjectInspector)OI).getPrimitiveCategory() == pc;
+	}
+
+	public static class CountAggregator extends RemovableAggregator
+	{
+		int numArgs;
+		long count;
+
+		/*
+		 * argOIs is null if any argument is not a primitive; such arguments are only checked for null.
+		 */
+		CountAggregator(PrimitiveObjectInspector[] argOIs, int numArgs)
+		{
+			super(argOIs);
+			this.numArgs = numArgs;
+		}
+
+		/*
+		 * like Hive's count: count(*) counts all rows, count(expr,...) only rows where all exprs are not null.
+		 */
+		boolean counts(Object[] args)
+		{
+			for(int i=0; i < numArgs; i++)
+			{
+				if ( args[i] == null )
+				{
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public void reset()
+		{
+			count = 0;
+		}
+
+		@Override
+		public void add(Object[] args)
+		{
+			if ( counts(args) ) count++;
+		}
+
+		@Override
+		public void remove(Object[] args)
+		{
+			if ( counts(args) ) count--;
+		}
+
+		@Override
+		public Object evaluate()
+		{
+			return new LongWritable(count);
+		}
+	}
+
+	public static class LongSumAggregator extends RemovableAggregator
+	{
+		long sum;
+		long count;
+
+		LongSumAggregator(PrimitiveObjectInspector[] argOIs)
+		{
+			super(argOIs);
+		}
+
+		@Override
+		public void reset()
+		{
+			sum = 0;
+			count = 0;
+		}
+
+		@Override
+		public void add(Object[] args)
+		{
+			if ( args[0] != null )
+			{
+				sum += PrimitiveObjectInspectorUtils.getLong(args[0], inputOI[0]);
+				count++;
+			}
+		}
+
+		@Override
+		public void remove(Object[] args)
+		{
+			if ( args[0] != null )
+			{
+				sum -= PrimitiveObjectInspectorUtils.getLong(args[0], inputOI[0]);
+				count--;
+			}
+		}
+
+		@Override
+		public Object evaluate()
+		{
+			return count == 0 ? null : new LongWritable(sum);
+		}
+	}
+
+	/*
+	 * keeps the sum in a long; for the args it is used for Hive's double sum is the same.
+	 */
+	public static class AvgAggregator extends LongSumAggregator
+	{
+		AvgAggregator(PrimitiveObjectInspector[] argOIs)
+		{
+			super(argOIs);
+		}
+
+		@Override
+		public Object evaluate()
+		{
+			return count == 0 ? null : new DoubleWritable((double) sum / count);
+		}
+	}
+
+	/*
+	 * maintains count, mean and the sum of squared differences from the mean(m2) using Welford's method;
+	 * a remove applies the update in reverse.
+	 */
+	public static class VarianceAggregator extends RemovableAggregator
+	{
+		Kind kind;
+		long count;
+		double mean;
+		double m2;
+
+		VarianceAggregator(PrimitiveObjectInspector[] argOIs, Kind kind)
+		{
+			super(argOIs);
+			this.kind = kind;
+		}
+
+		@Override
+		public void reset()
+		{
+			count = 0;
+			mean = 0;
+			m2 = 0;
+		}
+
+		@Override
+		public void add(Object[] args)
+		{
+			if ( args[0] != null )
+			{
+				double v = PrimitiveObjectInspectorUtils.getDouble(args[0], inputOI[0]);
+				count++;
+				double delta = v - mean;
+				mean += delta / count;
+				m2 += delta * (v - mean);
+			}
+		}
+
+		@Override
+		public void remove(Object[] args)
+		{
+			if ( args[0] != null )
+			{
+				double v = PrimitiveObjectInspectorUtils.getDouble(args[0], inputOI[0]);
+				if ( count == 1 )
+				{
+					reset();
+					return;
+				}
+				count--;
+				double delta = v - mean;
+				mean -= delta / count;
+				m2 -= delta * (v - mean);
+				m2 = m2 < 0 ? 0 : m2;
+			}
+		}
+
+		/*
+		 * same conventions as Hive's GenericUDAFVariance family: null for no rows, 0 for a single row.
+		 */
+		@Override
+		public Object evaluate()
+		{
+			if ( count == 0 )
+			{
+				return null;
+			}
+			if ( count == 1 )
+			{
+				return new DoubleWritable(0);
+			}
+			double r;
+			switch(kind)
+			{
+			case VAR_SAMP:
+				r = m2 / (count - 1);
+				break;
+			case STDDEV_POP:
+				r = Math.sqrt(m2 / count);
+				break;
+			case STDDEV_SAMP:
+				r = Math.sqrt(m2 / (count - 1));
+				break;
+			default:
+				r = m2 / count;
+			}
+			return new DoubleWritable(r);
+		}
+	}
+}
@@ -0,0 +1,93 @@
+package com.sap.hadoop.windowing.functions2.window;
+
+import java.util.AbstractList;
+
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.io.IntWritable;
+
+/*
+ * List views of the results of the ranking functions, computed from primitive arrays or from the
+ * row number as they are read. The returned writable is reused: it is only valid until the next
+ * element is read.
+ */
+class ResultLists
+{
+	static abstract class IntList extends AbstractList<Object>
+	{
+		final int size;
+		final IntWritable w = new IntWritable();
+
+		IntList(int size)
+		{
+			this.size = size;
+		}
+
+		abstract int getInt(int i);
+
+		@Override
+		public Object get(int i)
+		{
+			if ( i < 0 || i >= size )
+			{
+				throw new IndexOutOfBoundsException("" + i);
+			}
+			w.set(getInt(i));
+			return w;
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+
+	static abstract class DoubleList extends AbstractList<Object>
+	{
+		final int size;
+		final DoubleWritable w = new DoubleWritable();
+
+		DoubleList(int size)
+		{
+			this.size = size;
+		}
+
+		abstract double getDouble(int i);
+
+		@Override
+		public Object get(int i)
+		{
+			if ( i < 0 || i >= size )
+			{
+				throw new IndexOutOfBoundsException("" + i);
+			}
+			w.set(getDouble(i));
+			return w;
+		}
+
+		@Override
+		public int size()
+		{
+			return size;
+		}
+	}
+
+	/*
+	 * a view of the first size elements of an array.
+	 */
+	static class ArrayIntList extends IntList
+	{
+		final int[] values;
+
+		ArrayIntList(int[] values, int size)
+		{
+			super(size);
+			this.values = values;
+		}
+
+		int getInt(int i)
+		{
+			return values[i];
+		}
+	}
+}
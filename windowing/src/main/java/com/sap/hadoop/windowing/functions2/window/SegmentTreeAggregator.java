@@ -0,0 +1,181 @@
+package com.sap.hadoop.windowing.functions2.window;
+
+import java.util.ArrayList;
+
+import org.apache.hadoop.hive.ql.exec.FunctionRegistry;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.parse.SemanticException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+
+import com.sap.hadoop.windowing.functions2.FunctionRegistry.WindowFunctionInfo;
+import com.sap.hadoop.windowing.query2.definition.WindowFunctionDef;
+import com.sap.hadoop.windowing.query2.specification.WindowFunctionSpec;
+import com.sap.hadoop.windowing.query2.translate.WindowFunctionTranslation;
+
+/*
+ * Answers the aggregation over any range of rows of a Partition by merging O(log n) partial
+ * aggregations. Used for the Hive UDAFs that cannot retract rows (min, max, ...) but support
+ * the PARTIAL1, PARTIAL2 and FINAL modes.
+ * <p>
+ * For a Partition of n rows a segment tree of 2n partial results is built: the leaves hold the
+ * partial aggregation of each row, each inner node the merge of its 2 children. The partial
+ * results are held as standard writable objects.
+ */
+public class SegmentTreeAggregator
+{
+	GenericUDAFEvaluator partial1Eval;
+	GenericUDAFEvaluator partial2Eval;
+	GenericUDAFEvaluator finalEval;
+	ObjectInspector partial1OI;
+	ObjectInspector partial2OI;
+	ObjectInspector finalOI;
+
+	AggregationBuffer rowBuffer;
+	AggregationBuffer partialBuffer;
+	AggregationBuffer finalBuffer;
+
+	/*
+	 * tree[1] is the root; the children of node i are 2i and 2i+1; leaf for row r is tree[n + r]
+	 */
+	Object[] tree;
+	int n;
+	ArrayList<Integer> rightNodes = new ArrayList<Integer>();
+
+	SegmentTreeAggregator(GenericUDAFEvaluator partial1Eval, GenericUDAFEvaluator partial2Eval, GenericUDAFEvaluator finalEval,
+			ObjectInspector partial1OI, ObjectInspector partial2OI, ObjectInspector finalOI) throws HiveException
+	{
+		this.partial1Eval = partial1Eval;
+		this.partial2Eval = partial2Eval;
+		this.finalEval = finalEval;
+		this.partial1OI = partial1OI;
+		this.partial2OI = partial2OI;
+		this.finalOI = finalOI;
+		partialBuffer = partial2Eval.getNewAggregationBuffer();
+		finalBuffer = finalEval.getNewAggregationBuffer();
+	}
+
+	/*
+	 * return a SegmentTreeAggregator for the given function; or null if the function doesn't
+	 * support partial aggregation.
+	 */
+	public static SegmentTreeAggregator get(WindowFunctionDef wFnDef)
+	{
+		WindowFunctionSpec wSpec = wFnDef.getSpec();
+		WindowFunctionInfo wFnInfo = com.sap.hadoop.windowing.functions2.FunctionRegistry.getWindowFunctionInfo(wSpec.getName());
+		if ( wSpec.isDistinct() || wFnInfo == null || wFnInfo.isPivotResult() )
+		{
+			return null;
+		}
+
+		ArrayList<ObjectInspector> argOIs = WindowFunctionTranslation.getWritableObjectInspector(wFnDef.getArgs());
+		ObjectInspector[] funcArgOIs = argOIs.toArray(new ObjectInspector[argOIs.size()]);
+
+		/*
+		 * the window functions that only support COMPLETE mode throw a HiveException on init.
+		 */
+		try
+		{
+			GenericUDAFEvaluator partial1Eval = newEvaluator(wSpec, argOIs);
+			GenericUDAFEvaluator partial2Eval = newEvaluator(wSpec, argOIs);
+			GenericUDAFEvaluator finalEval = newEvaluator(wSpec, argOIs);
+
+			ObjectInspector partial1OI = partial1Eval.init(GenericUDAFEvaluator.Mode.PARTIAL1, funcArgOIs);
+			ObjectInspector partialOI = ObjectInspectorUtils.getStandardObjectInspector(partial1OI, ObjectInspectorCopyOption.WRITABLE);
+			ObjectInspector partial2OI = partial2Eval.init(GenericUDAFEvaluator.Mode.PARTIAL2, new ObjectInspector[] {partialOI});
+			ObjectInspector finalOI = finalEval.init(GenericUDAFEvaluator.Mode.FINAL, new ObjectInspector[] {partialOI});
+
+			return new SegmentTreeAggregator(partial1Eval, partial2Eval, finalEval, partial1OI, partial2OI, finalOI);
+		}
+		catch(HiveException e)
+		{
+			return null;
+		}
+	}
+
+	static GenericUDAFEvaluator newEvaluator(WindowFunctionSpec wSpec, ArrayList<ObjectInspector> argOIs) throws SemanticException
+	{
+		return FunctionRegistry.getGenericUDAFEvaluator(wSpec.getName(), argOIs, wSpec.isDistinct(), wSpec.isStar());
+	}
+
+	/*
+	 * start building the tree for a Partition of n rows.
+	 */
+	public void reset(int n) throws HiveException
+	{
+		this.n = n;
+		tree = new Object[2 * n];
+		if ( rowBuffer == null )
+		{
+			rowBuffer = partial1Eval.getNewAggregationBuffer();
+		}
+	}
+
+	/*
+	 * set the leaf for row i from the function's arguments on the row.
+	 */
+	public void addRow(int i, Object[] args) throws HiveException
+	{
+		partial1Eval.reset(rowBuffer);
+		partial1Eval.iterate(rowBuffer, args);
+		tree[n + i] = ObjectInspectorUtils.copyToStandardObject(partial1Eval.terminatePartial(rowBuffer),
+				partial1OI, ObjectInspectorCopyOption.WRITABLE);
+	}
+
+	/*
+	 * compute the inner nodes, once all rows have been added.
+	 */
+	public void buildTree() throws HiveException
+	{
+		for(int i=n-1; i > 0; i--)
+		{
+			partial2Eval.reset(partialBuffer);
+			partial2Eval.merge(partialBuffer, tree[2 * i]);
+			partial2Eval.merge(partialBuffer, tree[2 * i + 1]);
+			tree[i] = ObjectInspectorUtils.copyToStandardObject(partial2Eval.terminatePartial(partialBuffer),
+					partial2OI, ObjectInspectorCopyOption.WRITABLE);
+		}
+	}
+
+	/*
+	 * the aggregation over rows [start, end); nodes are merged in row order.
+	 */
+	public Object evaluate(int start, int end) throws HiveException
+	{
+		finalEval.reset(finalBuffer);
+		rightNodes.clear();
+		int l = Math.max(start, 0) + n;
+		int r = Math.min(end, n) + n;
+		while( l < r )
+		{
+			if ( (l & 1) == 1 )
+			{
+				finalEval.merge(finalBuffer, tree[l++]);
+			}
+			if ( (r & 1) == 1 )
+			{
+				rightNodes.add(--r);
+			}
+			l >>= 1;
+			r >>= 1;
+		}
+		for(int i=rightNodes.size() - 1; i >= 0; i--)
+		{
+			finalEval.merge(finalBuffer, tree[rightNodes.get(i)]);
+		}
+		Object out = finalEval.terminate(finalBuffer);
+		return ObjectInspectorUtils.copyToStandardObject(out, finalOI, ObjectInspectorCopyOption.WRITABLE);
+	}
+
+	/*
+	 * release the tree built for the last Partition.
+	 */
+	public void close()
+	{
+		tree = null;
+		n = 0;
+	}
+}
@@ -11,6 +11,7 @@ import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.CurrentRowS
 import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.Direction;
 import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.RangeBoundarySpec;
 import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.ValueBoundarySpec;
+import com.sap.hadoop.windowing.runtime2.ValueBoundaryScanner;
 
 public class WindowFrameDef
 {
@@ -104,10 +105,12 @@ public class WindowFrameDef
 		ExprNodeDesc exprNode;
 		transient ExprNodeEvaluator exprEvaluator;
 		transient ObjectInspector OI;
+		transient ValueBoundaryScanner scanner;
 		
 		static{
 			SerializationUtils.makeTransient(ValueBoundaryDef.class, "exprEvaluator");
 			SerializationUtils.makeTransient(ValueBoundaryDef.class, "OI");
+			SerializationUtils.makeTransient(ValueBoundaryDef.class, "scanner");
 		}
 
 		public ValueBoundaryDef(){ }
@@ -152,6 +155,16 @@ public class WindowFrameDef
 			OI = oI;
 		}
 
+		public ValueBoundaryScanner getScanner()
+		{
+			return scanner;
+		}
+
+		public void setScanner(ValueBoundaryScanner scanner)
+		{
+			this.scanner = scanner;
+		}
+
 		public int compareTo(BoundaryDef other)
 		{
 			int c = getDirection().compareTo(other.getDirection());
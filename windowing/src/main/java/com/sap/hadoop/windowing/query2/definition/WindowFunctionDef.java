@@ -5,6 +5,9 @@ import java.util.ArrayList;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 
+import com.sap.hadoop.windowing.functions2.window.ColumnAggregator;
+import com.sap.hadoop.windowing.functions2.window.RemovableAggregator;
+import com.sap.hadoop.windowing.functions2.window.SegmentTreeAggregator;
 import com.sap.hadoop.windowing.query2.SerializationUtils;
 import com.sap.hadoop.windowing.query2.specification.WindowFunctionSpec;
 
@@ -15,10 +18,16 @@ public class WindowFunctionDef
 	WindowDef window;
 	transient GenericUDAFEvaluator wFnEval;
 	transient ObjectInspector OI;
+	transient RemovableAggregator removableAggregator;
+	transient SegmentTreeAggregator segmentTreeAggregator;
+	transient ColumnAggregator columnAggregator;
 	
 	static{
 		SerializationUtils.makeTransient(WindowFunctionDef.class, "wFnEval");
 		SerializationUtils.makeTransient(WindowFunctionDef.class, "OI");
+		SerializationUtils.makeTransient(WindowFunctionDef.class, "removableAggregator");
+		SerializationUtils.makeTransient(WindowFunctionDef.class, "segmentTreeAggregator");
+		SerializationUtils.makeTransient(WindowFunctionDef.class, "columnAggregator");
 	}
 
 	
@@ -81,5 +90,44 @@ public class WindowFunctionDef
 	{
 		OI = oI;
 	}
+
+	/*
+	 * null if the function cannot be evaluated by adding and removing rows as the window slides.
+	 */
+	public RemovableAggregator getRemovableAggregator()
+	{
+		return removableAggregator;
+	}
+
+	public void setRemovableAggregator(RemovableAggregator removableAggregator)
+	{
+		this.removableAggregator = removableAggregator;
+	}
+
+	/*
+	 * null if the function doesn't support partial aggregation.
+	 */
+	public SegmentTreeAggregator getSegmentTreeAggregator()
+	{
+		return segmentTreeAggregator;
+	}
+
+	public void setSegmentTreeAggregator(SegmentTreeAggregator segmentTreeAggregator)
+	{
+		this.segmentTreeAggregator = segmentTreeAggregator;
+	}
+
+	/*
+	 * null if the function cannot be evaluated directly on its arg columns.
+	 */
+	public ColumnAggregator getColumnAggregator()
+	{
+		return columnAggregator;
+	}
+
+	public void setColumnAggregator(ColumnAggregator columnAggregator)
+	{
+		this.columnAggregator = columnAggregator;
+	}
 	
 }
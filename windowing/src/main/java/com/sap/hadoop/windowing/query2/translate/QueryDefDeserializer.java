@@ -30,6 +30,7 @@ import com.sap.hadoop.windowing.query2.definition.WhereDef;
 import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.ValueBoundaryDef;
 import com.sap.hadoop.windowing.query2.definition.WindowFunctionDef;
 import com.sap.hadoop.windowing.query2.translate.QueryTranslationInfo.InputInfo;
+import com.sap.hadoop.windowing.runtime2.ValueBoundaryScanner;
 
 /*
  * An implementation of the {@link QueryDefVisitor} to reconstruct 
@@ -224,6 +225,7 @@ public class QueryDefDeserializer extends QueryDefVisitor
 				boundary.getExprNode(), exprEval, inputInfo);
 		boundary.setExprEvaluator(exprEval);
 		boundary.setOI(oi);
+		boundary.setScanner(ValueBoundaryScanner.getScanner(boundary));
 	}
 
 	/*
@@ -10,6 +10,7 @@ import org.apache.hadoop.hive.metastore.HiveMetaStoreClient;
 import org.apache.hadoop.hive.ql.metadata.Hive;
 import org.apache.hadoop.hive.ql.parse.RowResolver;
 import org.apache.hadoop.hive.ql.parse.TypeCheckCtx;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
@@ -194,11 +195,32 @@ public class QueryTranslationInfo
 	{
 		List<ExprNodeGenericFuncDesc> leadLagExprs;
 		Map<ExprNodeDesc, List<ExprNodeGenericFuncDesc>> mapTopExprToLLFunExprs;
+		int maxAmt;
 			
 		private void addLeadLagExpr(ExprNodeGenericFuncDesc llFunc)
 		{
 			leadLagExprs = leadLagExprs == null ? new ArrayList<ExprNodeGenericFuncDesc>() : leadLagExprs;
 			leadLagExprs.add(llFunc);
+			List<ExprNodeDesc> args = llFunc.getChildExprs();
+			int amt = 1;
+			if ( args != null && args.size() > 1 && args.get(1) instanceof ExprNodeConstantDesc )
+			{
+				Object amtVal = ((ExprNodeConstantDesc) args.get(1)).getValue();
+				if ( amtVal instanceof Number )
+				{
+					amt = Math.abs(((Number) amtVal).intValue());
+				}
+			}
+			maxAmt = Math.max(maxAmt, amt);
+		}
+		
+		/*
+		 * the largest constant amount of the Lead/Lag invocations; how far from the current row they read.
+		 * An invocation without an amount reads the adjacent row.
+		 */
+		public int getMaxAmt()
+		{
+			return maxAmt;
 		}
 	
 		public List<ExprNodeGenericFuncDesc> getLeadLagExprs()
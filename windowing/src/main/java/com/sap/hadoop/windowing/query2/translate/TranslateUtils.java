@@ -42,6 +42,7 @@ import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
 
+import com.sap.hadoop.windowing.Constants;
 import com.sap.hadoop.windowing.WindowingException;
 import com.sap.hadoop.windowing.functions2.FunctionRegistry;
 import com.sap.hadoop.windowing.functions2.GenericUDFLeadLag;
@@ -60,6 +61,9 @@ import com.sap.hadoop.windowing.query2.definition.SelectDef;
 import com.sap.hadoop.windowing.query2.definition.TableFuncDef;
 import com.sap.hadoop.windowing.query2.definition.WhereDef;
 import com.sap.hadoop.windowing.query2.definition.WindowDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.BoundaryDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.ValueBoundaryDef;
 import com.sap.hadoop.windowing.query2.specification.ColumnSpec;
 import com.sap.hadoop.windowing.query2.specification.OrderColumnSpec;
 import com.sap.hadoop.windowing.query2.specification.QueryInputSpec;
@@ -73,6 +77,7 @@ import com.sap.hadoop.windowing.query2.translate.TableFunctionChainIterators.Rev
 import com.sap.hadoop.windowing.query2.translate.TableFunctionChainIterators.ReverseQueryInputSpecIterator;
 import com.sap.hadoop.windowing.query2.translate.TableFunctionChainIterators.ReverseTableFunctionSpecIterator;
 import com.sap.hadoop.windowing.query2.translate.TableFunctionChainIterators.TableFunctionSpecIterator;
+import com.sap.hadoop.windowing.runtime2.ColumnarStructObjectInspector;
 
 public class TranslateUtils
 {
@@ -455,9 +460,10 @@ public class TranslateUtils
 		SerDe serde = null;
 		// treat Noop Function special because it just hands the input Partition
 		// to the next function in the chain.
-		if (tDef.getName().equals(FunctionRegistry.NOOP_TABLE_FUNCTION)
+		boolean isNoop = tDef.getName().equals(FunctionRegistry.NOOP_TABLE_FUNCTION)
 				|| tDef.getName().equals(
-						FunctionRegistry.NOOP_MAP_TABLE_FUNCTION))
+						FunctionRegistry.NOOP_MAP_TABLE_FUNCTION);
+		if (isNoop)
 		{
 			serde = inputDef.getSerde();
 		}
@@ -470,7 +476,23 @@ public class TranslateUtils
 
 		try
 		{
-			tDef.setOI((StructObjectInspector) serde.getObjectInspector());
+			if (isNoop)
+			{
+				tDef.setOI(inputDef.getOI());
+			}
+			else
+			{
+				StructObjectInspector OI = (StructObjectInspector) serde.getObjectInspector();
+				/*
+				 * the output Partition is columnar; see TableFunctionEvaluator.execute
+				 */
+				Configuration cfg = tInfo.getHiveCfg();
+				if (cfg != null && cfg.getBoolean(Constants.WINDOW_PARTITION_COLUMNAR, false))
+				{
+					OI = new ColumnarStructObjectInspector(OI);
+				}
+				tDef.setOI(OI);
+			}
 		}
 		catch (SerDeException se)
 		{
@@ -619,6 +641,36 @@ public class TranslateUtils
 		return true;
 	}
 
+	/*
+	 * do the 2 frames select the same rows for every row of a Partition.
+	 */
+	public static boolean isSameFrame(WindowFrameDef frame1, WindowFrameDef frame2)
+	{
+		if (frame1 == frame2)
+			return true;
+		if (frame1 == null || frame2 == null)
+			return false;
+		return isSameBoundary(frame1.getStart(), frame2.getStart())
+				&& isSameBoundary(frame1.getEnd(), frame2.getEnd());
+	}
+
+	public static boolean isSameBoundary(BoundaryDef bnd1, BoundaryDef bnd2)
+	{
+		if (bnd1 == bnd2)
+			return true;
+		if (bnd1 == null || bnd2 == null)
+			return false;
+		if (bnd1.getClass() != bnd2.getClass() || bnd1.compareTo(bnd2) != 0)
+			return false;
+		if (bnd1 instanceof ValueBoundaryDef)
+		{
+			ExprNodeDesc e1 = ((ValueBoundaryDef) bnd1).getExprNode();
+			ExprNodeDesc e2 = ((ValueBoundaryDef) bnd2).getExprNode();
+			return e1 == null ? e2 == null : e2 != null && e1.isSame(e2);
+		}
+		return true;
+	}
+
 	public static void validateValueBoundaryExprType(ObjectInspector OI)
 			throws WindowingException
 	{
@@ -6,12 +6,17 @@ import org.apache.hadoop.hive.ql.metadata.HiveException;
 import org.apache.hadoop.hive.ql.parse.ASTNode;
 import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
 import org.apache.hadoop.hive.serde2.objectinspector.StructField;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 
 import com.sap.hadoop.windowing.WindowingException;
 import com.sap.hadoop.windowing.functions2.FunctionRegistry;
 import com.sap.hadoop.windowing.functions2.FunctionRegistry.WindowFunctionInfo;
+import com.sap.hadoop.windowing.functions2.window.ColumnAggregator;
+import com.sap.hadoop.windowing.functions2.window.RemovableAggregator;
+import com.sap.hadoop.windowing.functions2.window.SegmentTreeAggregator;
 import com.sap.hadoop.windowing.query2.definition.ArgDef;
 import com.sap.hadoop.windowing.query2.definition.OrderColumnDef;
 import com.sap.hadoop.windowing.query2.definition.OrderDef;
@@ -76,18 +81,19 @@ public class WindowFunctionTranslation
 			
 			if ( args != null)
 			{
-				funcArgOIs = new ObjectInspector[args.size()];
-				int i = 0;
-				for(ArgDef arg : args)
-				{
-					funcArgOIs[i++] =arg.getOI();
-				}
+				funcArgOIs = argOIs.toArray(new ObjectInspector[args.size()]);
 			}
 			
 			ObjectInspector OI = wFnEval.init(GenericUDAFEvaluator.Mode.COMPLETE, funcArgOIs);
 			
 			wFnDef.setEvaluator(wFnEval);
 			wFnDef.setOI(OI);
+			wFnDef.setColumnAggregator(ColumnAggregator.get(wFnDef));
+			wFnDef.setRemovableAggregator(RemovableAggregator.get(wFnDef));
+			if ( wFnDef.getWindow() != null && wFnDef.getRemovableAggregator() == null )
+			{
+				wFnDef.setSegmentTreeAggregator(SegmentTreeAggregator.get(wFnDef));
+			}
 		}
 		catch(HiveException he)
 		{
@@ -100,14 +106,19 @@ public class WindowFunctionTranslation
 		return TranslateUtils.buildArgDef(qDef, iInfo, arg);
 	}
 	
-	static ArrayList<ObjectInspector> getWritableObjectInspector(ArrayList<ArgDef> args)
+	/*
+	 * the OIs the function evaluators are initialized with: the standard writable OIs of the args.
+	 * Args are evaluated into column buffers of standard writable values (see ArgColumns), or copied
+	 * to them when evaluated on a row.
+	 */
+	public static ArrayList<ObjectInspector> getWritableObjectInspector(ArrayList<ArgDef> args)
 	{
 		ArrayList<ObjectInspector> result = new ArrayList<ObjectInspector>();
 		if ( args != null)
 		{
 			for (ArgDef arg : args)
 			{
-				result.add(arg.getOI());
+				result.add(ObjectInspectorUtils.getStandardObjectInspector(arg.getOI(), ObjectInspectorCopyOption.WRITABLE));
 			}
 		}
 		return result;
@@ -38,6 +38,7 @@ import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.CurrentRowS
 import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.RangeBoundarySpec;
 import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.ValueBoundarySpec;
 import com.sap.hadoop.windowing.query2.specification.WindowSpec;
+import com.sap.hadoop.windowing.runtime2.ValueBoundaryScanner;
 import com.sap.hadoop.windowing.query2.translate.QueryTranslationInfo.InputInfo;
 
 public class WindowSpecTranslation
@@ -297,6 +298,7 @@ public class WindowSpecTranslation
 			TranslateUtils.validateValueBoundaryExprType(OI);
 			vbDef.setExprEvaluator(exprEval);
 			vbDef.setOI(OI);
+			vbDef.setScanner(ValueBoundaryScanner.getScanner(vbDef));
 			return vbDef;
 		}
 		else if ( bndSpec instanceof RangeBoundarySpec)
@@ -0,0 +1,145 @@
+package com.sap.hadoop.windowing.runtime2;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluator;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+
+import com.sap.hadoop.windowing.WindowingException;
+
+/*
+ * The values of a set of argument expressions for all the rows of a Partition. Each distinct expression
+ * is evaluated once per row into a typed column, no matter how many functions refer to it or how many
+ * frames the row is in.
+ * <p>
+ * Values are read with the standard writable OI of the expression's OI. As with the columns of a
+ * {@link ColumnarPartition}, the value returned by get is reused: it is only valid until the next value
+ * is read from the same column.
+ */
+public class ArgColumns
+{
+	ArrayList<ExprNodeDesc> exprs = new ArrayList<ExprNodeDesc>();
+	ArrayList<ExprNodeEvaluator> evaluators = new ArrayList<ExprNodeEvaluator>();
+	ArrayList<ObjectInspector> OIs = new ArrayList<ObjectInspector>();
+	ArrayList<ColumnarPartition.Column> columns = new ArrayList<ColumnarPartition.Column>();
+	int numRows;
+
+	/*
+	 * add a column for the expression, unless there already is one for the same expression.
+	 * @return the index of the column.
+	 */
+	public int add(ExprNodeDesc expr, ExprNodeEvaluator evaluator, ObjectInspector OI)
+	{
+		for(int i=0; i < exprs.size(); i++)
+		{
+			if ( exprs.get(i).isSame(expr) )
+			{
+				return i;
+			}
+		}
+		exprs.add(expr);
+		evaluators.add(evaluator);
+		OIs.add(OI);
+		columns.add(ColumnarPartition.createColumn(
+				ObjectInspectorUtils.getStandardObjectInspector(OI, ObjectInspectorCopyOption.WRITABLE)));
+		return exprs.size() - 1;
+	}
+
+	public int numColumns()
+	{
+		return columns.size();
+	}
+
+	/*
+	 * evaluate the expressions on each row of the iterator's Partition. Lead/Lag invocations in the
+	 * expressions are evaluated relative to the Partition; so the iterator must be connected to them.
+	 */
+	public void evaluate(PartitionIterator<Object> pItr) throws WindowingException
+	{
+		for(ColumnarPartition.Column c : columns)
+		{
+			c.clear();
+		}
+		numRows = 0;
+		if ( columns.size() == 0 )
+		{
+			return;
+		}
+
+		try
+		{
+			while(pItr.hasNext())
+			{
+				Object row = pItr.next();
+				for(int i=0; i < columns.size(); i++)
+				{
+					columns.get(i).add(numRows, evaluators.get(i).evaluate(row), OIs.get(i));
+				}
+				numRows++;
+			}
+		}
+		catch(HiveException he)
+		{
+			throw new WindowingException(he);
+		}
+	}
+
+	/*
+	 * the value of column col at row i.
+	 */
+	public Object get(int col, int i)
+	{
+		return columns.get(col).get(i);
+	}
+
+	/*
+	 * the rows where column col is null.
+	 */
+	public BitSet getNulls(int col)
+	{
+		return columns.get(col).getNulls();
+	}
+
+	/*
+	 * the values of a byte, short, int or long column; the values at null rows are undefined.
+	 */
+	public long[] getLongs(int col)
+	{
+		ColumnarPartition.Column c = columns.get(col);
+		if ( c instanceof ColumnarPartition.LongColumn )
+		{
+			return ((ColumnarPartition.LongColumn) c).values;
+		}
+		int[] values = ((ColumnarPartition.IntColumn) c).values;
+		long[] l = new long[numRows];
+		for(int i=0; i < numRows && i < values.length; i++)
+		{
+			l[i] = values[i];
+		}
+		return l;
+	}
+
+	/*
+	 * the values of a numeric column as doubles; the values at null rows are undefined.
+	 */
+	public double[] getDoubles(int col)
+	{
+		ColumnarPartition.Column c = columns.get(col);
+		if ( c instanceof ColumnarPartition.DoubleColumn )
+		{
+			return ((ColumnarPartition.DoubleColumn) c).values;
+		}
+		long[] values = getLongs(col);
+		double[] d = new double[numRows];
+		for(int i=0; i < numRows && i < values.length; i++)
+		{
+			d[i] = values[i];
+		}
+		return d;
+	}
+}
@@ -0,0 +1,715 @@
+package com.sap.hadoop.windowing.runtime2;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+
+import org.apache.hadoop.hive.serde2.SerDe;
+import org.apache.hadoop.hive.serde2.io.ByteWritable;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.io.ShortWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector.PrimitiveCategory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.StringObjectInspector;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.FloatWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+
+import com.sap.hadoop.ds.BaseException;
+import com.sap.hadoop.ds.list.PartitionMemoryManager;
+import com.sap.hadoop.windowing.WindowingException;
+import static com.sap.hadoop.Utils.sprintf;
+
+/*
+ * A Partition that holds its rows column by column: numeric and boolean columns in primitive arrays,
+ * string columns as a dictionary of their distinct values and an array of codes; columns of other types
+ * as a list of standard writable objects. A string column whose distinct values are about as many as its rows
+ * drops the dictionary and holds the values' bytes instead.
+ * <p>
+ * Rows are views of an index, read with a {@link ColumnarStructObjectInspector}; so evaluating an expression
+ * only materializes the columns it refers to. As with the row based Partition, the row returned by getAt
+ * and the iterators is reused: it is only valid until the next row is read.
+ * <p>
+ * The columns are held on the java heap; they are not spilled. Their estimated size is accounted for by
+ * the {@link PartitionMemoryManager}, so that spillable Partitions make room for them.
+ */
+public class ColumnarPartition extends Partition implements PartitionMemoryManager.Owner
+{
+	/*
+	 * the number of rows appended between updates of the accounted bytes.
+	 */
+	static final int ACCOUNTING_INTERVAL = 1024;
+
+	ColumnarStructObjectInspector rowOI;
+	Column[] columns;
+	int numRows;
+	Row row;
+	PartitionMemoryManager.Entry memEntry;
+
+	/*
+	 * @param serDe used to deserialize appended Writables, and to serialize rows for getWritableAt.
+	 * @param oI the OI of rows appended as objects.
+	 * @param rowOI the OI of the rows of this Partition.
+	 */
+	public ColumnarPartition(SerDe serDe, StructObjectInspector oI, ColumnarStructObjectInspector rowOI)
+	{
+		super(serDe, oI);
+		this.rowOI = rowOI;
+		createColumns();
+		row = new Row();
+	}
+
+	private void createColumns()
+	{
+		List<? extends StructField> fields = rowOI.getAllStructFieldRefs();
+		columns = new Column[fields.size()];
+		for(int i=0; i < columns.length; i++)
+		{
+			columns[i] = createColumn(fields.get(i).getFieldObjectInspector());
+		}
+	}
+
+	static Column createColumn(ObjectInspector OI)
+	{
+		if ( OI.getCategory() == ObjectInspector.Category.PRIMITIVE )
+		{
+			PrimitiveCategory pc = ((PrimitiveObjectInspector) OI).getPrimitiveCategory();
+			switch(pc)
+			{
+			case BOOLEAN:
+				return new BooleanColumn();
+			case BYTE:
+			case SHORT:
+			case INT:
+				return new IntColumn(pc);
+			case LONG:
+				return new LongColumn();
+			case FLOAT:
+			case DOUBLE:
+				return new DoubleColumn(pc);
+			case STRING:
+				return new StringColumn();
+			default:
+			}
+		}
+		return new ObjectColumn();
+	}
+
+	/*
+	 * a view of the row at index idx.
+	 */
+	class Row
+	{
+		int idx;
+
+		Object get(int col)
+		{
+			return columns[col].get(idx);
+		}
+	}
+
+	/*
+	 * rows are not deserialized; there is nothing to cache.
+	 */
+	@Override
+	public void setRowCacheSize(int size)
+	{
+	}
+
+	@Override
+	public StructObjectInspector getRowOI()
+	{
+		return rowOI;
+	}
+
+	@Override
+	public Object getAt(int i) throws WindowingException
+	{
+		if ( i < 0 || i >= numRows )
+		{
+			throw new WindowingException(sprintf("index invalid %d", i));
+		}
+		row.idx = i;
+		return row;
+	}
+
+	@Override
+	public Object getWritableAt(int i) throws WindowingException
+	{
+		try
+		{
+			return serDe.serialize(getAt(i), rowOI);
+		}
+		catch(Exception e)
+		{
+			throw new WindowingException(e);
+		}
+	}
+
+	@Override
+	public void append(Writable o) throws WindowingException
+	{
+		try
+		{
+			append(serDe.deserialize(o), (StructObjectInspector) serDe.getObjectInspector());
+		}
+		catch(WindowingException we)
+		{
+			throw we;
+		}
+		catch(Exception e)
+		{
+			throw new WindowingException(e);
+		}
+	}
+
+	@Override
+	public void append(Object o) throws WindowingException
+	{
+		append(o, OI);
+	}
+
+	private void append(Object o, StructObjectInspector oi) throws WindowingException
+	{
+		List<? extends StructField> fields = oi.getAllStructFieldRefs();
+		if ( fields.size() != columns.length )
+		{
+			throw new WindowingException(sprintf("row has %d fields, Partition has %d columns", fields.size(), columns.length));
+		}
+		for(int i=0; i < columns.length; i++)
+		{
+			StructField f = fields.get(i);
+			columns[i].add(numRows, oi.getStructFieldData(o, f), f.getFieldObjectInspector());
+		}
+		numRows++;
+		if ( numRows % ACCOUNTING_INTERVAL == 0 )
+		{
+			trackMemory();
+		}
+	}
+
+	long getBytes()
+	{
+		long b = 0;
+		for(Column c : columns)
+		{
+			b += c.getBytes();
+		}
+		return b;
+	}
+
+	/*
+	 * update the bytes accounted for the columns. They can't be evicted, so this may evict other
+	 * Partitions' lists.
+	 */
+	void trackMemory() throws WindowingException
+	{
+		try
+		{
+			PartitionMemoryManager mm = PartitionMemoryManager.get();
+			if ( memEntry == null )
+			{
+				memEntry = mm.register(this, getBytes(), false);
+			}
+			else
+			{
+				mm.resize(memEntry, getBytes());
+			}
+		}
+		catch(BaseException be)
+		{
+			throw new WindowingException(be);
+		}
+	}
+
+	/*
+	 * the columns are not spilled.
+	 */
+	public boolean evict(PartitionMemoryManager.Entry e)
+	{
+		return false;
+	}
+
+	@Override
+	public int size()
+	{
+		return numRows;
+	}
+
+	@Override
+	public void seal() throws WindowingException
+	{
+		trackMemory();
+	}
+
+	@Override
+	public void reset() throws WindowingException
+	{
+		for(Column c : columns)
+		{
+			c.clear();
+		}
+		numRows = 0;
+		generation++;
+		trackMemory();
+	}
+
+	/*
+	 * drop the columns and stop accounting for them.
+	 */
+	@Override
+	public void close() throws WindowingException
+	{
+		PartitionMemoryManager.get().release(memEntry);
+		memEntry = null;
+		createColumns();
+		numRows = 0;
+		generation++;
+	}
+
+	@Override
+	PItr createIterator(int start, int end)
+	{
+		return new CItr(start, end);
+	}
+
+	class CItr extends PItr
+	{
+		CItr(int start, int end)
+		{
+			super(start, end);
+		}
+
+		@Override
+		public Object next()
+		{
+			checkForComodification();
+			return getAt(idx++);
+		}
+	}
+
+	static int newCapacity(int length, int needed)
+	{
+		return Math.max(needed, length == 0 ? 16 : length * 2);
+	}
+
+	/*
+	 * the values of one column of the rows; add is called for row i after rows 0 to i-1.
+	 */
+	static abstract class Column
+	{
+		abstract void add(int i, Object o, ObjectInspector oi);
+
+		abstract Object get(int i);
+
+		abstract void clear();
+
+		/*
+		 * the rows whose value is null.
+		 */
+		abstract BitSet getNulls();
+
+		/*
+		 * an estimate of the heap bytes held by the column.
+		 */
+		abstract long getBytes();
+	}
+
+	/*
+	 * a column of a primitive type: nulls are marked in a BitSet, values are held by the subclass.
+	 */
+	static abstract class PrimitiveColumn extends Column
+	{
+		BitSet nulls = new BitSet();
+
+		void add(int i, Object o, ObjectInspector oi)
+		{
+			if ( o == null )
+			{
+				nulls.set(i);
+			}
+			else
+			{
+				nulls.clear(i);
+				set(i, o, (PrimitiveObjectInspector) oi);
+			}
+		}
+
+		Object get(int i)
+		{
+			return nulls.get(i) ? null : value(i);
+		}
+
+		abstract void set(int i, Object o, PrimitiveObjectInspector oi);
+
+		abstract Object value(int i);
+
+		void clear()
+		{
+			nulls.clear();
+		}
+
+		BitSet getNulls()
+		{
+			return nulls;
+		}
+
+		long getBytes()
+		{
+			return nulls.size() / 8;
+		}
+	}
+
+	static class BooleanColumn extends PrimitiveColumn
+	{
+		boolean[] values = new boolean[0];
+		BooleanWritable w = new BooleanWritable();
+
+		void set(int i, Object o, PrimitiveObjectInspector oi)
+		{
+			if ( i >= values.length )
+			{
+				boolean[] na = new boolean[newCapacity(values.length, i + 1)];
+				System.arraycopy(values, 0, na, 0, values.length);
+				values = na;
+			}
+			values[i] = PrimitiveObjectInspectorUtils.getBoolean(o, oi);
+		}
+
+		Object value(int i)
+		{
+			w.set(values[i]);
+			return w;
+		}
+
+		long getBytes()
+		{
+			return super.getBytes() + values.length;
+		}
+	}
+
+	/*
+	 * byte, short and int columns.
+	 */
+	static class IntColumn extends PrimitiveColumn
+	{
+		final PrimitiveCategory category;
+		int[] values = new int[0];
+		Writable w;
+
+		IntColumn(PrimitiveCategory category)
+		{
+			this.category = category;
+			w = category == PrimitiveCategory.BYTE ? new ByteWritable() :
+				(category == PrimitiveCategory.SHORT ? new ShortWritable() : new IntWritable());
+		}
+
+		void set(int i, Object o, PrimitiveObjectInspector oi)
+		{
+			if ( i >= values.length )
+			{
+				int[] na = new int[newCapacity(values.length, i + 1)];
+				System.arraycopy(values, 0, na, 0, values.length);
+				values = na;
+			}
+			values[i] = PrimitiveObjectInspectorUtils.getInt(o, oi);
+		}
+
+		Object value(int i)
+		{
+			switch(category)
+			{
+			case BYTE:
+				((ByteWritable) w).set((byte) values[i]);
+				break;
+			case SHORT:
+				((ShortWritable) w).set((short) values[i]);
+				break;
+			default:
+				((IntWritable) w).set(values[i]);
+			}
+			return w;
+		}
+
+		long getBytes()
+		{
+			return super.getBytes() + 4L * values.length;
+		}
+	}
+
+	static class LongColumn extends PrimitiveColumn
+	{
+		long[] values = new long[0];
+		LongWritable w = new LongWritable();
+
+		void set(int i, Object o, PrimitiveObjectInspector oi)
+		{
+			if ( i >= values.length )
+			{
+				long[] na = new long[newCapacity(values.length, i + 1)];
+				System.arraycopy(values, 0, na, 0, values.length);
+				values = na;
+			}
+			values[i] = PrimitiveObjectInspectorUtils.getLong(o, oi);
+		}
+
+		Object value(int i)
+		{
+			w.set(values[i]);
+			return w;
+		}
+
+		long getBytes()
+		{
+			return super.getBytes() + 8L * values.length;
+		}
+	}
+
+	/*
+	 * float and double columns; floats are held as doubles, which represent them exactly.
+	 */
+	static class DoubleColumn extends PrimitiveColumn
+	{
+		final boolean isFloat;
+		double[] values = new double[0];
+		FloatWritable fw = new FloatWritable();
+		DoubleWritable dw = new DoubleWritable();
+
+		DoubleColumn(PrimitiveCategory category)
+		{
+			isFloat = category == PrimitiveCategory.FLOAT;
+		}
+
+		void set(int i, Object o, PrimitiveObjectInspector oi)
+		{
+			if ( i >= values.length )
+			{
+				double[] na = new double[newCapacity(values.length, i + 1)];
+				System.arraycopy(values, 0, na, 0, values.length);
+				values = na;
+			}
+			values[i] = PrimitiveObjectInspectorUtils.getDouble(o, oi);
+		}
+
+		Object value(int i)
+		{
+			if ( isFloat )
+			{
+				fw.set((float) values[i]);
+				return fw;
+			}
+			dw.set(values[i]);
+			return dw;
+		}
+
+		long getBytes()
+		{
+			return super.getBytes() + 8L * values.length;
+		}
+	}
+
+	/*
+	 * each distinct value is held once, rows hold the code of their value.
+	 * <p>
+	 * Once the column has MIN_PLAIN_DICTIONARY_SIZE distinct values and they are more than
+	 * MAX_DICTIONARY_RATIO of the rows the dictionary no longer pays for itself: the column switches
+	 * to plain storage, the bytes of all values in one array, for the rest of the partition. Then
+	 * codes[i] is the offset of row i's value.
+	 */
+	static class StringColumn extends PrimitiveColumn
+	{
+		static final int MIN_PLAIN_DICTIONARY_SIZE = 1024;
+		static final double MAX_DICTIONARY_RATIO = 0.5;
+
+		/*
+		 * the estimated bytes of a dictionary entry besides its value's bytes: the Text, its array
+		 * and the map entry.
+		 */
+		static final int DICTIONARY_ENTRY_BYTES = 96;
+
+		int[] codes = new int[0];
+		ArrayList<Text> dictionary = new ArrayList<Text>();
+		HashMap<Text, Integer> dictionaryCodes = new HashMap<Text, Integer>();
+		long dictionaryBytes;
+
+		boolean plain;
+		int[] lengths;
+		byte[] bytes;
+		int bytesUsed;
+
+		Text w = new Text();
+
+		void set(int i, Object o, PrimitiveObjectInspector oi)
+		{
+			if ( i >= codes.length )
+			{
+				int[] na = new int[newCapacity(codes.length, i + 1)];
+				System.arraycopy(codes, 0, na, 0, codes.length);
+				codes = na;
+			}
+			Text t = oi instanceof StringObjectInspector ?
+					((StringObjectInspector) oi).getPrimitiveWritableObject(o) :
+					new Text(PrimitiveObjectInspectorUtils.getString(o, oi));
+			if ( plain )
+			{
+				setPlain(i, t.getBytes(), t.getLength());
+				return;
+			}
+			Integer code = dictionaryCodes.get(t);
+			if ( code == null )
+			{
+				if ( dictionary.size() >= MIN_PLAIN_DICTIONARY_SIZE &&
+						dictionary.size() > MAX_DICTIONARY_RATIO * (i + 1) )
+				{
+					toPlain(i);
+					setPlain(i, t.getBytes(), t.getLength());
+					return;
+				}
+				Text v = new Text(t);
+				code = dictionary.size();
+				dictionary.add(v);
+				dictionaryCodes.put(v, code);
+				dictionaryBytes += v.getLength() + DICTIONARY_ENTRY_BYTES;
+			}
+			codes[i] = code;
+		}
+
+		/*
+		 * copy the values of rows 0 to n-1 out of the dictionary, and drop it.
+		 */
+		private void toPlain(int n)
+		{
+			plain = true;
+			lengths = new int[codes.length];
+			bytes = new byte[(int) Math.min(Integer.MAX_VALUE, 2 * dictionaryBytes)];
+			bytesUsed = 0;
+			for(int r=0; r < n; r++)
+			{
+				if ( !nulls.get(r) )
+				{
+					Text v = dictionary.get(codes[r]);
+					setPlain(r, v.getBytes(), v.getLength());
+				}
+			}
+			dictionary.clear();
+			dictionaryCodes.clear();
+			dictionaryBytes = 0;
+		}
+
+		private void setPlain(int i, byte[] b, int len)
+		{
+			if ( lengths.length < codes.length )
+			{
+				int[] na = new int[codes.length];
+				System.arraycopy(lengths, 0, na, 0, lengths.length);
+				lengths = na;
+			}
+			if ( bytesUsed + len > bytes.length )
+			{
+				byte[] nb = new byte[newCapacity(bytes.length, bytesUsed + len)];
+				System.arraycopy(bytes, 0, nb, 0, bytesUsed);
+				bytes = nb;
+			}
+			System.arraycopy(b, 0, bytes, bytesUsed, len);
+			codes[i] = bytesUsed;
+			lengths[i] = len;
+			bytesUsed += len;
+		}
+
+		Object value(int i)
+		{
+			if ( plain )
+			{
+				w.set(bytes, codes[i], lengths[i]);
+			}
+			else
+			{
+				w.set(dictionary.get(codes[i]));
+			}
+			return w;
+		}
+
+		int dictionarySize()
+		{
+			return dictionary.size();
+		}
+
+		void clear()
+		{
+			super.clear();
+			dictionary.clear();
+			dictionaryCodes.clear();
+			dictionaryBytes = 0;
+			plain = false;
+			lengths = null;
+			bytes = null;
+			bytesUsed = 0;
+		}
+
+		long getBytes()
+		{
+			long b = super.getBytes() + 4L * codes.length + dictionaryBytes;
+			if ( plain )
+			{
+				b += 4L * lengths.length + bytes.length;
+			}
+			return b;
+		}
+	}
+
+	/*
+	 * values of non primitive types, and primitive types without a specialized column.
+	 */
+	static class ObjectColumn extends Column
+	{
+		/*
+		 * the estimated bytes of a value; their actual size is not known.
+		 */
+		static final int VALUE_BYTES = 64;
+
+		ArrayList<Object> values = new ArrayList<Object>();
+
+		void add(int i, Object o, ObjectInspector oi)
+		{
+			values.add(ObjectInspectorUtils.copyToStandardObject(o, oi, ObjectInspectorCopyOption.WRITABLE));
+		}
+
+		Object get(int i)
+		{
+			return values.get(i);
+		}
+
+		void clear()
+		{
+			values.clear();
+		}
+
+		BitSet getNulls()
+		{
+			BitSet nulls = new BitSet();
+			for(int i=0; i < values.size(); i++)
+			{
+				if ( values.get(i) == null )
+				{
+					nulls.set(i);
+				}
+			}
+			return nulls;
+		}
+
+		long getBytes()
+		{
+			return (long) VALUE_BYTES * values.size();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package com.sap.hadoop.windowing.runtime2;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+
+/*
+ * The OI of the rows of a {@link ColumnarPartition}. A row is a view of one index of the
+ * Partition's columns; a field value is only materialized when it is asked for.
+ * <p>
+ * The fields have the names of the fields of the OI it is built from; their OIs are the standard
+ * writable OIs of those fields.
+ */
+public class ColumnarStructObjectInspector extends StructObjectInspector
+{
+	static class Field implements StructField
+	{
+		final int position;
+		final String name;
+		final ObjectInspector OI;
+
+		Field(int position, String name, ObjectInspector OI)
+		{
+			this.position = position;
+			this.name = name;
+			this.OI = OI;
+		}
+
+		public String getFieldName()
+		{
+			return name;
+		}
+
+		public ObjectInspector getFieldObjectInspector()
+		{
+			return OI;
+		}
+
+		public String getFieldComment()
+		{
+			return null;
+		}
+
+		@Override
+		public String toString()
+		{
+			return position + ":" + name;
+		}
+	}
+
+	ArrayList<Field> fields;
+
+	public ColumnarStructObjectInspector(StructObjectInspector OI)
+	{
+		fields = new ArrayList<Field>();
+		List<? extends StructField> fRefs = OI.getAllStructFieldRefs();
+		for(int i=0; i < fRefs.size(); i++)
+		{
+			StructField f = fRefs.get(i);
+			fields.add(new Field(i, f.getFieldName(),
+					ObjectInspectorUtils.getStandardObjectInspector(f.getFieldObjectInspector(),
+							ObjectInspectorCopyOption.WRITABLE)));
+		}
+	}
+
+	public Category getCategory()
+	{
+		return Category.STRUCT;
+	}
+
+	public String getTypeName()
+	{
+		return ObjectInspectorUtils.getStandardStructTypeName(this);
+	}
+
+	@Override
+	public List<? extends StructField> getAllStructFieldRefs()
+	{
+		return fields;
+	}
+
+	@Override
+	public StructField getStructFieldRef(String fieldName)
+	{
+		return ObjectInspectorUtils.getStandardStructFieldRef(fieldName, fields);
+	}
+
+	@Override
+	public Object getStructFieldData(Object data, StructField fieldRef)
+	{
+		if ( data == null )
+		{
+			return null;
+		}
+		return ((ColumnarPartition.Row) data).get(((Field) fieldRef).position);
+	}
+
+	@Override
+	public List<Object> getStructFieldsDataAsList(Object data)
+	{
+		if ( data == null )
+		{
+			return null;
+		}
+		ColumnarPartition.Row row = (ColumnarPartition.Row) data;
+		ArrayList<Object> l = new ArrayList<Object>(fields.size());
+		for(int i=0; i < fields.size(); i++)
+		{
+			l.add(row.get(i));
+		}
+		return l;
+	}
+}
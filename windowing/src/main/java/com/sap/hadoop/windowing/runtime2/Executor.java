@@ -85,6 +85,19 @@ public abstract class Executor
 		return part;
 	}
 
+	/*
+	 * release the Partitions the table functions of the chain keep across input Partitions.
+	 */
+	public static void closeChain(QueryDef qDef) throws WindowingException
+	{
+		QueryInputDef iDef = qDef.getInput();
+		while (iDef instanceof TableFuncDef)
+		{
+			((TableFuncDef) iDef).getFunction().close();
+			iDef = ((TableFuncDef) iDef).getInput();
+		}
+	}
+
 	/**
 	 * For each row in the partition: 
 	 * 1. evaluate the where condition if applicable.
@@ -97,34 +110,58 @@ public abstract class Executor
 	 * @param rS
 	 * @throws WindowingException
 	 */
-	@SuppressWarnings(
-	{ "rawtypes", "unchecked" })
 	public static void executeSelectList(QueryDef qDef, Partition oPart, ForwardSink rS)
 			throws WindowingException
 	{
-		ArrayList<ColumnDef> cols = qDef.getSelectList().getColumns();
-		ObjectInspector selectOI = qDef.getSelectList().getOI();
-		SerDe oSerDe = qDef.getOutput().getSerDe();
-		Object[] output = new Object[cols.size()];
-
-		WhereDef whDef = qDef.getWhere();
-		boolean applyWhere = whDef != null;
-		Converter whConverter = !applyWhere ? null
-				: ObjectInspectorConverters
-						.getConverter(
-								whDef.getOI(),
-								PrimitiveObjectInspectorFactory.javaBooleanObjectInspector);
-		ExprNodeEvaluator whCondEval = !applyWhere ? null : whDef
-				.getExprEvaluator();
-
-		Writable value = null;
+		SelectListExecutor selExec = new SelectListExecutor(qDef, rS);
 		PartitionIterator<Object> pItr = oPart.iterator();
 		RuntimeUtils.connectLeadLagFunctionsToPartition(qDef, pItr);
 		while (pItr.hasNext())
+		{
+			selExec.processRow(pItr.next());
+		}
+	}
+
+	/*
+	 * applies the where condition and the select list to a row of the output of the table function chain.
+	 * Rows can be given one at a time; for e.g. when the table function output is streamed.
+	 */
+	public static class SelectListExecutor
+	{
+		ForwardSink rS;
+		ArrayList<ColumnDef> cols;
+		ObjectInspector selectOI;
+		SerDe oSerDe;
+		Object[] output;
+		boolean applyWhere;
+		Converter whConverter;
+		ExprNodeEvaluator whCondEval;
+
+		public SelectListExecutor(QueryDef qDef, ForwardSink rS)
+		{
+			this.rS = rS;
+			cols = qDef.getSelectList().getColumns();
+			selectOI = qDef.getSelectList().getOI();
+			oSerDe = qDef.getOutput().getSerDe();
+			output = new Object[cols.size()];
+
+			WhereDef whDef = qDef.getWhere();
+			applyWhere = whDef != null;
+			whConverter = !applyWhere ? null
+					: ObjectInspectorConverters
+							.getConverter(
+									whDef.getOI(),
+									PrimitiveObjectInspectorFactory.javaBooleanObjectInspector);
+			whCondEval = !applyWhere ? null : whDef
+					.getExprEvaluator();
+		}
+
+		@SuppressWarnings(
+		{ "rawtypes", "unchecked" })
+		public void processRow(Object oRow) throws WindowingException
 		{
 			int colCnt = 0;
 			ArrayList selectList = new ArrayList();
-			Object oRow = pItr.next();
 
 			if (applyWhere)
 			{
@@ -140,7 +177,7 @@ public abstract class Executor
 				}
 				if (whCond == null || !((Boolean) whCond).booleanValue())
 				{
-					continue;
+					return;
 				}
 			}
 
@@ -164,6 +201,7 @@ public abstract class Executor
 			if(rS.acceptObject()){
 				rS.collectOutput(output);
 			}else{
+				Writable value = null;
 				try
 				{
 					value = oSerDe.serialize(selectList, selectOI);
@@ -35,12 +35,20 @@ public class LocalExecutor extends Executor
 		
 		PartitionsIterator partsItr = new PartitionsIterator(wIn, qDef);
 		
-		while(partsItr.hasNext())
+		try
 		{
-			Partition p = partsItr.next();
-			Partition oP = executeChain(qDef, p);
-			//IOUtils.dumpPartition(oP, System.out);
-			executeSelectList(qDef, oP, new SysOutRS(out));
+			while(partsItr.hasNext())
+			{
+				Partition p = partsItr.next();
+				Partition oP = executeChain(qDef, p);
+				//IOUtils.dumpPartition(oP, System.out);
+				executeSelectList(qDef, oP, new SysOutRS(out));
+			}
+		}
+		finally
+		{
+			partsItr.close();
+			closeChain(qDef);
 		}
 	}
 	
@@ -7,6 +7,7 @@ import org.apache.hadoop.hive.serde2.SerDe;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 import org.apache.hadoop.io.Writable;
 
+import com.sap.hadoop.ds.BaseException;
 import com.sap.hadoop.ds.list.ByteBasedList;
 import com.sap.hadoop.ds.list.ListFactory;
 import com.sap.hadoop.windowing.Constants;
@@ -23,6 +24,21 @@ public class Partition
 	private Writable wRow;
 	private int sz;
 	
+	/*
+	 * the rows read last by getAt; null unless a cache size is set.
+	 */
+	private RowCache rowCache;
+	
+	/*
+	 * incremented on each reset; lets state computed from the rows tell that they were replaced.
+	 */
+	int generation;
+	
+	/*
+	 * the largest row cache a Partition holds.
+	 */
+	public static final int MAX_ROW_CACHE_SIZE = 1024;
+	
 	public Partition(HiveConf cfg, SerDe serDe, StructObjectInspector oI) throws WindowingException
 	{
 		String partitionClass = cfg.get(Constants.WINDOW_PARTITION_CLASS, Constants.DEFAULT_WINDOW_PARTITION_CLASS);
@@ -35,6 +51,15 @@ public class Partition
 		init(partitionClass, partitionMemSize, serDe, oI);
 	}
 	
+	/*
+	 * for subclasses that hold the rows themselves.
+	 */
+	protected Partition(SerDe serDe, StructObjectInspector oI)
+	{
+		this.serDe = serDe;
+		OI = oI;
+	}
+	
 	private void init(String partitionClass, int partitionMemSize, SerDe serDe, StructObjectInspector oI) throws WindowingException
 	{
 		this.serDe = serDe;
@@ -61,6 +86,21 @@ public class Partition
 		OI = oI;
 	}
 	
+	/*
+	 * the OI of the rows returned by getAt and the iterators.
+	 */
+	public StructObjectInspector getRowOI() throws WindowingException
+	{
+		try
+		{
+			return (StructObjectInspector) serDe.getObjectInspector();
+		}
+		catch(Exception e)
+		{
+			throw new WindowingException(e);
+		}
+	}
+	
 	private Writable createWritable() throws WindowingException 
 	{
 		try
@@ -73,10 +113,55 @@ public class Partition
 		}
 	}
 	
+	/*
+	 * hold the last size rows read by getAt, and by the iterators, so that rows that are read again
+	 * within that distance are not read from the list and deserialized again. A size of 0 turns the
+	 * cache off. Not all SerDes support this; for those the call has no effect.
+	 */
+	public void setRowCacheSize(int size) throws WindowingException
+	{
+		size = Math.min(size, MAX_ROW_CACHE_SIZE);
+		if ( rowCache != null && rowCache.size == size )
+		{
+			return;
+		}
+		try
+		{
+			rowCache = size <= 0 ? null : RowCache.create(serDe, size);
+		}
+		catch(Exception e)
+		{
+			throw new WindowingException(e);
+		}
+	}
+	
+	public long getRowCacheHits()
+	{
+		return rowCache == null ? 0 : rowCache.hits;
+	}
+	
+	public long getRowCacheMisses()
+	{
+		return rowCache == null ? 0 : rowCache.misses;
+	}
+	
 	public Object getAt(int i) throws WindowingException 
 	{
 		try
 		{
+			if ( rowCache != null )
+			{
+				Object o = rowCache.get(i);
+				if ( o == null )
+				{
+					elems.get(i, wRow);
+					o = rowCache.put(i, wRow);
+				}
+				if ( o != null )
+				{
+					return o;
+				}
+			}
 			elems.get(i, wRow);
 			Object o = serDe.deserialize(wRow);
 			return o;
@@ -130,9 +215,72 @@ public class Partition
 		return sz;
 	}
 	
+	public int getGeneration()
+	{
+		return generation;
+	}
+	
+	/*
+	 * called once all rows have been appended; reads from a sealed Partition don't take locks.
+	 */
+	public void seal() throws WindowingException
+	{
+		try
+		{
+			elems.seal();
+		}
+		catch(Exception e)
+		{
+			throw new WindowingException(e);
+		}
+	}
+	
+	/*
+	 * remove all rows, keeping the backing list, so the Partition can be filled with the next
+	 * partition's rows. Iterators over the previous rows cannot be used after this.
+	 */
+	public void reset() throws WindowingException
+	{
+		try
+		{
+			elems.clear();
+			sz = 0;
+			generation++;
+			if ( rowCache != null )
+			{
+				rowCache.clear();
+			}
+		}
+		catch(Exception e)
+		{
+			throw new WindowingException(e);
+		}
+	}
+	
+	/*
+	 * release the backing list and what it holds: memory budget, spill files, mappings. The
+	 * Partition cannot be used after this.
+	 */
+	public void close() throws WindowingException
+	{
+		rowCache = null;
+		if ( elems == null )
+		{
+			return;
+		}
+		try
+		{
+			elems.close();
+		}
+		catch(BaseException be)
+		{
+			throw new WindowingException(be);
+		}
+	}
+	
 	public PartitionIterator<Object> iterator()
 	{
-		return new PItr(0, size());
+		return createIterator(0, size());
 	}
 	
 	public PartitionIterator<Object> range(int start, int end)
@@ -140,6 +288,11 @@ public class Partition
 		assert(start >= 0);
 		assert(end < size());
 		assert(start <= end);
+		return createIterator(start, end);
+	}
+	
+	PItr createIterator(int start, int end)
+	{
 		return new PItr(start, end);
 	}
 	
@@ -149,6 +302,7 @@ public class Partition
 		final int start;
 		final int end;
 		final int createTimeSz;
+		ByteBasedList.Cursor cursor;
 		
 		PItr(int start, int end)
 		{
@@ -167,11 +321,24 @@ public class Partition
 		public Object next() 
 		{ 
 			checkForComodification();
+			if ( rowCache != null )
+			{
+				return getAt(idx++);
+			}
 			try
 			{
-				return Partition.this.getAt(idx++);
+				if ( cursor == null )
+				{
+					cursor = elems.cursor(start, end, wRow);
+				}
+				if ( cursor.getIndex() != idx )
+				{
+					cursor.seek(idx);
+				}
+				idx++;
+				return serDe.deserialize(cursor.next());
 			}
-			catch(WindowingException e)
+			catch(Exception e)
 			{
 				throw new RuntimeException(e);
 			}
@@ -194,7 +361,19 @@ public class Partition
 			return idx;
 		}
 		
-		private Object getAt(int i)
+		@Override
+		public int getStart()
+		{
+			return start;
+		}
+		
+		@Override
+		public int getEnd()
+		{
+			return end;
+		}
+		
+		Object getAt(int i)
 		{
 			try
 			{
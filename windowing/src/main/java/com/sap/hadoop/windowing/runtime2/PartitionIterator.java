@@ -11,6 +11,13 @@ public interface PartitionIterator<T> extends Iterator<T>
 {
 	int getIndex();
 	
+	/*
+	 * the rows the iterator is over: [start, end).
+	 */
+	int getStart();
+	
+	int getEnd();
+	
 	T lead(int amt);
 	
 	T lag(int amt);
@@ -34,6 +34,11 @@ public class PartitionsIterator implements Iterator<Partition>
 	ArrayList<String> partColumns;
 	ArrayList<StructField> objFields;
 	ArrayList<StructField> stdObjFields;
+	
+	/*
+	 * the Partition returned by next; it is reset and refilled by the following call.
+	 */
+	Partition part;
 
 	public PartitionsIterator(WindowingInput wIn, QueryDef qDef) throws WindowingException
 	{
@@ -84,7 +89,15 @@ public class PartitionsIterator implements Iterator<Partition>
 	{
 		try
 		{
-			Partition p = new Partition(partClassName, partMemSize, serDe, OI);
+			if ( part == null )
+			{
+				part = new Partition(partClassName, partMemSize, serDe, OI);
+			}
+			else
+			{
+				part.reset();
+			}
+			Partition p = part;
 
 			if (currObject == null)
 			{
@@ -127,6 +140,18 @@ public class PartitionsIterator implements Iterator<Partition>
 		throw new UnsupportedOperationException();
 	}
 	
+	/*
+	 * release the Partition returned by the last call to next.
+	 */
+	public void close() throws WindowingException
+	{
+		if ( part != null )
+		{
+			part.close();
+			part = null;
+		}
+	}
+	
 	private boolean isInPartition(Object o)
 	{
 		for(int i=0; i < partColumns.size(); i++)
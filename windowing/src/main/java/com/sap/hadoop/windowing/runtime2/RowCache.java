@@ -0,0 +1,125 @@
+package com.sap.hadoop.windowing.runtime2;
+
+import java.util.Arrays;
+
+import org.apache.hadoop.hive.serde2.SerDe;
+import org.apache.hadoop.hive.serde2.lazy.ByteArrayRef;
+import org.apache.hadoop.hive.serde2.lazy.LazyFactory;
+import org.apache.hadoop.hive.serde2.lazy.LazyObjectBase;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.lazybinary.LazyBinaryFactory;
+import org.apache.hadoop.hive.serde2.lazybinary.LazyBinarySerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.io.BytesWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+
+/*
+ * A ring of the last rows read from a Partition, keyed by index: row i is held in slot i % size.
+ * <p>
+ * Each slot holds a copy of the row's bytes and its own lazy struct over them, so a cached row stays
+ * valid while other rows are read, and the fields already parsed from it are not parsed again. This
+ * relies on how the lazy SerDes deserialize; for other SerDes no cache is created.
+ */
+class RowCache
+{
+	final int size;
+	final int[] indexes;
+	final LazyObjectBase[] rows;
+	final ByteArrayRef[] bytes;
+	long hits;
+	long misses;
+
+	/*
+	 * a cache of the given size for rows of the given SerDe; null if its rows cannot be cached.
+	 */
+	static RowCache create(SerDe serDe, int size) throws Exception
+	{
+		ObjectInspector OI = serDe.getObjectInspector();
+		LazyObjectBase[] rows = new LazyObjectBase[size];
+		for(int i=0; i < size; i++)
+		{
+			if ( serDe instanceof LazyBinarySerDe )
+			{
+				rows[i] = LazyBinaryFactory.createLazyBinaryObject(OI);
+			}
+			else if ( serDe instanceof LazySimpleSerDe )
+			{
+				rows[i] = LazyFactory.createLazyObject(OI);
+			}
+			else
+			{
+				return null;
+			}
+		}
+		return new RowCache(rows);
+	}
+
+	private RowCache(LazyObjectBase[] rows)
+	{
+		size = rows.length;
+		this.rows = rows;
+		indexes = new int[size];
+		bytes = new ByteArrayRef[size];
+		for(int i=0; i < size; i++)
+		{
+			bytes[i] = new ByteArrayRef();
+		}
+		clear();
+	}
+
+	/*
+	 * the cached row at index i, or null.
+	 */
+	Object get(int i)
+	{
+		int s = i % size;
+		if ( indexes[s] == i )
+		{
+			hits++;
+			return rows[s].getObject();
+		}
+		misses++;
+		return null;
+	}
+
+	/*
+	 * cache the serialized row at index i; return the row, or null if the Writable cannot be cached.
+	 */
+	Object put(int i, Writable w)
+	{
+		byte[] b;
+		int len;
+		if ( w instanceof BytesWritable )
+		{
+			b = ((BytesWritable) w).getBytes();
+			len = ((BytesWritable) w).getLength();
+		}
+		else if ( w instanceof Text )
+		{
+			b = ((Text) w).getBytes();
+			len = ((Text) w).getLength();
+		}
+		else
+		{
+			return null;
+		}
+
+		int s = i % size;
+		byte[] data = bytes[s].getData();
+		if ( data == null || data.length < len )
+		{
+			data = new byte[Math.max(len, 64)];
+			bytes[s].setData(data);
+		}
+		System.arraycopy(b, 0, data, 0, len);
+		rows[s].init(bytes[s], 0, len);
+		indexes[s] = i;
+		return rows[s].getObject();
+	}
+
+	void clear()
+	{
+		Arrays.fill(indexes, -1);
+	}
+}
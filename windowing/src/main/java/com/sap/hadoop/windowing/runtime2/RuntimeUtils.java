@@ -13,7 +13,14 @@ import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
 import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.util.ReflectionUtils;
 
+import com.sap.hadoop.ds.BaseException;
+import com.sap.hadoop.ds.list.BlockCache;
+import com.sap.hadoop.ds.list.PartitionMemoryManager;
+import com.sap.hadoop.ds.list.PartitionedByteBasedList;
+import com.sap.hadoop.windowing.Constants;
 import com.sap.hadoop.windowing.WindowingException;
 import com.sap.hadoop.windowing.functions2.GenericUDFLeadLag;
 import com.sap.hadoop.windowing.functions2.TableFunctionEvaluator;
@@ -113,6 +120,8 @@ public class RuntimeUtils
 		String partClassName = tEval.getPartitionClass();
 		int partMemSize = tEval.getPartitionMemSize();
 
+		configurePartitions(hiveConf);
+
 		Partition part = null;
 		SerDe serde = tabDef.getInput().getSerde();
 		part = new Partition(partClassName, partMemSize, serde,
@@ -121,6 +130,44 @@ public class RuntimeUtils
 
 	}
 	
+	/*
+	 * apply the task's settings for the memory budget, spill compression and block cache of Partitions.
+	 */
+	static void configurePartitions(HiveConf hiveConf) throws WindowingException
+	{
+		if ( hiveConf == null )
+		{
+			return;
+		}
+		try
+		{
+			long memBudget = hiveConf.getLong(Constants.WINDOW_PARTITION_MEMORY_BUDGET, -1);
+			if ( memBudget > 0 )
+			{
+				PartitionMemoryManager.get().setBudget(memBudget);
+			}
+			String codecClass = hiveConf.get(Constants.WINDOW_PARTITION_SPILL_CODEC);
+			if ( codecClass != null )
+			{
+				Class<?> cls = hiveConf.getClassByName(codecClass);
+				PartitionedByteBasedList.setSpillCodec((CompressionCodec) ReflectionUtils.newInstance(cls, hiveConf));
+			}
+			long blockCacheSize = hiveConf.getLong(Constants.WINDOW_PARTITION_SPILL_BLOCKCACHE_SIZE, -1);
+			if ( blockCacheSize >= 0 )
+			{
+				BlockCache.get().setCapacity(blockCacheSize);
+			}
+		}
+		catch(BaseException be)
+		{
+			throw new WindowingException(be);
+		}
+		catch(ClassNotFoundException ce)
+		{
+			throw new WindowingException(ce);
+		}
+	}
+	
 	/**
 	 * Iterate the list of the query input definitions in reverse order 
 	 * Return the first table function definition in the chain.
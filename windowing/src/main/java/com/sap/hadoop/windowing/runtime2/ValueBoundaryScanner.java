@@ -10,69 +10,171 @@ import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.BoundarySpe
 import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.Direction;
 
 /*
- * - starting from the given rowIdx scan in the given direction until a row's expr
- * evaluates to an amt that crosses the 'amt' threshold specified in the ValueBoundaryDef.
+ * Computes the rows of a Partition that a ValueBoundary includes.
+ * - on reset the boundary expr is evaluated once for every row of the Partition into a
+ * primitive column.
+ * - if the column has no nulls and is sorted (ascending or descending), as it is when the
+ * expr is the order key, the boundary for row r is the first row whose value crosses
+ * value(r) -/+ amt. The boundary is found by a binary search; when rows are asked for in order
+ * the previous boundary is advanced instead, so a pass over the Partition is amortized O(1) per row.
+ * - otherwise starting from the given rowIdx scan in the given direction until a row's value
+ * differs from value(rowIdx) by more than amt, or is null.
  */
 public abstract class ValueBoundaryScanner
 {
 	ValueBoundaryDef bndDef;
-	
+	int size;
+	boolean[] nulls;
+	/*
+	 * 1 if the column is ascending, -1 if descending, 0 if it is not sorted or has nulls.
+	 */
+	int order;
+	int lastRowIdx;
+	int lastBoundary;
+
 	public ValueBoundaryScanner(ValueBoundaryDef bndDef)
 	{
 		this.bndDef = bndDef;
 	}
-	
+
 	/*
-	 * return the other end of the Boundary
-	 * - when scanning backwards: go back until you reach a row where the
-	 * startingValue - rowValue >= amt
-	 * - when scanning forward:  go forward go back until you reach a row where the
-	 *  rowValue - startingValue >= amt
+	 * evaluate the boundary expr on all rows of the given Partition.
 	 */
-	public int computeBoundaryRange(int rowIdx, Partition p) throws WindowingException
+	public void reset(Partition p) throws WindowingException
+	{
+		size = p.size();
+		lastRowIdx = -1;
+		order = 0;
+		if ( bndDef.getAmt() == BoundarySpec.UNBOUNDED_AMOUNT )
+		{
+			return;
+		}
+
+		allocate(size);
+		if ( nulls == null || nulls.length < size )
+		{
+			nulls = new boolean[size];
+		}
+		boolean hasNulls = false;
+		for(int i=0; i < size; i++)
+		{
+			Object v = computeValue(p.getAt(i));
+			nulls[i] = v == null;
+			if ( v == null )
+			{
+				hasNulls = true;
+			}
+			else
+			{
+				setValue(i, v);
+			}
+		}
+
+		if ( !hasNulls )
+		{
+			boolean asc = true;
+			boolean desc = true;
+			for(int i=1; i < size && (asc || desc); i++)
+			{
+				int c = compare(i - 1, i);
+				asc = asc && c <= 0;
+				desc = desc && c >= 0;
+			}
+			order = asc ? 1 : (desc ? -1 : 0);
+		}
+	}
+
+	/*
+	 * return the index of the Boundary for the given row: the first row in the range if this is the
+	 * start of the window; the row after the last one in the range if it is the end.
+	 */
+	public int computeBoundaryRange(int rowIdx, boolean end)
 	{
-		int r = rowIdx;
-		Object rowValue = computeValue(p.getAt(r));
 		int amt = bndDef.getAmt();
-		
+		Direction d = bndDef.getDirection();
+
 		if ( amt == BoundarySpec.UNBOUNDED_AMOUNT )
 		{
-			return bndDef.getDirection() == Direction.PRECEDING ? 0 : p.size();
+			return d == Direction.PRECEDING ? 0 : size;
 		}
-		
-		Direction d = bndDef.getDirection();
-		boolean scanNext = rowValue != null;
-		r = d == Direction.FOLLOWING ? r-- : r++;
-		while ( scanNext )
+
+		if ( nulls[rowIdx] )
+		{
+			return rowIdx + (end ? 1 : 0);
+		}
+
+		if ( order == 0 )
+		{
+			return scan(rowIdx, amt, d, end);
+		}
+
+		/*
+		 * the target value is value(rowIdx) moved by amt in the direction of the boundary, in
+		 * the sort order of the column.
+		 */
+		int sign = (d == Direction.PRECEDING ? -1 : 1) * order;
+		int b;
+		if ( lastRowIdx >= 0 && rowIdx == lastRowIdx + 1 )
 		{
-			if ( r < 0 || r >= p.size() )
+			b = lastBoundary;
+			while( b < size && !crossed(b, rowIdx, sign * amt, end) )
 			{
-				scanNext = false;
-				break;
+				b++;
 			}
-			
-			Object currVal = computeValue(p.getAt(rowIdx));
-			if ( currVal == null )
+		}
+		else
+		{
+			int lo = 0;
+			int hi = size;
+			while( lo < hi )
 			{
-				scanNext = false;
-				break;
+				int mid = (lo + hi) >>> 1;
+				if ( crossed(mid, rowIdx, sign * amt, end) )
+				{
+					hi = mid;
+				}
+				else
+				{
+					lo = mid + 1;
+				}
 			}
-			
-			switch(d)
+			b = lo;
+		}
+		lastRowIdx = rowIdx;
+		lastBoundary = b;
+		return b;
+	}
+
+	/*
+	 * - for the start of a window: has row i reached the target value
+	 * - for the end: has row i gone past the target value
+	 */
+	boolean crossed(int i, int rowIdx, int delta, boolean end)
+	{
+		int c = order * compareToTarget(i, rowIdx, delta);
+		return end ? c > 0 : c >= 0;
+	}
+
+	int scan(int rowIdx, int amt, Direction d, boolean end)
+	{
+		int r = rowIdx;
+		if ( d == Direction.PRECEDING )
+		{
+			while( r > 0 && !nulls[r - 1] && isWithin(r - 1, rowIdx, amt) )
 			{
-			case PRECEDING:
-				scanNext = isGreater(rowValue, currVal, amt);
 				r--;
-			break;
-			case FOLLOWING:
-				scanNext = isGreater(currVal, rowValue, amt);
+			}
+		}
+		else
+		{
+			while( r + 1 < size && !nulls[r + 1] && isWithin(r + 1, rowIdx, amt) )
+			{
 				r++;
 			}
 		}
-		r = r < 0 ? 0 : (r >= p.size() ? p.size() : r);
-		return r;
+		return r + (end ? 1 : 0);
 	}
-	
+
 	public Object computeValue(Object row) throws WindowingException
 	{
 		try
@@ -84,47 +186,121 @@ public abstract class ValueBoundaryScanner
 			throw new WindowingException(he);
 		}
 	}
-	
-	public abstract boolean isGreater(Object v1, Object v2, int amt);
-	
+
+	protected abstract void allocate(int sz);
+
+	protected abstract void setValue(int i, Object v);
+
+	/*
+	 * compare the values of rows i and j
+	 */
+	protected abstract int compare(int i, int j);
+
+	/*
+	 * compare the value of row i with value(rowIdx) + delta
+	 */
+	protected abstract int compareToTarget(int i, int rowIdx, int delta);
+
+	/*
+	 * is the value of row i at most amt away from the value of rowIdx
+	 */
+	protected abstract boolean isWithin(int i, int rowIdx, int amt);
+
 	public static class LongValueBoundaryScanner extends ValueBoundaryScanner
 	{
+		long[] values;
+
 		public LongValueBoundaryScanner(ValueBoundaryDef bndDef)
 		{
 			super(bndDef);
 		}
-		
+
 		@Override
-		public boolean isGreater(Object v1, Object v2, int amt)
+		protected void allocate(int sz)
 		{
-			long l1 = PrimitiveObjectInspectorUtils.getLong(v1, 
-					(PrimitiveObjectInspector) bndDef.getOI());
-			long l2 = PrimitiveObjectInspectorUtils.getLong(v2, 
+			if ( values == null || values.length < sz )
+			{
+				values = new long[sz];
+			}
+		}
+
+		@Override
+		protected void setValue(int i, Object v)
+		{
+			values[i] = PrimitiveObjectInspectorUtils.getLong(v,
 					(PrimitiveObjectInspector) bndDef.getOI());
-			return (l1 -l2) >= amt;
+		}
+
+		@Override
+		protected int compare(int i, int j)
+		{
+			return values[i] < values[j] ? -1 : (values[i] == values[j] ? 0 : 1);
+		}
+
+		@Override
+		protected int compareToTarget(int i, int rowIdx, int delta)
+		{
+			long t = values[rowIdx] + delta;
+			return values[i] < t ? -1 : (values[i] == t ? 0 : 1);
+		}
+
+		@Override
+		protected boolean isWithin(int i, int rowIdx, int amt)
+		{
+			return Math.abs(values[i] - values[rowIdx]) <= amt;
 		}
 	}
-	
+
 	public static class DoubleValueBoundaryScanner extends ValueBoundaryScanner
 	{
+		double[] values;
+
 		public DoubleValueBoundaryScanner(ValueBoundaryDef bndDef)
 		{
 			super(bndDef);
 		}
-		
+
 		@Override
-		public boolean isGreater(Object v1, Object v2, int amt)
+		protected void allocate(int sz)
 		{
-			double d1 = PrimitiveObjectInspectorUtils.getDouble(v1, 
-					(PrimitiveObjectInspector) bndDef.getOI());
-			double d2 = PrimitiveObjectInspectorUtils.getDouble(v2, 
+			if ( values == null || values.length < sz )
+			{
+				values = new double[sz];
+			}
+		}
+
+		@Override
+		protected void setValue(int i, Object v)
+		{
+			values[i] = PrimitiveObjectInspectorUtils.getDouble(v,
 					(PrimitiveObjectInspector) bndDef.getOI());
-			return (d1 -d2) >= amt;
+		}
+
+		@Override
+		protected int compare(int i, int j)
+		{
+			return Double.compare(values[i], values[j]);
+		}
+
+		@Override
+		protected int compareToTarget(int i, int rowIdx, int delta)
+		{
+			return Double.compare(values[i], values[rowIdx] + delta);
+		}
+
+		@Override
+		protected boolean isWithin(int i, int rowIdx, int amt)
+		{
+			return Math.abs(values[i] - values[rowIdx]) <= amt;
 		}
 	}
-	
+
 	public static ValueBoundaryScanner getScanner(ValueBoundaryDef vbDef)
 	{
+		if ( vbDef.getAmt() == BoundarySpec.UNBOUNDED_AMOUNT )
+		{
+			return new LongValueBoundaryScanner(vbDef);
+		}
 		PrimitiveObjectInspector pOI = (PrimitiveObjectInspector) vbDef.getOI();
 		switch(pOI.getPrimitiveCategory())
 		{
@@ -76,11 +76,32 @@ public class MRExecutor extends Executor
 	{
 		MRUtils mrUtils = new MRUtils(qdef);
 		mrUtils.initialize();
-		createMapSideTree(qdef, mrUtils, mr);
-		createReduceSideTree(qdef, mrUtils, mr);
+		boolean mapAggregation = isMapAggregation(qdef);
+		if (mapAggregation)
+		{
+			mrUtils.initializeMapAggregation(new MapSideAggregation(qdef));
+		}
+		createMapSideTree(qdef, mrUtils, mr, mapAggregation);
+		createReduceSideTree(qdef, mrUtils, mr, mapAggregation);
 
 	}
 	
+	/**
+	 * Returns true if map-side aggregation is turned on, and the window 
+	 * functions of the query can be aggregated on the map-side.
+	 * @param qdef
+	 * @return
+	 * @throws WindowingException
+	 */
+	static boolean isMapAggregation(QueryDef qdef) throws WindowingException
+	{
+		HiveConf hiveConf = qdef.getTranslationInfo().getHiveCfg();
+		return hiveConf.getBoolean(
+				com.sap.hadoop.windowing.Constants.WINDOW_MAP_AGGREGATION, false)
+				&& !MRUtils.addPTFMapOperator(qdef)
+				&& MapSideAggregation.canAggregate(qdef);
+	}
+	
 	/**
 	 * The map-side operator tree consists of:
 	 * MapOperator->ReduceSinkOperator if the query does 
@@ -88,15 +109,20 @@ public class MRExecutor extends Executor
 	 * If the query has a map phase, the PTFOperator needs to be 
 	 * invoked at the map-side of the query tree. The map-side plan then 
 	 * looks like MapOperator->PTFOperator->ReduceSinkOperator. 
+	 * The plan is the same if the window functions are aggregated on 
+	 * the map-side; then the PTFOperator outputs the rows and the partial 
+	 * aggregations.
 	 * @param qdef
 	 * @param mrUtils
 	 * @param mr
+	 * @param mapAggregation
 	 * @throws WindowingException
 	 */
 	@SuppressWarnings("unchecked")
-	private void createMapSideTree(QueryDef qdef, MRUtils mrUtils, MapredWork mr) throws WindowingException{
+	private void createMapSideTree(QueryDef qdef, MRUtils mrUtils, MapredWork mr, 
+			boolean mapAggregation) throws WindowingException{
 		// map-side work
-		if (MRUtils.addPTFMapOperator(qdef))
+		if (MRUtils.addPTFMapOperator(qdef) || mapAggregation)
 		{
 
 			Operator<ReduceSinkDesc> op2 = OperatorFactory.get(PlanUtils
@@ -105,8 +131,9 @@ public class MRExecutor extends Executor
 							-1, mrUtils.getPartCols(), mrUtils.getOrderString()
 									.toString(), -1));
 
-			Operator<PTFDesc> op1 = RuntimeUtils.createPTFOperator(new PTFDesc(
-					SerializationUtils.serializeQueryDef(qdef)), op2);
+			PTFDesc ptfDesc = new PTFDesc(SerializationUtils.serializeQueryDef(qdef));
+			ptfDesc.setMapAggregation(mapAggregation);
+			Operator<PTFDesc> op1 = RuntimeUtils.createPTFOperator(ptfDesc, op2);
 
 			Utilities.addMapWork(mr, mrUtils.getInputTable(), mrUtils
 					.getHiveTableDef().getAlias(), op1);
@@ -139,16 +166,19 @@ public class MRExecutor extends Executor
 	 * @param qdef
 	 * @param mrUtils
 	 * @param mr
+	 * @param mapAggregation
 	 * @throws WindowingException
 	 */
 	@SuppressWarnings("unchecked")
-	private void createReduceSideTree(QueryDef qdef, MRUtils mrUtils, MapredWork mr) throws WindowingException{
+	private void createReduceSideTree(QueryDef qdef, MRUtils mrUtils, MapredWork mr, 
+			boolean mapAggregation) throws WindowingException{
 		// reduce side work
 		Operator<FileSinkDesc> op4 = OperatorFactory.get(new FileSinkDesc(
 				mrUtils.getOutputPath(), createOutputTableDesc(qdef), false));
 
-		Operator<PTFDesc> op3 = RuntimeUtils.createPTFOperator(new PTFDesc(
-				SerializationUtils.serializeQueryDef(qdef)), op4);
+		PTFDesc ptfDesc = new PTFDesc(SerializationUtils.serializeQueryDef(qdef));
+		ptfDesc.setMapAggregation(mapAggregation);
+		Operator<PTFDesc> op3 = RuntimeUtils.createPTFOperator(ptfDesc, op4);
 
 		Operator<ExtractDesc> op2 = OperatorFactory.get(
 				new ExtractDesc(
@@ -8,6 +8,7 @@ import org.apache.hadoop.hive.ql.metadata.Table;
 import org.apache.hadoop.hive.ql.parse.RowResolver;
 import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
 import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
 
 import com.sap.hadoop.metadata.Order;
 import com.sap.hadoop.windowing.WindowingException;
@@ -218,4 +219,49 @@ public class MRUtils
 
 	}
 
+	/**
+	 * Change the shuffle for a query whose window functions are aggregated
+	 * on the map-side. Records are sorted on the partition columns; then on
+	 * whether they are rows, so that the partial aggregations of a Partition
+	 * come before its rows; then on the order columns. The count and partial
+	 * aggregation columns are added to the values.
+	 * 
+	 * @param mapAgg
+	 */
+	public void initializeMapAggregation(MapSideAggregation mapAgg)
+	{
+		ArrayList<ExprNodeDesc> keyCols = new ArrayList<ExprNodeDesc>();
+		List<String> names = new ArrayList<String>();
+		StringBuilder keyOrder = new StringBuilder();
+		for (int i = 0; i <= partCols.size(); i++)
+		{
+			keyCols.add(i < partCols.size() ? partCols.get(i) : TranslateUtils
+					.getExprDesc(MapSideAggregation.ISROW_COLUMN,
+							TypeInfoFactory.booleanTypeInfo));
+			names.add(MapSideAggregation.KEY_COLUMN_PREFIX + i);
+			keyOrder.append('+');
+		}
+		keyCols.addAll(orderCols);
+		keyOrder.append(orderString);
+		names.addAll(outputColumnNames);
+
+		valueCols.add(TranslateUtils.getExprDesc(
+				MapSideAggregation.ISROW_COLUMN, TypeInfoFactory.booleanTypeInfo));
+		names.add(MapSideAggregation.ISROW_COLUMN);
+		valueCols.add(TranslateUtils.getExprDesc(
+				MapSideAggregation.COUNT_COLUMN, TypeInfoFactory.longTypeInfo));
+		names.add(MapSideAggregation.COUNT_COLUMN);
+		TypeInfo[] partialTypes = mapAgg.getPartialTypes();
+		for (int k = 0; k < partialTypes.length; k++)
+		{
+			String name = MapSideAggregation.PARTIAL_COLUMN_PREFIX + k;
+			valueCols.add(TranslateUtils.getExprDesc(name, partialTypes[k]));
+			names.add(name);
+		}
+
+		orderCols = keyCols;
+		orderString = keyOrder;
+		outputColumnNames = names;
+	}
+
 }
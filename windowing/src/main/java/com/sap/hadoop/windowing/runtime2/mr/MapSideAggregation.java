@@ -0,0 +1,648 @@
+package com.sap.hadoop.windowing.runtime2.mr;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluator;
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluatorFactory;
+import org.apache.hadoop.hive.ql.exec.FunctionRegistry;
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
+import org.apache.hadoop.hive.serde2.SerDe;
+import org.apache.hadoop.hive.serde2.SerDeException;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.BooleanObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.LongObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.LongWritable;
+
+import com.sap.hadoop.windowing.WindowingException;
+import com.sap.hadoop.windowing.functions2.table.WindowingTableFunction;
+import com.sap.hadoop.windowing.query2.definition.ArgDef;
+import com.sap.hadoop.windowing.query2.definition.ColumnDef;
+import com.sap.hadoop.windowing.query2.definition.QueryDef;
+import com.sap.hadoop.windowing.query2.definition.QueryInputDef;
+import com.sap.hadoop.windowing.query2.definition.TableFuncDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFunctionDef;
+import com.sap.hadoop.windowing.query2.specification.WindowFunctionSpec;
+import com.sap.hadoop.windowing.query2.translate.WindowFunctionTranslation;
+import com.sap.hadoop.windowing.runtime2.ColumnarStructObjectInspector;
+import com.sap.hadoop.windowing.runtime2.Executor.ForwardSink;
+import com.sap.hadoop.windowing.runtime2.Executor.SelectListExecutor;
+
+/*
+ * Evaluates a query whose only table function is the WindowingTableFunction, and all of whose window
+ * functions are Hive aggregations over the whole Partition, by aggregating on the map-side.
+ * <p>
+ * Each map task keeps a row count and the PARTIAL1 aggregations of the functions for each Partition it
+ * sees. They are shuffled as records that have the Partition's values in the partition columns, nulls in
+ * the other input columns, and the count and partial aggregations in extra columns. The shuffle sorts
+ * these records ahead of the rows of their Partition; so the reduce-side merges them (FINAL) before the
+ * rows arrive, and then outputs each row as it arrives without holding the Partition.
+ * <p>
+ * If the select list and the where clause only refer to partition columns and window functions, the rows
+ * are not shuffled at all: the reduce-side outputs the Partition's row count of identical rows.
+ */
+public class MapSideAggregation
+{
+	public static final String KEY_COLUMN_PREFIX = "_mapagg_key_";
+	public static final String ISROW_COLUMN = "_mapagg_isrow";
+	public static final String COUNT_COLUMN = "_mapagg_count";
+	public static final String PARTIAL_COLUMN_PREFIX = "_mapagg_partial_";
+
+	/*
+	 * the Hive aggregations whose partial aggregations can be merged in any order.
+	 */
+	public static final ArrayList<String> PARTIAL_AGGREGATION_FUNCS = new ArrayList<String>();
+	static
+	{
+		PARTIAL_AGGREGATION_FUNCS.add("sum");
+		PARTIAL_AGGREGATION_FUNCS.add("count");
+		PARTIAL_AGGREGATION_FUNCS.add("avg");
+		PARTIAL_AGGREGATION_FUNCS.add("min");
+		PARTIAL_AGGREGATION_FUNCS.add("max");
+		PARTIAL_AGGREGATION_FUNCS.add("variance");
+		PARTIAL_AGGREGATION_FUNCS.add("var_pop");
+		PARTIAL_AGGREGATION_FUNCS.add("var_samp");
+		PARTIAL_AGGREGATION_FUNCS.add("std");
+		PARTIAL_AGGREGATION_FUNCS.add("stddev");
+		PARTIAL_AGGREGATION_FUNCS.add("stddev_pop");
+		PARTIAL_AGGREGATION_FUNCS.add("stddev_samp");
+	}
+
+	TableFuncDef tDef;
+	ArrayList<WindowFunctionDef> wFnDefs;
+
+	/*
+	 * the input columns; shuffled records have these columns, followed by the isrow, count and partial
+	 * aggregation columns.
+	 */
+	StructObjectInspector inputOI;
+	int numInputColumns;
+	int[] partitionColumnPositions;
+	boolean aggregateOnly;
+	GenericUDAFEvaluator[] partialEvals;
+	ObjectInspector[] partialOIs;
+	TypeInfo[] partialTypes;
+
+	/*
+	 * map-side: the aggregations of the Partitions seen so far.
+	 */
+	ForwardSink sink;
+	StructObjectInspector rowOI;
+	StructField[] rowFields;
+	ExprNodeEvaluator[][] argEvals;
+	ObjectInspector[][] argOIs;
+	Object[][] args;
+	HashMap<WindowingKeyWrapper, Aggregations> aggregations;
+	int maxPartitions;
+	BooleanWritable isRow = new BooleanWritable(true);
+	BooleanWritable isNotRow = new BooleanWritable(false);
+
+	/*
+	 * reduce-side: the merged aggregations of the current Partition.
+	 */
+	SelectListExecutor selExec;
+	StructObjectInspector valueOI;
+	StructField[] valueFields;
+	GenericUDAFEvaluator[] finalEvals;
+	ObjectInspector[] finalOIs;
+	AggregationBuffer[] finalBuffers;
+	long count;
+	Object[] finalValues;
+	Object[] partitionRow;
+	SerDe outSerDe;
+	StructObjectInspector outRowOI;
+	StructObjectInspector outStandardRowOI;
+
+	public MapSideAggregation(QueryDef qDef) throws WindowingException
+	{
+		this((TableFuncDef) qDef.getInput(), qDef.getSelectList().getWindowFuncs(), isAggregateOnly(qDef),
+				getEvaluators(qDef.getSelectList().getWindowFuncs()),
+				getEvaluators(qDef.getSelectList().getWindowFuncs()));
+	}
+
+	/*
+	 * @param partialEvals evaluators of the window functions, for the map-side; not yet initialized.
+	 * @param finalEvals other evaluators of the window functions, for the reduce-side; not yet initialized.
+	 */
+	MapSideAggregation(TableFuncDef tDef, ArrayList<WindowFunctionDef> wFnDefs, boolean aggregateOnly,
+			GenericUDAFEvaluator[] partialEvals, GenericUDAFEvaluator[] finalEvals) throws WindowingException
+	{
+		this.tDef = tDef;
+		this.wFnDefs = wFnDefs;
+		this.aggregateOnly = aggregateOnly;
+		this.partialEvals = partialEvals;
+		this.finalEvals = finalEvals;
+		inputOI = tDef.getInput().getOI();
+		List<? extends StructField> fields = inputOI.getAllStructFieldRefs();
+		numInputColumns = fields.size();
+
+		ArrayList<ColumnDef> partCols = tDef.getWindow().getPartDef().getColumns();
+		partitionColumnPositions = new int[partCols.size()];
+		for(int i=0; i < partitionColumnPositions.length; i++)
+		{
+			String colName = ((ExprNodeColumnDesc) partCols.get(i).getExprNode()).getColumn();
+			partitionColumnPositions[i] = fields.indexOf(inputOI.getStructFieldRef(colName));
+		}
+
+		partialOIs = new ObjectInspector[wFnDefs.size()];
+		partialTypes = new TypeInfo[wFnDefs.size()];
+		for(int k=0; k < partialEvals.length; k++)
+		{
+			ArrayList<ObjectInspector> fnArgOIs = WindowFunctionTranslation.getWritableObjectInspector(wFnDefs.get(k).getArgs());
+			try
+			{
+				partialOIs[k] = partialEvals[k].init(GenericUDAFEvaluator.Mode.PARTIAL1,
+						fnArgOIs.toArray(new ObjectInspector[fnArgOIs.size()]));
+				partialTypes[k] = TypeInfoUtils.getTypeInfoFromObjectInspector(partialOIs[k]);
+			}
+			catch(HiveException he)
+			{
+				throw new WindowingException(he);
+			}
+		}
+	}
+
+	/*
+	 * can the window functions of the query be aggregated on the map-side.
+	 */
+	public static boolean canAggregate(QueryDef qDef)
+	{
+		QueryInputDef iDef = qDef.getInput();
+		if ( !(iDef instanceof TableFuncDef) || ((TableFuncDef) iDef).getInput() instanceof TableFuncDef )
+		{
+			return false;
+		}
+		TableFuncDef tDef = (TableFuncDef) iDef;
+		if ( !(tDef.getFunction() instanceof WindowingTableFunction) )
+		{
+			return false;
+		}
+
+		/*
+		 * the select list is evaluated on rows read back with the output SerDe.
+		 */
+		if ( tDef.getOI() instanceof ColumnarStructObjectInspector )
+		{
+			return false;
+		}
+
+		List<ExprNodeGenericFuncDesc> llFnDescs = qDef.getTranslationInfo().getLLInfo().getLeadLagExprs();
+		if ( llFnDescs != null && llFnDescs.size() > 0 )
+		{
+			return false;
+		}
+
+		ArrayList<WindowFunctionDef> wFnDefs = qDef.getSelectList().getWindowFuncs();
+		if ( wFnDefs == null || wFnDefs.size() == 0 )
+		{
+			return false;
+		}
+		for(WindowFunctionDef wFnDef : wFnDefs)
+		{
+			WindowFunctionSpec wSpec = wFnDef.getSpec();
+			if ( wFnDef.getWindow() != null || wSpec.isDistinct() ||
+					!PARTIAL_AGGREGATION_FUNCS.contains(wSpec.getName().toLowerCase()) )
+			{
+				return false;
+			}
+		}
+
+		for(ColumnDef cDef : tDef.getWindow().getPartDef().getColumns())
+		{
+			if ( !(cDef.getExprNode() instanceof ExprNodeColumnDesc) )
+			{
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/*
+	 * do the select list and where clause only refer to partition columns and window functions.
+	 */
+	static boolean isAggregateOnly(QueryDef qDef)
+	{
+		TableFuncDef tDef = (TableFuncDef) qDef.getInput();
+		ArrayList<WindowFunctionDef> wFnDefs = qDef.getSelectList().getWindowFuncs();
+		HashSet<String> cols = new HashSet<String>();
+		for(ColumnDef cDef : tDef.getWindow().getPartDef().getColumns())
+		{
+			cols.add(((ExprNodeColumnDesc) cDef.getExprNode()).getColumn().toLowerCase());
+		}
+		for(WindowFunctionDef wFnDef : wFnDefs)
+		{
+			cols.add(wFnDef.getSpec().getAlias().toLowerCase());
+		}
+
+		ArrayList<ExprNodeDesc> exprs = new ArrayList<ExprNodeDesc>();
+		for(ColumnDef cDef : qDef.getSelectList().getColumns())
+		{
+			exprs.add(cDef.getExprNode());
+		}
+		if ( qDef.getWhere() != null )
+		{
+			exprs.add(qDef.getWhere().getExprNode());
+		}
+		for(ExprNodeDesc expr : exprs)
+		{
+			List<String> exprCols = expr.getCols();
+			if ( exprCols == null )
+			{
+				continue;
+			}
+			for(String c : exprCols)
+			{
+				if ( !cols.contains(c.toLowerCase()) )
+				{
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	static GenericUDAFEvaluator[] getEvaluators(ArrayList<WindowFunctionDef> wFnDefs) throws WindowingException
+	{
+		GenericUDAFEvaluator[] evals = new GenericUDAFEvaluator[wFnDefs.size()];
+		try
+		{
+			for(int k=0; k < evals.length; k++)
+			{
+				WindowFunctionSpec wSpec = wFnDefs.get(k).getSpec();
+				evals[k] = FunctionRegistry.getGenericUDAFEvaluator(wSpec.getName(),
+						WindowFunctionTranslation.getWritableObjectInspector(wFnDefs.get(k).getArgs()),
+						wSpec.isDistinct(), wSpec.isStar());
+			}
+		}
+		catch(HiveException he)
+		{
+			throw new WindowingException(he);
+		}
+		return evals;
+	}
+
+	public boolean isAggregateOnly()
+	{
+		return aggregateOnly;
+	}
+
+	/*
+	 * the types of the partial aggregation columns.
+	 */
+	public TypeInfo[] getPartialTypes()
+	{
+		return partialTypes;
+	}
+
+	public StructObjectInspector getInputOI()
+	{
+		return inputOI;
+	}
+
+	static class Aggregations
+	{
+		long count;
+		AggregationBuffer[] buffers;
+	}
+
+	/*
+	 * setup the map-side.
+	 * @param rowOI the OI of the rows that will be aggregated.
+	 * @param sink forwards the shuffled records.
+	 * @return the OI of the shuffled records.
+	 */
+	public StructObjectInspector initializeMap(StructObjectInspector rowOI, int maxPartitions, ForwardSink sink)
+		throws WindowingException
+	{
+		this.rowOI = rowOI;
+		this.maxPartitions = maxPartitions;
+		this.sink = sink;
+		aggregations = new HashMap<WindowingKeyWrapper, Aggregations>();
+
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<ObjectInspector> OIs = new ArrayList<ObjectInspector>();
+		rowFields = new StructField[numInputColumns];
+		for(int i=0; i < numInputColumns; i++)
+		{
+			String name = inputOI.getAllStructFieldRefs().get(i).getFieldName();
+			rowFields[i] = rowOI.getStructFieldRef(name);
+			names.add(name);
+			OIs.add(ObjectInspectorUtils.getStandardObjectInspector(rowFields[i].getFieldObjectInspector(),
+					ObjectInspectorCopyOption.WRITABLE));
+		}
+		names.add(ISROW_COLUMN);
+		OIs.add(PrimitiveObjectInspectorFactory.writableBooleanObjectInspector);
+		names.add(COUNT_COLUMN);
+		OIs.add(PrimitiveObjectInspectorFactory.writableLongObjectInspector);
+
+		/*
+		 * the args are evaluated on the map-side rows; the evaluators on the ArgDefs are initialized for
+		 * the rows of the input SerDe.
+		 */
+		argEvals = new ExprNodeEvaluator[wFnDefs.size()][];
+		argOIs = new ObjectInspector[wFnDefs.size()][];
+		args = new Object[wFnDefs.size()][];
+		try
+		{
+			for(int k=0; k < wFnDefs.size(); k++)
+			{
+				WindowFunctionDef wFnDef = wFnDefs.get(k);
+				int numArgs = wFnDef.getArgs() == null ? 0 : wFnDef.getArgs().size();
+				argEvals[k] = new ExprNodeEvaluator[numArgs];
+				argOIs[k] = new ObjectInspector[numArgs];
+				args[k] = new Object[numArgs];
+				for(int j=0; j < numArgs; j++)
+				{
+					ArgDef arg = wFnDef.getArgs().get(j);
+					argEvals[k][j] = ExprNodeEvaluatorFactory.get(arg.getExprNode());
+					argOIs[k][j] = argEvals[k][j].initialize(rowOI);
+				}
+				names.add(PARTIAL_COLUMN_PREFIX + k);
+				OIs.add(partialOIs[k]);
+			}
+		}
+		catch(HiveException he)
+		{
+			throw new WindowingException(he);
+		}
+		return ObjectInspectorFactory.getStandardStructObjectInspector(names, OIs);
+	}
+
+	/*
+	 * add a row to the aggregations of its Partition; and unless only the aggregations are needed
+	 * shuffle the row.
+	 * @param key a key wrapper on the partition columns.
+	 */
+	public void aggregate(Object row, WindowingKeyWrapper key) throws WindowingException
+	{
+		try
+		{
+			key.getNewKey(row, rowOI);
+			key.setHashKey();
+			Aggregations aggs = aggregations.get(key);
+			if ( aggs == null )
+			{
+				if ( aggregations.size() >= maxPartitions )
+				{
+					flush();
+				}
+				aggs = new Aggregations();
+				aggs.buffers = new AggregationBuffer[partialEvals.length];
+				for(int k=0; k < partialEvals.length; k++)
+				{
+					aggs.buffers[k] = partialEvals[k].getNewAggregationBuffer();
+				}
+				aggregations.put(key.copyKey(), aggs);
+			}
+
+			aggs.count++;
+			for(int k=0; k < partialEvals.length; k++)
+			{
+				for(int j=0; j < args[k].length; j++)
+				{
+					args[k][j] = ObjectInspectorUtils.copyToStandardObject(argEvals[k][j].evaluate(row),
+							argOIs[k][j], ObjectInspectorCopyOption.WRITABLE);
+				}
+				partialEvals[k].aggregate(aggs.buffers[k], args[k]);
+			}
+		}
+		catch(HiveException he)
+		{
+			throw new WindowingException(he);
+		}
+
+		if ( !aggregateOnly )
+		{
+			Object[] record = new Object[numInputColumns + 2 + partialEvals.length];
+			for(int i=0; i < numInputColumns; i++)
+			{
+				record[i] = ObjectInspectorUtils.copyToStandardObject(rowOI.getStructFieldData(row, rowFields[i]),
+						rowFields[i].getFieldObjectInspector(), ObjectInspectorCopyOption.WRITABLE);
+			}
+			record[numInputColumns] = isRow;
+			sink.collectOutput(record);
+		}
+	}
+
+	/*
+	 * shuffle the aggregations of the Partitions seen so far, and start over. A Partition's aggregations
+	 * may be shuffled several times; the reduce-side merges them.
+	 */
+	public void flush() throws WindowingException
+	{
+		Object[] record = new Object[numInputColumns + 2 + partialEvals.length];
+		LongWritable count = new LongWritable();
+		try
+		{
+			for(Map.Entry<WindowingKeyWrapper, Aggregations> e : aggregations.entrySet())
+			{
+				Object[] keys = e.getKey().getKeyArray();
+				for(int i=0; i < partitionColumnPositions.length; i++)
+				{
+					record[partitionColumnPositions[i]] = keys[i];
+				}
+				record[numInputColumns] = isNotRow;
+				count.set(e.getValue().count);
+				record[numInputColumns + 1] = count;
+				for(int k=0; k < partialEvals.length; k++)
+				{
+					record[numInputColumns + 2 + k] = partialEvals[k].terminatePartial(e.getValue().buffers[k]);
+				}
+				sink.collectOutput(record);
+			}
+		}
+		catch(HiveException he)
+		{
+			throw new WindowingException(he);
+		}
+		aggregations.clear();
+	}
+
+	/*
+	 * setup the reduce-side.
+	 * @param valueOI the OI of the shuffled records.
+	 * @param selExec evaluates the select list on the output rows.
+	 */
+	public void initializeReduce(StructObjectInspector valueOI, SelectListExecutor selExec) throws WindowingException
+	{
+		this.valueOI = valueOI;
+		this.selExec = selExec;
+		List<? extends StructField> fields = valueOI.getAllStructFieldRefs();
+		valueFields = fields.toArray(new StructField[fields.size()]);
+		outSerDe = tDef.getSerde();
+
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<ObjectInspector> OIs = new ArrayList<ObjectInspector>();
+		ArrayList<ObjectInspector> standardOIs = new ArrayList<ObjectInspector>();
+		List<? extends StructField> outFields = tDef.getOI().getAllStructFieldRefs();
+		for(int i=0; i < numInputColumns; i++)
+		{
+			names.add(outFields.get(i).getFieldName());
+			OIs.add(valueFields[i].getFieldObjectInspector());
+			standardOIs.add(ObjectInspectorUtils.getStandardObjectInspector(valueFields[i].getFieldObjectInspector(),
+					ObjectInspectorCopyOption.WRITABLE));
+		}
+
+		finalOIs = new ObjectInspector[wFnDefs.size()];
+		finalBuffers = new AggregationBuffer[wFnDefs.size()];
+		try
+		{
+			for(int k=0; k < finalEvals.length; k++)
+			{
+				finalOIs[k] = finalEvals[k].init(GenericUDAFEvaluator.Mode.FINAL,
+						new ObjectInspector[] {valueFields[numInputColumns + 2 + k].getFieldObjectInspector()});
+				finalBuffers[k] = finalEvals[k].getNewAggregationBuffer();
+				names.add(outFields.get(numInputColumns + k).getFieldName());
+				OIs.add(finalOIs[k]);
+				standardOIs.add(finalOIs[k]);
+			}
+		}
+		catch(HiveException he)
+		{
+			throw new WindowingException(he);
+		}
+		outRowOI = ObjectInspectorFactory.getStandardStructObjectInspector(names, OIs);
+		outStandardRowOI = ObjectInspectorFactory.getStandardStructObjectInspector(names, standardOIs);
+	}
+
+	/*
+	 * merge a partial aggregation record into the aggregations of the current Partition; or output a row.
+	 */
+	public void processRow(Object record) throws WindowingException
+	{
+		Object isRowVal = valueOI.getStructFieldData(record, valueFields[numInputColumns]);
+		if ( ((BooleanObjectInspector) valueFields[numInputColumns].getFieldObjectInspector()).get(isRowVal) )
+		{
+			if ( finalValues == null )
+			{
+				terminate();
+			}
+			ArrayList<Object> oRow = new ArrayList<Object>();
+			for(int i=0; i < numInputColumns; i++)
+			{
+				oRow.add(valueOI.getStructFieldData(record, valueFields[i]));
+			}
+			for(Object v : finalValues)
+			{
+				oRow.add(v);
+			}
+			selExec.processRow(readBack(oRow, outRowOI));
+			return;
+		}
+
+		if ( partitionRow == null )
+		{
+			partitionRow = new Object[numInputColumns];
+			for(int i=0; i < numInputColumns; i++)
+			{
+				partitionRow[i] = ObjectInspectorUtils.copyToStandardObject(valueOI.getStructFieldData(record, valueFields[i]),
+						valueFields[i].getFieldObjectInspector(), ObjectInspectorCopyOption.WRITABLE);
+			}
+		}
+		Object countVal = valueOI.getStructFieldData(record, valueFields[numInputColumns + 1]);
+		count += ((LongObjectInspector) valueFields[numInputColumns + 1].getFieldObjectInspector()).get(countVal);
+		try
+		{
+			for(int k=0; k < finalEvals.length; k++)
+			{
+				finalEvals[k].merge(finalBuffers[k], valueOI.getStructFieldData(record, valueFields[numInputColumns + 2 + k]));
+			}
+		}
+		catch(HiveException he)
+		{
+			throw new WindowingException(he);
+		}
+	}
+
+	/*
+	 * if only the aggregations were shuffled, output the rows of the current Partition; and start a new
+	 * Partition.
+	 */
+	public void finishPartition() throws WindowingException
+	{
+		if ( aggregateOnly && partitionRow != null )
+		{
+			if ( finalValues == null )
+			{
+				terminate();
+			}
+			ArrayList<Object> oRow = new ArrayList<Object>();
+			for(Object v : partitionRow)
+			{
+				oRow.add(v);
+			}
+			for(Object v : finalValues)
+			{
+				oRow.add(v);
+			}
+			Object row = readBack(oRow, outStandardRowOI);
+			for(long i=0; i < count; i++)
+			{
+				selExec.processRow(row);
+			}
+		}
+
+		try
+		{
+			for(int k=0; k < finalEvals.length; k++)
+			{
+				finalEvals[k].reset(finalBuffers[k]);
+			}
+		}
+		catch(HiveException he)
+		{
+			throw new WindowingException(he);
+		}
+		count = 0;
+		finalValues = null;
+		partitionRow = null;
+	}
+
+	void terminate() throws WindowingException
+	{
+		finalValues = new Object[finalEvals.length];
+		try
+		{
+			for(int k=0; k < finalEvals.length; k++)
+			{
+				finalValues[k] = finalEvals[k].terminate(finalBuffers[k]);
+			}
+		}
+		catch(HiveException he)
+		{
+			throw new WindowingException(he);
+		}
+	}
+
+	/*
+	 * the select list is evaluated on rows of the WindowingTableFunction's output SerDe.
+	 */
+	Object readBack(ArrayList<Object> oRow, StructObjectInspector oRowOI) throws WindowingException
+	{
+		try
+		{
+			return outSerDe.deserialize(outSerDe.serialize(oRow, oRowOI));
+		}
+		catch(SerDeException se)
+		{
+			throw new WindowingException(se);
+		}
+	}
+}
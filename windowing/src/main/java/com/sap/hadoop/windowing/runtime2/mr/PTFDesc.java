@@ -7,6 +7,10 @@ public class PTFDesc extends AbstractOperatorDesc
 
 	private static final long serialVersionUID = 1L;
 	String queryDefStr;
+	/*
+	 * the window functions are aggregated on the map-side; see MapSideAggregation.
+	 */
+	boolean mapAggregation;
 
 	public PTFDesc()
 	{
@@ -28,4 +32,14 @@ public class PTFDesc extends AbstractOperatorDesc
 		this.queryDefStr = queryDefStr;
 	}
 
+	public boolean isMapAggregation()
+	{
+		return mapAggregation;
+	}
+
+	public void setMapAggregation(boolean mapAggregation)
+	{
+		this.mapAggregation = mapAggregation;
+	}
+
 }
@@ -16,9 +16,12 @@ import org.apache.hadoop.hive.ql.plan.api.OperatorType;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
 import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
 import org.apache.hadoop.io.Writable;
 
+import com.sap.hadoop.windowing.Constants;
 import com.sap.hadoop.windowing.WindowingException;
+import com.sap.hadoop.windowing.functions2.table.StreamingWindowEvaluator;
 import com.sap.hadoop.windowing.query2.SerializationUtils;
 import com.sap.hadoop.windowing.query2.definition.ColumnDef;
 import com.sap.hadoop.windowing.query2.definition.PartitionDef;
@@ -29,6 +32,7 @@ import com.sap.hadoop.windowing.query2.translate.QueryDefVisitor;
 import com.sap.hadoop.windowing.query2.translate.QueryDefWalker;
 import com.sap.hadoop.windowing.runtime2.Executor;
 import com.sap.hadoop.windowing.runtime2.Executor.ForwardSink;
+import com.sap.hadoop.windowing.runtime2.Executor.SelectListExecutor;
 import com.sap.hadoop.windowing.runtime2.Partition;
 import com.sap.hadoop.windowing.runtime2.PartitionIterator;
 import com.sap.hadoop.windowing.runtime2.RuntimeUtils;
@@ -40,6 +44,8 @@ public class PTFOperator extends Operator<PTFDesc> implements Serializable
 	QueryDef qDef;
 	Partition inputPart;
 	boolean isMapOperator;
+	transient StreamingWindowEvaluator streamingEval;
+	transient MapSideAggregation mapAgg;
 	
 	transient WindowingKeyWrapperFactory keyWrapperFactory;
 	protected transient WindowingKeyWrapper currentKeys;
@@ -50,7 +56,9 @@ public class PTFOperator extends Operator<PTFDesc> implements Serializable
 	 * 1. Find out if the operator is invoked at Map-Side or Reduce-side 
 	 * 2. Get the deserialized QueryDef 
 	 * 3. Reconstruct the transient variables in QueryDef 
-	 * 4. Create input partition to store rows coming from previous operator
+	 * 4. Create input partition to store rows coming from previous operator; unless 
+	 *    on the reduce-side the query can be evaluated by streaming the rows, or
+	 *    the window functions are aggregated on the map-side.
 	 */
 	@Override
 	protected void initializeOp(Configuration jobConf) throws HiveException
@@ -74,8 +82,34 @@ public class PTFOperator extends Operator<PTFDesc> implements Serializable
 		try
 		{
 			reconstructQueryDef(hiveConf);
-			inputPart = RuntimeUtils.createFirstPartitionForChain(qDef,
-					inputObjInspectors[0], hiveConf, isMapOperator);
+			if (conf.isMapAggregation())
+			{
+				mapAgg = new MapSideAggregation(qDef);
+				if (isMapOperator)
+				{
+					outputObjInspector = mapAgg.initializeMap(
+							(StructObjectInspector) inputObjInspectors[0],
+							hiveConf.getInt(Constants.WINDOW_MAP_AGGREGATION_MAX_PARTITIONS,
+									Constants.DEFAULT_WINDOW_MAP_AGGREGATION_MAX_PARTITIONS),
+							new ForwardPTF());
+				}
+				else
+				{
+					mapAgg.initializeReduce((StructObjectInspector) inputObjInspectors[0],
+							new SelectListExecutor(qDef, new ForwardPTF()));
+				}
+			}
+			else if (!isMapOperator)
+			{
+				streamingEval = StreamingWindowEvaluator.create(qDef,
+						(StructObjectInspector) inputObjInspectors[0],
+						new SelectListExecutor(qDef, new ForwardPTF()));
+			}
+			if (mapAgg == null && streamingEval == null)
+			{
+				inputPart = RuntimeUtils.createFirstPartitionForChain(qDef,
+						inputObjInspectors[0], hiveConf, isMapOperator);
+			}
 		}
 		catch (WindowingException we)
 		{
@@ -84,12 +118,13 @@ public class PTFOperator extends Operator<PTFDesc> implements Serializable
 		}
 		// OI for FileSinkOperator is taken from select-list (reduce-side)
 		// OI for ReduceSinkOperator is taken from TODO
-		if (isMapOperator)
+		// OI for a MapSideAggregation's ReduceSinkOperator is set above
+		if (isMapOperator && mapAgg == null)
 		{
 			TableFuncDef tDef = RuntimeUtils.getFirstTableFunction(qDef);
 			outputObjInspector = tDef.getMapOI();
 		}
-		else
+		else if (!isMapOperator)
 		{
 			outputObjInspector = qDef.getSelectList().getOI();
 		}
@@ -103,13 +138,70 @@ public class PTFOperator extends Operator<PTFDesc> implements Serializable
 	protected void closeOp(boolean abort) throws HiveException
 	{
 		super.closeOp(abort);
-		if (isMapOperator)
+		try
 		{
-			processMapFunction();
+			if (mapAgg != null)
+			{
+				try
+				{
+					if (isMapOperator)
+					{
+						mapAgg.flush();
+					}
+					else
+					{
+						mapAgg.finishPartition();
+					}
+				}
+				catch (WindowingException we)
+				{
+					throw new HiveException("Cannot close PTFOperator.", we);
+				}
+			}
+			else if (isMapOperator)
+			{
+				processMapFunction();
+			}
+			else if (streamingEval != null)
+			{
+				try
+				{
+					streamingEval.finishPartition();
+				}
+				catch (WindowingException we)
+				{
+					throw new HiveException("Cannot close PTFOperator.", we);
+				}
+			}
+			else
+			{
+				processInputPartition();
+			}
 		}
-		else
+		finally
+		{
+			closePartitions();
+		}
+	}
+
+	/*
+	 * release the input Partition and the Partitions kept by the table functions, rather than
+	 * leaving their memory, files and mappings to the garbage collector.
+	 */
+	protected void closePartitions() throws HiveException
+	{
+		try
+		{
+			if (inputPart != null)
+			{
+				inputPart.close();
+				inputPart = null;
+			}
+			Executor.closeChain(qDef);
+		}
+		catch (WindowingException we)
 		{
-			processInputPartition();
+			throw new HiveException("Cannot close PTFOperator.", we);
 		}
 	}
 
@@ -127,14 +219,25 @@ public class PTFOperator extends Operator<PTFDesc> implements Serializable
 				 *  - reset input Partition
 				 * - set currentKey to the newKey if it is null or has changed.
 				 */
-				newKeys.getNewKey(row, inputPart.getOI());
+				newKeys.getNewKey(row, inputObjInspectors[0]);
 				boolean keysAreEqual = (currentKeys != null && newKeys != null)?
 				        newKeys.equals(currentKeys) : false;
 				        
 				if (currentKeys != null && !keysAreEqual)
 				{
-					processInputPartition();
-					inputPart = RuntimeUtils.createFirstPartitionForChain(qDef, inputObjInspectors[0], hiveConf, isMapOperator);
+					if (mapAgg != null)
+					{
+						mapAgg.finishPartition();
+					}
+					else if (streamingEval != null)
+					{
+						streamingEval.finishPartition();
+					}
+					else
+					{
+						processInputPartition();
+						inputPart.reset();
+					}
 				}
 				
 				if (currentKeys == null || !keysAreEqual)
@@ -151,7 +254,22 @@ public class PTFOperator extends Operator<PTFDesc> implements Serializable
 			}
 			
 			// add row to current Partition.			
-			inputPart.append(row);
+			if (mapAgg != null && isMapOperator)
+			{
+				mapAgg.aggregate(row, newKeys);
+			}
+			else if (mapAgg != null)
+			{
+				mapAgg.processRow(row);
+			}
+			else if (streamingEval != null)
+			{
+				streamingEval.append(row);
+			}
+			else
+			{
+				inputPart.append(row);
+			}
 		}
 		catch (WindowingException we)
 		{
@@ -227,6 +345,10 @@ public class PTFOperator extends Operator<PTFDesc> implements Serializable
 				Object oRow = pItr.next();
 				forward(oRow, outputObjInspector);
 			}
+			if (outPart != inputPart)
+			{
+				outPart.close();
+			}
 		}
 		catch (WindowingException we)
 		{
@@ -81,6 +81,186 @@ public class ByteBasedListTest
 	}
 	
 	
+	@Test
+	public void testSealedCursor() throws Exception
+	{
+		for(String r : table)	
+		{
+			bl.append(new Text(r));
+		}
+		bl.seal();
+		
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+		
+		ByteBasedList.Cursor c = bl.cursor(0, bl.size(), wObj);
+		int i = 0;
+		while(c.hasNext())
+		{
+			Object o = sd.serialize(sd.deserialize(c.next()), sd.getObjectInspector());
+			Assert.assertEquals(table[i++], o.toString());
+		}
+		Assert.assertEquals(table.length, i);
+		
+		c.seek(3);
+		Object o = sd.serialize(sd.deserialize(c.next()), sd.getObjectInspector());
+		Assert.assertEquals(table[3], o.toString());
+		
+		try
+		{
+			bl.append(new Text(table[0]));
+			Assert.fail("append to a sealed list");
+		}
+		catch(UnsupportedOperationException ue)
+		{
+		}
+	}
+	
+	@Test
+	public void testIndexOutOfRange() throws Exception
+	{
+		for(String r : table)	
+		{
+			bl.append(new Text(r));
+		}
+		bl.seal();
+		
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+		for(int i : new int[] {-1, table.length, table.length + 1})
+		{
+			try
+			{
+				bl.get(i, wObj);
+				Assert.fail("read at index " + i);
+			}
+			catch(BaseException be)
+			{
+			}
+		}
+		
+		ByteBasedList.Cursor c = bl.cursor(0, bl.size(), wObj);
+		c.seek(table.length);
+		try
+		{
+			c.next();
+			Assert.fail("cursor read past the end");
+		}
+		catch(BaseException be)
+		{
+		}
+	}
+	
+	@Test
+	public void testSlabs() throws Exception
+	{
+		/*
+		 * rows spread over several slabs; the list only allocates what it needs.
+		 */
+		bl = new ByteBasedList(ByteBasedList.LARGE_SIZE);
+		int numRows = 5000;
+		for(int i=0; i < numRows; i++)
+		{
+			bl.append(new Text(table[i % table.length]));
+		}
+		Assert.assertTrue(bl.numSlabs > 1);
+		Assert.assertTrue(bl.getAllocatedBytes() < 4 * bl.bytesUsed);
+		
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+		for(int i=0; i < numRows; i++)
+		{
+			Object o = sd.serialize(bl.get(i, sd, wObj), sd.getObjectInspector());
+			Assert.assertEquals(table[i % table.length], o.toString());
+		}
+		
+		long pooled = SlabPool.get().getPooledBytes();
+		long allocated = bl.getAllocatedBytes();
+		bl.clear();
+		Assert.assertEquals(0, bl.size());
+		Assert.assertEquals(pooled + allocated, SlabPool.get().getPooledBytes());
+		
+		bl.append(new Text(table[0]));
+		Object o = sd.serialize(bl.get(0, sd, wObj), sd.getObjectInspector());
+		Assert.assertEquals(table[0], o.toString());
+	}
+	
+	@Test
+	public void testSlabPoolShared() throws Exception
+	{
+		final SlabPool pool = SlabPool.get();
+		PartitionMemoryManager mm = PartitionMemoryManager.get();
+		long budget = mm.getBudget();
+		try
+		{
+			/*
+			 * start from an empty pool.
+			 */
+			mm.setBudget(0);
+			mm.setBudget(Long.MAX_VALUE);
+			Assert.assertEquals(0, pool.getPooledBytes());
+			long used = mm.getUsed();
+			
+			/*
+			 * a slab released on another thread is reused here, and is accounted for while it is pooled.
+			 */
+			final byte[] slab = new byte[SlabPool.MIN_SLAB_SIZE];
+			Thread t = new Thread()
+			{
+				public void run()
+				{
+					try
+					{
+						pool.release(slab);
+					}
+					catch(BaseException be)
+					{
+						throw new RuntimeException(be);
+					}
+				}
+			};
+			t.start();
+			t.join();
+			Assert.assertEquals(slab.length, pool.getPooledBytes());
+			Assert.assertEquals(used + slab.length, mm.getUsed());
+			Assert.assertSame(slab, pool.allocate(SlabPool.MIN_SLAB_SIZE));
+			Assert.assertEquals(used, mm.getUsed());
+			
+			/*
+			 * going over the budget empties the pool.
+			 */
+			pool.release(slab);
+			pool.release(new byte[SlabPool.MAX_SLAB_SIZE]);
+			Assert.assertEquals(used + slab.length + SlabPool.MAX_SLAB_SIZE, mm.getUsed());
+			mm.setBudget(used);
+			Assert.assertEquals(0, pool.getPooledBytes());
+			Assert.assertEquals(used, mm.getUsed());
+			Assert.assertNotSame(slab, pool.allocate(SlabPool.MIN_SLAB_SIZE));
+		}
+		finally
+		{
+			mm.setBudget(budget);
+		}
+	}
+	
+	@Test
+	public void testFull() throws Exception
+	{
+		bl = new ByteBasedList(100);
+		try
+		{
+			for(int i=0; i < 100; i++)
+			{
+				bl.append(new Text(table[0]));
+			}
+			Assert.fail("list should be full");
+		}
+		catch(ByteBasedList.ListFullException le)
+		{
+		}
+		Assert.assertTrue(bl.getAllocatedBytes() <= 100);
+	}
+	
 	static final String[] table = new String[] {
 		"Manufacturer#1,2,2",
 		"Manufacturer#1,2,34",
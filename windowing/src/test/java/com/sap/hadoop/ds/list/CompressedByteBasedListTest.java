@@ -0,0 +1,227 @@
+package com.sap.hadoop.ds.list;
+
+import java.io.File;
+import java.util.Iterator;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CompressionCodec;
+import org.apache.hadoop.io.compress.DefaultCodec;
+import org.apache.hadoop.util.ReflectionUtils;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.ds.BaseException;
+
+public class CompressedByteBasedListTest
+{
+	static LazySimpleSerDe sd;
+	static CompressionCodec codec;
+	ByteBasedList bl;
+
+	@BeforeClass
+	public static void setupClass() throws BaseException
+	{
+		sd = Utils.createLazySimpleSerDe("a,b,c", "string,int,int", ",");
+		codec = ReflectionUtils.newInstance(DefaultCodec.class, new Configuration());
+	}
+
+	@Before
+	public void setup()
+	{
+		bl = new ByteBasedList();
+	}
+
+	@Test
+	public void test() throws Exception
+	{
+		/*
+		 * enough rows for several blocks
+		 */
+		int numRows = 10000;
+		for(int i=0; i < numRows; i++)
+		{
+			bl.append(new Text(row(i)));
+		}
+
+		File f = File.createTempFile("wdw", null);
+		f.deleteOnExit();
+
+		PersistentByteBasedList.store(bl, f, codec);
+		PersistentByteBasedList pl = new PersistentByteBasedList(f, null, codec);
+		Assert.assertEquals(numRows, pl.size());
+
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+
+		Iterator<Object> it = pl.iterator(sd, wObj);
+		int i = 0;
+		while(it.hasNext())
+		{
+			Object o = sd.serialize(it.next(), sd.getObjectInspector());
+			Assert.assertEquals(row(i++), o.toString());
+		}
+		Assert.assertEquals(numRows, i);
+
+		for(int j : new int[] {numRows - 1, 0, 5000, 17, numRows / 2 + 1})
+		{
+			Object o = sd.serialize(pl.get(j, sd, wObj), sd.getObjectInspector());
+			Assert.assertEquals(row(j), o.toString());
+		}
+	}
+
+	@Test
+	public void testBlockCache() throws Exception
+	{
+		int numRows = 10000;
+		for(int i=0; i < numRows; i++)
+		{
+			bl.append(new Text(row(i)));
+		}
+
+		File f = File.createTempFile("wdw", null);
+		f.deleteOnExit();
+		PersistentByteBasedList.store(bl, f, codec);
+		PersistentByteBasedList pl = new PersistentByteBasedList(f, null, codec);
+
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+
+		/*
+		 * alternate between the first and last block: only the first read of each inflates it.
+		 */
+		BlockCache cache = BlockCache.get();
+		long misses = cache.getMisses();
+		for(int k=0; k < 10; k++)
+		{
+			int j = k % 2 == 0 ? 0 : numRows - 1;
+			Object o = sd.serialize(pl.get(j, sd, wObj), sd.getObjectInspector());
+			Assert.assertEquals(row(j), o.toString());
+		}
+		Assert.assertEquals(misses + 2, cache.getMisses());
+
+		/*
+		 * releasing the list, as its owner does on clear, drops its blocks from the cache.
+		 */
+		CompressedByteBasedList cl = (CompressedByteBasedList) pl.fileList;
+		int last = cl.blockFirstIndex.length - 1;
+		long used = cache.getUsed();
+		pl.release();
+		Assert.assertEquals(used - cl.blockRawLength[0] - cl.blockRawLength[last], cache.getUsed());
+		Assert.assertNull(cache.get(cl.id, 0));
+		Assert.assertNull(cache.get(cl.id, last));
+	}
+
+	@Test
+	public void testOneChannel() throws Exception
+	{
+		int numRows = 10000;
+		for(int i=0; i < numRows; i++)
+		{
+			bl.append(new Text(row(i)));
+		}
+		File f = File.createTempFile("wdw", null);
+		f.deleteOnExit();
+		PersistentByteBasedList.store(bl, f, codec);
+		ByteBasedList cl = CompressedByteBasedList.open(f, codec);
+
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+		BlockCache cache = BlockCache.get();
+		long capacity = cache.getCapacity();
+		String[] fds = new File("/proc/self/fd").list();
+		try
+		{
+			/*
+			 * a cache of one block: every jump to another block reads the file.
+			 */
+			cache.setCapacity(CompressedByteBasedList.BLOCK_SIZE);
+			for(int k=0; k < 200; k++)
+			{
+				int j = (k * 2731) % numRows;
+				Assert.assertEquals(row(j), sd.serialize(cl.get(j, sd, wObj), sd.getObjectInspector()).toString());
+			}
+			if ( fds != null )
+			{
+				Assert.assertTrue(new File("/proc/self/fd").list().length <= fds.length);
+			}
+
+			/*
+			 * an interrupted reader closes the channel; the next read opens it again.
+			 */
+			cache.setCapacity(0);
+			Thread.currentThread().interrupt();
+			try
+			{
+				cl.get(0, sd, wObj);
+				Assert.fail("read on an interrupted thread");
+			}
+			catch(BaseException be)
+			{
+			}
+			Assert.assertTrue(Thread.interrupted());
+			Assert.assertEquals(row(numRows - 1), sd.serialize(cl.get(numRows - 1, sd, wObj), sd.getObjectInspector()).toString());
+
+			cl.close();
+			try
+			{
+				cl.get(0, sd, wObj);
+				Assert.fail("read after close");
+			}
+			catch(BaseException be)
+			{
+			}
+		}
+		finally
+		{
+			cache.setCapacity(capacity);
+		}
+	}
+
+	@Test
+	public void testPartitionedList() throws Exception
+	{
+		PartitionMemoryManager mm = PartitionMemoryManager.get();
+		long budget = mm.getBudget();
+		PartitionedByteBasedList.setSpillCodec(codec);
+		try
+		{
+			PartitionedByteBasedList pl = new PartitionedByteBasedList(100);
+			for(String r : ByteBasedListTest.table)
+			{
+				pl.append(new Text(r));
+			}
+			pl.seal();
+
+			/*
+			 * evict all splits, so the rows are read from the compressed files once the evictions are written.
+			 */
+			mm.setBudget(0);
+			pl.waitForSpills();
+
+			Class<? extends Writable> cls = sd.getSerializedClass();
+			Writable wObj = cls.newInstance();
+			for(int i=0; i < ByteBasedListTest.table.length; i++)
+			{
+				Object o = sd.serialize(pl.get(i, sd, wObj), sd.getObjectInspector());
+				Assert.assertEquals(ByteBasedListTest.table[i], o.toString());
+			}
+		}
+		finally
+		{
+			PartitionedByteBasedList.setSpillCodec(null);
+			mm.setBudget(budget);
+		}
+	}
+
+	static String row(int i)
+	{
+		return "Manufacturer#" + (i % 5) + "," + i + "," + (i * 7 % 50);
+	}
+}
@@ -0,0 +1,230 @@
+package com.sap.hadoop.ds.list;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.InputStreamReader;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.ds.BaseException;
+
+public class OffHeapByteBasedListTest
+{
+
+	static LazySimpleSerDe sd;
+	ByteBasedList bl;
+	
+	@BeforeClass
+	public static void setupClass() throws BaseException
+	{
+		sd = Utils.createLazySimpleSerDe("a,b,c", "string,int,int", ",");
+	}
+	
+	@Before
+	public void setup() throws BaseException
+	{
+		bl = new OffHeapByteBasedList(100);
+	}
+	
+	@After
+	public void teardown() throws BaseException
+	{
+		bl.close();
+	}
+
+	@Test
+	public void test1() throws Exception
+	{
+		for(String r : ByteBasedListTest.table)	
+		{
+			bl.append(new Text(r));
+		}
+		
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+		
+		Iterator<Object> it = bl.iterator(sd, wObj);
+		while(it.hasNext())
+		{
+			sd.serialize(it.next(), sd.getObjectInspector());
+		}
+		
+		for(int i=0; i < ByteBasedListTest.table.length; i++)
+		{
+			Object o = sd.serialize(bl.get(i, sd, wObj), sd.getObjectInspector());
+			Assert.assertEquals(ByteBasedListTest.table[i], o.toString());
+		}
+	}
+	
+	@Test
+	public void test2() throws Exception
+	{
+		for(String r : ByteBasedListTest.table)	
+		{
+			bl.append(new Text(r));
+		}
+		
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+		
+		for(int i=0; i < ByteBasedListTest.table.length; i++)
+		{
+			Object o = bl.get(i, sd, wObj);
+			bl.append(o, sd.getObjectInspector(), sd);
+		}
+		
+		for(int i=ByteBasedListTest.table.length; i < 2* ByteBasedListTest.table.length; i++)
+		{
+			Object o = sd.serialize(bl.get(i, sd, wObj), sd.getObjectInspector());
+			Assert.assertEquals(ByteBasedListTest.table[i - ByteBasedListTest.table.length], o.toString());
+		}
+	}
+	
+	@Test
+	public void testLargeRow() throws Exception
+	{
+		StringBuilder b = new StringBuilder("Manufacturer#");
+		for(int i=0; i < 200; i++)
+		{
+			b.append(i % 10);
+		}
+		b.append(",1,1");
+		String large = b.toString();
+		
+		bl.append(new Text(ByteBasedListTest.table[0]));
+		bl.append(new Text(large));
+		bl.append(new Text(ByteBasedListTest.table[1]));
+		
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+		
+		Assert.assertEquals(3, bl.size());
+		Assert.assertEquals(ByteBasedListTest.table[0], sd.serialize(bl.get(0, sd, wObj), sd.getObjectInspector()).toString());
+		Assert.assertEquals(large, sd.serialize(bl.get(1, sd, wObj), sd.getObjectInspector()).toString());
+		Assert.assertEquals(ByteBasedListTest.table[1], sd.serialize(bl.get(2, sd, wObj), sd.getObjectInspector()).toString());
+	}
+	
+	/*
+	 * the number of regions of this process mapped from the lists' files; -1 where /proc is not available.
+	 */
+	static int mappedChunks() throws Exception
+	{
+		File maps = new File("/proc/self/maps");
+		if ( !maps.exists() )
+		{
+			return -1;
+		}
+		int n = 0;
+		BufferedReader r = new BufferedReader(new FileReader(maps));
+		try
+		{
+			String line;
+			while( (line = r.readLine()) != null )
+			{
+				if ( line.contains(".mmap") && line.contains("wdw") )
+				{
+					n++;
+				}
+			}
+		}
+		finally
+		{
+			r.close();
+		}
+		return n;
+	}
+	
+	/*
+	 * the number of descriptors of this process open on the lists' files; -1 where /proc is not available.
+	 * The files are deleted once opened, so the link targets can only be read through readlink.
+	 */
+	static int openFiles() throws Exception
+	{
+		if ( !new File("/proc/self/fd").exists() )
+		{
+			return -1;
+		}
+		String pid = ManagementFactory.getRuntimeMXBean().getName().split("@")[0];
+		Process p = new ProcessBuilder("sh", "-c", "readlink /proc/" + pid + "/fd/*").start();
+		int n = 0;
+		BufferedReader r = new BufferedReader(new InputStreamReader(p.getInputStream()));
+		try
+		{
+			String line;
+			while( (line = r.readLine()) != null )
+			{
+				if ( line.contains(".mmap") && line.contains("wdw") )
+				{
+					n++;
+				}
+			}
+		}
+		finally
+		{
+			r.close();
+		}
+		return p.waitFor() == 0 ? n : -1;
+	}
+	
+	@Test
+	public void testManyListsClosed() throws Exception
+	{
+		int chunksBefore = mappedChunks();
+		int filesBefore = openFiles();
+		
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+		/*
+		 * the lists stay reachable, so it is close, not the garbage collector, that releases them.
+		 */
+		ArrayList<ByteBasedList> lists = new ArrayList<ByteBasedList>();
+		for(int k=0; k < 500; k++)
+		{
+			ByteBasedList l = new OffHeapByteBasedList(64);
+			lists.add(l);
+			for(int j=0; j < 2; j++)
+			{
+				for(String r : ByteBasedListTest.table)
+				{
+					l.append(new Text(r));
+				}
+				for(int i=0; i < ByteBasedListTest.table.length; i++)
+				{
+					Assert.assertEquals(ByteBasedListTest.table[i], sd.serialize(l.get(i, sd, wObj), sd.getObjectInspector()).toString());
+				}
+				/*
+				 * clear unmaps all but the first chunk.
+				 */
+				l.clear();
+			}
+			l.close();
+			Assert.assertEquals(0, l.size());
+		}
+		
+		/*
+		 * without close the chunks stay mapped, and the files open, until the lists are garbage collected.
+		 */
+		if ( chunksBefore >= 0 )
+		{
+			Assert.assertTrue(mappedChunks() <= chunksBefore);
+		}
+		if ( filesBefore >= 0 )
+		{
+			Assert.assertTrue(openFiles() <= filesBefore);
+		}
+		Assert.assertEquals(500, lists.size());
+	}
+}
@@ -0,0 +1,176 @@
+package com.sap.hadoop.ds.list;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.ds.BaseException;
+
+public class PartitionMemoryManagerTest
+{
+	static LazySimpleSerDe sd;
+	PartitionMemoryManager mm;
+	long budget;
+
+	@BeforeClass
+	public static void setupClass() throws BaseException
+	{
+		sd = Utils.createLazySimpleSerDe("a,b,c", "string,int,int", ",");
+	}
+
+	@Before
+	public void setup()
+	{
+		mm = PartitionMemoryManager.get();
+		budget = mm.getBudget();
+	}
+
+	@After
+	public void teardown() throws BaseException
+	{
+		mm.setBudget(budget);
+	}
+
+	@Test
+	public void testEvictionWithinBudget() throws Exception
+	{
+		mm.setBudget(mm.getUsed() + 500);
+		long before = mm.getUsed();
+
+		PartitionedByteBasedList l1 = new PartitionedByteBasedList(100);
+		PartitionedByteBasedList l2 = new PartitionedByteBasedList(100);
+		for(String r : ByteBasedListTest.table)
+		{
+			l1.append(new Text(r));
+		}
+		l1.seal();
+		for(String r : ByteBasedListTest.table)
+		{
+			l2.append(new Text(r));
+		}
+		l2.seal();
+		l1.waitForSpills();
+		l2.waitForSpills();
+
+		Assert.assertTrue(mm.getUsed() - before <= 500);
+
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+		for(ByteBasedList l : new ByteBasedList[] {l1, l2})
+		{
+			for(int i=0; i < ByteBasedListTest.table.length; i++)
+			{
+				Object o = sd.serialize(l.get(i, sd, wObj), sd.getObjectInspector());
+				Assert.assertEquals(ByteBasedListTest.table[i], o.toString());
+			}
+		}
+	}
+
+	@Test
+	public void testLeastRecentlyUsedEvicted() throws Exception
+	{
+		/*
+		 * evict the splits left by other tests, so only these 2 can be evicted.
+		 */
+		mm.setBudget(0);
+		mm.setBudget(Long.MAX_VALUE);
+		TestOwner o1 = new TestOwner();
+		TestOwner o2 = new TestOwner();
+		PartitionMemoryManager.Entry e1 = mm.register(o1, 100, true);
+		PartitionMemoryManager.Entry e2 = mm.register(o2, 100, true);
+		mm.touch(e1);
+
+		mm.setBudget(mm.getUsed() - 100);
+		Assert.assertFalse(o1.evicted);
+		Assert.assertTrue(o2.evicted);
+		mm.release(e1);
+		mm.release(e2);
+	}
+
+	@Test
+	public void testEvictOutsideLock() throws Exception
+	{
+		mm.setBudget(0);
+		mm.setBudget(Long.MAX_VALUE);
+		final BlockingOwner o1 = new BlockingOwner();
+		PartitionMemoryManager.Entry e1 = mm.register(o1, 100, true);
+		final long target = mm.getUsed() - 100;
+
+		Thread t = new Thread()
+		{
+			public void run()
+			{
+				try
+				{
+					mm.setBudget(target);
+				}
+				catch(BaseException be)
+				{
+					throw new RuntimeException(be);
+				}
+			}
+		};
+		t.start();
+		o1.entered.await();
+
+		/*
+		 * while the eviction is in progress other lists can register; the split being evicted isn't
+		 * picked again.
+		 */
+		PartitionMemoryManager.Entry e2 = mm.register(new TestOwner(), 10, false);
+		Assert.assertEquals(target + 110, mm.getUsed());
+		Assert.assertEquals(1, o1.evictions.get());
+
+		o1.proceed.countDown();
+		t.join();
+		Assert.assertFalse(o1.heldManagerLock);
+		Assert.assertEquals(target + 10, mm.getUsed());
+		mm.release(e1);
+		mm.release(e2);
+	}
+
+	static class BlockingOwner implements PartitionMemoryManager.Owner
+	{
+		CountDownLatch entered = new CountDownLatch(1);
+		CountDownLatch proceed = new CountDownLatch(1);
+		AtomicInteger evictions = new AtomicInteger();
+		volatile boolean heldManagerLock;
+
+		public boolean evict(PartitionMemoryManager.Entry e)
+		{
+			heldManagerLock = Thread.holdsLock(PartitionMemoryManager.get());
+			evictions.incrementAndGet();
+			entered.countDown();
+			try
+			{
+				proceed.await();
+			}
+			catch(InterruptedException ie)
+			{
+				Thread.currentThread().interrupt();
+			}
+			return true;
+		}
+	}
+
+	static class TestOwner implements PartitionMemoryManager.Owner
+	{
+		boolean evicted;
+
+		public boolean evict(PartitionMemoryManager.Entry e)
+		{
+			evicted = true;
+			return true;
+		}
+	}
+}
@@ -1,12 +1,18 @@
 package com.sap.hadoop.ds.list;
 
+import java.io.File;
+import java.io.OutputStream;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicReference;
 
 import junit.framework.Assert;
 
 import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
 import org.apache.hadoop.io.Text;
 import org.apache.hadoop.io.Writable;
+import org.apache.hadoop.io.compress.CompressionOutputStream;
+import org.apache.hadoop.io.compress.Compressor;
+import org.apache.hadoop.io.compress.DefaultCodec;
 import org.junit.Before;
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -79,4 +85,225 @@ public class PartitionedByteBasedListTest
 			Assert.assertEquals(ByteBasedListTest.table[i - ByteBasedListTest.table.length], o.toString());
 		}
 	}
+	
+	@Test
+	public void testSealedCursor() throws Exception
+	{
+		for(String r : ByteBasedListTest.table)	
+		{
+			bl.append(new Text(r));
+		}
+		bl.seal();
+		
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+		
+		ByteBasedList.Cursor c = bl.cursor(0, bl.size(), wObj);
+		int i = 0;
+		while(c.hasNext())
+		{
+			Object o = sd.serialize(sd.deserialize(c.next()), sd.getObjectInspector());
+			Assert.assertEquals(ByteBasedListTest.table[i++], o.toString());
+		}
+		Assert.assertEquals(ByteBasedListTest.table.length, i);
+		
+		c.seek(3);
+		Object o = sd.serialize(sd.deserialize(c.next()), sd.getObjectInspector());
+		Assert.assertEquals(ByteBasedListTest.table[3], o.toString());
+		
+		try
+		{
+			bl.append(new Text(ByteBasedListTest.table[0]));
+			Assert.fail("append to a sealed list");
+		}
+		catch(UnsupportedOperationException ue)
+		{
+		}
+	}
+	
+	@Test
+	public void testClear() throws Exception
+	{
+		PartitionedByteBasedList pl = (PartitionedByteBasedList) bl;
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+		
+		/*
+		 * the spill directory is only created once a split fills up.
+		 */
+		pl.append(new Text(ByteBasedListTest.table[0]));
+		Assert.assertNull(pl.dir);
+		
+		for(int k=0; k < 3; k++)
+		{
+			for(String r : ByteBasedListTest.table)	
+			{
+				pl.append(new Text(r));
+			}
+			pl.seal();
+			pl.waitForSpills();
+			File dir = pl.dir;
+			Assert.assertNotNull(dir);
+			Assert.assertTrue(dir.exists());
+			
+			pl.clear();
+			Assert.assertEquals(0, pl.size());
+			Assert.assertNull(pl.dir);
+			Assert.assertFalse(dir.exists());
+		}
+		
+		for(String r : ByteBasedListTest.table)	
+		{
+			pl.append(new Text(r));
+		}
+		for(int i=0; i < ByteBasedListTest.table.length; i++)
+		{
+			Object o = sd.serialize(pl.get(i, sd, wObj), sd.getObjectInspector());
+			Assert.assertEquals(ByteBasedListTest.table[i], o.toString());
+		}
+	}
+	
+	static String row(int i)
+	{
+		return "Manufacturer#" + (i % 5) + "," + i + "," + (i * 7 % 50);
+	}
+	
+	@Test
+	public void testReadWhileSpilling() throws Exception
+	{
+		final PartitionedByteBasedList pl = (PartitionedByteBasedList) bl;
+		final int numRows = 3000;
+		for(int i=0; i < numRows; i++)
+		{
+			pl.append(new Text(row(i)));
+		}
+		pl.seal();
+		
+		/*
+		 * the readers start while the full splits are still being written, and go on while the last
+		 * split and the in memory copies are evicted.
+		 */
+		final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		Thread[] readers = new Thread[4];
+		for(int t=0; t < readers.length; t++)
+		{
+			final int seed = t;
+			readers[t] = new Thread()
+			{
+				public void run()
+				{
+					try
+					{
+						/*
+						 * a SerDe is not thread safe.
+						 */
+						LazySimpleSerDe sd = Utils.createLazySimpleSerDe("a,b,c", "string,int,int", ",");
+						Writable wObj = sd.getSerializedClass().newInstance();
+						for(int k=0; k < 5; k++)
+						{
+							for(int i=0; i < numRows; i++)
+							{
+								int j = (i * 7 + seed * 131) % numRows;
+								Object o = sd.serialize(pl.get(j, sd, wObj), sd.getObjectInspector());
+								Assert.assertEquals(row(j), o.toString());
+							}
+							ByteBasedList.Cursor c = pl.cursor(0, numRows, wObj);
+							int i = 0;
+							while(c.hasNext())
+							{
+								Object o = sd.serialize(sd.deserialize(c.next()), sd.getObjectInspector());
+								Assert.assertEquals(row(i++), o.toString());
+							}
+							Assert.assertEquals(numRows, i);
+						}
+					}
+					catch(Throwable t)
+					{
+						failure.compareAndSet(null, t);
+					}
+				}
+			};
+			readers[t].start();
+		}
+		
+		PartitionMemoryManager mm = PartitionMemoryManager.get();
+		long budget = mm.getBudget();
+		try
+		{
+			mm.setBudget(0);
+			pl.waitForSpills();
+		}
+		finally
+		{
+			mm.setBudget(budget);
+		}
+		for(Thread t : readers)
+		{
+			t.join();
+		}
+		if ( failure.get() != null )
+		{
+			throw new AssertionError(failure.get());
+		}
+		pl.clear();
+	}
+	
+	/*
+	 * fails every spill with an unchecked exception.
+	 */
+	public static class FailingCodec extends DefaultCodec
+	{
+		@Override
+		public CompressionOutputStream createOutputStream(OutputStream out, Compressor compressor)
+		{
+			throw new IllegalStateException("spill failed");
+		}
+	}
+	
+	@Test
+	public void testClearReportsSpillFailure() throws Exception
+	{
+		PartitionedByteBasedList pl = (PartitionedByteBasedList) bl;
+		PartitionedByteBasedList.setSpillCodec(new FailingCodec());
+		try
+		{
+			for(String r : ByteBasedListTest.table)	
+			{
+				pl.append(new Text(r));
+			}
+			pl.seal();
+			try
+			{
+				pl.clear();
+				Assert.fail("spill failure not reported");
+			}
+			catch(BaseException be)
+			{
+				Assert.assertTrue(be.getCause() instanceof IllegalStateException);
+			}
+		}
+		finally
+		{
+			PartitionedByteBasedList.setSpillCodec(null);
+		}
+		
+		/*
+		 * the list was cleared all the same, and can be reused.
+		 */
+		Assert.assertEquals(0, pl.size());
+		Assert.assertNull(pl.dir);
+		Class<? extends Writable> cls = sd.getSerializedClass();
+		Writable wObj = cls.newInstance();
+		for(String r : ByteBasedListTest.table)	
+		{
+			pl.append(new Text(r));
+		}
+		pl.seal();
+		pl.waitForSpills();
+		for(int i=0; i < ByteBasedListTest.table.length; i++)
+		{
+			Object o = sd.serialize(pl.get(i, sd, wObj), sd.getObjectInspector());
+			Assert.assertEquals(ByteBasedListTest.table[i], o.toString());
+		}
+	}
 }
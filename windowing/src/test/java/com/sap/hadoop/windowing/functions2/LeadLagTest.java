@@ -0,0 +1,169 @@
+package com.sap.hadoop.windowing.functions2;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.ql.exec.ExprNodeColumnEvaluator;
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluator;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredJavaObject;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDF.DeferredObject;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.windowing.functions2.GenericUDFLeadLag.GenericUDFLag;
+import com.sap.hadoop.windowing.functions2.GenericUDFLeadLag.GenericUDFLead;
+import com.sap.hadoop.windowing.runtime2.Partition;
+import com.sap.hadoop.windowing.runtime2.PartitionIterator;
+
+public class LeadLagTest
+{
+	static final String[] table = new String[] {
+		"a,10",
+		"b,20",
+		"c,\\N",
+		"d,40",
+		"e,50",
+		"f,60",
+	};
+	static final Integer[] values = new Integer[] {10, 20, null, 40, 50, 60};
+
+	LazySimpleSerDe sd;
+	StructObjectInspector OI;
+	Partition p;
+
+	@Before
+	public void setup() throws Exception
+	{
+		sd = Utils.createLazySimpleSerDe("k,v", "string,int", ",");
+		OI = (StructObjectInspector) sd.getObjectInspector();
+		p = new Partition("com.sap.hadoop.ds.list.ByteBasedList", 1024 * 1024, sd, OI);
+		for(String r : table)
+		{
+			p.append(new Text(r));
+		}
+	}
+
+	/*
+	 * a Lead or Lag of column v, set up the way the translation and RuntimeUtils do.
+	 */
+	GenericUDFLeadLag create(GenericUDFLeadLag fn) throws Exception
+	{
+		ExprNodeEvaluator eval = new ExprNodeColumnEvaluator(
+				new ExprNodeColumnDesc(TypeInfoFactory.intTypeInfo, "v", null, false));
+		ObjectInspector vOI = eval.initialize(OI);
+		fn.setExprEvaluator(eval);
+		fn.initialize(new ObjectInspector[] {vOI, PrimitiveObjectInspectorFactory.javaIntObjectInspector});
+		return fn;
+	}
+
+	static Integer evaluate(GenericUDFLeadLag fn, int amt) throws Exception
+	{
+		Object o = fn.evaluate(new DeferredObject[] {null, new DeferredJavaObject(amt)});
+		return o == null ? null : ((IntWritable) o).get();
+	}
+
+	/*
+	 * the value amt rows away from row i, clamped to the rows [start, end) the iterator is over.
+	 */
+	static Integer expected(Integer[] vals, int i, int amt, int start, int end)
+	{
+		int t = Math.max(start, Math.min(i + amt, end - 1));
+		return vals[t];
+	}
+
+	void check(GenericUDFLeadLag fn, int sign, Integer[] vals, PartitionIterator<Object> pItr) throws Exception
+	{
+		fn.setpItr(pItr);
+		while(pItr.hasNext())
+		{
+			pItr.next();
+			int i = pItr.getIndex() - 1;
+			for(int amt=0; amt <= vals.length + 1; amt++)
+			{
+				Assert.assertEquals("row " + i + " amt " + amt,
+						expected(vals, i, sign * amt, pItr.getStart(), pItr.getEnd()), evaluate(fn, amt));
+				/*
+				 * evaluating the column leaves the iterator on the current row.
+				 */
+				Assert.assertEquals(i + 1, pItr.getIndex());
+			}
+		}
+	}
+
+	@Test
+	public void testPartitionEdges() throws Exception
+	{
+		check(create(new GenericUDFLead()), 1, values, p.iterator());
+		check(create(new GenericUDFLag()), -1, values, p.iterator());
+	}
+
+	@Test
+	public void testRange() throws Exception
+	{
+		/*
+		 * in window function args Lead/Lag are evaluated on the rows of a Range, and clamped to it.
+		 */
+		GenericUDFLeadLag lead = create(new GenericUDFLead());
+		GenericUDFLeadLag lag = create(new GenericUDFLag());
+		for(int start=0; start < table.length; start++)
+		{
+			for(int end=start + 1; end <= table.length; end++)
+			{
+				check(lead, 1, values, p.range(start, end));
+				check(lag, -1, values, p.range(start, end));
+			}
+		}
+	}
+
+	@Test
+	public void testReusedPartition() throws Exception
+	{
+		GenericUDFLeadLag lead = create(new GenericUDFLead());
+		check(lead, 1, values, p.iterator());
+
+		/*
+		 * the next partition's rows go into the same Partition: the column is evaluated again.
+		 */
+		p.reset();
+		p.append(new Text("x,7"));
+		p.append(new Text("y,8"));
+		check(lead, 1, new Integer[] {7, 8}, p.iterator());
+
+		/*
+		 * and so it is for another Partition at the same generation.
+		 */
+		Partition p2 = new Partition("com.sap.hadoop.ds.list.ByteBasedList", 1024 * 1024, sd, OI);
+		p2.reset();
+		Assert.assertEquals(p.getGeneration(), p2.getGeneration());
+		p2.append(new Text("z,9"));
+		check(lead, 1, new Integer[] {9}, p2.iterator());
+		check(lead, 1, new Integer[] {7, 8}, p.iterator());
+	}
+
+	@Test
+	public void testReusedWritable() throws Exception
+	{
+		GenericUDFLeadLag lead = create(new GenericUDFLead());
+		PartitionIterator<Object> pItr = p.iterator();
+		lead.setpItr(pItr);
+		pItr.next();
+
+		/*
+		 * the result is only valid until the next call: callers copy it if they keep it.
+		 */
+		Object first = lead.evaluate(new DeferredObject[] {null, new DeferredJavaObject(1)});
+		Assert.assertEquals(20, ((IntWritable) first).get());
+		Object second = lead.evaluate(new DeferredObject[] {null, new DeferredJavaObject(3)});
+		Assert.assertSame(first, second);
+		Assert.assertEquals(40, ((IntWritable) second).get());
+		Assert.assertNull(lead.evaluate(new DeferredObject[] {null, new DeferredJavaObject(2)}));
+	}
+}
@@ -0,0 +1,353 @@
+package com.sap.hadoop.windowing.functions2.table;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.ql.exec.ExprNodeColumnEvaluator;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFAverage.GenericUDAFAverageEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFCount.GenericUDAFCountEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFSum.GenericUDAFSumLong;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.Text;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.windowing.WindowingException;
+import com.sap.hadoop.windowing.functions2.window.RemovableAggregator;
+import com.sap.hadoop.windowing.query2.definition.ArgDef;
+import com.sap.hadoop.windowing.query2.definition.ColumnDef;
+import com.sap.hadoop.windowing.query2.definition.QueryDef;
+import com.sap.hadoop.windowing.query2.definition.QueryOutputDef;
+import com.sap.hadoop.windowing.query2.definition.SelectDef;
+import com.sap.hadoop.windowing.query2.definition.TableFuncDef;
+import com.sap.hadoop.windowing.query2.definition.WindowDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.BoundaryDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.CurrentRowDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.RangeBoundaryDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFunctionDef;
+import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.CurrentRowSpec;
+import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.Direction;
+import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.RangeBoundarySpec;
+import com.sap.hadoop.windowing.query2.specification.WindowFunctionSpec;
+import com.sap.hadoop.windowing.query2.translate.WindowFunctionTranslation;
+import com.sap.hadoop.windowing.runtime2.Executor.SelectListExecutor;
+import com.sap.hadoop.windowing.runtime2.Partition;
+
+/*
+ * Streams Partitions of (p, v) rows through a StreamingWindowEvaluator, and compares each output row
+ * with the same functions evaluated the way WindowingTableFunction does without streaming: the Hive
+ * evaluator aggregating the Range of each row of the materialized Partition.
+ */
+public class StreamingWindowEvaluatorTest
+{
+	static LazySimpleSerDe inSerDe;
+	static StructObjectInspector inOI;
+
+	/*
+	 * the frames, as {start, end} boundaries: a negative amount is PRECEDING, a positive one
+	 * FOLLOWING, and null is CURRENT ROW.
+	 */
+	static final Integer[][] frames = new Integer[][] {
+		{-2, 1},
+		{-3, -1},
+		{1, 4},
+		{2, 2},
+		{null, null},
+		{null, 3},
+		{-6, 5},
+	};
+
+	@BeforeClass
+	public static void setupClass() throws Exception
+	{
+		inSerDe = Utils.createLazySimpleSerDe("p,v", "string,int", ",");
+		inOI = (StructObjectInspector) inSerDe.getObjectInspector();
+	}
+
+	static BoundaryDef boundary(Integer amt)
+	{
+		if ( amt == null )
+		{
+			return new CurrentRowDef(new CurrentRowSpec());
+		}
+		return new RangeBoundaryDef(new RangeBoundarySpec(amt < 0 ? Direction.PRECEDING : Direction.FOLLOWING,
+				Math.abs(amt)));
+	}
+
+	static GenericUDAFEvaluator hiveEvaluator(String name)
+	{
+		if ( name.equals("sum") )
+		{
+			return new GenericUDAFSumLong();
+		}
+		if ( name.equals("avg") )
+		{
+			return new GenericUDAFAverageEvaluator();
+		}
+		return new GenericUDAFCountEvaluator();
+	}
+
+	static ObjectInspector[] argOIs(WindowFunctionDef wFnDef)
+	{
+		return WindowFunctionTranslation.getWritableObjectInspector(wFnDef.getArgs()).toArray(new ObjectInspector[0]);
+	}
+
+	/*
+	 * name(v) over the frame, with its RemovableAggregator, as the translation sets it up.
+	 */
+	static WindowFunctionDef function(String name, Integer[] frame) throws Exception
+	{
+		ExprNodeColumnDesc vDesc = new ExprNodeColumnDesc(TypeInfoFactory.intTypeInfo, "v", null, false);
+		ExprNodeColumnEvaluator vEval = new ExprNodeColumnEvaluator(vDesc);
+		ArgDef arg = new ArgDef();
+		arg.setExprNode(vDesc);
+		arg.setExprEvaluator(vEval);
+		arg.setOI(vEval.initialize(inOI));
+
+		WindowFrameDef frameDef = new WindowFrameDef();
+		frameDef.setStart(boundary(frame[0]));
+		frameDef.setEnd(boundary(frame[1]));
+		WindowDef wDef = new WindowDef();
+		wDef.setWindow(frameDef);
+
+		WindowFunctionSpec wSpec = new WindowFunctionSpec();
+		wSpec.setName(name);
+		WindowFunctionDef wFnDef = new WindowFunctionDef();
+		wFnDef.setSpec(wSpec);
+		wFnDef.addArg(arg);
+		wFnDef.setWindow(wDef);
+		wFnDef.setOI(hiveEvaluator(name).init(GenericUDAFEvaluator.Mode.COMPLETE, argOIs(wFnDef)));
+		wFnDef.setRemovableAggregator(RemovableAggregator.get(wFnDef));
+		Assert.assertNotNull(name, wFnDef.getRemovableAggregator());
+		return wFnDef;
+	}
+
+	/*
+	 * sum, count and avg over each of the frames.
+	 */
+	static ArrayList<WindowFunctionDef> functions() throws Exception
+	{
+		ArrayList<WindowFunctionDef> wFnDefs = new ArrayList<WindowFunctionDef>();
+		for(Integer[] frame : frames)
+		{
+			for(String name : new String[] {"sum", "count", "avg"})
+			{
+				wFnDefs.add(function(name, frame));
+			}
+		}
+		return wFnDefs;
+	}
+
+	static String toString(List<Object> row)
+	{
+		StringBuilder b = new StringBuilder();
+		for(Object o : row)
+		{
+			b.append(b.length() > 0 ? "," : "").append(o);
+		}
+		return b.toString();
+	}
+
+	/*
+	 * stream the Partitions through the evaluator.
+	 * @return the output rows.
+	 */
+	static List<String> stream(List<List<String>> parts) throws Exception
+	{
+		final ArrayList<WindowFunctionDef> fnDefs = functions();
+		ArrayList<String> names = new ArrayList<String>();
+		StringBuilder cols = new StringBuilder("p,v");
+		StringBuilder types = new StringBuilder("string,int");
+		ArrayList<ObjectInspector> fieldOIs = new ArrayList<ObjectInspector>();
+		for(StructField f : inOI.getAllStructFieldRefs())
+		{
+			names.add(f.getFieldName());
+			fieldOIs.add(f.getFieldObjectInspector());
+		}
+		for(int k=0; k < fnDefs.size(); k++)
+		{
+			names.add("f" + k);
+			cols.append(",f").append(k);
+			types.append(fnDefs.get(k).getSpec().getName().equals("avg") ? ",double" : ",bigint");
+			fieldOIs.add(fnDefs.get(k).getOI());
+		}
+		final LazySimpleSerDe outSerDe = Utils.createLazySimpleSerDe(cols.toString(), types.toString(), ",");
+		final StructObjectInspector outOI = (StructObjectInspector) outSerDe.getObjectInspector();
+		final StructObjectInspector wOI = ObjectInspectorFactory.getStandardStructObjectInspector(names, fieldOIs);
+
+		WindowingTableFunction wTFn = new WindowingTableFunction()
+		{
+			{
+				wFnDefs = fnDefs;
+				setOutputOI(wOI);
+			}
+		};
+		TableFuncDef input = new TableFuncDef();
+		input.setSerde(inSerDe);
+		input.setOI(inOI);
+		TableFuncDef tDef = new TableFuncDef();
+		tDef.setInput(input);
+		tDef.setSerde(outSerDe);
+		tDef.setOI(outOI);
+
+		final ArrayList<String> out = new ArrayList<String>();
+		QueryDef qDef = new QueryDef();
+		SelectDef select = new SelectDef();
+		select.setColumns(new ArrayList<ColumnDef>());
+		qDef.setSelectList(select);
+		qDef.setOutput(new QueryOutputDef());
+		SelectListExecutor selExec = new SelectListExecutor(qDef, null)
+		{
+			@Override
+			public void processRow(Object oRow) throws WindowingException
+			{
+				out.add(StreamingWindowEvaluatorTest.toString(outOI.getStructFieldsDataAsList(oRow)));
+			}
+		};
+
+		int maxPreceding = 0;
+		int maxFollowing = 0;
+		for(Integer[] frame : frames)
+		{
+			for(Integer amt : frame)
+			{
+				maxPreceding = Math.max(maxPreceding, amt == null ? 0 : -amt);
+				maxFollowing = Math.max(maxFollowing, amt == null ? 0 : amt);
+			}
+		}
+		StreamingWindowEvaluator sEval = new StreamingWindowEvaluator(wTFn, tDef, inOI, maxPreceding, maxFollowing, selExec);
+		for(List<String> part : parts)
+		{
+			for(String r : part)
+			{
+				sEval.append(inSerDe.deserialize(new Text(r)));
+			}
+			sEval.finishPartition();
+		}
+		return out;
+	}
+
+	/*
+	 * the functions over each materialized Partition, aggregating each row's Range with the Hive
+	 * evaluator.
+	 * @return the output rows.
+	 */
+	static List<String> materialize(List<List<String>> parts) throws Exception
+	{
+		ArrayList<WindowFunctionDef> wFnDefs = functions();
+		ArrayList<String> out = new ArrayList<String>();
+		for(List<String> part : parts)
+		{
+			Partition p = new Partition("com.sap.hadoop.ds.list.ByteBasedList", 1024 * 1024, inSerDe, inOI);
+			ArrayList<Object[]> args = new ArrayList<Object[]>();
+			for(String r : part)
+			{
+				p.append(new Text(r));
+				args.add(WindowingTableFunction.evaluateArgs(wFnDefs.get(0), inSerDe.deserialize(new Text(r)), new Object[1]));
+			}
+
+			for(int i=0; i < p.size(); i++)
+			{
+				ArrayList<Object> row = new ArrayList<Object>();
+				row.addAll(inOI.getStructFieldsDataAsList(inSerDe.deserialize(new Text(part.get(i)))));
+				for(WindowFunctionDef wFnDef : wFnDefs)
+				{
+					int start = WindowingTableFunction.getIndex(wFnDef.getWindow().getWindow().getStart(), i, p, false);
+					int end = WindowingTableFunction.getIndex(wFnDef.getWindow().getWindow().getEnd(), i, p, true);
+					GenericUDAFEvaluator eval = hiveEvaluator(wFnDef.getSpec().getName());
+					eval.init(GenericUDAFEvaluator.Mode.COMPLETE, argOIs(wFnDef));
+					AggregationBuffer buf = eval.getNewAggregationBuffer();
+					for(int j=start; j < end; j++)
+					{
+						eval.aggregate(buf, args.get(j));
+					}
+					row.add(eval.evaluate(buf));
+				}
+				out.add(toString(row));
+			}
+		}
+		return out;
+	}
+
+	static List<String> partition(String p, int n, Random r)
+	{
+		ArrayList<String> rows = new ArrayList<String>();
+		for(int i=0; i < n; i++)
+		{
+			rows.add(p + "," + (r.nextInt(6) == 0 ? "\\N" : Integer.toString(r.nextInt(200) - 100)));
+		}
+		return rows;
+	}
+
+	static void check(List<List<String>> parts) throws Exception
+	{
+		List<String> expected = materialize(parts);
+		List<String> actual = stream(parts);
+		Assert.assertEquals(expected.size(), actual.size());
+		for(int i=0; i < expected.size(); i++)
+		{
+			Assert.assertEquals("row " + i, expected.get(i), actual.get(i));
+		}
+	}
+
+	@Test
+	public void testShortPartitions() throws Exception
+	{
+		/*
+		 * Partitions shorter than the frames, and than the ring buffers.
+		 */
+		Random r = new Random(5);
+		List<List<String>> parts = new ArrayList<List<String>>();
+		for(int n=1; n <= 14; n++)
+		{
+			parts.add(partition("p" + n, n, r));
+		}
+		check(parts);
+	}
+
+	@Test
+	public void testLongPartitions() throws Exception
+	{
+		/*
+		 * the ring buffers wrap around many times.
+		 */
+		Random r = new Random(9);
+		List<List<String>> parts = new ArrayList<List<String>>();
+		parts.add(partition("a", 100, r));
+		parts.add(partition("b", 1, r));
+		parts.add(partition("c", 57, r));
+		check(parts);
+	}
+
+	@Test
+	public void testNulls() throws Exception
+	{
+		List<List<String>> parts = new ArrayList<List<String>>();
+		List<String> nulls = new ArrayList<String>();
+		for(int i=0; i < 10; i++)
+		{
+			nulls.add("n,\\N");
+		}
+		parts.add(nulls);
+		List<String> someNulls = new ArrayList<String>();
+		for(int i=0; i < 20; i++)
+		{
+			someNulls.add("s," + (i % 7 < 4 ? "\\N" : Integer.toString(i)));
+		}
+		parts.add(someNulls);
+		check(parts);
+	}
+}
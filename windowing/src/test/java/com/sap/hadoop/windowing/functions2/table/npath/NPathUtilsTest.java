@@ -0,0 +1,203 @@
+package com.sap.hadoop.windowing.functions2.table.npath;
+
+import java.util.Arrays;
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluator;
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluatorFactory;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeConstantDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeFieldDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeGenericFuncDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFIndex;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDFSize;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.ListObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.ListTypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoUtils;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.windowing.functions2.table.npath.NPathUtils.Path;
+import com.sap.hadoop.windowing.functions2.table.npath.NPathUtils.PathException;
+import com.sap.hadoop.windowing.runtime2.Partition;
+import com.sap.hadoop.windowing.runtime2.PartitionIterator;
+
+public class NPathUtilsTest
+{
+	static final String[] table = new String[] {
+		"a,10",
+		"b,20",
+		"c,\\N",
+		"d,40",
+		"e,50",
+	};
+
+	StructObjectInspector OI;
+	Partition p;
+	StructObjectInspector selectListOI;
+	ListTypeInfo pathType;
+
+	@Before
+	public void setup() throws Exception
+	{
+		LazySimpleSerDe sd = Utils.createLazySimpleSerDe("k,v", "string,int", ",");
+		OI = (StructObjectInspector) sd.getObjectInspector();
+		p = new Partition("com.sap.hadoop.ds.list.ByteBasedList", 1024 * 1024, sd, OI);
+		for(String r : table)
+		{
+			p.append(new Text(r));
+		}
+		selectListOI = (StructObjectInspector) NPathUtils.createSelectListInputOI(OI);
+		pathType = (ListTypeInfo) TypeInfoUtils.getTypeInfoFromObjectInspector(
+				selectListOI.getStructFieldRef(NPathUtils.PATHATTR_NAME).getFieldObjectInspector());
+	}
+
+	/*
+	 * the select list input of the path of sz rows starting at row i.
+	 */
+	List<?> input(int i, int sz) throws Exception
+	{
+		PartitionIterator<Object> pItr = p.iterator();
+		Object row = null;
+		for(int j=0; j <= i; j++)
+		{
+			row = pItr.next();
+		}
+		return (List<?>) NPathUtils.getSelectListInput(row, OI, pItr, sz);
+	}
+
+	static Path path(List<?> input)
+	{
+		return (Path) input.get(input.size() - 1);
+	}
+
+	ExprNodeDesc tpath()
+	{
+		return new ExprNodeColumnDesc(pathType, NPathUtils.PATHATTR_NAME, null, false);
+	}
+
+	/*
+	 * tpath[idx].col
+	 */
+	ExprNodeDesc element(int idx, String col, TypeInfo colType)
+	{
+		ExprNodeDesc e = new ExprNodeGenericFuncDesc(pathType.getListElementTypeInfo(), new GenericUDFIndex(),
+				Arrays.asList(tpath(), new ExprNodeConstantDesc(idx)));
+		return new ExprNodeFieldDesc(colType, e, col, false);
+	}
+
+	Integer evaluate(ExprNodeDesc e, Object input) throws Exception
+	{
+		ExprNodeEvaluator eval = ExprNodeEvaluatorFactory.get(e);
+		eval.initialize(selectListOI);
+		Object o = eval.evaluate(input);
+		return o == null ? null : ((IntWritable) o).get();
+	}
+
+	@Test
+	public void testPathSize() throws Exception
+	{
+		Assert.assertEquals(3, path(input(1, 3)).size());
+		/*
+		 * clamped to the end of the Partition, and always holding the current row.
+		 */
+		Assert.assertEquals(2, path(input(3, 10)).size());
+		Assert.assertEquals(1, path(input(4, 3)).size());
+		Assert.assertEquals(1, path(input(2, 0)).size());
+
+		ExprNodeDesc size = new ExprNodeGenericFuncDesc(TypeInfoFactory.intTypeInfo, new GenericUDFSize(),
+				Arrays.asList(tpath()));
+		List<?> in = input(1, 3);
+		Assert.assertEquals(Integer.valueOf(3), evaluate(size, in));
+		Assert.assertEquals(Integer.valueOf(2), evaluate(size, input(3, 10)));
+		/*
+		 * size(tpath) doesn't read the rows of the path.
+		 */
+		Assert.assertNull(path(in).rows);
+	}
+
+	@Test
+	public void testElements() throws Exception
+	{
+		List<?> in = input(1, 3);
+		Assert.assertEquals(Integer.valueOf(20), evaluate(element(0, "v", TypeInfoFactory.intTypeInfo), in));
+		Assert.assertEquals(Integer.valueOf(40), evaluate(element(2, "v", TypeInfoFactory.intTypeInfo), in));
+		Assert.assertNull(evaluate(element(1, "v", TypeInfoFactory.intTypeInfo), in));
+
+		/*
+		 * only the rows accessed are read.
+		 */
+		in = input(0, 4);
+		Assert.assertEquals(Integer.valueOf(40), evaluate(element(3, "v", TypeInfoFactory.intTypeInfo), in));
+		Path path = path(in);
+		Assert.assertNull(path.rows[0]);
+		Assert.assertNull(path.rows[2]);
+		Assert.assertNotNull(path.rows[3]);
+
+		/*
+		 * the current row is the first row of the path.
+		 */
+		Assert.assertEquals(Integer.valueOf(50), evaluate(element(0, "v", TypeInfoFactory.intTypeInfo), input(4, 2)));
+	}
+
+	@Test
+	public void testIndexPastEnd() throws Exception
+	{
+		List<?> in = input(3, 10);
+		Assert.assertNull(evaluate(element(2, "v", TypeInfoFactory.intTypeInfo), in));
+		Assert.assertNull(evaluate(element(100, "v", TypeInfoFactory.intTypeInfo), in));
+		Assert.assertNull(evaluate(element(-1, "v", TypeInfoFactory.intTypeInfo), in));
+
+		ListObjectInspector pathOI = (ListObjectInspector)
+				selectListOI.getStructFieldRef(NPathUtils.PATHATTR_NAME).getFieldObjectInspector();
+		Path path = path(in);
+		Assert.assertNotNull(pathOI.getListElement(path, 1));
+		Assert.assertNull(pathOI.getListElement(path, 2));
+		Assert.assertNull(pathOI.getListElement(null, 0));
+		Assert.assertEquals(2, pathOI.getListLength(path));
+		Assert.assertEquals(-1, pathOI.getListLength(null));
+		/*
+		 * the OI doesn't read the rows it doesn't return.
+		 */
+		Assert.assertNull(path.rows[0]);
+
+		try
+		{
+			path.get(2);
+			Assert.fail("expected IndexOutOfBoundsException");
+		}
+		catch(IndexOutOfBoundsException ie)
+		{
+		}
+	}
+
+	@Test
+	public void testReadError() throws Exception
+	{
+		/*
+		 * a row that can't be read surfaces as a PathException carrying the WindowingException, which
+		 * NPath rethrows.
+		 */
+		Path path = new Path(p, 3, 4, OI);
+		Assert.assertNotNull(path.get(1));
+		try
+		{
+			path.get(2);
+			Assert.fail("expected PathException");
+		}
+		catch(PathException pe)
+		{
+			Assert.assertNotNull(pe.getCause());
+		}
+	}
+}
@@ -0,0 +1,329 @@
+package com.sap.hadoop.windowing.functions2.table.npath;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.ql.exec.ExprNodeColumnEvaluator;
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluator;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.Text;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.windowing.WindowingException;
+import com.sap.hadoop.windowing.functions2.table.npath.SymbolFunction.Plus;
+import com.sap.hadoop.windowing.functions2.table.npath.SymbolFunction.Star;
+import com.sap.hadoop.windowing.functions2.table.npath.SymbolFunction.Symbol;
+import com.sap.hadoop.windowing.runtime2.Partition;
+import com.sap.hadoop.windowing.runtime2.PartitionIterator;
+
+public class SymbolAutomatonTest
+{
+	static LazySimpleSerDe sd;
+	static StructObjectInspector OI;
+
+	/*
+	 * Symbols A, B and C are the boolean columns a, b and c.
+	 */
+	@BeforeClass
+	public static void setupClass() throws Exception
+	{
+		sd = Utils.createLazySimpleSerDe("a,b,c", "boolean,boolean,boolean", ",");
+		OI = (StructObjectInspector) sd.getObjectInspector();
+	}
+
+	static Partition partition(String[] rows) throws Exception
+	{
+		Partition p = new Partition("com.sap.hadoop.ds.list.ByteBasedList", 1024 * 1024, sd, OI);
+		for(String r : rows)
+		{
+			StringBuilder b = new StringBuilder();
+			for(String c : new String[] {"A", "B", "C"})
+			{
+				b.append(b.length() > 0 ? "," : "").append(r.contains(c));
+			}
+			p.append(new Text(b.toString()));
+		}
+		return p;
+	}
+
+	static SymbolParser parse(String pattern) throws Exception
+	{
+		ArrayList<String> names = new ArrayList<String>();
+		ArrayList<ExprNodeEvaluator> evals = new ArrayList<ExprNodeEvaluator>();
+		ArrayList<ObjectInspector> OIs = new ArrayList<ObjectInspector>();
+		for(String c : new String[] {"a", "b", "c"})
+		{
+			ExprNodeColumnEvaluator eval = new ExprNodeColumnEvaluator(
+					new ExprNodeColumnDesc(TypeInfoFactory.booleanTypeInfo, c, null, false));
+			names.add(c.toUpperCase());
+			OIs.add(eval.initialize(OI));
+			evals.add(eval);
+		}
+		SymbolParser syP = new SymbolParser(pattern, names, evals, OIs);
+		syP.parse();
+		return syP;
+	}
+
+	/*
+	 * the pattern matched from each row of the iterator the way NPath did before the automaton: by
+	 * walking the chain of components from the row, then resetting the iterator back to it.
+	 */
+	static int[] chainMatch(SymbolParser syP, PartitionIterator<Object> pItr) throws WindowingException
+	{
+		ArrayList<OldFunction> components = new ArrayList<OldFunction>();
+		for(SymbolFunction sFn : syP.symbolFunctions)
+		{
+			if ( sFn instanceof Star )
+			{
+				components.add(new OldStar(new OldSymbol((Symbol) ((Star) sFn).symbolFn)));
+			}
+			else if ( sFn instanceof Plus )
+			{
+				components.add(new OldPlus(new OldSymbol((Symbol) ((Plus) sFn).symbolFn)));
+			}
+			else
+			{
+				components.add(new OldSymbol((Symbol) sFn));
+			}
+		}
+		OldChain chain = new OldChain(components);
+
+		int start = pItr.getIndex();
+		int[] r = new int[pItr.getEnd() - start];
+		while(pItr.hasNext())
+		{
+			Object iRow = pItr.next();
+			int i = pItr.getIndex() - 1 - start;
+			int resetToIdx = pItr.getIndex() - 1;
+			try
+			{
+				OldResult res = chain.match(iRow, pItr);
+				r[i] = res.matches ? res.nextRow : -1;
+			}
+			finally
+			{
+				pItr.resetToIndex(resetToIdx);
+			}
+		}
+		return r;
+	}
+
+	static void assertSame(String pattern, Partition p, int start, int end) throws Exception
+	{
+		SymbolParser syP = parse(pattern);
+		int[] expected = chainMatch(syP, p.range(start, end));
+		int[] actual = syP.getSymbolAutomaton().match(p.range(start, end));
+		Assert.assertEquals(expected.length, actual.length);
+		for(int i=0; i < expected.length; i++)
+		{
+			Assert.assertEquals(pattern + " from row " + (start + i), expected[i], actual[i]);
+		}
+	}
+
+	@Test
+	public void testLastRowQuirk() throws Exception
+	{
+		Partition p = partition(new String[] {"A", "B", "B"});
+
+		/*
+		 * a Star or Plus that runs to the last row ends at it, not beyond it; and leaves it to the
+		 * next component.
+		 */
+		Assert.assertEquals(2, parse("A.B*").getSymbolAutomaton().match(p.iterator())[0]);
+		Assert.assertEquals(2, parse("A.B+").getSymbolAutomaton().match(p.iterator())[0]);
+		Assert.assertEquals(3, parse("A.B+.B").getSymbolAutomaton().match(p.iterator())[0]);
+		Assert.assertEquals(3, parse("A.B*.B").getSymbolAutomaton().match(p.iterator())[0]);
+		Assert.assertEquals(-1, parse("A.B+.B").getSymbolAutomaton().match(partition(new String[] {"A", "B", "B", "C"}).iterator())[0]);
+
+		for(String pattern : new String[] {"A.B*", "A.B+", "A.B+.B", "A.B*.B", "B*.C*", "B+.B*"})
+		{
+			assertSame(pattern, p, 0, p.size());
+		}
+	}
+
+	@Test
+	public void testVersusChain() throws Exception
+	{
+		String[] patterns = new String[] {
+			"A", "A.B", "A*", "A+", "A.B*.C", "A.B+.C", "A*.B*", "A+.B+", "A*.B*.C*",
+			"A.A*", "A.A+.A", "A+.B*.A", "B*.A+.B*.C", "C.A*.B+.C*", "A*.A*", "A+.A+.A+",
+		};
+		Random r = new Random(5);
+		for(int t=0; t < 20; t++)
+		{
+			int n = 1 + r.nextInt(60);
+			String[] rows = new String[n];
+			for(int i=0; i < n; i++)
+			{
+				/*
+				 * runs of the same Symbols, so that Stars and Plus match several rows.
+				 */
+				rows[i] = i > 0 && r.nextInt(3) > 0 ? rows[i - 1] :
+					(r.nextBoolean() ? "A" : "") + (r.nextBoolean() ? "B" : "") + (r.nextInt(3) == 0 ? "C" : "");
+			}
+			Partition p = partition(rows);
+			for(String pattern : patterns)
+			{
+				assertSame(pattern, p, 0, n);
+				int start = r.nextInt(n);
+				assertSame(pattern, p, start, start + 1 + r.nextInt(n - start));
+			}
+		}
+	}
+
+	static class OldResult
+	{
+		boolean matches;
+		int nextRow;
+	}
+
+	/*
+	 * the Symbol, Star, Plus and Chain combinators NPath used before the automaton.
+	 */
+	static abstract class OldFunction
+	{
+		OldResult result = new OldResult();
+
+		abstract OldResult match(Object row, PartitionIterator<Object> pItr) throws WindowingException;
+
+		abstract boolean isOptional();
+	}
+
+	static class OldSymbol extends OldFunction
+	{
+		Symbol symbol;
+
+		OldSymbol(Symbol symbol)
+		{
+			this.symbol = symbol;
+		}
+
+		OldResult match(Object row, PartitionIterator<Object> pItr) throws WindowingException
+		{
+			result.matches = symbol.matches(row);
+			result.nextRow = pItr.getIndex();
+			return result;
+		}
+
+		boolean isOptional()
+		{
+			return false;
+		}
+	}
+
+	static class OldStar extends OldFunction
+	{
+		OldFunction symbolFn;
+
+		OldStar(OldFunction symbolFn)
+		{
+			this.symbolFn = symbolFn;
+		}
+
+		OldResult match(Object row, PartitionIterator<Object> pItr) throws WindowingException
+		{
+			result.matches = true;
+			OldResult rowResult = symbolFn.match(row, pItr);
+			while ( rowResult.matches && pItr.hasNext() )
+			{
+				row = pItr.next();
+				rowResult = symbolFn.match(row, pItr);
+			}
+			result.nextRow = pItr.getIndex() - 1;
+			return result;
+		}
+
+		boolean isOptional()
+		{
+			return true;
+		}
+	}
+
+	static class OldPlus extends OldFunction
+	{
+		OldFunction symbolFn;
+
+		OldPlus(OldFunction symbolFn)
+		{
+			this.symbolFn = symbolFn;
+		}
+
+		OldResult match(Object row, PartitionIterator<Object> pItr) throws WindowingException
+		{
+			OldResult rowResult = symbolFn.match(row, pItr);
+			if ( !rowResult.matches )
+			{
+				result.matches = false;
+				result.nextRow = pItr.getIndex() - 1;
+				return result;
+			}
+			result.matches = true;
+			while ( rowResult.matches && pItr.hasNext() )
+			{
+				row = pItr.next();
+				rowResult = symbolFn.match(row, pItr);
+			}
+			result.nextRow = pItr.getIndex() - 1;
+			return result;
+		}
+
+		boolean isOptional()
+		{
+			return false;
+		}
+	}
+
+	static class OldChain extends OldFunction
+	{
+		ArrayList<OldFunction> components;
+
+		OldChain(ArrayList<OldFunction> components)
+		{
+			this.components = components;
+		}
+
+		OldResult match(Object row, PartitionIterator<Object> pItr) throws WindowingException
+		{
+			OldResult componentResult = null;
+			for(OldFunction sFn : components)
+			{
+				if ( row != null )
+				{
+					componentResult = sFn.match(row, pItr);
+					if ( !componentResult.matches )
+					{
+						result.matches = false;
+						result.nextRow = componentResult.nextRow;
+						return result;
+					}
+					row = pItr.resetToIndex(componentResult.nextRow);
+				}
+				else
+				{
+					if ( !sFn.isOptional() )
+					{
+						result.matches = false;
+						result.nextRow = componentResult.nextRow;
+						return result;
+					}
+				}
+			}
+			result.matches = true;
+			result.nextRow = componentResult.nextRow;
+			return result;
+		}
+
+		boolean isOptional()
+		{
+			return false;
+		}
+	}
+}
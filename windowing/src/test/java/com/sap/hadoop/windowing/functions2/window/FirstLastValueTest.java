@@ -0,0 +1,178 @@
+package com.sap.hadoop.windowing.functions2.window;
+
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluator;
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluatorFactory;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.windowing.functions2.window.GenericUDAFFirstValue.GenericUDAFFirstValueEvaluator;
+import com.sap.hadoop.windowing.functions2.window.GenericUDAFLastValue.GenericUDAFLastValueEvaluator;
+import com.sap.hadoop.windowing.runtime2.ArgColumns;
+import com.sap.hadoop.windowing.runtime2.Partition;
+
+public class FirstLastValueTest
+{
+	/*
+	 * first_value or last_value of vals[start, end) computed by the Hive function; with the skip
+	 * nulls arg of each row, or without the arg if skips is null.
+	 */
+	static Object hive(boolean first, Integer[] vals, Boolean[] skips, int start, int end) throws Exception
+	{
+		GenericUDAFEvaluator eval = first ? new GenericUDAFFirstValueEvaluator() : new GenericUDAFLastValueEvaluator();
+		ObjectInspector vOI = PrimitiveObjectInspectorFactory.writableIntObjectInspector;
+		eval.init(GenericUDAFEvaluator.Mode.COMPLETE, skips == null ? new ObjectInspector[] {vOI} :
+			new ObjectInspector[] {vOI, PrimitiveObjectInspectorFactory.writableBooleanObjectInspector});
+		AggregationBuffer buf = eval.getNewAggregationBuffer();
+		for(int i=start; i < end; i++)
+		{
+			Object v = vals[i] == null ? null : new IntWritable(vals[i]);
+			eval.iterate(buf, skips == null ? new Object[] {v} : new Object[] {v, new BooleanWritable(skips[i])});
+		}
+		return eval.terminate(buf);
+	}
+
+	static Object hive(boolean first, Integer[] vals, boolean skipNulls, int start, int end) throws Exception
+	{
+		Boolean[] skips = new Boolean[vals.length];
+		for(int i=0; i < skips.length; i++)
+		{
+			skips[i] = skipNulls;
+		}
+		return hive(first, vals, skips, start, end);
+	}
+
+	static Integer value(Object o)
+	{
+		return o == null ? null : ((IntWritable) o).get();
+	}
+
+	@Test
+	public void testLastValueSkipsNulls() throws Exception
+	{
+		Integer[] vals = new Integer[] {null, 3, null, 5, null};
+		Assert.assertEquals(Integer.valueOf(5), value(hive(false, vals, true, 0, vals.length)));
+		Assert.assertEquals(Integer.valueOf(3), value(hive(false, vals, true, 0, 3)));
+		Assert.assertNull(value(hive(false, vals, false, 0, vals.length)));
+		Assert.assertNull(value(hive(false, vals, true, 0, 1)));
+
+		Assert.assertEquals(Integer.valueOf(3), value(hive(true, vals, true, 0, vals.length)));
+		Assert.assertNull(value(hive(true, vals, false, 0, vals.length)));
+	}
+
+	/*
+	 * the arg columns v and s of a Partition holding vals and skips.
+	 */
+	static ArgColumns columns(Integer[] vals, Boolean[] skips) throws Exception
+	{
+		LazySimpleSerDe sd = Utils.createLazySimpleSerDe("v,s", "int,boolean", ",");
+		StructObjectInspector OI = (StructObjectInspector) sd.getObjectInspector();
+		Partition p = new Partition("com.sap.hadoop.ds.list.ByteBasedList", 1024 * 1024, sd, OI);
+		for(int i=0; i < vals.length; i++)
+		{
+			p.append(new Text((vals[i] == null ? "\\N" : vals[i].toString()) + "," + skips[i]));
+		}
+		ArgColumns cols = new ArgColumns();
+		add(cols, OI, "v", TypeInfoFactory.intTypeInfo);
+		add(cols, OI, "s", TypeInfoFactory.booleanTypeInfo);
+		cols.evaluate(p.iterator());
+		return cols;
+	}
+
+	static void add(ArgColumns cols, StructObjectInspector OI, String name, TypeInfo type) throws Exception
+	{
+		ExprNodeDesc e = new ExprNodeColumnDesc(type, name, null, false);
+		ExprNodeEvaluator eval = ExprNodeEvaluatorFactory.get(e);
+		cols.add(e, eval, eval.initialize(OI));
+	}
+
+	/*
+	 * compare the aggregator with the Hive function on every frame of vals, including the empty ones;
+	 * with and without the skip nulls arg.
+	 */
+	static void check(Integer[] vals, Boolean[] skips) throws Exception
+	{
+		ArgColumns cols = columns(vals, skips);
+		int n = vals.length;
+		int numFrames = (n + 1) * (n + 1);
+		int[] starts = new int[numFrames];
+		int[] ends = new int[numFrames];
+		for(int i=0; i < numFrames; i++)
+		{
+			starts[i] = i / (n + 1);
+			ends[i] = i % (n + 1);
+		}
+
+		for(boolean first : new boolean[] {true, false})
+		{
+			FirstLastValueAggregator agg = new FirstLastValueAggregator(first,
+					PrimitiveObjectInspectorFactory.writableIntObjectInspector);
+			List<Object> withSkips = agg.evaluate(cols, new int[] {0, 1}, starts, ends);
+			List<Object> withoutSkips = agg.evaluate(cols, new int[] {0}, starts, ends);
+			Assert.assertEquals(numFrames, withSkips.size());
+			for(int i=0; i < numFrames; i++)
+			{
+				String msg = (first ? "first_value" : "last_value") + " of [" + starts[i] + ", " + ends[i] + ")";
+				Assert.assertEquals(msg, hive(first, vals, skips, starts[i], ends[i]), withSkips.get(i));
+				Assert.assertEquals(msg, hive(first, vals, null, starts[i], ends[i]), withoutSkips.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void testAggregatorVersusHive() throws Exception
+	{
+		Integer[] vals = new Integer[] {null, 3, null, 5, null, null, 7, 8, null};
+		Boolean[] noSkips = new Boolean[vals.length];
+		Boolean[] allSkips = new Boolean[vals.length];
+		for(int i=0; i < vals.length; i++)
+		{
+			noSkips[i] = false;
+			allSkips[i] = true;
+		}
+		check(vals, noSkips);
+		check(vals, allSkips);
+	}
+
+	@Test
+	public void testAllNulls() throws Exception
+	{
+		check(new Integer[] {null, null, null}, new Boolean[] {true, true, true});
+		check(new Integer[] {null, null, null}, new Boolean[] {false, false, false});
+		check(new Integer[] {null}, new Boolean[] {true});
+	}
+
+	@Test
+	public void testSkipNullsOfFirstRow() throws Exception
+	{
+		/*
+		 * whether nulls are skipped is decided by the arg at the first row of the frame.
+		 */
+		Random r = new Random(11);
+		Integer[] vals = new Integer[40];
+		Boolean[] skips = new Boolean[vals.length];
+		for(int i=0; i < vals.length; i++)
+		{
+			vals[i] = r.nextInt(3) == 0 ? r.nextInt(100) : null;
+			skips[i] = r.nextBoolean();
+		}
+		check(vals, skips);
+	}
+}
@@ -0,0 +1,308 @@
+package com.sap.hadoop.windowing.functions2.window;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluator;
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluatorFactory;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFAverage.GenericUDAFAverageEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFCount.GenericUDAFCountEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFMax.GenericUDAFMaxEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFMin.GenericUDAFMinEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFSum.GenericUDAFSumDouble;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFSum.GenericUDAFSumLong;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfo;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.Text;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.windowing.query2.definition.ArgDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFunctionDef;
+import com.sap.hadoop.windowing.query2.specification.WindowFunctionSpec;
+import com.sap.hadoop.windowing.runtime2.ArgColumns;
+import com.sap.hadoop.windowing.runtime2.Partition;
+
+public class PrimitiveAggregatorTest
+{
+	static final String[] COLUMNS = new String[] {"i", "l", "d", "f"};
+	static final TypeInfo[] TYPES = new TypeInfo[] {TypeInfoFactory.intTypeInfo, TypeInfoFactory.longTypeInfo,
+		TypeInfoFactory.doubleTypeInfo, TypeInfoFactory.floatTypeInfo};
+
+	LazySimpleSerDe sd;
+	StructObjectInspector OI;
+	Partition p;
+	ArgColumns cols;
+	int[] colIdxs;
+	ObjectInspector[] colOIs;
+	/*
+	 * the values of each column, evaluated row by row, to feed the Hive evaluators.
+	 */
+	ArrayList<Object[]> rows;
+
+	@Before
+	public void setup() throws Exception
+	{
+		sd = Utils.createLazySimpleSerDe("i,l,d,f", "int,bigint,double,float", ",");
+		OI = (StructObjectInspector) sd.getObjectInspector();
+		p = new Partition("com.sap.hadoop.ds.list.ByteBasedList", 1024 * 1024, sd, OI);
+	}
+
+	/*
+	 * load the rows into the Partition and evaluate the arg columns on it.
+	 */
+	void load(String[] table) throws Exception
+	{
+		p.reset();
+		for(String r : table)
+		{
+			p.append(new Text(r));
+		}
+
+		cols = new ArgColumns();
+		colIdxs = new int[COLUMNS.length];
+		colOIs = new ObjectInspector[COLUMNS.length];
+		ExprNodeEvaluator[] evals = new ExprNodeEvaluator[COLUMNS.length];
+		ObjectInspector[] evalOIs = new ObjectInspector[COLUMNS.length];
+		for(int c=0; c < COLUMNS.length; c++)
+		{
+			ExprNodeDesc e = new ExprNodeColumnDesc(TYPES[c], COLUMNS[c], null, false);
+			evals[c] = ExprNodeEvaluatorFactory.get(e);
+			evalOIs[c] = evals[c].initialize(OI);
+			colIdxs[c] = cols.add(e, evals[c], evalOIs[c]);
+			colOIs[c] = ObjectInspectorUtils.getStandardObjectInspector(evalOIs[c], ObjectInspectorCopyOption.WRITABLE);
+		}
+		cols.evaluate(p.iterator());
+
+		rows = new ArrayList<Object[]>();
+		for(int i=0; i < table.length; i++)
+		{
+			Object row = p.getAt(i);
+			Object[] values = new Object[COLUMNS.length];
+			for(int c=0; c < COLUMNS.length; c++)
+			{
+				values[c] = ObjectInspectorUtils.copyToStandardObject(evals[c].evaluate(row),
+						evalOIs[c], ObjectInspectorCopyOption.WRITABLE);
+			}
+			rows.add(values);
+		}
+	}
+
+	static String[] randomTable(Random r, int n)
+	{
+		String[] table = new String[n];
+		for(int i=0; i < n; i++)
+		{
+			String iv = r.nextInt(6) == 0 ? "\\N" : Integer.toString(r.nextInt(2000) - 1000);
+			/*
+			 * large enough that Hive's double sums of them round.
+			 */
+			String lv = r.nextInt(6) == 0 ? "\\N" : Long.toString((1L << 55) + r.nextInt(1000000));
+			String dv = r.nextInt(6) == 0 ? "\\N" : Double.toString((r.nextInt(20000) - 10000) / 10.0);
+			String fv = r.nextInt(6) == 0 ? "\\N" : Float.toString((r.nextInt(2000) - 1000) / 100.0f);
+			table[i] = iv + "," + lv + "," + dv + "," + fv;
+		}
+		return table;
+	}
+
+	static GenericUDAFEvaluator hiveEvaluator(String fn, TypeInfo type)
+	{
+		boolean isDouble = type == TypeInfoFactory.doubleTypeInfo || type == TypeInfoFactory.floatTypeInfo;
+		if ( fn.equals("sum") )
+		{
+			return isDouble ? new GenericUDAFSumDouble() : new GenericUDAFSumLong();
+		}
+		if ( fn.equals("avg") )
+		{
+			return new GenericUDAFAverageEvaluator();
+		}
+		if ( fn.equals("min") )
+		{
+			return new GenericUDAFMinEvaluator();
+		}
+		if ( fn.equals("max") )
+		{
+			return new GenericUDAFMaxEvaluator();
+		}
+		return new GenericUDAFCountEvaluator();
+	}
+
+	/*
+	 * set up the function the way the translation does, with the Hive evaluator's result OI; and get
+	 * its PrimitiveAggregator.
+	 */
+	PrimitiveAggregator aggregator(String fn, int c, ObjectInspector resultOI)
+	{
+		WindowFunctionSpec wSpec = new WindowFunctionSpec();
+		wSpec.setName(fn);
+		ArgDef arg = new ArgDef();
+		arg.setOI(colOIs[c]);
+		WindowFunctionDef wFnDef = new WindowFunctionDef();
+		wFnDef.setSpec(wSpec);
+		wFnDef.addArg(arg);
+		wFnDef.setOI(resultOI);
+		PrimitiveAggregator agg = PrimitiveAggregator.get(wFnDef);
+		Assert.assertNotNull(fn + "(" + COLUMNS[c] + ")", agg);
+		return agg;
+	}
+
+	/*
+	 * check each function over each column against the Hive evaluator run over each frame.
+	 */
+	void check(int[] starts, int[] ends) throws Exception
+	{
+		for(String fn : new String[] {"sum", "avg", "min", "max", "count"})
+		{
+			for(int c=0; c < COLUMNS.length; c++)
+			{
+				GenericUDAFEvaluator hEval = hiveEvaluator(fn, TYPES[c]);
+				ObjectInspector resultOI = hEval.init(GenericUDAFEvaluator.Mode.COMPLETE, new ObjectInspector[] {colOIs[c]});
+				AggregationBuffer buf = hEval.getNewAggregationBuffer();
+
+				List<Object> results = aggregator(fn, c, resultOI).evaluate(cols, new int[] {colIdxs[c]}, starts, ends);
+				Assert.assertEquals(starts.length, results.size());
+				for(int i=0; i < starts.length; i++)
+				{
+					hEval.reset(buf);
+					for(int j=starts[i]; j < ends[i]; j++)
+					{
+						hEval.iterate(buf, new Object[] {rows.get(j)[c]});
+					}
+					/*
+					 * the function's output is a writable, as for the Hive evaluators in WindowingTableFunction.
+					 */
+					Object expected = ObjectInspectorUtils.copyToStandardObject(hEval.terminate(buf), resultOI,
+							ObjectInspectorCopyOption.WRITABLE);
+					Object actual = results.get(i);
+					String msg = fn + "(" + COLUMNS[c] + ") over [" + starts[i] + ", " + ends[i] + ")";
+					if ( expected == null )
+					{
+						Assert.assertNull(msg, actual);
+					}
+					else
+					{
+						Assert.assertNotNull(msg, actual);
+						Assert.assertEquals(msg, expected.getClass(), actual.getClass());
+						Assert.assertEquals(msg, expected.toString(), actual.toString());
+						Assert.assertEquals(msg, expected, actual);
+					}
+				}
+			}
+		}
+	}
+
+	static int clamp(int i, int n)
+	{
+		return Math.max(0, Math.min(i, n));
+	}
+
+	/*
+	 * the frames rows between pre preceding and fol following; a negative amount is on the other side
+	 * of the current row.
+	 */
+	static int[][] rowsFrames(int n, int pre, int fol)
+	{
+		int[] starts = new int[n];
+		int[] ends = new int[n];
+		for(int i=0; i < n; i++)
+		{
+			starts[i] = clamp(i - pre, n);
+			ends[i] = Math.max(starts[i], clamp(i + fol + 1, n));
+		}
+		return new int[][] {starts, ends};
+	}
+
+	@Test
+	public void testDoubleFrameSumsExactly() throws Exception
+	{
+		load(new String[] {"1,1,0.1,0.1", "2,2,0.2,0.2", "3,3,0.3,0.3"});
+		int[][] f = rowsFrames(3, 1, 0);
+		check(f[0], f[1]);
+
+		int d = colIdxs[2];
+		PrimitiveAggregator sum = aggregator("sum", 2, new GenericUDAFSumDouble().init(
+				GenericUDAFEvaluator.Mode.COMPLETE, new ObjectInspector[] {colOIs[2]}));
+		PrimitiveAggregator avg = aggregator("avg", 2, new GenericUDAFAverageEvaluator().init(
+				GenericUDAFEvaluator.Mode.COMPLETE, new ObjectInspector[] {colOIs[2]}));
+		Assert.assertEquals(0.5, ((DoubleWritable) sum.evaluate(cols, new int[] {d}, f[0], f[1]).get(2)).get());
+		Assert.assertEquals(0.25, ((DoubleWritable) avg.evaluate(cols, new int[] {d}, f[0], f[1]).get(2)).get());
+	}
+
+	@Test
+	public void testSlidingFrames() throws Exception
+	{
+		Random r = new Random(5);
+		int n = 300;
+		load(randomTable(r, n));
+		int[][] amts = new int[][] {
+			{2, 0}, {0, 3}, {5, 5}, {n, 0}, {0, n}, {n, n},
+			/*
+			 * frames entirely before or after the current row; empty at the edges of the Partition.
+			 */
+			{4, -2}, {-1, 3},
+		};
+		for(int[] a : amts)
+		{
+			int[][] f = rowsFrames(n, a[0], a[1]);
+			check(f[0], f[1]);
+		}
+	}
+
+	@Test
+	public void testNullsAndEmptyFrames() throws Exception
+	{
+		load(new String[] {
+			"\\N,\\N,\\N,\\N",
+			"\\N,\\N,\\N,\\N",
+			"4,5,0.7,0.7",
+			"\\N,\\N,\\N,\\N",
+			"\\N,\\N,\\N,\\N",
+			"-3,7,0.1,0.1",
+			"\\N,\\N,\\N,\\N",
+		});
+		/*
+		 * all null frames, empty frames, and frames where the only value leaves and comes back.
+		 */
+		int[] starts = new int[] {0, 0, 1, 2, 3, 3, 3, 4, 7, 2, 2};
+		int[] ends = new int[] {0, 2, 3, 3, 3, 5, 6, 7, 7, 7, 3};
+		check(starts, ends);
+	}
+
+	@Test
+	public void testRestartsAndNonMonotoneFrames() throws Exception
+	{
+		Random r = new Random(17);
+		int n = 120;
+		load(randomTable(r, n));
+		int[] starts = new int[400];
+		int[] ends = new int[400];
+		for(int i=0; i < starts.length; i++)
+		{
+			starts[i] = r.nextInt(n + 1);
+			ends[i] = starts[i] + r.nextInt(n + 1 - starts[i]);
+			/*
+			 * now and then repeat or grow the previous frame, which continues the aggregation.
+			 */
+			if ( i > 0 && r.nextInt(3) == 0 )
+			{
+				starts[i] = starts[i - 1];
+				ends[i] = ends[i - 1] + r.nextInt(n + 1 - ends[i - 1]);
+			}
+		}
+		check(starts, ends);
+	}
+}
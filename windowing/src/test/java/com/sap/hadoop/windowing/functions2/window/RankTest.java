@@ -0,0 +1,313 @@
+package com.sap.hadoop.windowing.functions2.window;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.ql.exec.ExprNodeColumnEvaluator;
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluator;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.windowing.functions2.window.GenericUDAFCumeDist.GenericUDAFCumeDistEvaluator;
+import com.sap.hadoop.windowing.functions2.window.GenericUDAFDenseRank.GenericUDAFDenseRankEvaluator;
+import com.sap.hadoop.windowing.functions2.window.GenericUDAFNTile.GenericUDAFNTileEvaluator;
+import com.sap.hadoop.windowing.functions2.window.GenericUDAFPercentRank.GenericUDAFPercentRankEvaluator;
+import com.sap.hadoop.windowing.functions2.window.GenericUDAFRank.GenericUDAFRankEvaluator;
+import com.sap.hadoop.windowing.functions2.window.GenericUDAFRowNumber.GenericUDAFRowNumberEvaluator;
+import com.sap.hadoop.windowing.runtime2.Partition;
+import com.sap.hadoop.windowing.runtime2.PartitionIterator;
+
+public class RankTest
+{
+	/*
+	 * the ranking functions over the rows of a Partition with a string and an int column. The args are
+	 * read through the lazy objects of the Partition, which are reused from row to row.
+	 */
+	static class Ranking
+	{
+		Partition p;
+		ExprNodeEvaluator[] evals;
+		ObjectInspector[] OIs;
+
+		Ranking(String[][] keys) throws Exception
+		{
+			LazySimpleSerDe sd = Utils.createLazySimpleSerDe("k1,k2", "string,int", ",");
+			StructObjectInspector OI = (StructObjectInspector) sd.getObjectInspector();
+			p = new Partition("com.sap.hadoop.ds.list.ByteBasedList", 1024 * 1024, sd, OI);
+			for(String[] k : keys)
+			{
+				p.append(new Text((k[0] == null ? "\\N" : k[0]) + "," + (k[1] == null ? "\\N" : k[1])));
+			}
+			evals = new ExprNodeEvaluator[] {
+					new ExprNodeColumnEvaluator(new ExprNodeColumnDesc(TypeInfoFactory.stringTypeInfo, "k1", null, false)),
+					new ExprNodeColumnEvaluator(new ExprNodeColumnDesc(TypeInfoFactory.intTypeInfo, "k2", null, false))};
+			OIs = new ObjectInspector[evals.length];
+			for(int i=0; i < evals.length; i++)
+			{
+				OIs[i] = evals[i].initialize(OI);
+			}
+		}
+
+		/*
+		 * evaluate fn with the given columns as args; or with a constant number of tiles for ntile.
+		 */
+		List<?> evaluate(GenericUDAFEvaluator fn, AggregationBuffer buf, int[] cols, Integer numTiles) throws Exception
+		{
+			ObjectInspector[] argOIs;
+			if ( numTiles != null )
+			{
+				argOIs = new ObjectInspector[] {PrimitiveObjectInspectorFactory.writableIntObjectInspector};
+			}
+			else
+			{
+				argOIs = new ObjectInspector[cols.length];
+				for(int j=0; j < cols.length; j++)
+				{
+					argOIs[j] = OIs[cols[j]];
+				}
+			}
+			fn.init(GenericUDAFEvaluator.Mode.COMPLETE, argOIs);
+			fn.reset(buf);
+			PartitionIterator<Object> pItr = p.iterator();
+			while(pItr.hasNext())
+			{
+				Object row = pItr.next();
+				Object[] args = new Object[argOIs.length];
+				if ( numTiles != null )
+				{
+					args[0] = new IntWritable(numTiles);
+				}
+				else
+				{
+					for(int j=0; j < cols.length; j++)
+					{
+						args[j] = evals[cols[j]].evaluate(row);
+					}
+				}
+				fn.iterate(buf, args);
+			}
+			return (List<?>) fn.terminate(buf);
+		}
+
+		List<?> evaluate(GenericUDAFEvaluator fn, int[] cols, Integer numTiles) throws Exception
+		{
+			return evaluate(fn, fn.getNewAggregationBuffer(), cols, numTiles);
+		}
+	}
+
+	/*
+	 * the rank of each row, as in the SQL rank function; rows tie if their keys in the given columns
+	 * are equal, nulls tying with nulls.
+	 */
+	static int[] ranks(String[][] keys, int[] cols, boolean dense)
+	{
+		int[] r = new int[keys.length];
+		for(int i=0; i < keys.length; i++)
+		{
+			boolean ties = i > 0;
+			for(int j=0; ties && j < cols.length; j++)
+			{
+				String a = keys[i][cols[j]];
+				String b = keys[i - 1][cols[j]];
+				ties = a == null ? b == null : a.equals(b);
+			}
+			if ( ties )
+			{
+				r[i] = r[i - 1];
+			}
+			else
+			{
+				r[i] = dense ? (i == 0 ? 1 : r[i - 1] + 1) : i + 1;
+			}
+		}
+		return r;
+	}
+
+	/*
+	 * the tile of each row: the first numRows % numTiles tiles hold one row more than the others.
+	 */
+	static int[] ntiles(int numRows, int numTiles)
+	{
+		int[] t = new int[numRows];
+		int sz = numRows / numTiles;
+		int rem = numRows % numTiles;
+		int i = 0;
+		for(int tile=1; i < numRows; tile++)
+		{
+			int end = Math.min(numRows, i + sz + (tile <= rem ? 1 : 0));
+			for(; i < end; i++)
+			{
+				t[i] = tile;
+			}
+		}
+		return t;
+	}
+
+	static void assertInts(String msg, int[] expected, List<?> actual)
+	{
+		Assert.assertEquals(msg, expected.length, actual.size());
+		for(int i=0; i < expected.length; i++)
+		{
+			Assert.assertEquals(msg + " row " + i, expected[i], ((IntWritable) actual.get(i)).get());
+		}
+	}
+
+	static void assertDoubles(String msg, double[] expected, List<?> actual)
+	{
+		Assert.assertEquals(msg, expected.length, actual.size());
+		for(int i=0; i < expected.length; i++)
+		{
+			Assert.assertEquals(msg + " row " + i, expected[i], ((DoubleWritable) actual.get(i)).get(), 0.0);
+		}
+	}
+
+	/*
+	 * check all the ranking functions over the rows, which are sorted on the given columns.
+	 */
+	static void check(String[][] keys, int[] cols) throws Exception
+	{
+		Ranking r = new Ranking(keys);
+		String msg = Arrays.toString(cols);
+		int n = keys.length;
+		int[] rank = ranks(keys, cols, false);
+
+		assertInts("rank " + msg, rank, r.evaluate(new GenericUDAFRankEvaluator(), cols, null));
+		assertInts("dense_rank " + msg, ranks(keys, cols, true), r.evaluate(new GenericUDAFDenseRankEvaluator(), cols, null));
+
+		double[] percentRank = new double[n];
+		double[] cumeDist = new double[n];
+		for(int i=0; i < n; i++)
+		{
+			percentRank[i] = ((double) rank[i] - 1) / (n > 1 ? n - 1 : n);
+			cumeDist[i] = (double) rank[i] / n;
+		}
+		assertDoubles("percent_rank " + msg, percentRank, r.evaluate(new GenericUDAFPercentRankEvaluator(), cols, null));
+		assertDoubles("cume_dist " + msg, cumeDist, r.evaluate(new GenericUDAFCumeDistEvaluator(), cols, null));
+
+		int[] rowNums = new int[n];
+		for(int i=0; i < n; i++)
+		{
+			rowNums[i] = i + 1;
+		}
+		assertInts("row_number", rowNums, r.evaluate(new GenericUDAFRowNumberEvaluator(), new int[0], null));
+		for(int numTiles : new int[] {1, 2, 3, 7, n, n + 5})
+		{
+			assertInts("ntile " + numTiles, ntiles(n, numTiles), r.evaluate(new GenericUDAFNTileEvaluator(), null, numTiles));
+		}
+	}
+
+	static void check(String[][] keys) throws Exception
+	{
+		check(keys, new int[] {0});
+		check(keys, new int[] {1});
+		check(keys, new int[] {0, 1});
+	}
+
+	@Test
+	public void testTies() throws Exception
+	{
+		check(new String[][] {
+			{"a", "1"}, {"a", "1"}, {"a", "2"}, {"b", "2"}, {"b", "2"}, {"b", "2"}, {"c", "3"}, {"d", "3"}, {"d", "3"}});
+		check(new String[][] {{"a", "1"}});
+		check(new String[][] {{"a", "1"}, {"a", "1"}});
+	}
+
+	@Test
+	public void testNullKeys() throws Exception
+	{
+		/*
+		 * nulls tie with each other, and not with the empty string or with 0.
+		 */
+		check(new String[][] {
+			{null, null}, {null, null}, {null, "0"}, {"", "0"}, {"", "0"}, {"", null}, {"a", null}, {"a", null}, {"a", "1"}});
+	}
+
+	@Test
+	public void testMultiColumnKeys() throws Exception
+	{
+		/*
+		 * the keys of the columns are not run together: ("ab", 1) does not tie with ("a", 1) followed by
+		 * any bytes, nor ("1", 12) with ("11", 2).
+		 */
+		check(new String[][] {
+			{"1", "12"}, {"11", "2"}, {"11", "2"}, {"a", "1"}, {"ab", "1"}, {"ab", "1"}, {"ab", "11"}, {"b", "11"}});
+	}
+
+	@Test
+	public void testLargePartition() throws Exception
+	{
+		/*
+		 * more rows than the initial size of the rank array.
+		 */
+		Random rnd = new Random(3);
+		for(int n : new int[] {15, 16, 17, 33, 1000})
+		{
+			List<String[]> rows = new ArrayList<String[]>();
+			for(int i=0; i < n; i++)
+			{
+				rows.add(new String[] {
+						rnd.nextInt(8) == 0 ? null : "k" + rnd.nextInt(n / 4 + 1),
+						rnd.nextInt(8) == 0 ? null : Integer.toString(rnd.nextInt(3))});
+			}
+			Collections.sort(rows, new Comparator<String[]>()
+			{
+				public int compare(String[] a, String[] b)
+				{
+					for(int j=0; j < a.length; j++)
+					{
+						if ( a[j] == null || b[j] == null )
+						{
+							if ( a[j] != b[j] )
+							{
+								return a[j] == null ? -1 : 1;
+							}
+						}
+						else if ( a[j].compareTo(b[j]) != 0 )
+						{
+							return a[j].compareTo(b[j]);
+						}
+					}
+					return 0;
+				}
+			});
+			check(rows.toArray(new String[n][]));
+		}
+	}
+
+	@Test
+	public void testResetBuffer() throws Exception
+	{
+		/*
+		 * the buffer is reused for the next Partition: the ranks start over.
+		 */
+		String[][] large = new String[40][];
+		for(int i=0; i < large.length; i++)
+		{
+			large[i] = new String[] {"k" + (10 + i / 3), "1"};
+		}
+		String[][] small = new String[][] {{"a", "1"}, {"a", "1"}, {"b", "1"}};
+
+		GenericUDAFEvaluator fn = new GenericUDAFRankEvaluator();
+		AggregationBuffer buf = fn.getNewAggregationBuffer();
+		int[] cols = new int[] {0};
+		assertInts("rank", ranks(large, cols, false), new Ranking(large).evaluate(fn, buf, cols, null));
+		assertInts("rank", ranks(small, cols, false), new Ranking(small).evaluate(fn, buf, cols, null));
+	}
+}
@@ -0,0 +1,336 @@
+package com.sap.hadoop.windowing.functions2.window;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFAverage.GenericUDAFAverageEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator.AggregationBuffer;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFSum.GenericUDAFSumDouble;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFSum.GenericUDAFSumLong;
+import org.apache.hadoop.hive.serde2.io.DoubleWritable;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.PrimitiveObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.LongWritable;
+import org.junit.Test;
+
+import com.sap.hadoop.windowing.functions2.window.RemovableAggregator.AvgAggregator;
+import com.sap.hadoop.windowing.functions2.window.RemovableAggregator.CountAggregator;
+import com.sap.hadoop.windowing.functions2.window.RemovableAggregator.Kind;
+import com.sap.hadoop.windowing.functions2.window.RemovableAggregator.LongSumAggregator;
+import com.sap.hadoop.windowing.functions2.window.RemovableAggregator.VarianceAggregator;
+import com.sap.hadoop.windowing.query2.definition.ArgDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFunctionDef;
+import com.sap.hadoop.windowing.query2.specification.WindowFunctionSpec;
+
+public class RemovableAggregatorTest
+{
+	static final PrimitiveObjectInspector[] intOIs = new PrimitiveObjectInspector[] {
+		PrimitiveObjectInspectorFactory.writableIntObjectInspector};
+	static final PrimitiveObjectInspector[] doubleOIs = new PrimitiveObjectInspector[] {
+		PrimitiveObjectInspectorFactory.writableDoubleObjectInspector};
+
+	static Object[] arg(Double d)
+	{
+		return new Object[] {d == null ? null : new DoubleWritable(d)};
+	}
+
+	static Object[] arg(Integer i)
+	{
+		return new Object[] {i == null ? null : new IntWritable(i)};
+	}
+
+	/*
+	 * the variance family computed directly over values[start, end).
+	 */
+	static Double variance(Double[] values, int start, int end, Kind kind)
+	{
+		int n = 0;
+		double sum = 0;
+		for(int i=start; i < end; i++)
+		{
+			if ( values[i] != null )
+			{
+				n++;
+				sum += values[i];
+			}
+		}
+		if ( n == 0 )
+		{
+			return null;
+		}
+		if ( n == 1 )
+		{
+			return 0.0;
+		}
+		double mean = sum / n;
+		double m2 = 0;
+		for(int i=start; i < end; i++)
+		{
+			if ( values[i] != null )
+			{
+				m2 += (values[i] - mean) * (values[i] - mean);
+			}
+		}
+		switch(kind)
+		{
+		case VAR_SAMP:
+			return m2 / (n - 1);
+		case STDDEV_POP:
+			return Math.sqrt(m2 / n);
+		case STDDEV_SAMP:
+			return Math.sqrt(m2 / (n - 1));
+		default:
+			return m2 / n;
+		}
+	}
+
+	static Double value(Object o)
+	{
+		return o == null ? null : ((DoubleWritable) o).get();
+	}
+
+	static void assertClose(Double expected, Double actual)
+	{
+		if ( expected == null )
+		{
+			Assert.assertNull(actual);
+			return;
+		}
+		Assert.assertNotNull(actual);
+		Assert.assertEquals(expected, actual, 1e-6 * Math.max(1, Math.abs(expected)));
+	}
+
+	@Test
+	public void testVarianceSlidingVersusRecompute()
+	{
+		Random r = new Random(7);
+		Double[] values = new Double[2000];
+		for(int i=0; i < values.length; i++)
+		{
+			values[i] = r.nextInt(10) == 0 ? null : 1000 + r.nextGaussian() * 50;
+		}
+
+		for(Kind kind : new Kind[] {Kind.VAR_POP, Kind.VAR_SAMP, Kind.STDDEV_POP, Kind.STDDEV_SAMP})
+		{
+			VarianceAggregator agg = new VarianceAggregator(doubleOIs, kind);
+			agg.reset();
+			int width = 25;
+			for(int i=0; i < values.length; i++)
+			{
+				agg.add(arg(values[i]));
+				if ( i >= width )
+				{
+					agg.remove(arg(values[i - width]));
+				}
+				int start = Math.max(0, i - width + 1);
+				assertClose(variance(values, start, i + 1, kind), value(agg.evaluate()));
+			}
+
+			/*
+			 * shrink the frame down to nothing.
+			 */
+			for(int start=values.length - width; start < values.length; start++)
+			{
+				agg.remove(arg(values[start]));
+				assertClose(variance(values, start + 1, values.length, kind), value(agg.evaluate()));
+			}
+		}
+	}
+
+	@Test
+	public void testSumAndAvgSymmetry()
+	{
+		LongSumAggregator lSum = new LongSumAggregator(intOIs);
+		AvgAggregator avg = new AvgAggregator(intOIs);
+		lSum.reset();
+		avg.reset();
+
+		int[] ints = new int[] {5, -3, 12, 7, 0, 9};
+		for(int i : ints)
+		{
+			lSum.add(arg(i));
+			avg.add(arg(i));
+		}
+		lSum.remove(arg(ints[0]));
+		lSum.remove(arg(ints[1]));
+		avg.remove(arg(ints[0]));
+		avg.remove(arg(ints[1]));
+
+		Assert.assertEquals(28, ((LongWritable) lSum.evaluate()).get());
+		Assert.assertEquals(7.0, value(avg.evaluate()), 0);
+	}
+
+	@Test
+	public void testNulls()
+	{
+		LongSumAggregator lSum = new LongSumAggregator(intOIs);
+		AvgAggregator avg = new AvgAggregator(intOIs);
+		VarianceAggregator var = new VarianceAggregator(doubleOIs, Kind.VAR_SAMP);
+		CountAggregator count = new CountAggregator(intOIs, 1);
+		CountAggregator countStar = new CountAggregator(new PrimitiveObjectInspector[0], 0);
+		RemovableAggregator[] aggs = new RemovableAggregator[] {lSum, avg, var, count, countStar};
+		for(RemovableAggregator a : aggs)
+		{
+			a.reset();
+		}
+
+		/*
+		 * a frame of only nulls.
+		 */
+		lSum.add(arg((Integer) null));
+		avg.add(arg((Integer) null));
+		var.add(arg((Double) null));
+		count.add(arg((Integer) null));
+		countStar.add(new Object[0]);
+		Assert.assertNull(lSum.evaluate());
+		Assert.assertNull(avg.evaluate());
+		Assert.assertNull(var.evaluate());
+		Assert.assertEquals(0, ((LongWritable) count.evaluate()).get());
+		Assert.assertEquals(1, ((LongWritable) countStar.evaluate()).get());
+
+		/*
+		 * a value joins, then the null leaves: nulls don't affect the state.
+		 */
+		lSum.add(arg(4));
+		avg.add(arg(4));
+		var.add(arg(4.0));
+		count.add(arg(4));
+		countStar.add(new Object[0]);
+		lSum.remove(arg((Integer) null));
+		avg.remove(arg((Integer) null));
+		var.remove(arg((Double) null));
+		count.remove(arg((Integer) null));
+		countStar.remove(new Object[0]);
+		Assert.assertEquals(4, ((LongWritable) lSum.evaluate()).get());
+		Assert.assertEquals(4.0, value(avg.evaluate()), 0);
+		Assert.assertEquals(0.0, value(var.evaluate()), 0);
+		Assert.assertEquals(1, ((LongWritable) count.evaluate()).get());
+		Assert.assertEquals(1, ((LongWritable) countStar.evaluate()).get());
+
+		/*
+		 * the last value leaves.
+		 */
+		lSum.remove(arg(4));
+		avg.remove(arg(4));
+		var.remove(arg(4.0));
+		Assert.assertNull(lSum.evaluate());
+		Assert.assertNull(avg.evaluate());
+		Assert.assertNull(var.evaluate());
+	}
+
+	@Test
+	public void testResetAfterNonOverlappingFrame()
+	{
+		VarianceAggregator var = new VarianceAggregator(doubleOIs, Kind.VAR_POP);
+		AvgAggregator avg = new AvgAggregator(intOIs);
+		var.reset();
+		avg.reset();
+		for(double d : new double[] {1e9, 1e-9, 3.3, 7.1})
+		{
+			var.add(arg(d));
+			avg.add(arg((int) d));
+		}
+
+		/*
+		 * the next frame shares no rows with the previous one: the aggregators are reset, not slid.
+		 */
+		var.reset();
+		avg.reset();
+		Double[] next = new Double[] {2.0, 4.0, 6.0};
+		for(Double d : next)
+		{
+			var.add(arg(d));
+			avg.add(arg(d.intValue()));
+		}
+		assertClose(variance(next, 0, next.length, Kind.VAR_POP), value(var.evaluate()));
+		Assert.assertEquals(4.0, value(avg.evaluate()), 0);
+	}
+
+	static WindowFunctionDef functionDef(String fn, ObjectInspector argOI, GenericUDAFEvaluator hEval) throws Exception
+	{
+		WindowFunctionSpec wSpec = new WindowFunctionSpec();
+		wSpec.setName(fn);
+		ArgDef arg = new ArgDef();
+		arg.setOI(argOI);
+		WindowFunctionDef wFnDef = new WindowFunctionDef();
+		wFnDef.setSpec(wSpec);
+		wFnDef.addArg(arg);
+		wFnDef.setOI(hEval.init(GenericUDAFEvaluator.Mode.COMPLETE, new ObjectInspector[] {argOI}));
+		return wFnDef;
+	}
+
+	@Test
+	public void testOnlyExactSumsRemovable() throws Exception
+	{
+		ObjectInspector[] exact = new ObjectInspector[] {
+			PrimitiveObjectInspectorFactory.writableByteObjectInspector,
+			PrimitiveObjectInspectorFactory.writableShortObjectInspector,
+			PrimitiveObjectInspectorFactory.writableIntObjectInspector};
+		ObjectInspector[] inexact = new ObjectInspector[] {
+			PrimitiveObjectInspectorFactory.writableFloatObjectInspector,
+			PrimitiveObjectInspectorFactory.writableDoubleObjectInspector};
+
+		for(ObjectInspector oi : exact)
+		{
+			Assert.assertTrue(RemovableAggregator.get(functionDef("sum", oi, new GenericUDAFSumLong())) instanceof LongSumAggregator);
+			Assert.assertTrue(RemovableAggregator.get(functionDef("avg", oi, new GenericUDAFAverageEvaluator())) instanceof AvgAggregator);
+		}
+		for(ObjectInspector oi : inexact)
+		{
+			Assert.assertNull(RemovableAggregator.get(functionDef("sum", oi, new GenericUDAFSumDouble())));
+			Assert.assertNull(RemovableAggregator.get(functionDef("avg", oi, new GenericUDAFAverageEvaluator())));
+		}
+		ObjectInspector longOI = PrimitiveObjectInspectorFactory.writableLongObjectInspector;
+		Assert.assertTrue(RemovableAggregator.get(functionDef("sum", longOI, new GenericUDAFSumLong())) instanceof LongSumAggregator);
+		Assert.assertNull(RemovableAggregator.get(functionDef("avg", longOI, new GenericUDAFAverageEvaluator())));
+	}
+
+	@Test
+	public void testSlidingVersusHive() throws Exception
+	{
+		Random r = new Random(3);
+		Integer[] values = new Integer[1000];
+		for(int i=0; i < values.length; i++)
+		{
+			values[i] = r.nextInt(8) == 0 ? null : r.nextInt() / 2;
+		}
+
+		ObjectInspector intOI = PrimitiveObjectInspectorFactory.writableIntObjectInspector;
+		GenericUDAFEvaluator hSum = new GenericUDAFSumLong();
+		GenericUDAFEvaluator hAvg = new GenericUDAFAverageEvaluator();
+		RemovableAggregator lSum = RemovableAggregator.get(functionDef("sum", intOI, hSum));
+		RemovableAggregator avg = RemovableAggregator.get(functionDef("avg", intOI, hAvg));
+		AggregationBuffer sumBuf = hSum.getNewAggregationBuffer();
+		AggregationBuffer avgBuf = hAvg.getNewAggregationBuffer();
+		lSum.reset();
+		avg.reset();
+
+		/*
+		 * the averages are not integral; each must equal Hive's, bit for bit.
+		 */
+		int width = 7;
+		for(int i=0; i < values.length; i++)
+		{
+			lSum.add(arg(values[i]));
+			avg.add(arg(values[i]));
+			if ( i >= width )
+			{
+				lSum.remove(arg(values[i - width]));
+				avg.remove(arg(values[i - width]));
+			}
+			hSum.reset(sumBuf);
+			hAvg.reset(avgBuf);
+			for(int j=Math.max(0, i - width + 1); j <= i; j++)
+			{
+				hSum.iterate(sumBuf, arg(values[j]));
+				hAvg.iterate(avgBuf, arg(values[j]));
+			}
+			Assert.assertEquals(hSum.terminate(sumBuf), lSum.evaluate());
+			Assert.assertEquals(hAvg.terminate(avgBuf), avg.evaluate());
+		}
+	}
+}
@@ -0,0 +1,175 @@
+package com.sap.hadoop.windowing.functions2.window;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.ql.metadata.HiveException;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFMax.GenericUDAFMaxEvaluator;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.primitive.PrimitiveObjectInspectorFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Test;
+
+public class SegmentTreeAggregatorTest
+{
+	/*
+	 * an order sensitive aggregation: the concatenation of its arguments.
+	 */
+	public static class ConcatEvaluator extends GenericUDAFEvaluator
+	{
+		static class ConcatBuffer implements AggregationBuffer
+		{
+			StringBuilder value = new StringBuilder();
+		}
+
+		@Override
+		public ObjectInspector init(Mode m, ObjectInspector[] parameters) throws HiveException
+		{
+			super.init(m, parameters);
+			return PrimitiveObjectInspectorFactory.writableStringObjectInspector;
+		}
+
+		@Override
+		public AggregationBuffer getNewAggregationBuffer() throws HiveException
+		{
+			return new ConcatBuffer();
+		}
+
+		@Override
+		public void reset(AggregationBuffer agg) throws HiveException
+		{
+			((ConcatBuffer) agg).value.setLength(0);
+		}
+
+		@Override
+		public void iterate(AggregationBuffer agg, Object[] parameters) throws HiveException
+		{
+			if ( parameters[0] != null )
+			{
+				((ConcatBuffer) agg).value.append(parameters[0].toString());
+			}
+		}
+
+		@Override
+		public Object terminatePartial(AggregationBuffer agg) throws HiveException
+		{
+			return terminate(agg);
+		}
+
+		@Override
+		public void merge(AggregationBuffer agg, Object partial) throws HiveException
+		{
+			if ( partial != null )
+			{
+				((ConcatBuffer) agg).value.append(partial.toString());
+			}
+		}
+
+		@Override
+		public Object terminate(AggregationBuffer agg) throws HiveException
+		{
+			return new Text(((ConcatBuffer) agg).value.toString());
+		}
+	}
+
+	/*
+	 * wire up the evaluators the way SegmentTreeAggregator.get does, without going through the
+	 * FunctionRegistry.
+	 */
+	static SegmentTreeAggregator create(Class<? extends GenericUDAFEvaluator> evalClass, ObjectInspector argOI) throws Exception
+	{
+		GenericUDAFEvaluator partial1Eval = evalClass.newInstance();
+		GenericUDAFEvaluator partial2Eval = evalClass.newInstance();
+		GenericUDAFEvaluator finalEval = evalClass.newInstance();
+
+		ObjectInspector partial1OI = partial1Eval.init(GenericUDAFEvaluator.Mode.PARTIAL1, new ObjectInspector[] {argOI});
+		ObjectInspector partialOI = ObjectInspectorUtils.getStandardObjectInspector(partial1OI, ObjectInspectorCopyOption.WRITABLE);
+		ObjectInspector partial2OI = partial2Eval.init(GenericUDAFEvaluator.Mode.PARTIAL2, new ObjectInspector[] {partialOI});
+		ObjectInspector finalOI = finalEval.init(GenericUDAFEvaluator.Mode.FINAL, new ObjectInspector[] {partialOI});
+
+		return new SegmentTreeAggregator(partial1Eval, partial2Eval, finalEval, partial1OI, partial2OI, finalOI);
+	}
+
+	@Test
+	public void testMergeOrder() throws Exception
+	{
+		SegmentTreeAggregator agg = create(ConcatEvaluator.class, PrimitiveObjectInspectorFactory.writableStringObjectInspector);
+
+		/*
+		 * trees of every shape up to 33 leaves; each range is checked against the rows concatenated
+		 * in order, including ranges reaching past either end of the Partition.
+		 */
+		for(int n=1; n <= 33; n++)
+		{
+			String[] rows = new String[n];
+			agg.reset(n);
+			for(int i=0; i < n; i++)
+			{
+				rows[i] = Integer.toString(i, 36);
+				agg.addRow(i, new Object[] {new Text(rows[i])});
+			}
+			agg.buildTree();
+
+			for(int start=-1; start <= n; start++)
+			{
+				for(int end=start; end <= n + 1; end++)
+				{
+					StringBuilder expected = new StringBuilder();
+					for(int i=Math.max(start, 0); i < Math.min(end, n); i++)
+					{
+						expected.append(rows[i]);
+					}
+					Assert.assertEquals("n=" + n + " [" + start + ", " + end + ")",
+							expected.toString(), agg.evaluate(start, end).toString());
+				}
+			}
+		}
+		agg.close();
+	}
+
+	@Test
+	public void testMaxVersusLinear() throws Exception
+	{
+		SegmentTreeAggregator agg = create(GenericUDAFMaxEvaluator.class, PrimitiveObjectInspectorFactory.writableIntObjectInspector);
+		Random r = new Random(11);
+		int n = 200;
+		Integer[] rows = new Integer[n];
+		agg.reset(n);
+		for(int i=0; i < n; i++)
+		{
+			rows[i] = r.nextInt(8) == 0 ? null : r.nextInt(1000) - 500;
+			agg.addRow(i, new Object[] {rows[i] == null ? null : new IntWritable(rows[i])});
+		}
+		agg.buildTree();
+
+		for(int start=0; start < n; start++)
+		{
+			for(int end=start; end <= n; end++)
+			{
+				Integer expected = null;
+				for(int i=start; i < end; i++)
+				{
+					if ( rows[i] != null && (expected == null || rows[i] > expected) )
+					{
+						expected = rows[i];
+					}
+				}
+				Object out = agg.evaluate(start, end);
+				if ( expected == null )
+				{
+					Assert.assertNull(out);
+				}
+				else
+				{
+					Assert.assertEquals(expected.intValue(), ((IntWritable) out).get());
+				}
+			}
+		}
+		agg.close();
+	}
+}
@@ -0,0 +1,73 @@
+package com.sap.hadoop.windowing.runtime2;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluator;
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluatorFactory;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.IntWritable;
+import org.apache.hadoop.io.Text;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+
+public class ArgColumnsTest
+{
+	static final String[] table = new String[] {
+		"Manufacturer#1,2,2",
+		"Manufacturer#1,\\N,34",
+		"Manufacturer#2,14,40",
+		"Manufacturer#3,17,14",
+	};
+
+	Partition p;
+	StructObjectInspector OI;
+
+	@Before
+	public void setup() throws Exception
+	{
+		LazySimpleSerDe sd = Utils.createLazySimpleSerDe("a,b,c", "string,int,int", ",");
+		OI = (StructObjectInspector) sd.getObjectInspector();
+		p = new Partition("com.sap.hadoop.ds.list.ByteBasedList", 1024 * 1024, sd, OI);
+		for(String r : table)
+		{
+			p.append(new Text(r));
+		}
+	}
+
+	int add(ArgColumns cols, String name, boolean isString) throws Exception
+	{
+		ExprNodeDesc e = new ExprNodeColumnDesc(isString ? TypeInfoFactory.stringTypeInfo : TypeInfoFactory.intTypeInfo,
+				name, null, false);
+		ExprNodeEvaluator eval = ExprNodeEvaluatorFactory.get(e);
+		ObjectInspector eOI = eval.initialize(OI);
+		return cols.add(e, eval, eOI);
+	}
+
+	@Test
+	public void test() throws Exception
+	{
+		ArgColumns cols = new ArgColumns();
+		int a = add(cols, "a", true);
+		int b = add(cols, "b", false);
+		Assert.assertEquals(b, add(cols, "b", false));
+		Assert.assertEquals(2, cols.numColumns());
+
+		cols.evaluate(p.iterator());
+		Assert.assertEquals("Manufacturer#2", cols.get(a, 2).toString());
+		Assert.assertEquals(2, ((IntWritable) cols.get(b, 0)).get());
+		Assert.assertNull(cols.get(b, 1));
+		Assert.assertEquals(17, ((IntWritable) cols.get(b, 3)).get());
+
+		p.reset();
+		p.append(new Text(table[3]));
+		cols.evaluate(p.iterator());
+		Assert.assertEquals("Manufacturer#3", cols.get(a, 0).toString());
+	}
+}
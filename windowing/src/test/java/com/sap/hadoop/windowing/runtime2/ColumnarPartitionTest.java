@@ -0,0 +1,158 @@
+package com.sap.hadoop.windowing.runtime2;
+
+import java.util.List;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.io.Text;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.ds.list.PartitionMemoryManager;
+
+public class ColumnarPartitionTest
+{
+	static LazySimpleSerDe sd;
+	static StructObjectInspector OI;
+	static ColumnarStructObjectInspector rowOI;
+	ColumnarPartition p;
+
+	static final String[] table = new String[] {
+		"Manufacturer#1,2,2",
+		"Manufacturer#1,2,34",
+		"Manufacturer#1,34,6",
+		"Manufacturer#2,14,40",
+		"Manufacturer#2,40,2",
+		"Manufacturer#3,17,14",
+		"Manufacturer#3,14,19",
+		"Manufacturer#3,19,1",
+	};
+
+	@BeforeClass
+	public static void setupClass() throws Exception
+	{
+		sd = Utils.createLazySimpleSerDe("a,b,c", "string,int,int", ",");
+		OI = (StructObjectInspector) sd.getObjectInspector();
+		rowOI = new ColumnarStructObjectInspector(OI);
+	}
+
+	@Before
+	public void setup()
+	{
+		p = new ColumnarPartition(sd, OI, rowOI);
+	}
+
+	@Test
+	public void test() throws Exception
+	{
+		for(String r : table)
+		{
+			p.append(new Text(r));
+		}
+		Assert.assertEquals(table.length, p.size());
+
+		for(int i=table.length - 1; i >= 0; i--)
+		{
+			Assert.assertEquals(table[i], toString(p.getAt(i)));
+		}
+
+		PartitionIterator<Object> it = p.iterator();
+		int i = 0;
+		while(it.hasNext())
+		{
+			Assert.assertEquals(table[i++], toString(it.next()));
+		}
+		Assert.assertEquals(table.length, i);
+
+		/*
+		 * the manufacturer column repeats a few values.
+		 */
+		ColumnarPartition.StringColumn c = (ColumnarPartition.StringColumn) p.columns[0];
+		Assert.assertTrue(c.dictionarySize() < table.length);
+
+		p.reset();
+		Assert.assertEquals(0, p.size());
+		p.append(new Text(table[3]));
+		Assert.assertEquals(table[3], toString(p.getAt(0)));
+	}
+
+	@Test
+	public void testNulls() throws Exception
+	{
+		p.append(new Text("Manufacturer#1,\\N,5"));
+		Object row = p.getAt(0);
+		List<? extends StructField> fields = rowOI.getAllStructFieldRefs();
+		Assert.assertEquals("Manufacturer#1", rowOI.getStructFieldData(row, fields.get(0)).toString());
+		Assert.assertNull(rowOI.getStructFieldData(row, fields.get(1)));
+		Assert.assertEquals("5", rowOI.getStructFieldData(row, fields.get(2)).toString());
+	}
+
+	@Test
+	public void testPlainStrings() throws Exception
+	{
+		/*
+		 * every row has its own value: past the minimum dictionary size the column switches to plain storage.
+		 */
+		int n = 3 * ColumnarPartition.StringColumn.MIN_PLAIN_DICTIONARY_SIZE;
+		for(int i=0; i < n; i++)
+		{
+			p.append(new Text(i % 7 == 0 ? "\\N,1,2" : "value" + i + ",1,2"));
+		}
+		ColumnarPartition.StringColumn c = (ColumnarPartition.StringColumn) p.columns[0];
+		Assert.assertTrue(c.plain);
+		Assert.assertEquals(0, c.dictionarySize());
+		for(int i=0; i < n; i++)
+		{
+			Assert.assertEquals((i % 7 == 0 ? "null" : "value" + i) + ",1,2", toString(p.getAt(i)));
+		}
+
+		/*
+		 * after a reset repeated values are held in the dictionary again.
+		 */
+		p.reset();
+		for(int i=0; i < n; i++)
+		{
+			p.append(new Text(table[i % table.length]));
+		}
+		Assert.assertFalse(c.plain);
+		Assert.assertEquals(3, c.dictionarySize());
+		Assert.assertEquals(table[5], toString(p.getAt(5)));
+	}
+
+	@Test
+	public void testMemoryAccounting() throws Exception
+	{
+		PartitionMemoryManager mm = PartitionMemoryManager.get();
+		long used = mm.getUsed();
+		for(int i=0; i < 5000; i++)
+		{
+			p.append(new Text("value" + i + "," + i + "," + i));
+		}
+		p.seal();
+		Assert.assertEquals(p.getBytes(), mm.getUsed() - used);
+		Assert.assertTrue(p.getBytes() > 5000 * (4 + 4 + 5));
+
+		p.close();
+		Assert.assertEquals(used, mm.getUsed());
+		Assert.assertEquals(0, p.size());
+	}
+
+	static String toString(Object row)
+	{
+		StringBuilder b = new StringBuilder();
+		for(Object o : rowOI.getStructFieldsDataAsList(row))
+		{
+			if ( b.length() > 0 )
+			{
+				b.append(",");
+			}
+			b.append(o);
+		}
+		return b.toString();
+	}
+}
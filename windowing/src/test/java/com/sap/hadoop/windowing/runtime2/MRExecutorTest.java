@@ -2,8 +2,10 @@ package com.sap.hadoop.windowing.runtime2;
 
 import junit.framework.Assert;
 
+import org.apache.hadoop.hive.conf.HiveConf;
 import org.junit.Test;
 
+import com.sap.hadoop.windowing.Constants;
 import com.sap.hadoop.windowing.WindowingException;
 import com.sap.hadoop.windowing.testutils.MRBaseTest;
 
@@ -76,4 +78,48 @@ public class MRExecutorTest extends MRBaseTest
 		Assert.assertEquals(r, e);	
 	}
 	
+	/*
+	 * the reduce-side streams the rows when all frames are bounded ROWS frames; the output must be the same
+	 * as when the Partitions are materialized. The frames include ones entirely before or after the current
+	 * row, and ones wider than the part_tiny partitions.
+	 */
+	@Test
+	public void testStreamingSameOutput() throws WindowingException
+	{
+		String query = "	 select  p_mfgr,p_name, p_size, \n"
+				+ "sum(p_size) over rows between 2 preceding and 1 following as s1, \n"
+				+ "count(p_size) over rows between 3 preceding and 1 preceding as c2, \n"
+				+ "sum(p_size) over rows between 1 following and 3 following as s3, \n"
+				+ "avg(p_size) over rows between 6 preceding and 6 following as a4, \n"
+				+ "count(p_size) over rows between current row and current row as c5 \n"
+				+ "from part_tiny \n"
+				+ "partition by p_mfgr \n"
+				+ "order by p_name \n"
+				+ "into path='/tmp/testStreamingSameOutput' \n"
+				+ "serde 'org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe' \n"
+				+ "with serdeproperties('field.delim'=',') \n"
+				+ "format 'org.apache.hadoop.mapred.TextOutputFormat'";
+		HiveConf cfg = wshell.getCfg();
+		boolean streaming = cfg.getBoolean(Constants.WINDOW_STREAMING, false);
+		String materialized;
+		String streamed;
+		try
+		{
+			cfg.setBoolean(Constants.WINDOW_STREAMING, false);
+			wshell.execute(query, outPrinter);
+			materialized = outStream.toString().replace("\r\n", "\n");
+			
+			outStream.reset();
+			cfg.setBoolean(Constants.WINDOW_STREAMING, true);
+			wshell.execute(query, outPrinter);
+			streamed = outStream.toString().replace("\r\n", "\n");
+		}
+		finally
+		{
+			cfg.setBoolean(Constants.WINDOW_STREAMING, streaming);
+		}
+		Assert.assertTrue(materialized.length() > 0);
+		Assert.assertEquals(materialized, streamed);
+	}
+	
 }
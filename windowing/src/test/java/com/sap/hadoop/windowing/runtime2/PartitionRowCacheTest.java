@@ -0,0 +1,111 @@
+package com.sap.hadoop.windowing.runtime2;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.io.Text;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+
+public class PartitionRowCacheTest
+{
+	static LazySimpleSerDe sd;
+	static StructObjectInspector OI;
+	Partition p;
+
+	static final String[] table = new String[] {
+		"Manufacturer#1,2,2",
+		"Manufacturer#1,2,34",
+		"Manufacturer#1,34,6",
+		"Manufacturer#2,14,40",
+		"Manufacturer#2,40,2",
+		"Manufacturer#3,17,14",
+		"Manufacturer#3,14,19",
+		"Manufacturer#3,19,1",
+	};
+
+	@BeforeClass
+	public static void setupClass() throws Exception
+	{
+		sd = Utils.createLazySimpleSerDe("a,b,c", "string,int,int", ",");
+		OI = (StructObjectInspector) sd.getObjectInspector();
+	}
+
+	@Before
+	public void setup() throws Exception
+	{
+		p = new Partition("com.sap.hadoop.ds.list.ByteBasedList", 1024 * 1024, sd, OI);
+		for(String r : table)
+		{
+			p.append(new Text(r));
+		}
+	}
+
+	@Test
+	public void test() throws Exception
+	{
+		p.setRowCacheSize(3);
+
+		/*
+		 * a window of 3 rows sliding over the Partition: each row is read 3 times, and only the first
+		 * read misses.
+		 */
+		for(int i=0; i < table.length; i++)
+		{
+			for(int j=Math.max(0, i - 2); j <= i; j++)
+			{
+				Assert.assertEquals(table[j], toString(p.getAt(j)));
+			}
+		}
+		Assert.assertEquals(table.length, p.getRowCacheMisses());
+		Assert.assertEquals(2 * table.length - 3, p.getRowCacheHits());
+
+		/*
+		 * a cached row stays valid while other rows are read.
+		 */
+		Object r5 = p.getAt(5);
+		p.getAt(6);
+		p.getAt(7);
+		Assert.assertEquals(table[5], toString(r5));
+
+		PartitionIterator<Object> it = p.iterator();
+		int i = 0;
+		while(it.hasNext())
+		{
+			Assert.assertEquals(table[i++], toString(it.next()));
+		}
+
+		p.reset();
+		p.append(new Text(table[4]));
+		Assert.assertEquals(table[4], toString(p.getAt(0)));
+	}
+
+	@Test
+	public void testNoCache() throws Exception
+	{
+		for(int i=0; i < table.length; i++)
+		{
+			Assert.assertEquals(table[i], toString(p.getAt(i)));
+		}
+		Assert.assertEquals(0, p.getRowCacheHits());
+		Assert.assertEquals(0, p.getRowCacheMisses());
+	}
+
+	static String toString(Object row)
+	{
+		StringBuilder b = new StringBuilder();
+		for(Object o : OI.getStructFieldsDataAsList(row))
+		{
+			if ( b.length() > 0 )
+			{
+				b.append(",");
+			}
+			b.append(o);
+		}
+		return b.toString();
+	}
+}
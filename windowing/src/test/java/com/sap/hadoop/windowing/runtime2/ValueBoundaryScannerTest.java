@@ -0,0 +1,185 @@
+package com.sap.hadoop.windowing.runtime2;
+
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.ql.exec.ExprNodeColumnEvaluator;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.Text;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.windowing.query2.definition.WindowFrameDef.ValueBoundaryDef;
+import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.Direction;
+import com.sap.hadoop.windowing.query2.specification.WindowFrameSpec.ValueBoundarySpec;
+
+public class ValueBoundaryScannerTest
+{
+	static LazySimpleSerDe sd;
+	static StructObjectInspector OI;
+
+	@BeforeClass
+	public static void setupClass() throws Exception
+	{
+		sd = Utils.createLazySimpleSerDe("v", "int", ",");
+		OI = (StructObjectInspector) sd.getObjectInspector();
+	}
+
+	static Partition partition(Integer[] values) throws Exception
+	{
+		Partition p = new Partition("com.sap.hadoop.ds.list.ByteBasedList", 1024 * 1024, sd, OI);
+		for(Integer v : values)
+		{
+			p.append(new Text(v == null ? "\\N" : v.toString()));
+		}
+		return p;
+	}
+
+	static ValueBoundaryScanner scanner(Partition p, Direction d, int amt) throws Exception
+	{
+		ValueBoundaryDef bndDef = new ValueBoundaryDef(new ValueBoundarySpec(d, null, amt));
+		ExprNodeColumnEvaluator eval = new ExprNodeColumnEvaluator(
+				new ExprNodeColumnDesc(TypeInfoFactory.intTypeInfo, "v", null, false));
+		bndDef.setExprEvaluator(eval);
+		bndDef.setOI(eval.initialize(OI));
+		ValueBoundaryScanner scanner = ValueBoundaryScanner.getScanner(bndDef);
+		scanner.reset(p);
+		return scanner;
+	}
+
+	static void assertBoundaries(Integer[] values, Direction d, int amt, boolean end, int expectedOrder, int[] expected)
+		throws Exception
+	{
+		ValueBoundaryScanner scanner = scanner(partition(values), d, amt);
+		Assert.assertEquals(expectedOrder, scanner.order);
+		for(int i=0; i < values.length; i++)
+		{
+			Assert.assertEquals("row " + i, expected[i], scanner.computeBoundaryRange(i, end));
+		}
+	}
+
+	@Test
+	public void testAscendingTies() throws Exception
+	{
+		Integer[] values = new Integer[] {1, 2, 2, 4, 4, 4, 7, 10};
+
+		/*
+		 * both rows valued 2 are within 2 preceding of the 4s; all 4s within 2 following of the 2s.
+		 */
+		assertBoundaries(values, Direction.PRECEDING, 2, false, 1, new int[] {0, 0, 0, 1, 1, 1, 6, 7});
+		assertBoundaries(values, Direction.FOLLOWING, 2, true, 1, new int[] {3, 6, 6, 6, 6, 6, 7, 8});
+		assertBoundaries(values, Direction.PRECEDING, 0, true, 1, new int[] {1, 3, 3, 6, 6, 6, 7, 8});
+		assertBoundaries(values, Direction.FOLLOWING, 3, false, 1, new int[] {3, 6, 6, 6, 6, 6, 7, 8});
+	}
+
+	@Test
+	public void testDescendingTies() throws Exception
+	{
+		Integer[] values = new Integer[] {10, 7, 4, 4, 4, 2, 2, 1};
+
+		assertBoundaries(values, Direction.PRECEDING, 2, false, -1, new int[] {0, 1, 2, 2, 2, 2, 2, 5});
+		assertBoundaries(values, Direction.FOLLOWING, 2, true, -1, new int[] {1, 2, 7, 7, 7, 8, 8, 8});
+	}
+
+	@Test
+	public void testNullsScan() throws Exception
+	{
+		Integer[] values = new Integer[] {1, 2, null, 4, 5};
+
+		/*
+		 * a null row bounds the scan, and is its own range.
+		 */
+		assertBoundaries(values, Direction.PRECEDING, 5, false, 0, new int[] {0, 0, 2, 3, 3});
+		assertBoundaries(values, Direction.FOLLOWING, 5, true, 0, new int[] {2, 2, 3, 5, 5});
+	}
+
+	@Test
+	public void testUnsortedScan() throws Exception
+	{
+		Integer[] values = new Integer[] {5, 1, 2, 3, 9};
+
+		assertBoundaries(values, Direction.PRECEDING, 2, false, 0, new int[] {0, 1, 1, 0, 4});
+		assertBoundaries(values, Direction.FOLLOWING, 2, true, 0, new int[] {1, 4, 4, 4, 5});
+	}
+
+	/*
+	 * the boundary in a sorted column by a linear search, for the given sort order.
+	 */
+	static int linearBoundary(int[] values, int order, int rowIdx, Direction d, int amt, boolean end)
+	{
+		long target = (long) order * values[rowIdx] + (d == Direction.PRECEDING ? -amt : amt);
+		int i = 0;
+		while( i < values.length )
+		{
+			long k = (long) order * values[i];
+			if ( end ? k > target : k >= target )
+			{
+				break;
+			}
+			i++;
+		}
+		return i;
+	}
+
+	@Test
+	public void testBinarySearchVersusAdvancing() throws Exception
+	{
+		Random r = new Random(3);
+		for(int order : new int[] {1, -1})
+		{
+			int n = 300;
+			int[] values = new int[n];
+			Integer[] boxed = new Integer[n];
+			int v = 0;
+			for(int i=0; i < n; i++)
+			{
+				v += r.nextInt(3) == 0 ? 0 : r.nextInt(4);
+				values[order == 1 ? i : n - 1 - i] = v;
+			}
+			for(int i=0; i < n; i++)
+			{
+				boxed[i] = values[i];
+			}
+			Partition p = partition(boxed);
+
+			for(Direction d : new Direction[] {Direction.PRECEDING, Direction.FOLLOWING})
+			{
+				for(int amt : new int[] {0, 1, 5, 40})
+				{
+					for(boolean end : new boolean[] {false, true})
+					{
+						/*
+						 * rows in order advance the last boundary; in a shuffled order every row is a binary search.
+						 */
+						ValueBoundaryScanner inOrder = scanner(p, d, amt);
+						ValueBoundaryScanner shuffled = scanner(p, d, amt);
+						Assert.assertEquals(order, inOrder.order);
+						int[] perm = new int[n];
+						for(int i=0; i < n; i++)
+						{
+							perm[i] = i;
+						}
+						for(int i=n - 1; i > 0; i--)
+						{
+							int j = r.nextInt(i + 1);
+							int t = perm[i];
+							perm[i] = perm[j];
+							perm[j] = t;
+						}
+						for(int i=0; i < n; i++)
+						{
+							Assert.assertEquals(linearBoundary(values, order, i, d, amt, end), inOrder.computeBoundaryRange(i, end));
+							int j = perm[i];
+							Assert.assertEquals(linearBoundary(values, order, j, d, amt, end), shuffled.computeBoundaryRange(j, end));
+						}
+					}
+				}
+			}
+		}
+	}
+}
@@ -244,6 +244,50 @@ public class WindowingTestsFactory
 							"Manufacturer#5	almond antique sky peru orange	2	2	31	23\n" +
 							"Manufacturer#5	almond aquamarine dodger light gainsboro	46	46	6	23\n" +
 							"Manufacturer#5	almond azure blanched chiffon midnight	23	23	2	23\n");
+	public static WindowingTest FIRSTLASTNULLS = new WindowingTest(
+			"testFirstLastNulls",
+			"Test First Last Value over nulls, all null frames and empty frames",
+			"select  p_mfgr,p_name, p_size, \n"
+					+ "first_value(case when p_size > 30 then p_size end, true) over w1 as f, \n"
+					+ "last_value(case when p_size > 30 then p_size end, true) over w1 as l, \n"
+					+ "last_value(case when p_size > 30 then p_size end) over w1 as ln, \n"
+					+ "first_value(case when p_size > 30 then p_size end, true) over rows between 2 following and 3 following as fe, \n"
+					+ "last_value(case when p_size > 30 then p_size end, true) over rows between 2 following and 3 following as le, \n"
+					+ "last_value(lead(case when p_size > 30 then p_size end, 0), true) over w1 as ll \n"
+					+ "from part_tiny \n"
+					+ "partition by p_mfgr \n"
+					+ "order by p_name \n"
+					+ "window w1 as rows between 1 preceding and 1 following \n"
+					+ "into path='/tmp/testFirstLastNulls' \n"
+					+ "serde 'org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe' \n"
+					+ "with serdeproperties('field.delim'=',') \n"
+					+ "format 'org.apache.hadoop.mapred.TextOutputFormat'",
+			"Manufacturer#1	almond antique burnished rose metallic	2	NULL	NULL	NULL	34	34	NULL\n"
+					+ "Manufacturer#1	almond antique burnished rose metallic	2	34	34	34	NULL	NULL	34\n"
+					+ "Manufacturer#1	almond antique chartreuse lavender yellow	34	34	34	NULL	42	42	34\n"
+					+ "Manufacturer#1	almond antique salmon chartreuse burlywood	6	34	34	NULL	42	42	34\n"
+					+ "Manufacturer#1	almond aquamarine burnished black steel	28	42	42	42	NULL	NULL	42\n"
+					+ "Manufacturer#1	almond aquamarine pink moccasin thistle	42	42	42	42	NULL	NULL	42\n"
+					+ "Manufacturer#2	almond antique violet chocolate turquoise	14	40	40	40	NULL	NULL	40\n"
+					+ "Manufacturer#2	almond antique violet turquoise frosted	40	40	40	NULL	NULL	NULL	40\n"
+					+ "Manufacturer#2	almond aquamarine midnight light salmon	2	40	40	NULL	NULL	NULL	40\n"
+					+ "Manufacturer#2	almond aquamarine rose maroon antique	25	NULL	NULL	NULL	NULL	NULL	NULL\n"
+					+ "Manufacturer#2	almond aquamarine sandy cyan gainsboro	18	NULL	NULL	NULL	NULL	NULL	NULL\n"
+					+ "Manufacturer#3	almond antique chartreuse khaki white	17	NULL	NULL	NULL	NULL	NULL	NULL\n"
+					+ "Manufacturer#3	almond antique forest lavender goldenrod	14	NULL	NULL	NULL	45	45	NULL\n"
+					+ "Manufacturer#3	almond antique metallic orange dim	19	NULL	NULL	NULL	45	45	NULL\n"
+					+ "Manufacturer#3	almond antique misty red olive	1	45	45	45	NULL	NULL	45\n"
+					+ "Manufacturer#3	almond antique olive coral navajo	45	45	45	45	NULL	NULL	45\n"
+					+ "Manufacturer#4	almond antique gainsboro frosted violet	10	39	39	39	NULL	NULL	39\n"
+					+ "Manufacturer#4	almond antique violet mint lemon	39	39	39	NULL	NULL	NULL	39\n"
+					+ "Manufacturer#4	almond aquamarine floral ivory bisque	27	39	39	NULL	NULL	NULL	39\n"
+					+ "Manufacturer#4	almond aquamarine yellow dodger mint	7	NULL	NULL	NULL	NULL	NULL	NULL\n"
+					+ "Manufacturer#4	almond azure aquamarine papaya violet	12	NULL	NULL	NULL	NULL	NULL	NULL\n"
+					+ "Manufacturer#5	almond antique blue firebrick mint	31	31	31	NULL	46	46	31\n"
+					+ "Manufacturer#5	almond antique medium spring khaki	6	31	31	NULL	46	46	31\n"
+					+ "Manufacturer#5	almond antique sky peru orange	2	46	46	46	NULL	NULL	46\n"
+					+ "Manufacturer#5	almond aquamarine dodger light gainsboro	46	46	46	NULL	NULL	NULL	46\n"
+					+ "Manufacturer#5	almond azure blanched chiffon midnight	23	46	46	NULL	NULL	NULL	46\n");
 	public static WindowingTest WHERE = new WindowingTest(
 			"testWhere",
 			"Test Where Clause",
@@ -315,6 +359,47 @@ public class WindowingTestsFactory
 					+ "Manufacturer#5	almond antique medium spring khaki	6\n"
 					+ "Manufacturer#5	almond aquamarine dodger light gainsboro	46\n"
 					+ "Manufacturer#5	almond azure blanched chiffon midnight	23\n");
+	public static WindowingTest LEADLAG = new WindowingTest(
+			"testLeadLag",
+			"Test Lead/Lag at the Partition edges and in window function args",
+			"select  p_mfgr,p_name, p_size, \n"
+					+ "lead(p_size, 2) as l2, \n"
+					+ "lag(p_size, 10) as lg10, \n"
+					+ "sum(lag(p_size, 1)) over rows between 1 preceding and current row as s1, \n"
+					+ "sum(lead(p_size, 1)) over rows between current row and 1 following as s2 \n"
+					+ "from part_tiny \n"
+					+ "partition by p_mfgr \n"
+					+ "order by p_name \n"
+					+ "into path='/tmp/testLeadLag' \n"
+					+ "serde 'org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe' \n"
+					+ "with serdeproperties('field.delim'=',') \n"
+					+ "format 'org.apache.hadoop.mapred.TextOutputFormat'",
+			"Manufacturer#1	almond antique burnished rose metallic	2	34	2	2	4\n"
+					+ "Manufacturer#1	almond antique burnished rose metallic	2	6	2	4	68\n"
+					+ "Manufacturer#1	almond antique chartreuse lavender yellow	34	28	2	4	12\n"
+					+ "Manufacturer#1	almond antique salmon chartreuse burlywood	6	42	2	68	56\n"
+					+ "Manufacturer#1	almond aquamarine burnished black steel	28	42	2	12	84\n"
+					+ "Manufacturer#1	almond aquamarine pink moccasin thistle	42	42	2	56	42\n"
+					+ "Manufacturer#2	almond antique violet chocolate turquoise	14	2	14	14	80\n"
+					+ "Manufacturer#2	almond antique violet turquoise frosted	40	25	14	28	4\n"
+					+ "Manufacturer#2	almond aquamarine midnight light salmon	2	18	14	80	50\n"
+					+ "Manufacturer#2	almond aquamarine rose maroon antique	25	18	14	4	36\n"
+					+ "Manufacturer#2	almond aquamarine sandy cyan gainsboro	18	18	14	50	18\n"
+					+ "Manufacturer#3	almond antique chartreuse khaki white	17	19	17	17	28\n"
+					+ "Manufacturer#3	almond antique forest lavender goldenrod	14	1	17	34	38\n"
+					+ "Manufacturer#3	almond antique metallic orange dim	19	45	17	28	2\n"
+					+ "Manufacturer#3	almond antique misty red olive	1	45	17	38	90\n"
+					+ "Manufacturer#3	almond antique olive coral navajo	45	45	17	2	45\n"
+					+ "Manufacturer#4	almond antique gainsboro frosted violet	10	27	10	10	78\n"
+					+ "Manufacturer#4	almond antique violet mint lemon	39	7	10	20	54\n"
+					+ "Manufacturer#4	almond aquamarine floral ivory bisque	27	12	10	78	14\n"
+					+ "Manufacturer#4	almond aquamarine yellow dodger mint	7	12	10	54	24\n"
+					+ "Manufacturer#4	almond azure aquamarine papaya violet	12	12	10	14	12\n"
+					+ "Manufacturer#5	almond antique blue firebrick mint	31	2	31	31	12\n"
+					+ "Manufacturer#5	almond antique medium spring khaki	6	46	31	62	4\n"
+					+ "Manufacturer#5	almond antique sky peru orange	2	23	31	12	92\n"
+					+ "Manufacturer#5	almond aquamarine dodger light gainsboro	46	23	31	4	46\n"
+					+ "Manufacturer#5	almond azure blanched chiffon midnight	23	23	31	92	23\n");
 	public static WindowingTest CENSUSTOP4 = new WindowingTest(
 			"testCensusTop4",
 			"List Top 4 tracts by land area for each county",
@@ -421,6 +506,44 @@ public class WindowingTestsFactory
 							"Chicago	897	2010	10	21	3	[{\"origin_city_name\":\"Chicago\",\"dest_city_name\":\"New York\",\"year\":2010,\"month\":10,\"day_of_month\":21,\"arr_delay\":77.0,\"fl_num\":\"897\"},{\"origin_city_name\":\"Chicago\",\"dest_city_name\":\"New York\",\"year\":2010,\"month\":10,\"day_of_month\":22,\"arr_delay\":24.0,\"fl_num\":\"897\"},{\"origin_city_name\":\"Chicago\",\"dest_city_name\":\"New York\",\"year\":2010,\"month\":10,\"day_of_month\":24,\"arr_delay\":113.0,\"fl_num\":\"897\"}]\n" +
 							"Chicago	897	2010	10	22	2	[{\"origin_city_name\":\"Chicago\",\"dest_city_name\":\"New York\",\"year\":2010,\"month\":10,\"day_of_month\":22,\"arr_delay\":24.0,\"fl_num\":\"897\"},{\"origin_city_name\":\"Chicago\",\"dest_city_name\":\"New York\",\"year\":2010,\"month\":10,\"day_of_month\":24,\"arr_delay\":113.0,\"fl_num\":\"897\"}]\n");
 
+	/*
+	 * result expressions that read single rows of the path; tpath[5] is past the end of all but the
+	 * first path.
+	 */
+	public static WindowingTest NPATHRESULTEXPRS = new WindowingTest(
+			"testNPathResultExprs",
+			"NPath result expressions on the path",
+			" select origin_city_name, fl_num, day_of_month, sz, d0, a1, d5 " +
+					" from npath( " +
+					"         flights_tiny " +
+					"         partition by fl_num " +
+					"  		  order by year, month, day_of_month, " +
+					"   	  'LATE.LATE+', " +
+					"  		  'LATE', arr_delay > 15, " +
+					"		  'origin_city_name, fl_num, day_of_month, size(tpath) as sz, tpath[0].day_of_month as d0, " +
+					"tpath[1].arr_delay as a1, tpath[5].day_of_month as d5' " +
+					"		) " +
+					" into path='/tmp/testNPathResultExprs' \n" +
+					" serde 'org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe' \n" +
+					" with serdeproperties('field.delim'=',') \n" +
+					" format 'org.apache.hadoop.mapred.TextOutputFormat'",
+			"Baltimore	1142	20	6	20	105.0	27\n" +
+					"Baltimore	1142	21	5	21	54.0	NULL\n" +
+					"Baltimore	1142	22	4	22	92.0	NULL\n" +
+					"Baltimore	1142	25	3	25	123.0	NULL\n" +
+					"Baltimore	1142	26	2	26	49.0	NULL\n" +
+					"Chicago	1531	21	2	21	16.0	NULL\n" +
+					"Chicago	1531	25	3	25	29.0	NULL\n" +
+					"Chicago	1531	26	2	26	70.0	NULL\n" +
+					"Baltimore	1599	21	2	21	18.0	NULL\n" +
+					"Baltimore	1599	25	3	25	90.0	NULL\n" +
+					"Baltimore	1599	26	2	26	92.0	NULL\n" +
+					"Chicago	361	20	2	20	142.0	NULL\n" +
+					"Washington	7291	27	2	27	45.0	NULL\n" +
+					"Chicago	897	20	4	20	77.0	NULL\n" +
+					"Chicago	897	21	3	21	24.0	NULL\n" +
+					"Chicago	897	22	2	22	113.0	NULL\n");
+
 	public static Object[][] TESTS = new Object[][]
 	{  	new Object[] { BASIC }, 
 		new Object[] { RC }, 
@@ -428,12 +551,15 @@ public class WindowingTestsFactory
 		new Object[] { SUM }, 
 		new Object[] { SUMWINDOW }, 
 		new Object[] { FIRSTLAST },
+		new Object[] { FIRSTLASTNULLS },
 		new Object[] { WHERE },
 		new Object[] { WHERELEAD }, 
+		new Object[] { LEADLAG }, 
 		new Object[] { CENSUSTOP4 }, 
 		new Object[] { NOOPWITHWINDOWING }, 
 		new Object[] { NOOPWITHMAPWINDOWING },
-		new Object[] { NPATH } 
+		new Object[] { NPATH },
+		new Object[] { NPATHRESULTEXPRS }
 	};
 
 }
@@ -0,0 +1,406 @@
+package com.sap.hadoop.windowing.runtime2.mr;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.Assert;
+
+import org.apache.hadoop.hive.ql.exec.ExprNodeColumnEvaluator;
+import org.apache.hadoop.hive.ql.exec.ExprNodeEvaluator;
+import org.apache.hadoop.hive.ql.plan.ExprNodeColumnDesc;
+import org.apache.hadoop.hive.ql.plan.ExprNodeDesc;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFMax.GenericUDAFMaxEvaluator;
+import org.apache.hadoop.hive.ql.udf.generic.GenericUDAFSum.GenericUDAFSumLong;
+import org.apache.hadoop.hive.serde2.lazy.LazySimpleSerDe;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspector;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils;
+import org.apache.hadoop.hive.serde2.objectinspector.ObjectInspectorUtils.ObjectInspectorCopyOption;
+import org.apache.hadoop.hive.serde2.objectinspector.StructField;
+import org.apache.hadoop.hive.serde2.objectinspector.StructObjectInspector;
+import org.apache.hadoop.hive.serde2.typeinfo.TypeInfoFactory;
+import org.apache.hadoop.io.BooleanWritable;
+import org.apache.hadoop.io.Text;
+import org.apache.hadoop.io.Writable;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import com.sap.hadoop.Utils;
+import com.sap.hadoop.windowing.WindowingException;
+import com.sap.hadoop.windowing.query2.definition.ArgDef;
+import com.sap.hadoop.windowing.query2.definition.ColumnDef;
+import com.sap.hadoop.windowing.query2.definition.PartitionDef;
+import com.sap.hadoop.windowing.query2.definition.QueryDef;
+import com.sap.hadoop.windowing.query2.definition.QueryOutputDef;
+import com.sap.hadoop.windowing.query2.definition.SelectDef;
+import com.sap.hadoop.windowing.query2.definition.TableFuncDef;
+import com.sap.hadoop.windowing.query2.definition.WindowDef;
+import com.sap.hadoop.windowing.query2.definition.WindowFunctionDef;
+import com.sap.hadoop.windowing.runtime2.Executor.ForwardSink;
+import com.sap.hadoop.windowing.runtime2.Executor.SelectListExecutor;
+
+/*
+ * Runs the map-side and reduce-side of a MapSideAggregation the way the PTFOperators do, with the
+ * shuffle in between simulated by sorting the records on the shuffle's key. The functions are
+ * sum(v) and max(v) partitioned by p.
+ */
+public class MapSideAggregationTest
+{
+	static LazySimpleSerDe inSerDe;
+	static StructObjectInspector inOI;
+	static LazySimpleSerDe outSerDe;
+	static StructObjectInspector outOI;
+
+	@BeforeClass
+	public static void setupClass() throws Exception
+	{
+		inSerDe = Utils.createLazySimpleSerDe("p,v", "string,int", ",");
+		inOI = (StructObjectInspector) inSerDe.getObjectInspector();
+		outSerDe = Utils.createLazySimpleSerDe("p,v,s,m", "string,int,bigint,int", ",");
+		outOI = (StructObjectInspector) outSerDe.getObjectInspector();
+	}
+
+	static MapSideAggregation create(boolean aggregateOnly) throws Exception
+	{
+		TableFuncDef input = new TableFuncDef();
+		input.setOI(inOI);
+
+		ColumnDef pDef = new ColumnDef();
+		pDef.setExprNode(new ExprNodeColumnDesc(TypeInfoFactory.stringTypeInfo, "p", null, false));
+		PartitionDef partDef = new PartitionDef();
+		partDef.addColumn(pDef);
+		WindowDef wDef = new WindowDef();
+		wDef.setPartDef(partDef);
+
+		TableFuncDef tDef = new TableFuncDef();
+		tDef.setInput(input);
+		tDef.setWindow(wDef);
+		tDef.setSerde(outSerDe);
+		tDef.setOI(outOI);
+
+		ArrayList<WindowFunctionDef> wFnDefs = new ArrayList<WindowFunctionDef>();
+		for(int k=0; k < 2; k++)
+		{
+			ExprNodeDesc vDesc = new ExprNodeColumnDesc(TypeInfoFactory.intTypeInfo, "v", null, false);
+			ExprNodeEvaluator vEval = new ExprNodeColumnEvaluator((ExprNodeColumnDesc) vDesc);
+			ArgDef arg = new ArgDef();
+			arg.setExprNode(vDesc);
+			arg.setExprEvaluator(vEval);
+			arg.setOI(vEval.initialize(inOI));
+			WindowFunctionDef wFnDef = new WindowFunctionDef();
+			wFnDef.addArg(arg);
+			wFnDefs.add(wFnDef);
+		}
+
+		return new MapSideAggregation(tDef, wFnDefs, aggregateOnly,
+				new GenericUDAFEvaluator[] {new GenericUDAFSumLong(), new GenericUDAFMaxEvaluator()},
+				new GenericUDAFEvaluator[] {new GenericUDAFSumLong(), new GenericUDAFMaxEvaluator()});
+	}
+
+	/*
+	 * a key wrapper on p, as the PTFOperator sets it up.
+	 */
+	static WindowingKeyWrapper keyWrapper(StructObjectInspector OI) throws Exception
+	{
+		ExprNodeEvaluator pEval = new ExprNodeColumnEvaluator(
+				new ExprNodeColumnDesc(TypeInfoFactory.stringTypeInfo, "p", null, false));
+		ObjectInspector pOI = pEval.initialize(OI);
+		return new WindowingKeyWrapperFactory(new ExprNodeEvaluator[] {pEval}, new ObjectInspector[] {pOI},
+				new ObjectInspector[] {ObjectInspectorUtils.getStandardObjectInspector(pOI, ObjectInspectorCopyOption.WRITABLE)})
+				.getWindowingKeyWrapper();
+	}
+
+	/*
+	 * collects copies of the shuffled records.
+	 */
+	static class Collector implements ForwardSink
+	{
+		StructObjectInspector OI;
+		ArrayList<Object> records = new ArrayList<Object>();
+
+		public void collectOutput(Writable key, Writable value)
+		{
+			throw new UnsupportedOperationException();
+		}
+
+		public void collectOutput(Object[] output)
+		{
+			records.add(ObjectInspectorUtils.copyToStandardObject(output, OI));
+		}
+
+		public boolean acceptObject()
+		{
+			return true;
+		}
+	}
+
+	/*
+	 * the map-side of a task over the rows.
+	 */
+	static List<Object> map(List<String> rows, boolean aggregateOnly, int maxPartitions) throws Exception
+	{
+		MapSideAggregation mapAgg = create(aggregateOnly);
+		Collector c = new Collector();
+		c.OI = mapAgg.initializeMap(inOI, maxPartitions, c);
+		WindowingKeyWrapper key = keyWrapper(inOI);
+		for(String r : rows)
+		{
+			mapAgg.aggregate(inSerDe.deserialize(new Text(r)), key);
+		}
+		mapAgg.flush();
+		return c.records;
+	}
+
+	/*
+	 * sort the records as the shuffle does: on the partition column, then on the isrow column; both
+	 * ascending, as MRUtils sets up the key.
+	 */
+	static void shuffle(List<Object> records, final StructObjectInspector OI)
+	{
+		final StructField pField = OI.getStructFieldRef("p");
+		final StructField isRowField = OI.getStructFieldRef(MapSideAggregation.ISROW_COLUMN);
+		Collections.sort(records, new Comparator<Object>()
+		{
+			public int compare(Object r1, Object r2)
+			{
+				int c = ObjectInspectorUtils.compare(OI.getStructFieldData(r1, pField), pField.getFieldObjectInspector(),
+						OI.getStructFieldData(r2, pField), pField.getFieldObjectInspector());
+				if ( c != 0 )
+				{
+					return c;
+				}
+				return ObjectInspectorUtils.compare(OI.getStructFieldData(r1, isRowField), isRowField.getFieldObjectInspector(),
+						OI.getStructFieldData(r2, isRowField), isRowField.getFieldObjectInspector());
+			}
+		});
+	}
+
+	/*
+	 * the reduce-side over the sorted records; a Partition ends when the key changes.
+	 * @return the output rows.
+	 */
+	static List<String> reduce(List<Object> records, StructObjectInspector OI, boolean aggregateOnly) throws Exception
+	{
+		final ArrayList<String> out = new ArrayList<String>();
+		QueryDef qDef = new QueryDef();
+		SelectDef select = new SelectDef();
+		select.setColumns(new ArrayList<ColumnDef>());
+		qDef.setSelectList(select);
+		qDef.setOutput(new QueryOutputDef());
+		SelectListExecutor selExec = new SelectListExecutor(qDef, null)
+		{
+			@Override
+			public void processRow(Object oRow) throws WindowingException
+			{
+				StringBuilder b = new StringBuilder();
+				for(Object o : outOI.getStructFieldsDataAsList(oRow))
+				{
+					b.append(b.length() > 0 ? "," : "").append(o);
+				}
+				out.add(b.toString());
+			}
+		};
+
+		MapSideAggregation mapAgg = create(aggregateOnly);
+		mapAgg.initializeReduce(OI, selExec);
+		WindowingKeyWrapper newKeys = keyWrapper(OI);
+		WindowingKeyWrapper currentKeys = null;
+		for(Object r : records)
+		{
+			newKeys.getNewKey(r, OI);
+			newKeys.setHashKey();
+			if ( currentKeys != null && !newKeys.equals(currentKeys) )
+			{
+				mapAgg.finishPartition();
+			}
+			if ( currentKeys == null )
+			{
+				currentKeys = newKeys.copyKey();
+			}
+			else
+			{
+				currentKeys.copyKey(newKeys);
+			}
+			mapAgg.processRow(r);
+		}
+		mapAgg.finishPartition();
+		return out;
+	}
+
+	static boolean isRow(Object record, StructObjectInspector OI)
+	{
+		return ((BooleanWritable) OI.getStructFieldData(record, OI.getStructFieldRef(MapSideAggregation.ISROW_COLUMN))).get();
+	}
+
+	static ArrayList<String> rows(int n, Random r)
+	{
+		ArrayList<String> rows = new ArrayList<String>();
+		for(int i=0; i < n; i++)
+		{
+			int p = r.nextInt(8);
+			rows.add((p == 0 ? "\\N" : "p" + p) + "," + (r.nextInt(5) == 0 ? "\\N" : Integer.toString(r.nextInt(100) - 50)));
+		}
+		return rows;
+	}
+
+	/*
+	 * the output computed directly: each row with its Partition's sum and max of v; or, if only the
+	 * aggregations are output, the Partition's row count of rows without v.
+	 */
+	static ArrayList<String> expected(List<String> rows, boolean aggregateOnly)
+	{
+		HashMap<String, Long> sums = new HashMap<String, Long>();
+		HashMap<String, Integer> maxs = new HashMap<String, Integer>();
+		for(String row : rows)
+		{
+			String[] f = row.split(",");
+			if ( !sums.containsKey(f[0]) )
+			{
+				sums.put(f[0], null);
+				maxs.put(f[0], null);
+			}
+			if ( !f[1].equals("\\N") )
+			{
+				int v = Integer.parseInt(f[1]);
+				sums.put(f[0], sums.get(f[0]) == null ? v : sums.get(f[0]) + v);
+				maxs.put(f[0], maxs.get(f[0]) == null ? v : Math.max(maxs.get(f[0]), v));
+			}
+		}
+		ArrayList<String> out = new ArrayList<String>();
+		for(String row : rows)
+		{
+			String[] f = row.split(",");
+			String p = f[0].equals("\\N") ? "null" : f[0];
+			String v = aggregateOnly || f[1].equals("\\N") ? "null" : f[1];
+			out.add(p + "," + v + "," + sums.get(f[0]) + "," + maxs.get(f[0]));
+		}
+		return out;
+	}
+
+	static void assertOutput(List<String> expected, List<String> actual)
+	{
+		ArrayList<String> e = new ArrayList<String>(expected);
+		ArrayList<String> a = new ArrayList<String>(actual);
+		Collections.sort(e);
+		Collections.sort(a);
+		Assert.assertEquals(e, a);
+	}
+
+	@Test
+	public void testFlushPastCap() throws Exception
+	{
+		Random r = new Random(3);
+		ArrayList<String> rows = rows(400, r);
+
+		/*
+		 * two map tasks holding at most 2 Partitions each: the aggregations of a Partition are flushed
+		 * several times, by both tasks, and merged on the reduce-side.
+		 */
+		List<Object> records = map(rows.subList(0, 150), false, 2);
+		List<Object> records2 = map(rows.subList(150, rows.size()), false, 2);
+		int numPartials = 0;
+		StructObjectInspector OI = create(false).initializeMap(inOI, 2, new Collector());
+		records.addAll(records2);
+		for(Object rec : records)
+		{
+			if ( !isRow(rec, OI) )
+			{
+				numPartials++;
+			}
+		}
+		Assert.assertTrue(numPartials > 2 * 8);
+
+		shuffle(records, OI);
+		assertOutput(expected(rows, false), reduce(records, OI, false));
+	}
+
+	@Test
+	public void testPartialsSortAhead() throws Exception
+	{
+		ArrayList<String> rows = new ArrayList<String>();
+		rows.add("p1,3");
+		rows.add("p1,4");
+		rows.add("p2,5");
+		List<Object> records = map(rows, false, 10);
+		StructObjectInspector OI = create(false).initializeMap(inOI, 10, new Collector());
+
+		/*
+		 * the map-side outputs the rows as they come, and the partials at the end.
+		 */
+		Assert.assertEquals(5, records.size());
+		Assert.assertTrue(isRow(records.get(0), OI));
+		Assert.assertFalse(isRow(records.get(4), OI));
+
+		/*
+		 * the shuffle key is the partition columns, then isrow, then the order columns; all ascending.
+		 */
+		MRUtils mrUtils = new MRUtils(null);
+		ArrayList<ExprNodeDesc> partCols = new ArrayList<ExprNodeDesc>();
+		partCols.add(new ExprNodeColumnDesc(TypeInfoFactory.stringTypeInfo, "p", null, false));
+		ArrayList<ExprNodeDesc> orderCols = new ArrayList<ExprNodeDesc>();
+		orderCols.add(new ExprNodeColumnDesc(TypeInfoFactory.intTypeInfo, "v", null, false));
+		mrUtils.setPartCols(partCols);
+		mrUtils.setOrderCols(orderCols);
+		mrUtils.setOrderString(new StringBuilder("-"));
+		mrUtils.initializeMapAggregation(create(false));
+		Assert.assertEquals("++-", mrUtils.getOrderString().toString());
+		Assert.assertEquals(3, mrUtils.getOrderCols().size());
+		Assert.assertEquals(MapSideAggregation.ISROW_COLUMN,
+				((ExprNodeColumnDesc) mrUtils.getOrderCols().get(1)).getColumn());
+
+		/*
+		 * sorted that way a Partition's partials come first; so each row is output with the final values.
+		 */
+		shuffle(records, OI);
+		Assert.assertFalse(isRow(records.get(0), OI));
+		Assert.assertEquals(expected(rows, false), reduce(records, OI, false));
+	}
+
+	@Test
+	public void testAggregateOnly() throws Exception
+	{
+		Random r = new Random(7);
+		ArrayList<String> rows = rows(200, r);
+		List<Object> records = map(rows.subList(0, 120), true, 3);
+		records.addAll(map(rows.subList(120, rows.size()), true, 3));
+		StructObjectInspector OI = create(true).initializeMap(inOI, 3, new Collector());
+
+		/*
+		 * no rows are shuffled; the reduce-side outputs the row count of each Partition.
+		 */
+		for(Object rec : records)
+		{
+			Assert.assertFalse(isRow(rec, OI));
+		}
+		shuffle(records, OI);
+		assertOutput(expected(rows, true), reduce(records, OI, true));
+	}
+
+	@Test
+	public void testNullPartitionKey() throws Exception
+	{
+		ArrayList<String> rows = new ArrayList<String>();
+		rows.add("\\N,1");
+		rows.add("p1,10");
+		rows.add("\\N,2");
+		rows.add("\\N,\\N");
+		rows.add("p1,20");
+
+		for(boolean aggregateOnly : new boolean[] {false, true})
+		{
+			/*
+			 * the null key Partition is flushed past the cap, and merged with the rest of its rows.
+			 */
+			List<Object> records = map(rows, aggregateOnly, 1);
+			StructObjectInspector OI = create(aggregateOnly).initializeMap(inOI, 1, new Collector());
+			shuffle(records, OI);
+			List<String> out = reduce(records, OI, aggregateOnly);
+			assertOutput(expected(rows, aggregateOnly), out);
+			Assert.assertTrue(out.contains(aggregateOnly ? "null,null,3,2" : "null,2,3,2"));
+		}
+	}
+}